@@ -20,9 +20,13 @@
 package org.xmodel;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import org.xmodel.path.IListenerChain;
 import org.xmodel.path.ListenerChain;
+import org.xmodel.path.QueryMultiplexer;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
 import org.xmodel.xpath.variable.IVariableSource;
@@ -399,9 +403,16 @@ public abstract class AbstractPath implements IPath, IAxis
    */
   public IModelObject queryFirst( IModelObject object)
   {
-    List<IModelObject> list = query( object, null);
-    if ( list.size() == 0) return null;
-    return (IModelObject)list.get( 0);
+    Iterator<IModelObject> iter = new PathIterator( null, object);
+    return iter.hasNext()? iter.next(): null;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.IPath#iterate(org.xmodel.xpath.expression.IContext)
+   */
+  public Iterator<IModelObject> iterate( IContext context)
+  {
+    return new PathIterator( context, context.getObject());
   }
   
   /* (non-Javadoc)
@@ -421,6 +432,13 @@ public abstract class AbstractPath implements IPath, IAxis
     // this prevents duplicate notification caused by syncing in FanoutListener
     query( context, null);
     
+    // share the listener chain of other bindings of the same path
+    if ( QueryMultiplexer.isShareable( this, listener))
+    {
+      QueryMultiplexer.addPathListener( this, context, listener);
+      return;
+    }
+    
     // install listener chain
     PathListenerList list = context.getObject().getPathListeners();
     IListenerChain chain = list.findListenerChain( context, listener);
@@ -443,6 +461,9 @@ public abstract class AbstractPath implements IPath, IAxis
       throw new IllegalArgumentException( 
         "Attempt to remove listener from null context: path:"+toString());
     
+    // the binding may have been multiplexed even if it would not be shareable now
+    if ( QueryMultiplexer.removePathListener( this, context, listener)) return;
+    
     PathListenerList list = context.getObject().getPathListeners();
     IListenerChain chain = list.removeListenerChain( context, listener);
     if ( chain == null) return;
@@ -468,4 +489,71 @@ public abstract class AbstractPath implements IPath, IAxis
   protected IListenerChain chainProto;
   private Boolean isAbsolute;
   private IVariableSource source;
+
+  /**
+   * An iterator that evaluates the path depth-first, keeping one IPathElement iterator for each location step,
+   * so that the leaf objects are produced in the same order as the <code>query</code> method.
+   */
+  private class PathIterator implements Iterator<IModelObject>
+  {
+    public PathIterator( IContext parent, IModelObject object)
+    {
+      this.parent = parent;
+      this.stack = new ArrayList<Iterator<IModelObject>>( elements.length + 1);
+      this.stack.add( Collections.singletonList( object).iterator());
+    }
+    
+    /* (non-Javadoc)
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext()
+    {
+      if ( next != null) return true;
+      
+      int depth = stack.size() - 1;
+      while( depth >= 0)
+      {
+        Iterator<IModelObject> iter = stack.get( depth);
+        if ( !iter.hasNext())
+        {
+          stack.remove( depth--);
+          continue;
+        }
+        
+        IModelObject node = iter.next();
+        if ( depth == elements.length)
+        {
+          next = node;
+          return true;
+        }
+        
+        stack.add( elements[ depth].iterate( parent, node));
+        depth++;
+      }
+      return false;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Iterator#next()
+     */
+    public IModelObject next()
+    {
+      if ( !hasNext()) throw new NoSuchElementException();
+      IModelObject result = next;
+      next = null;
+      return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Iterator#remove()
+     */
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+    
+    private IContext parent;
+    private List<Iterator<IModelObject>> stack;
+    private IModelObject next;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,667 @@
+package org.xmodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.xmodel.storage.IndexedChildList;
+import org.xmodel.util.WeakIdentityMap;
+import org.xmodel.xpath.function.StringFunction;
+
+/**
+ * An optional index of the descendants of a root by type, which is used by the descendant axis of a path instead
+ * of traversing the tree.  A root is indexed after it is declared with <code>addRoot</code>.  The index is built
+ * the first time it is queried and is maintained incrementally when a child is added or removed anywhere in the
+ * tree.  If a secondary index of an attribute is declared with <code>IndexedChildList.addIndex</code>, then the
+ * descendants with that type are also indexed by the string-value of the attribute.
+ * <p>
+ * The descendants are returned in document order, which is the order of a traversal of the tree with
+ * DepthFirstIterator, so the result of a query does not depend on whether the root is indexed.  The descendants
+ * that are removed or moved are removed from the order immediately, by binary search for the position of the
+ * removed child.  The descendants that are added or moved are sorted when the index is next queried, and are
+ * inserted into the order by binary search, so a query after k changes costs O(k log n) comparisons rather than
+ * a sort of the whole index.  The index is not used while the model is reverted.  The index does not sync
+ * external references that become dirty after it is built.
+ * <p>
+ * The descendants of a Reference in the tree are the descendants of its referent, which may change without
+ * notifying the tree, so they are not indexed.  Instead, the subtrees of the referents are traversed when the
+ * index is queried, and their descendants are merged into the result after each reference.
+ * <p>
+ * Roots are compared by identity and weakly referenced.  Once any root is declared, each write to any tree finds
+ * the root of the element and probes the declared roots without locking, but only the writes to a declared tree
+ * update the index.
+ * <p>
+ * Sealed subtrees are not indexed, so that concurrent readers of a sealed subtree do not share mutable state.
+ */
+public final class DescendantIndex
+{
+  /**
+   * Declare that the descendants of the specified root should be indexed.
+   * @param root The root.
+   */
+  public static void addRoot( IModelObject root)
+  {
+    if ( root instanceof FrozenObject) return;
+    if ( entries.get( root) == null) entries.put( root, new Entry());
+    active = true;
+  }
+
+  /**
+   * Discard the index of the specified root.
+   * @param root The root.
+   */
+  public static void removeRoot( IModelObject root)
+  {
+    entries.remove( root);
+  }
+
+  /**
+   * @return Returns true if any root has been declared.
+   */
+  public static boolean isActive()
+  {
+    return active;
+  }
+
+  /**
+   * Returns the descendants of the specified object with the specified type, if the object is an indexed root.
+   * The returned list must not be modified.
+   * @param object The object.
+   * @param type The type.
+   * @return Returns null if the object is not an indexed root, or the index cannot be used.
+   */
+  public static List<IModelObject> find( IModelObject object, String type)
+  {
+    Entry entry = getUsableEntry( object);
+    if ( entry == null) return null;
+
+    Bucket bucket = entry.types.get( type);
+    List<IModelObject> list = (bucket != null)? bucket.getSorted(): Collections.<IModelObject>emptyList();
+    if ( entry.references.size() == 0) return list;
+    return entry.expand( list, type, null, null);
+  }
+
+  /**
+   * Returns the descendants of the specified object with the specified type whose attribute has the specified
+   * string-value, if the object is an indexed root and a secondary index of the attribute has been declared.
+   * @param object The object.
+   * @param type The type.
+   * @param attrName The name of the attribute.
+   * @param value The string-value of the attribute.
+   * @return Returns null if the object is not an indexed root, or the index cannot be used.
+   */
+  public static List<IModelObject> find( IModelObject object, String type, String attrName, String value)
+  {
+    if ( !IndexedChildList.isIndexed( type, attrName)) return null;
+
+    Entry entry = getUsableEntry( object);
+    if ( entry == null) return null;
+
+    Bucket bucket = entry.types.get( type);
+    Set<IModelObject> matches = (bucket != null)? bucket.getValues( attrName).get( value): null;
+
+    List<IModelObject> list = (matches != null)? new ArrayList<IModelObject>( matches): new ArrayList<IModelObject>( 0);
+    if ( list.size() > 1) Collections.sort( list, new DocumentOrderComparator());
+    if ( entry.references.size() == 0) return Collections.unmodifiableList( list);
+    return entry.expand( list, type, attrName, value);
+  }
+
+  /**
+   * Called after the specified child is added to the specified parent.
+   * @param parent The parent.
+   * @param child The child.
+   */
+  static void notifyAddChild( IModelObject parent, IModelObject child)
+  {
+    // a root that is added to another tree is no longer indexed as a root
+    Entry previous = entries.get( child);
+    if ( previous != null) previous.types = null;
+
+    Entry entry = entries.get( parent.getRoot());
+    if ( entry == null || entry.types == null) return;
+
+    for( IModelObject object: getSubtree( child, false)) entry.add( object);
+  }
+
+  /**
+   * Called after the specified child is removed from the specified parent.
+   * @param parent The parent.
+   * @param child The child.
+   * @param index The index of the child.
+   */
+  static void notifyRemoveChild( IModelObject parent, IModelObject child, int index)
+  {
+    IModelObject root = parent.getRoot();
+    Entry entry = entries.get( root);
+    if ( entry == null || entry.types == null) return;
+
+    // the child is being moved within the tree and will be added again
+    boolean moved = child.getRoot() == root;
+    entry.remove( new Position( parent, child, index), getSubtree( child, false), moved);
+  }
+
+  /**
+   * Called after an attribute of the specified object changes.
+   * @param object The object.
+   * @param attrName The name of the attribute.
+   * @param newValue Null or the new value.
+   * @param oldValue Null or the old value.
+   */
+  static void notifyChange( IModelObject object, String attrName, Object newValue, Object oldValue)
+  {
+    if ( !IndexedChildList.isIndexed( object.getType(), attrName)) return;
+
+    Entry entry = entries.get( object.getRoot());
+    if ( entry == null || entry.types == null) return;
+
+    Bucket bucket = entry.types.get( object.getType());
+    if ( bucket == null || bucket.values == null) return;
+
+    Map<String, Set<IModelObject>> values = bucket.values.get( attrName);
+    if ( values == null) return;
+
+    remove( values, StringFunction.stringValueOf( oldValue), object);
+    add( values, StringFunction.stringValueOf( newValue), object);
+  }
+
+  /**
+   * Returns the entry of the specified object if it is an indexed root and its index can be used.  The index is
+   * built if necessary.
+   * @param object The object.
+   * @return Returns null or the entry.
+   */
+  private static Entry getUsableEntry( IModelObject object)
+  {
+    if ( object.getParent() != null) return null;
+
+    Entry entry = entries.get( object);
+    if ( entry == null) return null;
+
+    if ( GlobalSettings.getInstance().getModel().isReverted()) return null;
+
+    if ( entry.types == null) entry.build( object);
+    return entry;
+  }
+
+  /**
+   * Add the specified object to the set of the specified key.
+   * @param map The map.
+   * @param key Null or the key.
+   * @param object The object.
+   */
+  private static void add( Map<String, Set<IModelObject>> map, String key, IModelObject object)
+  {
+    if ( key == null) return;
+
+    Set<IModelObject> set = map.get( key);
+    if ( set == null)
+    {
+      set = newIdentitySet();
+      map.put( key, set);
+    }
+    set.add( object);
+  }
+
+  /**
+   * Remove the specified object from the set of the specified key.
+   * @param map The map.
+   * @param key Null or the key.
+   * @param object The object.
+   */
+  private static void remove( Map<String, Set<IModelObject>> map, String key, IModelObject object)
+  {
+    if ( key == null) return;
+
+    Set<IModelObject> set = map.get( key);
+    if ( set == null) return;
+
+    set.remove( object);
+    if ( set.size() == 0) map.remove( key);
+  }
+
+  /**
+   * Returns the specified object and its descendants in document order, without the descendants of references.
+   * @param object The object.
+   * @param sync True if dirty external references should be synced.
+   * @return Returns the object and its descendants.
+   */
+  private static List<IModelObject> getSubtree( IModelObject object, boolean sync)
+  {
+    List<IModelObject> result = new ArrayList<IModelObject>();
+    List<IModelObject> stack = new ArrayList<IModelObject>();
+    stack.add( object);
+    while( stack.size() > 0)
+    {
+      IModelObject next = stack.remove( stack.size() - 1);
+      result.add( next);
+      if ( next.getReferent() != next || (!sync && next.isDirty())) continue;
+
+      List<IModelObject> children = next.getChildren();
+      for( int i=children.size() - 1; i >= 0; i--) stack.add( children.get( i));
+    }
+    return result;
+  }
+
+  /**
+   * Add the descendants of the referent of the specified reference with the specified type to the result, in the
+   * order of a traversal with DepthFirstIterator.  The references that are visited are recorded, and a reference
+   * whose referent has already been visited is skipped with its subtree, as in that traversal.
+   * @param reference The reference.
+   * @param type The type.
+   * @param attrName Null or the name of an attribute.
+   * @param value The string-value of the attribute.
+   * @param visited The references that have been visited.
+   * @param result The result.
+   */
+  private static void collect( IModelObject reference, String type, String attrName, String value, Set<IModelObject> visited, List<IModelObject> result)
+  {
+    List<IModelObject> stack = new ArrayList<IModelObject>();
+    List<IModelObject> children = reference.getChildren();
+    for( int i=children.size() - 1; i >= 0; i--) stack.add( children.get( i));
+
+    while( stack.size() > 0)
+    {
+      IModelObject object = stack.remove( stack.size() - 1);
+      if ( object.getReferent() != object && !visited.add( object)) continue;
+
+      if ( object.isType( type))
+      {
+        if ( attrName == null || value.equals( StringFunction.stringValueOf( object.getAttribute( attrName))))
+          result.add( object);
+      }
+
+      children = object.getChildren();
+      for( int i=children.size() - 1; i >= 0; i--) stack.add( children.get( i));
+    }
+  }
+
+  /**
+   * @return Returns a new set that compares its elements by identity.
+   */
+  private static Set<IModelObject> newIdentitySet()
+  {
+    return Collections.newSetFromMap( new IdentityHashMap<IModelObject, Boolean>());
+  }
+
+  /**
+   * A comparator which orders the objects of a tree in document order.  The index of each child is cached for
+   * the lifetime of the comparator.
+   */
+  private final static class DocumentOrderComparator implements Comparator<IModelObject>
+  {
+    /* (non-Javadoc)
+     * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public int compare( IModelObject object1, IModelObject object2)
+    {
+      if ( object1 == object2) return 0;
+
+      int depth1 = getDepth( object1);
+      int depth2 = getDepth( object2);
+
+      // an ancestor precedes its descendants
+      for( ; depth1 > depth2; depth1--)
+      {
+        object1 = object1.getParent();
+        if ( object1 == object2) return 1;
+      }
+      for( ; depth2 > depth1; depth2--)
+      {
+        object2 = object2.getParent();
+        if ( object2 == object1) return -1;
+      }
+
+      IModelObject parent1 = object1.getParent();
+      IModelObject parent2 = object2.getParent();
+      while( parent1 != parent2)
+      {
+        object1 = parent1; parent1 = parent1.getParent();
+        object2 = parent2; parent2 = parent2.getParent();
+      }
+
+      int index1 = getIndex( parent1, object1);
+      int index2 = getIndex( parent1, object2);
+      return (index1 < index2)? -1: 1;
+    }
+
+    /**
+     * Returns the depth of the specified object.
+     * @param object The object.
+     * @return Returns the depth of the object.
+     */
+    private static int getDepth( IModelObject object)
+    {
+      int depth = 0;
+      for( IModelObject parent = object.getParent(); parent != null; parent = parent.getParent()) depth++;
+      return depth;
+    }
+
+    /**
+     * Returns the index of the specified child in the specified parent.
+     * @param parent The parent.
+     * @param child The child.
+     * @return Returns the index of the child.
+     */
+    private int getIndex( IModelObject parent, IModelObject child)
+    {
+      Map<IModelObject, Integer> map = indexes.get( parent);
+      if ( map == null)
+      {
+        List<IModelObject> children = parent.getChildren();
+        map = new IdentityHashMap<IModelObject, Integer>( children.size());
+        for( int i=0; i<children.size(); i++) map.put( children.get( i), i);
+        indexes.put( parent, map);
+      }
+      return map.get( child);
+    }
+
+    private Map<IModelObject, Map<IModelObject, Integer>> indexes = new IdentityHashMap<IModelObject, Map<IModelObject, Integer>>();
+  }
+
+  /**
+   * The position from which a child was removed, which is compared with the objects that remain in the tree.  If
+   * the child was moved, then the objects in its subtree are not compared.
+   */
+  private final static class Position
+  {
+    /**
+     * @param parent The parent from which the child was removed.
+     * @param child The child.
+     * @param index The index of the child.
+     */
+    public Position( IModelObject parent, IModelObject child, int index)
+    {
+      this.parent = parent;
+      this.child = child;
+      this.index = index;
+      this.comparator = new DocumentOrderComparator();
+    }
+
+    /**
+     * Returns true if the specified object is the child or one of its descendants.
+     * @param object The object.
+     * @return Returns true if the object is in the subtree of the child.
+     */
+    public boolean contains( IModelObject object)
+    {
+      for( ; object != null; object = object.getParent())
+        if ( object == child)
+          return true;
+      return false;
+    }
+
+    /**
+     * Returns true if the specified object preceded the child in document order.  The objects in the subtree of
+     * the child do not precede the child.
+     * @param object The object.
+     * @return Returns true if the object preceded the child.
+     */
+    public boolean isAfter( IModelObject object)
+    {
+      if ( object == child) return false;
+      if ( object == parent) return true;
+
+      IModelObject ancestor = object;
+      for( IModelObject next = object.getParent(); next != null; ancestor = next, next = next.getParent())
+      {
+        if ( next == child) return false;
+        if ( next == parent)
+        {
+          // the child may have been moved to a later index of the same parent
+          int i = comparator.getIndex( parent, ancestor);
+          if ( child.getParent() == parent && comparator.getIndex( parent, child) < i) i--;
+          return i < index;
+        }
+      }
+
+      return comparator.compare( object, parent) < 0;
+    }
+
+    private IModelObject parent;
+    private IModelObject child;
+    private int index;
+    private DocumentOrderComparator comparator;
+  }
+
+  /**
+   * The descendants of a root with one type.  The order contains the descendants that have been sorted, in the
+   * current document order, and the descendants that have been added or moved since are in the added set.
+   */
+  private final static class Bucket
+  {
+    /**
+     * Returns the descendants in document order.  The returned list is valid until the tree is next modified.
+     * @return Returns the descendants in document order.
+     */
+    public List<IModelObject> getSorted()
+    {
+      if ( added.size() == 0) return sorted;
+
+      DocumentOrderComparator comparator = new DocumentOrderComparator();
+      List<IModelObject> insert = new ArrayList<IModelObject>( added);
+      Collections.sort( insert, comparator);
+      added.clear();
+
+      // insert each object after the previous one by binary search, or merge if many objects were added
+      if ( insert.size() * 8 < order.size())
+      {
+        int from = 0;
+        for( IModelObject object: insert)
+        {
+          int index = Collections.binarySearch( order.subList( from, order.size()), object, comparator);
+          from += (index < 0)? -(index + 1): index;
+          order.add( from++, object);
+        }
+        return sorted;
+      }
+
+      List<IModelObject> merged = new ArrayList<IModelObject>( order.size() + insert.size());
+      int from = 0;
+      for( IModelObject object: insert)
+      {
+        int index = Collections.binarySearch( order.subList( from, order.size()), object, comparator);
+        int to = from + ((index < 0)? -(index + 1): index);
+        merged.addAll( order.subList( from, to));
+        merged.add( object);
+        from = to;
+      }
+      merged.addAll( order.subList( from, order.size()));
+
+      order = merged;
+      sorted = Collections.unmodifiableList( merged);
+      return sorted;
+    }
+
+    /**
+     * Remove the objects in the subtree of the removed child from the order.  The objects are consecutive, and
+     * are found by binary search for the position of the child.
+     * @param position The position of the child.
+     */
+    public void unorder( Position position)
+    {
+      int low = 0, high = order.size();
+      while( low < high)
+      {
+        int mid = (low + high) >>> 1;
+        if ( position.isAfter( order.get( mid))) low = mid + 1; else high = mid;
+      }
+
+      int end = low;
+      while( end < order.size() && position.contains( order.get( end))) end++;
+      if ( end > low) order.subList( low, end).clear();
+    }
+
+    /**
+     * Returns the descendants grouped by the string-value of the specified attribute.
+     * @param attrName The name of the attribute.
+     * @return Returns the descendants grouped by the string-value of the attribute.
+     */
+    public Map<String, Set<IModelObject>> getValues( String attrName)
+    {
+      if ( values == null) values = new HashMap<String, Map<String, Set<IModelObject>>>( 1);
+
+      Map<String, Set<IModelObject>> map = values.get( attrName);
+      if ( map == null)
+      {
+        map = new HashMap<String, Set<IModelObject>>();
+        for( IModelObject object: objects)
+          add( map, StringFunction.stringValueOf( object.getAttribute( attrName)), object);
+        values.put( attrName, map);
+      }
+      return map;
+    }
+
+    public Set<IModelObject> objects = newIdentitySet();
+    public List<IModelObject> order = new ArrayList<IModelObject>();
+    public List<IModelObject> sorted = Collections.unmodifiableList( order);
+    public Set<IModelObject> added = newIdentitySet();
+    public Map<String, Map<String, Set<IModelObject>>> values;
+  }
+
+  /**
+   * The index of a root.  An entry is only accessed by the thread that owns the tree of the root.
+   */
+  private final static class Entry
+  {
+    /**
+     * Build the index of the specified root.
+     * @param root The root.
+     */
+    public void build( IModelObject root)
+    {
+      types = new HashMap<String, Bucket>();
+      references = newIdentitySet();
+
+      // the objects are visited in document order
+      for( IModelObject object: getSubtree( root, true))
+        if ( object != root) add( object, true);
+    }
+
+    /**
+     * Add the specified descendant to the index.
+     * @param object The descendant.
+     */
+    public void add( IModelObject object)
+    {
+      add( object, false);
+    }
+
+    /**
+     * Add the specified descendant to the index.
+     * @param object The descendant.
+     * @param append True if the descendant follows the descendants that have been added.
+     */
+    private void add( IModelObject object, boolean append)
+    {
+      Bucket bucket = types.get( object.getType());
+      if ( bucket == null)
+      {
+        bucket = new Bucket();
+        types.put( object.getType(), bucket);
+      }
+
+      // an object that is moved within the tree is already in the added set
+      if ( !bucket.objects.add( object)) return;
+      if ( append) bucket.order.add( object); else bucket.added.add( object);
+      if ( object.getReferent() != object) references.add( object);
+
+      if ( bucket.values != null)
+      {
+        for( Map.Entry<String, Map<String, Set<IModelObject>>> entry: bucket.values.entrySet())
+          DescendantIndex.add( entry.getValue(), StringFunction.stringValueOf( object.getAttribute( entry.getKey())), object);
+      }
+    }
+
+    /**
+     * Remove the subtree of the specified child from the index, or from the order of the index if the child was
+     * moved within the tree.
+     * @param position The position of the child.
+     * @param subtree The child and its descendants.
+     * @param moved True if the child was moved within the tree.
+     */
+    public void remove( Position position, List<IModelObject> subtree, boolean moved)
+    {
+      Map<Bucket, Boolean> buckets = new IdentityHashMap<Bucket, Boolean>();
+      for( IModelObject object: subtree)
+      {
+        Bucket bucket = types.get( object.getType());
+        if ( bucket == null || !bucket.objects.contains( object)) continue;
+
+        buckets.put( bucket, Boolean.TRUE);
+        if ( moved) bucket.added.add( object); else remove( bucket, object);
+      }
+
+      for( Bucket bucket: buckets.keySet()) bucket.unorder( position);
+    }
+
+    /**
+     * Returns the specified descendants merged with the matching descendants of the referents of the references
+     * in the tree, in the order of a traversal of the tree with DepthFirstIterator.
+     * @param list The descendants in document order.
+     * @param type The type.
+     * @param attrName Null or the name of an attribute.
+     * @param value The string-value of the attribute.
+     * @return Returns the merged descendants.
+     */
+    public List<IModelObject> expand( List<IModelObject> list, String type, String attrName, String value)
+    {
+      DocumentOrderComparator comparator = new DocumentOrderComparator();
+      List<IModelObject> sorted = new ArrayList<IModelObject>( references);
+      Collections.sort( sorted, comparator);
+
+      // references are compared by referent, as in DepthFirstIterator
+      Set<IModelObject> visited = new HashSet<IModelObject>();
+      List<IModelObject> result = new ArrayList<IModelObject>( list.size());
+      int from = 0;
+      for( IModelObject reference: sorted)
+      {
+        int index = Collections.binarySearch( list.subList( from, list.size()), reference, comparator);
+        int to = from + ((index < 0)? -(index + 1): index);
+        result.addAll( list.subList( from, to));
+        from = to;
+
+        boolean traverse = visited.add( reference);
+        if ( index >= 0)
+        {
+          if ( traverse) result.add( reference);
+          from++;
+        }
+        if ( traverse) collect( reference, type, attrName, value, visited, result);
+      }
+      result.addAll( list.subList( from, list.size()));
+      return Collections.unmodifiableList( result);
+    }
+
+    /**
+     * Remove the specified descendant from the index, but not from the order of its bucket.
+     * @param bucket The bucket of the descendant.
+     * @param object The descendant.
+     */
+    private void remove( Bucket bucket, IModelObject object)
+    {
+      bucket.objects.remove( object);
+      bucket.added.remove( object);
+      if ( object.getReferent() != object) references.remove( object);
+
+      if ( bucket.values != null)
+      {
+        for( Map.Entry<String, Map<String, Set<IModelObject>>> entry: bucket.values.entrySet())
+          DescendantIndex.remove( entry.getValue(), StringFunction.stringValueOf( object.getAttribute( entry.getKey())), object);
+      }
+
+      if ( bucket.objects.size() == 0) types.remove( object.getType());
+    }
+
+    public Map<String, Bucket> types;
+    public Set<IModelObject> references;
+  }
+
+  private static WeakIdentityMap<IModelObject, Entry> entries = new WeakIdentityMap<IModelObject, Entry>();
+  private static volatile boolean active;
+}
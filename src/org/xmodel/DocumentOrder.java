@@ -0,0 +1,431 @@
+package org.xmodel;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.xmodel.util.WeakIdentityMap;
+
+/**
+ * A cache of document order keys.  The keys of the nodes of a tree form a tree of their own, where the key of a
+ * node references the key of its parent and holds the index of the node in its parent, so the document order of
+ * two nodes is found by comparing their keys, without searching the children of the common ancestor.  An ancestor
+ * precedes its descendants.  Attribute and text nodes follow their parent, are ordered by name, and precede the
+ * children of their parent.  Nodes in different trees are ordered by the order in which their trees were first
+ * keyed, so the order is total and stable.
+ * <p>
+ * Keys are computed lazily, and the keys of all the children of a parent are computed together, so the cost of
+ * computing the keys of a node-set is proportional to the number of children of the parents in the node-set.
+ * When a child is added or removed, the key of the parent records the index of the first child whose key may be
+ * out of date, and the indices of the keys of the following children are updated when a key beneath the parent is
+ * next returned, so a change costs one lookup, and a parent that is changed repeatedly is renumbered once per query.
+ * The key of a removed child becomes the root key of its subtree, and the key of an added root becomes the key of
+ * the child, so the keys of the descendants remain valid.  Keys are not cached while the model is reverted.
+ * <p>
+ * Nodes are weakly referenced and compared by identity.  Lookups do not lock, so concurrent readers of a tree that
+ * is not being modified do not contend, except while the keys of a parent are being computed for the first time.
+ * The keys of sealed subtrees are not cached, so that concurrent readers of a sealed subtree do not share mutable
+ * state.
+ */
+public final class DocumentOrder
+{
+  /**
+   * Compare the document order of the specified nodes.
+   * @param lhs The left-hand node.
+   * @param rhs The right-hand node.
+   * @return Returns -1, 0 or 1, where 0 is returned if the nodes are the same node or equivalent attribute nodes.
+   */
+  public static int compare( IModelObject lhs, IModelObject rhs)
+  {
+    if ( lhs == rhs) return 0;
+    Map<IModelObject, Key> local = createLocalKeys( isSealed( lhs) || isSealed( rhs));
+    return compare( getAnyKey( lhs, local), getAnyKey( rhs, local));
+  }
+
+  /**
+   * Compare the specified document order keys.  Keys from different trees are ordered by tree.
+   * @param lhs The left-hand key.
+   * @param rhs The right-hand key.
+   * @return Returns -1, 0 or 1, where 0 is returned if the keys are the same key or equivalent attribute keys.
+   */
+  public static int compare( Key lhs, Key rhs)
+  {
+    if ( lhs == rhs) return 0;
+
+    int ldepth = lhs.getDepth();
+    int rdepth = rhs.getDepth();
+
+    // an ancestor precedes its descendants
+    Key lkey = lhs, rkey = rhs;
+    while( ldepth > rdepth) { lkey = lkey.parent; ldepth--;}
+    while( rdepth > ldepth) { rkey = rkey.parent; rdepth--;}
+    if ( lkey == rkey) return (lhs.getDepth() < rhs.getDepth())? -1: 1;
+
+    while( lkey.parent != rkey.parent)
+    {
+      lkey = lkey.parent;
+      rkey = rkey.parent;
+    }
+
+    // different trees
+    if ( lkey.parent == null) return (lkey.tree < rkey.tree)? -1: (lkey.tree > rkey.tree)? 1: 0;
+
+    if ( lkey.index < rkey.index) return -1;
+    if ( lkey.index > rkey.index) return 1;
+
+    // attribute and text nodes of the same parent
+    if ( lkey.name == null || rkey.name == null) return 0;
+    int order = lkey.name.compareTo( rkey.name);
+    return (order < 0)? -1: (order > 0)? 1: 0;
+  }
+
+  /**
+   * Returns the document order key of the specified element.  The key is not cached while the model is reverted.
+   * @param node The node.
+   * @return Returns null if the node is an attribute or text node.
+   */
+  public static Key getKey( IModelObject node)
+  {
+    return getKey( node, createLocalKeys( isSealed( node)));
+  }
+
+  /**
+   * Returns the union of the specified node-sets in document order, if both node-sets are in document order and
+   * only contain elements.  The node-sets may contain the same nodes, and may contain nodes from different trees.
+   * @param lhs The left-hand node-set.
+   * @param rhs The right-hand node-set.
+   * @return Returns null if either node-set is not in document order, or contains attribute or text nodes.
+   */
+  public static List<IModelObject> union( List<IModelObject> lhs, List<IModelObject> rhs)
+  {
+    Map<IModelObject, Key> local = createLocalKeys( isSealed( lhs) || isSealed( rhs));
+
+    Key[] lkeys = getOrderedKeys( lhs, local);
+    if ( lkeys == null) return null;
+
+    Key[] rkeys = getOrderedKeys( rhs, local);
+    if ( rkeys == null) return null;
+
+    List<IModelObject> result = new ArrayList<IModelObject>( lkeys.length + rkeys.length);
+    int i = 0, j = 0;
+    while( i < lkeys.length && j < rkeys.length)
+    {
+      int order = compare( lkeys[ i], rkeys[ j]);
+      if ( order < 0)
+      {
+        result.add( lhs.get( i++));
+      }
+      else if ( order > 0)
+      {
+        result.add( rhs.get( j++));
+      }
+      else
+      {
+        // keys are only shared by the same node
+        if ( lhs.get( i) != rhs.get( j)) return null;
+        result.add( lhs.get( i++)); j++;
+      }
+    }
+
+    while( i < lkeys.length) result.add( lhs.get( i++));
+    while( j < rkeys.length) result.add( rhs.get( j++));
+
+    return result;
+  }
+
+  /**
+   * Returns the keys of the specified nodes if the nodes are elements in strict document order.
+   * @param nodes The nodes.
+   * @param local Null or the keys that are not cached.
+   * @return Returns null or the keys.
+   */
+  private static Key[] getOrderedKeys( List<IModelObject> nodes, Map<IModelObject, Key> local)
+  {
+    Key[] result = new Key[ nodes.size()];
+    for( int i=0; i<result.length; i++)
+    {
+      result[ i] = getKey( nodes.get( i), local);
+      if ( result[ i] == null) return null;
+      if ( i > 0 && compare( result[ i-1], result[ i]) >= 0) return null;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the key of the specified node, which may be an attribute or text node.
+   * @param node The node.
+   * @param local Null or the keys that are not cached.
+   * @return Returns the key.
+   */
+  private static Key getAnyKey( IModelObject node, Map<IModelObject, Key> local)
+  {
+    Key key = getKey( node, local);
+    if ( key != null) return key;
+
+    Key parentKey = getKey( node.getParent(), local);
+    if ( parentKey == null) parentKey = getAnyKey( node.getParent(), local);
+    return new Key( parentKey, -1, node.getType());
+  }
+
+  /**
+   * Returns the key of the specified element.
+   * @param node The node.
+   * @param local Null or the keys that are not cached.
+   * @return Returns null if the node is an attribute or text node.
+   */
+  private static Key getKey( IModelObject node, Map<IModelObject, Key> local)
+  {
+    Key key = (local != null)? local.get( node): keys.get( node);
+    if ( key != null)
+    {
+      if ( local == null) refresh( node, key);
+      return key;
+    }
+
+    IModelObject parent = node.getParent();
+    if ( parent == null)
+    {
+      if ( local != null) local.put( node, key = new Key( getTree( node))); else put( node, key = new Key( newTree( node)));
+      return key;
+    }
+
+    Key parentKey = getKey( parent, local);
+    if ( parentKey == null) return null;
+
+    List<IModelObject> children = parent.getChildren();
+    for( int i=0; i<children.size(); i++)
+    {
+      IModelObject child = children.get( i);
+      Key childKey = (local != null)? null: keys.get( child);
+      if ( childKey != null)
+      {
+        // the keys of the descendants of the child reference its key
+        childKey.index = i;
+      }
+      else
+      {
+        childKey = new Key( parentKey, i, null);
+        if ( local != null) local.put( child, childKey); else put( child, childKey);
+      }
+      if ( child == node) key = childKey;
+    }
+    if ( local == null) parentKey.stale = Integer.MAX_VALUE;
+
+    return key;
+  }
+
+  /**
+   * Returns true if the specified node-set contains a node of a sealed subtree.
+   * @param nodes The nodes.
+   * @return Returns true if the node-set contains a node of a sealed subtree.
+   */
+  private static boolean isSealed( List<IModelObject> nodes)
+  {
+    for( int i=0; i<nodes.size(); i++)
+      if ( isSealed( nodes.get( i)))
+        return true;
+    return false;
+  }
+
+  /**
+   * Returns true if the specified node, or the parent of the specified attribute or text node, is sealed.
+   * @param node The node.
+   * @return Returns true if the node belongs to a sealed subtree.
+   */
+  private static boolean isSealed( IModelObject node)
+  {
+    return node instanceof FrozenObject || node.getParent() instanceof FrozenObject;
+  }
+
+  /**
+   * Returns null, or a map for the keys of a single operation if the keys must not be cached.
+   * @param sealed True if the operation reads a sealed subtree.
+   * @return Returns null or the map.
+   */
+  private static Map<IModelObject, Key> createLocalKeys( boolean sealed)
+  {
+    if ( !sealed && !GlobalSettings.getInstance().getModel().isReverted()) return null;
+    return new IdentityHashMap<IModelObject, Key>();
+  }
+
+  /**
+   * Returns the ordinal of the tree of the specified root, which is assigned the first time the tree is keyed.
+   * @param root The root.
+   * @return Returns the ordinal.
+   */
+  private static long getTree( IModelObject root)
+  {
+    Key key = keys.get( root);
+    if ( key != null && key.parent == null) return key.tree;
+
+    Long tree = trees.get( root);
+    if ( tree != null) return tree;
+
+    synchronized( trees)
+    {
+      tree = trees.get( root);
+      if ( tree == null)
+      {
+        tree = counter.incrementAndGet();
+        trees.put( root, tree);
+      }
+      return tree;
+    }
+  }
+
+  /**
+   * Returns the ordinal of the tree of the specified root for a root key that will be cached.  The ordinal is only
+   * assigned without locking, since the root key holds it.
+   * @param root The root.
+   * @return Returns the ordinal.
+   */
+  private static long newTree( IModelObject root)
+  {
+    Long tree = trees.get( root);
+    return (tree != null)? tree: counter.incrementAndGet();
+  }
+
+  /**
+   * @return Returns true if any keys are cached.
+   */
+  public static boolean isActive()
+  {
+    return active;
+  }
+
+  /**
+   * Called by ModelObject when a child is added.  The indices of the keys of the following children are marked out
+   * of date, and if the child is a root whose key has been computed, its key becomes the key of the child.  A child
+   * whose key has not been computed is keyed when it is next queried.  The cache is not locked.
+   * @param parent The parent.
+   * @param child The child.
+   * @param index The index of the child.
+   */
+  static void notifyAddChild( IModelObject parent, IModelObject child, int index)
+  {
+    invalidate( parent, index + 1);
+
+    Key childKey = keys.get( child);
+    if ( childKey == null) return;
+
+    childKey.parent = getKey( parent, null);
+    childKey.index = index;
+  }
+
+  /**
+   * Called by ModelObject when a child is removed.  The indices of the keys of the following children are marked
+   * out of date, and the key of the child becomes the root key of its subtree.
+   * @param parent The parent.
+   * @param child The child.
+   * @param index The index of the child.
+   */
+  static void notifyRemoveChild( IModelObject parent, IModelObject child, int index)
+  {
+    invalidate( parent, index);
+
+    Key childKey = keys.get( child);
+    if ( childKey == null) return;
+
+    childKey.parent = null;
+    childKey.index = 0;
+    childKey.tree = newTree( child);
+  }
+
+  /**
+   * Mark the indices of the keys of the children of the specified parent out of date from the specified index.
+   * @param parent The parent.
+   * @param start The index of the first child whose key may be out of date.
+   */
+  private static void invalidate( IModelObject parent, int start)
+  {
+    Key parentKey = keys.get( parent);
+    if ( parentKey != null && start < parentKey.stale) parentKey.stale = start;
+  }
+
+  /**
+   * Update the indices of the keys of the ancestors of the specified node, and of the node, whose parents have
+   * changed since the indices were last updated.
+   * @param node The node.
+   * @param key The cached key of the node.
+   */
+  private static void refresh( IModelObject node, Key key)
+  {
+    for( ; key.parent != null; key = key.parent)
+    {
+      IModelObject parent = node.getParent();
+      if ( parent == null) return;
+      if ( key.parent.stale != Integer.MAX_VALUE) renumber( parent, key.parent);
+      node = parent;
+    }
+  }
+
+  /**
+   * Update the indices of the keys of the children of the specified parent that are out of date.
+   * @param parent The parent.
+   * @param parentKey The key of the parent.
+   */
+  private static void renumber( IModelObject parent, Key parentKey)
+  {
+    List<IModelObject> children = parent.getChildren();
+    for( int i=parentKey.stale; i<children.size(); i++)
+    {
+      Key key = keys.get( children.get( i));
+      if ( key != null) key.index = i;
+    }
+    parentKey.stale = Integer.MAX_VALUE;
+  }
+
+  /**
+   * Cache the key of the specified node.
+   * @param node The node.
+   * @param key The key.
+   */
+  private static void put( IModelObject node, Key key)
+  {
+    keys.put( node, key);
+    active = true;
+  }
+
+  /**
+   * The document order key of a node.  The key of a root holds the ordinal of its tree, and the key of an
+   * attribute or text node holds its name.  The key of a parent holds the index of the first child whose key
+   * may have an index that is out of date.  A key does not reference a node.
+   */
+  public final static class Key
+  {
+    Key( long tree)
+    {
+      this.tree = tree;
+      this.name = null;
+    }
+
+    Key( Key parent, int index, String name)
+    {
+      this.parent = parent;
+      this.index = index;
+      this.name = name;
+    }
+
+    /**
+     * @return Returns the number of ancestors of the key.
+     */
+    int getDepth()
+    {
+      int depth = 0;
+      for( Key key = parent; key != null; key = key.parent) depth++;
+      return depth;
+    }
+
+    Key parent;
+    int index;
+    long tree;
+    volatile int stale = Integer.MAX_VALUE;
+    final String name;
+  }
+
+  private static WeakIdentityMap<IModelObject, Key> keys = new WeakIdentityMap<IModelObject, Key>();
+  private static WeakIdentityMap<IModelObject, Long> trees = new WeakIdentityMap<IModelObject, Long>();
+  private static AtomicLong counter = new AtomicLong();
+  private static volatile boolean active;
+}
@@ -0,0 +1,239 @@
+package org.xmodel;
+
+import java.util.Collection;
+import java.util.List;
+import org.xmodel.external.ICachingPolicy;
+import org.xmodel.memento.IMemento;
+import org.xmodel.storage.FrozenStorageClass;
+import org.xmodel.storage.IStorageClass;
+
+/**
+ * An immutable element of a subtree that has been sealed with <code>ModelAlgorithms.seal</code>.  A sealed subtree
+ * can be queried by any number of threads concurrently, including with IExpression, since reading an element does
+ * not modify it or depend on the IModel of the thread.  The subtree must be safely published to the threads that
+ * read it, for example through a volatile field or a concurrent collection.
+ * <p>
+ * All methods that would modify the subtree throw UnsupportedOperationException.  Since the subtree never changes,
+ * model listeners are discarded and listeners bound to a sealed subtree are never notified.  A mutable copy that
+ * shares the sealed subtree until it is written is created with <code>ModelAlgorithms.thaw</code>.
+ */
+public final class FrozenObject extends ModelObject
+{
+  /**
+   * Create a FrozenObject.
+   * @param storageClass The storage class.
+   * @param type The type.
+   */
+  private FrozenObject( FrozenStorageClass storageClass, String type)
+  {
+    super( storageClass, type);
+  }
+
+  /**
+   * Create a sealed copy of the specified subtree.
+   * @param object The root of the subtree.
+   * @return Returns the root of the sealed copy.
+   */
+  static FrozenObject seal( IModelObject object)
+  {
+    Collection<String> attrNames = object.getAttributeNames();
+    String[] names = attrNames.toArray( new String[ attrNames.size()]);
+    Object[] values = new Object[ names.length];
+    for( int i=0; i<names.length; i++) values[ i] = object.getAttribute( names[ i]);
+
+    List<IModelObject> children = object.getChildren();
+    FrozenObject[] frozen = new FrozenObject[ children.size()];
+    for( int i=0; i<frozen.length; i++) frozen[ i] = seal( children.get( i));
+
+    FrozenObject result = new FrozenObject( new FrozenStorageClass( names, values, frozen), object.getType());
+    for( FrozenObject child: frozen) child.setParentImpl( result);
+    return result;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#setStorageClass(org.xmodel.storage.IStorageClass)
+   */
+  @Override
+  public void setStorageClass( IStorageClass storageClass)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#setCachingPolicy(org.xmodel.external.ICachingPolicy)
+   */
+  @Override
+  public void setCachingPolicy( ICachingPolicy newCachingPolicy)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#setDirty(boolean)
+   */
+  @Override
+  public void setDirty( boolean dirty)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#setAttribute(java.lang.String, java.lang.Object)
+   */
+  @Override
+  public Object setAttribute( String attrName, Object attrValue)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#removeAttribute(java.lang.String)
+   */
+  @Override
+  public Object removeAttribute( String attrName)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#addChild(org.xmodel.IModelObject)
+   */
+  @Override
+  public void addChild( IModelObject child)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#addChild(org.xmodel.IModelObject, int)
+   */
+  @Override
+  public void addChild( IModelObject child, int index)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#removeChild(int)
+   */
+  @Override
+  public IModelObject removeChild( int index)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#removeChild(org.xmodel.IModelObject)
+   */
+  @Override
+  public void removeChild( IModelObject child)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#removeChildren()
+   */
+  @Override
+  public void removeChildren()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#removeChildren(java.lang.String)
+   */
+  @Override
+  public void removeChildren( String type)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#removeFromParent()
+   */
+  @Override
+  public void removeFromParent()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#internal_addChild(org.xmodel.IModelObject, int)
+   */
+  @Override
+  public void internal_addChild( IModelObject child, int index)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#internal_removeChild(int)
+   */
+  @Override
+  public IModelObject internal_removeChild( int index)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#internal_setParent(org.xmodel.IModelObject)
+   */
+  @Override
+  public IModelObject internal_setParent( IModelObject newParent)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#addModelListener(org.xmodel.IModelListener)
+   */
+  @Override
+  public void addModelListener( IModelListener listener)
+  {
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#removeModelListener(org.xmodel.IModelListener)
+   */
+  @Override
+  public void removeModelListener( IModelListener listener)
+  {
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#getModelListeners()
+   */
+  @Override
+  public ModelListenerList getModelListeners()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#getPathListeners()
+   */
+  @Override
+  public PathListenerList getPathListeners()
+  {
+    return new PathListenerList();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#revertUpdate(org.xmodel.memento.IMemento)
+   */
+  @Override
+  public void revertUpdate( IMemento memento)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.ModelObject#restoreUpdate(org.xmodel.memento.IMemento)
+   */
+  @Override
+  public void restoreUpdate( IMemento memento)
+  {
+    throw new UnsupportedOperationException();
+  }
+}
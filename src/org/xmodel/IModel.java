@@ -22,6 +22,7 @@ package org.xmodel;
 import java.util.List;
 import java.util.Set;
 
+import org.xmodel.xpath.expression.ExpressionBatch;
 import org.xmodel.xpath.expression.IContext;
 
 /**
@@ -152,6 +153,37 @@ public interface IModel
    */
   public Update getCurrentUpdate();
 
+  /**
+   * Begin a batch update.  While a batch update is in progress, the node-set changes of bound expressions are
+   * collected instead of being delivered to the listeners of the expressions, and are delivered when the batch
+   * is committed.  A node which is added and then removed during the batch is not delivered.  Batch updates may
+   * be nested, in which case the changes are delivered when the outermost batch is committed.
+   */
+  public void beginBatch();
+  
+  /**
+   * Commit the current batch update (see <code>beginBatch</code> for more information).
+   */
+  public void commitBatch();
+
+  /**
+   * Abort the current batch update and any enclosing batch updates, for example when an exception escapes from
+   * the batch.  Since the model has already been changed, the changes collected so far are delivered.  This method
+   * does nothing if a batch update is not in progress, so it may be called from a finally block:
+   * <pre>
+   * model.beginBatch();
+   * try { ...; model.commitBatch();} finally { model.abortBatch();}
+   * </pre>
+   * Note that the finally block aborts the enclosing batch updates of a nested batch update as well.
+   */
+  public void abortBatch();
+  
+  /**
+   * Returns the ExpressionBatch of the current batch update.
+   * @return Returns null or the ExpressionBatch of the current batch update.
+   */
+  public ExpressionBatch getBatch();
+
   /**
    * Setting the sync lock temporarily prevents any external references from being synchronized.
    * @param lock True if the lock should be set.
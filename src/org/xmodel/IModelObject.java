@@ -138,6 +138,35 @@ public interface IModelObject
    */
   public Object getAttribute( String attrName);
 
+  /**
+   * Get the value of an attribute by the symbol of its name.  This method is equivalent to calling
+   * <code>getAttribute( SymbolTable.getName( symbol))</code>, but avoids string comparisons when
+   * the attributes are stored by symbol.
+   * @param symbol The symbol of the attribute name in the SymbolTable.
+   * @return Returns null or the value of the named attribute.
+   */
+  public Object getAttribute( int symbol);
+
+  /**
+   * Get the value of an attribute as a double.  Numeric values are converted without boxing when the
+   * storage class of this object stores the attribute in a primitive slot, and other values are parsed
+   * from their string representation.  Use the empty string to get the value of this object.
+   * @param attrName The name of the attribute.
+   * @param defaultValue The value returned if the attribute does not exist or is not numeric.
+   * @return Returns the value of the attribute or the default value.
+   */
+  public double getAttributeAsDouble( String attrName, double defaultValue);
+
+  /**
+   * Get the value of an attribute as a long.  Numeric values are converted without boxing when the
+   * storage class of this object stores the attribute in a primitive slot, and other values are parsed
+   * from their string representation.  Use the empty string to get the value of this object.
+   * @param attrName The name of the attribute.
+   * @param defaultValue The value returned if the attribute does not exist or is not numeric.
+   * @return Returns the value of the attribute or the default value.
+   */
+  public long getAttributeAsLong( String attrName, long defaultValue);
+
   /**
    * Returns an IModelObject whose value is the value of the specified attribute. Listeners can
    * be registered on the attribute IModelObject to receive notification when the attribute 
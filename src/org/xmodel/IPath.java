@@ -19,6 +19,7 @@
  */
 package org.xmodel;
 
+import java.util.Iterator;
 import java.util.List;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
@@ -190,6 +191,15 @@ public interface IPath
    */
   public IModelObject queryFirst( IModelObject object);
   
+  /**
+   * Returns an iterator over the leaf objects which are selected by this path.  The path is evaluated lazily,
+   * one location step at a time, as the leaf objects are requested.  The model must not be modified while
+   * the iterator is in use.
+   * @param context The parent context.
+   * @return Returns an iterator over the leaf objects of this path.
+   */
+  public Iterator<IModelObject> iterate( IContext context);
+  
   /**
    * Return the number of elements that make up this path.
    * @return Return the number of elements that make up this path.
@@ -19,6 +19,7 @@
  */
 package org.xmodel;
 
+import java.util.Iterator;
 import java.util.List;
 import org.xmodel.xpath.expression.IContext;
 
@@ -90,6 +91,15 @@ public interface IPathElement
    */
   public List<IModelObject> query( IContext parent, List<IModelObject> list, List<IModelObject> result);
   
+  /**
+   * Returns an iterator over the objects which are selected by this path element when the specified object
+   * is the current location.  Where possible, the objects are found as they are requested.
+   * @param parent The parent context or null.
+   * @param object The current location.
+   * @return Returns an iterator over the selected objects.
+   */
+  public Iterator<IModelObject> iterate( IContext parent, IModelObject object);
+  
   /**
    * Clone this element.
    * @return Returns the cloned element.
@@ -0,0 +1,612 @@
+package org.xmodel;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.xmodel.util.WeakIdentityMap;
+import org.xmodel.xpath.function.StringFunction;
+
+/**
+ * A global index of elements by the string-value of their <i>id</i> attribute, scoped by the root of the tree
+ * that contains the elements.  The index of a root is built the first time it is queried, by a traversal that
+ * does not sync external references, and is maintained incrementally when an id changes or a child is added or
+ * removed anywhere in the tree.  Roots are compared by identity, and roots and elements are weakly referenced, so
+ * the index does not retain a tree that is otherwise discarded.
+ * <p>
+ * Once any root is indexed, each write to any tree finds the root of the element and probes the index without
+ * locking.  Only the writes to an indexed tree update the index, and only the addition and removal of children
+ * traverse the subtree of the child.
+ * <p>
+ * Listeners may be registered for an id in the tree of an element, and are notified when an element with that id
+ * is added to or removed from the tree.  Listeners move with their element, so when the root of a tree is added
+ * to another tree, its listeners are notified of the elements with their ids in the other tree, and when a
+ * subtree is removed, the listeners of the elements in the subtree are notified of the elements that remain in
+ * the tree.  The index is not reverted when the model is reverted during notification, so a query performed in
+ * the reverted state returns the current elements.  When a root is added to another tree, its index is discarded.
+ * <p>
+ * Sealed subtrees are not indexed, so that concurrent readers of a sealed subtree do not share mutable state.
+ * A query of a sealed root traverses the subtree, and listeners are not registered since a sealed subtree never
+ * changes.
+ * <p>
+ * A Reference is indexed by the id of its referent, but the descendants of the referent belong to the tree of the
+ * referent and are not indexed with the tree of the reference.  Since a change to the id of the referent is not
+ * reported to the tree of the reference, the references in indexed trees are also registered by referent, and are
+ * moved to the new id when the id of the referent changes.
+ */
+public final class IdIndex
+{
+  /**
+   * Interface for listeners to the elements with an id in the tree of a root.
+   */
+  public interface Listener
+  {
+    /**
+     * Called when an element with the id is added to the tree.
+     * @param root The root of the tree.
+     * @param id The id.
+     * @param element The element.
+     */
+    public void notifyAdd( IModelObject root, String id, IModelObject element);
+
+    /**
+     * Called when an element with the id is removed from the tree.
+     * @param root The root of the tree.
+     * @param id The id.
+     * @param element The element.
+     */
+    public void notifyRemove( IModelObject root, String id, IModelObject element);
+  }
+
+  /**
+   * Returns the elements in the tree of the specified root whose id has the specified string-value, in document
+   * order.
+   * @param root The root of the tree.
+   * @param id The id.
+   * @return Returns the matching elements.
+   */
+  public static List<IModelObject> find( IModelObject root, String id)
+  {
+    if ( root instanceof FrozenObject) return scan( root, id);
+
+    Entry entry = getEntry( root, true);
+    if ( entry.ids == null) entry.build( root);
+
+    List<WeakReference<IModelObject>> list = entry.ids.get( id);
+    if ( list == null) return Collections.emptyList();
+
+    List<IModelObject> result = new ArrayList<IModelObject>( list.size());
+    for( WeakReference<IModelObject> reference: list)
+    {
+      IModelObject element = reference.get();
+      if ( element != null) result.add( element);
+    }
+    
+    // the index is built breadth-first and appended when elements are added
+    if ( result.size() > 1) sort( result);
+    return result;
+  }
+
+  /**
+   * Add a listener for the elements with the specified id in the tree of the specified element.  The listener
+   * is notified until it is removed with the same element, even if the element is moved to another tree.
+   * @param element The element, which is usually the root of the tree.
+   * @param id The id.
+   * @param listener The listener.
+   */
+  public static void addListener( IModelObject element, String id, Listener listener)
+  {
+    if ( element instanceof FrozenObject) return;
+    IModelObject root = element.getRoot();
+    Entry entry = getEntry( root, true);
+    
+    // the references in the tree are only registered when the tree is traversed
+    if ( entry.ids == null) entry.build( root);
+    entry.addRegistration( id, new Registration( element, listener));
+  }
+
+  /**
+   * Remove a listener for the elements with the specified id in the tree of the specified element.
+   * @param element The element with which the listener was added.
+   * @param id The id.
+   * @param listener The listener.
+   */
+  public static void removeListener( IModelObject element, String id, Listener listener)
+  {
+    Entry entry = getEntry( element.getRoot(), false);
+    if ( entry == null || entry.listeners == null) return;
+
+    List<Registration> list = entry.listeners.get( id);
+    if ( list == null) return;
+
+    for( int i=0; i<list.size(); i++)
+    {
+      Registration registration = list.get( i);
+      if ( registration.listener == listener && registration.element == element)
+      {
+        list.remove( i);
+        break;
+      }
+    }
+    if ( list.size() == 0) entry.listeners.remove( id);
+  }
+
+  /**
+   * Returns the elements in the specified sealed subtree whose id has the specified string-value, in document order.
+   * @param root The root of the subtree.
+   * @param id The id.
+   * @return Returns the matching elements.
+   */
+  private static List<IModelObject> scan( IModelObject root, String id)
+  {
+    List<IModelObject> result = new ArrayList<IModelObject>( 1);
+    for( IModelObject element: getElements( root))
+    {
+      if ( id.equals( StringFunction.stringValueOf( element.getAttribute( "id")))) result.add( element);
+    }
+    
+    if ( result.size() > 1) sort( result);
+    return result;
+  }
+
+  /**
+   * Discard the index and listeners of the specified root.
+   * @param root The root.
+   */
+  public static void clear( IModelObject root)
+  {
+    entries.remove( root);
+  }
+
+  /**
+   * @return Returns true if the index of any root has been created.
+   */
+  public static boolean isActive()
+  {
+    return active;
+  }
+
+  /**
+   * Called after the specified child is added to the specified parent.
+   * @param parent The parent.
+   * @param child The child.
+   */
+  static void notifyAddChild( IModelObject parent, IModelObject child)
+  {
+    // the listeners of the child, which was a root, move to the tree of the parent
+    Entry previous = entries.get( child);
+    if ( previous != null) entries.remove( child);
+    Map<String, List<Registration>> moved = (previous != null)? previous.listeners: null;
+
+    IModelObject root = parent.getRoot();
+    Entry entry = getEntry( root, moved != null);
+    if ( entry == null) return;
+
+    for( IModelObject element: getElements( child))
+    {
+      if ( element.getReferent() != element) addReferrer( element);
+      String id = StringFunction.stringValueOf( element.getAttribute( "id"));
+      if ( id != null) entry.add( root, id, element);
+    }
+
+    if ( moved == null) return;
+    if ( entry.ids == null) entry.build( root);
+    
+    for( Map.Entry<String, List<Registration>> mapEntry: moved.entrySet())
+    {
+      String id = mapEntry.getKey();
+      for( Registration registration: mapEntry.getValue())
+      {
+        entry.addRegistration( id, registration);
+        for( IModelObject element: find( root, id))
+          if ( !isAncestor( child, element))
+            registration.listener.notifyAdd( root, id, element);
+      }
+    }
+  }
+
+  /**
+   * Called after the specified child is removed from the specified parent.
+   * @param parent The parent.
+   * @param child The child.
+   */
+  static void notifyRemoveChild( IModelObject parent, IModelObject child)
+  {
+    IModelObject root = parent.getRoot();
+    Entry entry = entries.get( root);
+    if ( entry == null) return;
+
+    // the listeners of the elements of the child move with the child
+    Map<String, List<Registration>> moved = entry.removeRegistrations( child);
+    
+    for( IModelObject element: getElements( child))
+    {
+      if ( element.getReferent() != element) removeReferrer( element);
+      String id = StringFunction.stringValueOf( element.getAttribute( "id"));
+      if ( id != null) entry.remove( root, id, element);
+    }
+
+    if ( moved == null) return;
+    
+    Entry target = getEntry( child, true);
+    if ( target.ids == null) target.build( child);
+    for( Map.Entry<String, List<Registration>> mapEntry: moved.entrySet())
+    {
+      String id = mapEntry.getKey();
+      for( Registration registration: mapEntry.getValue())
+      {
+        target.addRegistration( id, registration);
+        for( IModelObject element: find( root, id))
+          registration.listener.notifyRemove( child, id, element);
+      }
+    }
+  }
+
+  /**
+   * Called after the id of the specified element changes.
+   * @param object The element.
+   * @param newValue Null or the new id.
+   * @param oldValue Null or the old id.
+   */
+  static void notifyChange( IModelObject object, Object newValue, Object oldValue)
+  {
+    String oldId = StringFunction.stringValueOf( oldValue);
+    String newId = StringFunction.stringValueOf( newValue);
+    
+    IModelObject root = object.getRoot();
+    Entry entry = getEntry( root, false);
+    if ( entry != null) entry.change( root, object, oldId, newId);
+    
+    // the references to the object share its id
+    for( IModelObject reference: getReferrers( object))
+    {
+      root = reference.getRoot();
+      entry = getEntry( root, false);
+      if ( entry != null) entry.change( root, reference, oldId, newId);
+    }
+  }
+
+  /**
+   * Register the specified reference, which is in an indexed tree, with its referent, unless it is registered.
+   * @param reference The reference.
+   */
+  private static void addReferrer( IModelObject reference)
+  {
+    IModelObject referent = Reference.getReferent( reference);
+    synchronized( referrers)
+    {
+      List<WeakReference<IModelObject>> list = referrers.get( referent);
+      if ( list == null)
+      {
+        list = new ArrayList<WeakReference<IModelObject>>( 1);
+        referrers.put( referent, list);
+      }
+      
+      // a reference is traversed again when the index of its tree is built after its subtree was added
+      for( WeakReference<IModelObject> element: list)
+        if ( element.get() == reference)
+          return;
+      list.add( new WeakReference<IModelObject>( reference));
+    }
+  }
+
+  /**
+   * Unregister the specified reference, which was removed from an indexed tree.
+   * @param reference The reference.
+   */
+  private static void removeReferrer( IModelObject reference)
+  {
+    IModelObject referent = Reference.getReferent( reference);
+    synchronized( referrers)
+    {
+      List<WeakReference<IModelObject>> list = referrers.get( referent);
+      if ( list == null) return;
+      
+      for( int i=0; i<list.size(); i++)
+      {
+        IModelObject element = list.get( i).get();
+        if ( element == null || element == reference) list.remove( i--);
+      }
+      if ( list.size() == 0) referrers.remove( referent);
+    }
+  }
+
+  /**
+   * Returns the references in indexed trees whose referent is the specified object.
+   * @param referent The referent.
+   * @return Returns the references.
+   */
+  private static List<IModelObject> getReferrers( IModelObject referent)
+  {
+    if ( referrers.get( referent) == null) return Collections.emptyList();
+    
+    synchronized( referrers)
+    {
+      List<WeakReference<IModelObject>> list = referrers.get( referent);
+      if ( list == null) return Collections.emptyList();
+      
+      List<IModelObject> result = new ArrayList<IModelObject>( list.size());
+      for( WeakReference<IModelObject> reference: list)
+      {
+        IModelObject element = reference.get();
+        if ( element != null) result.add( element);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Returns the elements in the subtree of the specified element, without syncing external references, and
+   * without traversing the referents of references.
+   * @param subtree The root of the subtree.
+   * @return Returns the elements in breadth-first order.
+   */
+  private static List<IModelObject> getElements( IModelObject subtree)
+  {
+    List<IModelObject> elements = new ArrayList<IModelObject>();
+    elements.add( subtree);
+    for( int i=0; i<elements.size(); i++)
+    {
+      IModelObject element = elements.get( i);
+      if ( element.getReferent() == element && !element.isDirty()) elements.addAll( element.getChildren());
+    }
+    return elements;
+  }
+
+  /**
+   * Returns the entry for the specified root.
+   * @param root The root.
+   * @param create True if the entry should be created.
+   * @return Returns null or the entry.
+   */
+  private static Entry getEntry( IModelObject root, boolean create)
+  {
+    Entry entry = entries.get( root);
+    if ( entry == null && create)
+    {
+      entry = new Entry();
+      entries.put( root, entry);
+      active = true;
+    }
+    return entry;
+  }
+
+  /**
+   * Returns true if the specified ancestor is the specified element, or an ancestor of the element.
+   * @param ancestor The ancestor.
+   * @param element The element.
+   * @return Returns true if the ancestor is the element, or an ancestor of the element.
+   */
+  private static boolean isAncestor( IModelObject ancestor, IModelObject element)
+  {
+    for( ; element != null; element = element.getParent())
+      if ( element == ancestor)
+        return true;
+    return false;
+  }
+
+  /**
+   * Sort the specified elements, which belong to the same tree, in document order.
+   * @param elements The elements.
+   */
+  private static void sort( List<IModelObject> elements)
+  {
+    final Map<IModelObject, int[]> paths = new IdentityHashMap<IModelObject, int[]>( elements.size());
+    for( IModelObject element: elements) paths.put( element, getPath( element));
+    
+    Collections.sort( elements, new Comparator<IModelObject>() {
+      public int compare( IModelObject lhs, IModelObject rhs)
+      {
+        int[] lpath = paths.get( lhs);
+        int[] rpath = paths.get( rhs);
+        int length = (lpath.length < rpath.length)? lpath.length: rpath.length;
+        for( int i=0; i<length; i++)
+          if ( lpath[ i] != rpath[ i])
+            return (lpath[ i] < rpath[ i])? -1: 1;
+        return lpath.length - rpath.length;
+      }
+    });
+  }
+
+  /**
+   * Returns the indices of the specified element and its ancestors in their parents, starting at the root.
+   * @param element The element.
+   * @return Returns the path of the element.
+   */
+  private static int[] getPath( IModelObject element)
+  {
+    int depth = 0;
+    for( IModelObject ancestor = element; ancestor.getParent() != null; ancestor = ancestor.getParent()) depth++;
+    
+    int[] path = new int[ depth];
+    for( IModelObject ancestor = element; ancestor.getParent() != null; ancestor = ancestor.getParent())
+    {
+      List<IModelObject> siblings = ancestor.getParent().getChildren();
+      int index = 0;
+      while( siblings.get( index) != ancestor) index++;
+      path[ --depth] = index;
+    }
+    return path;
+  }
+
+  /**
+   * A listener and the element with which it was added.
+   */
+  private final static class Registration
+  {
+    public Registration( IModelObject element, Listener listener)
+    {
+      this.element = element;
+      this.listener = listener;
+    }
+    
+    public final IModelObject element;
+    public final Listener listener;
+  }
+
+  /**
+   * The index and listeners of a root.  An entry is only accessed by the thread that owns the tree of the root.
+   */
+  private final static class Entry
+  {
+    /**
+     * Build the index of the specified root.
+     * @param root The root.
+     */
+    public void build( IModelObject root)
+    {
+      ids = new HashMap<String, List<WeakReference<IModelObject>>>();
+
+      for( IModelObject element: getElements( root))
+      {
+        if ( element.getReferent() != element) addReferrer( element);
+        String id = StringFunction.stringValueOf( element.getAttribute( "id"));
+        if ( id != null) index( id, element);
+      }
+    }
+
+    /**
+     * Add the specified element to the index and notify listeners.
+     * @param root The root.
+     * @param id The id.
+     * @param element The element.
+     */
+    public void add( IModelObject root, String id, IModelObject element)
+    {
+      if ( ids != null) index( id, element);
+
+      List<Registration> list = (listeners != null)? listeners.get( id): null;
+      if ( list != null)
+      {
+        for( Registration registration: list.toArray( new Registration[ list.size()]))
+          registration.listener.notifyAdd( root, id, element);
+      }
+    }
+
+    /**
+     * Remove the specified element from the index and notify listeners.
+     * @param root The root.
+     * @param id The id.
+     * @param element The element.
+     */
+    public void remove( IModelObject root, String id, IModelObject element)
+    {
+      if ( ids != null)
+      {
+        List<WeakReference<IModelObject>> list = ids.get( id);
+        if ( list != null)
+        {
+          Iterator<WeakReference<IModelObject>> iter = list.iterator();
+          while( iter.hasNext())
+          {
+            IModelObject referent = iter.next().get();
+            if ( referent == null || referent == element) iter.remove();
+          }
+          if ( list.size() == 0) ids.remove( id);
+        }
+      }
+
+      List<Registration> list = (listeners != null)? listeners.get( id): null;
+      if ( list != null)
+      {
+        for( Registration registration: list.toArray( new Registration[ list.size()]))
+          registration.listener.notifyRemove( root, id, element);
+      }
+    }
+
+    /**
+     * Move the specified element from the old id to the new id and notify listeners.
+     * @param root The root.
+     * @param element The element.
+     * @param oldId Null or the old id.
+     * @param newId Null or the new id.
+     */
+    public void change( IModelObject root, IModelObject element, String oldId, String newId)
+    {
+      if ( oldId != null) remove( root, oldId, element);
+      if ( newId != null) add( root, newId, element);
+    }
+
+    /**
+     * Add the specified listener registration.
+     * @param id The id.
+     * @param registration The registration.
+     */
+    public void addRegistration( String id, Registration registration)
+    {
+      if ( listeners == null) listeners = new HashMap<String, List<Registration>>();
+
+      List<Registration> list = listeners.get( id);
+      if ( list == null)
+      {
+        list = new ArrayList<Registration>( 1);
+        listeners.put( id, list);
+      }
+      list.add( registration);
+    }
+
+    /**
+     * Remove the listener registrations whose elements are in the subtree of the specified element.
+     * @param subtree The root of the subtree.
+     * @return Returns null or the registrations that were removed.
+     */
+    public Map<String, List<Registration>> removeRegistrations( IModelObject subtree)
+    {
+      if ( listeners == null) return null;
+
+      Map<String, List<Registration>> removed = null;
+      Iterator<Map.Entry<String, List<Registration>>> iter = listeners.entrySet().iterator();
+      while( iter.hasNext())
+      {
+        Map.Entry<String, List<Registration>> mapEntry = iter.next();
+        List<Registration> list = mapEntry.getValue();
+        for( int i=0; i<list.size(); i++)
+        {
+          Registration registration = list.get( i);
+          if ( !isAncestor( subtree, registration.element)) continue;
+
+          if ( removed == null) removed = new HashMap<String, List<Registration>>();
+          List<Registration> moved = removed.get( mapEntry.getKey());
+          if ( moved == null)
+          {
+            moved = new ArrayList<Registration>( 1);
+            removed.put( mapEntry.getKey(), moved);
+          }
+          moved.add( registration);
+          list.remove( i--);
+        }
+        if ( list.size() == 0) iter.remove();
+      }
+      return removed;
+    }
+
+    /**
+     * Add the specified element to the index.
+     * @param id The id.
+     * @param element The element.
+     */
+    private void index( String id, IModelObject element)
+    {
+      List<WeakReference<IModelObject>> list = ids.get( id);
+      if ( list == null)
+      {
+        list = new ArrayList<WeakReference<IModelObject>>( 1);
+        ids.put( id, list);
+      }
+      list.add( new WeakReference<IModelObject>( element));
+    }
+
+    public Map<String, List<WeakReference<IModelObject>>> ids;
+    public Map<String, List<Registration>> listeners;
+  }
+
+  private static WeakIdentityMap<IModelObject, Entry> entries = new WeakIdentityMap<IModelObject, Entry>();
+  private static WeakIdentityMap<IModelObject, List<WeakReference<IModelObject>>> referrers = 
+    new WeakIdentityMap<IModelObject, List<WeakReference<IModelObject>>>();
+  private static volatile boolean active;
+}
@@ -30,6 +30,7 @@ import java.util.Set;
 import org.xmodel.log.SLog;
 import org.xmodel.util.HashMultiMap;
 import org.xmodel.util.MultiMap;
+import org.xmodel.xpath.expression.ExpressionBatch;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.StatefulContext;
 
@@ -278,6 +279,49 @@ public class Model implements IModel
     return updateStack.get( updateStack.size() - 1);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.IModel#beginBatch()
+   */
+  public void beginBatch()
+  {
+    if ( batchDepth++ == 0) batch = new ExpressionBatch();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModel#commitBatch()
+   */
+  public void commitBatch()
+  {
+    if ( batchDepth == 0) throw new IllegalStateException( "Batch update is not in progress.");
+    if ( --batchDepth > 0) return;
+    
+    // changes made by listeners during delivery are not batched
+    ExpressionBatch committed = batch;
+    batch = null;
+    committed.commit();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModel#abortBatch()
+   */
+  public void abortBatch()
+  {
+    if ( batchDepth == 0) return;
+    batchDepth = 0;
+
+    ExpressionBatch aborted = batch;
+    batch = null;
+    aborted.commit();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModel#getBatch()
+   */
+  public ExpressionBatch getBatch()
+  {
+    return batch;
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.IModel#setSyncLock(boolean)
    */
@@ -325,4 +369,6 @@ public class Model implements IModel
   private List<IModelObject> frozen;
   private boolean syncLock;
   private boolean isReverted;
+  private ExpressionBatch batch;
+  private int batchDepth;
 }
@@ -35,6 +35,7 @@ import org.xmodel.diff.XmlDiffer;
 import org.xmodel.external.ICachingPolicy;
 import org.xmodel.external.IExternalReference;
 import org.xmodel.log.SLog;
+import org.xmodel.storage.SharedStorageClass;
 import org.xmodel.util.Fifo;
 import org.xmodel.xml.XmlIO;
 import org.xmodel.xpath.AttributeNode;
@@ -325,6 +326,22 @@ public class ModelAlgorithms implements IAxis
     return cloneTree( object, null, null);
   }
   
+  /**
+   * Create a copy of the subtree rooted at the given object.  If copy-on-write is requested, the clone shares the
+   * attributes and children of the subtree until either the clone or the subtree is written, and the subtree is
+   * copied one level at a time as the clone is accessed, so that creating the clone takes constant time.  The
+   * subtree and the clone must be accessed by the same thread.
+   * @see org.xmodel.storage.SharedStorageClass
+   * @param object The root of the subtree to clone.
+   * @param copyOnWrite True if the clone should share the subtree until either is written.
+   * @return Returns a complete clone of the subtree.
+   */
+  public static IModelObject cloneTree( IModelObject object, boolean copyOnWrite)
+  {
+    if ( copyOnWrite) return SharedStorageClass.share( object);
+    return cloneTree( object, null, null);
+  }
+  
   /**
    * Create a deep copy of the subtree rooted at the given object using the specified factory. If
    * the factory is null then a default factory is used.
@@ -416,6 +433,29 @@ public class ModelAlgorithms implements IAxis
     return thisDup;
   }
   
+  /**
+   * Create an immutable copy of the subtree rooted at the given object that can be queried by any number of
+   * threads concurrently.  External references in the subtree are synced while it is copied.
+   * @see org.xmodel.FrozenObject
+   * @param object The root of the subtree.
+   * @return Returns the root of the immutable copy.
+   */
+  public static IModelObject seal( IModelObject object)
+  {
+    return FrozenObject.seal( object);
+  }
+  
+  /**
+   * Create a mutable copy of a subtree that was sealed with the <code>seal</code> method.  The copy shares the
+   * sealed subtree and is copied one level at a time as it is accessed, so creating it takes constant time.
+   * @param object The root of the sealed subtree.
+   * @return Returns the root of the mutable copy.
+   */
+  public static IModelObject thaw( IModelObject object)
+  {
+    return SharedStorageClass.share( object);
+  }
+  
   /**
    * Create a deep copy of the subtree rooted at the given object including clones of all ancestors.
    * @param object The branch point to be cloned.
@@ -426,6 +466,33 @@ public class ModelAlgorithms implements IAxis
     return cloneBranch( object, null);
   }
   
+  /**
+   * Create a copy of the subtree rooted at the given object including clones of all ancestors.  If copy-on-write
+   * is requested, the subtree is cloned with <code>cloneTree( object, true)</code>.
+   * @param object The branch point to be cloned.
+   * @param copyOnWrite True if the clone should share the subtree until either is written.
+   * @return Returns the clone of the specified object.
+   */
+  public static IModelObject cloneBranch( IModelObject object, boolean copyOnWrite)
+  {
+    if ( !copyOnWrite) return cloneBranch( object, null);
+    
+    IModelObject clone = cloneTree( object, true);
+    
+    // clone ancestors
+    IModelObject child = clone;
+    object = object.getParent();
+    while( object != null)
+    {
+      IModelObject parent = object.cloneObject();
+      parent.addChild( child);
+      child = parent;
+      object = object.getParent();
+    }
+    
+    return clone;
+  }
+  
   /**
    * Create a deep copy of the subtree rooted at the given object including clones of all ancestors.
    * @param object The branch point to be cloned.
@@ -802,31 +869,16 @@ public class ModelAlgorithms implements IAxis
   
   /**
    * Compare the document order for the specified objects. Return -1 if the left-hand argument 
-   * occurs earlier in the document than the right-hand operation. Return 0 if the objects are
-   * the same object. If the objects do not share a common ancestor than 0 is returned.
+   * occurs earlier in the document than the right-hand operation. An ancestor occurs earlier
+   * than its descendants. Return 0 if the objects are the same object. Objects that do not share a 
+   * common ancestor are ordered by tree, so the order is consistent.
    * @param lhs The left-hand object.
    * @param rhs The right-hand object.
    * @return Returns -1, 0 or 1.
    */
   public static int compareDocumentOrder( IModelObject lhs, IModelObject rhs)
   {
-    IModelObject ancestor = findCommonAncestor( lhs, rhs);
-    if ( ancestor == null) return 0;
-    
-    IModelObject leftParent = lhs;
-    while( leftParent.getParent() != null && leftParent.getParent() != ancestor)
-      leftParent = leftParent.getParent();
-    
-    IModelObject rightParent = null;
-    while( rightParent.getParent() != null && rightParent.getParent() != ancestor)
-      rightParent = rightParent.getParent();
-    
-    List<IModelObject> children = ancestor.getChildren();
-    int leftIndex = children.indexOf( leftParent);
-    int rightIndex = children.indexOf( rightParent);
-    if ( leftIndex < rightIndex) return -1;
-    if ( leftIndex > rightIndex) return 1;
-    return 0;
+    return DocumentOrder.compare( lhs, rhs);
   }
   
   /**
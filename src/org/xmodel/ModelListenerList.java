@@ -19,7 +19,9 @@
  */
 package org.xmodel;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -27,7 +29,8 @@ import org.xmodel.log.SLog;
 
 /**
  * An implementation of IModelListener which contains IModelListener children and forwards listener
- * notifications to its children. Children can be added and removed during notification.
+ * notifications to its children. Children can be added and removed during notification.  A small number of
+ * listeners are stored in an array, which is replaced by a map when the number of listeners exceeds a threshold.
  */
 public class ModelListenerList implements IModelListener
 {
@@ -37,26 +40,53 @@ public class ModelListenerList implements IModelListener
    */
   public void addListener( IModelListener listener)
   {
-    if ( set == null) set = new HashMap<IModelListener, IModelListener>();
-    set.put( listener, listener);
+    if ( set != null) { set.put( listener, listener); return;}
+    
+    if ( indexOf( listener) >= 0) return;
+    
+    if ( array == null) array = new IModelListener[ 2];
+    if ( size == array.length)
+    {
+      if ( size == threshold)
+      {
+        set = new HashMap<IModelListener, IModelListener>();
+        for( int i=0; i<size; i++) set.put( array[ i], array[ i]);
+        set.put( listener, listener);
+        array = null;
+        size = 0;
+        return;
+      }
+      array = Arrays.copyOf( array, size * 2);
+    }
+    array[ size++] = listener;
   }
-  
+
   /**
    * Remove a child listener.
    * @param listener The child listener.
    */
   public void removeListener( IModelListener listener)
   {
-    if ( set != null) set.remove( listener);
+    if ( set != null) { set.remove( listener); return;}
+    
+    int index = indexOf( listener);
+    if ( index < 0) return;
+    
+    System.arraycopy( array, index + 1, array, index, size - index - 1);
+    array[ --size] = null;
   }
-  
+
   /**
    * Returns a list of the IModelListener instances.
    * @return Returns a list of the IModelListener instances.
    */
   public Set<IModelListener> getListeners()
   {
-    return set.keySet();
+    if ( set != null) return set.keySet();
+    
+    Set<IModelListener> listeners = new LinkedHashSet<IModelListener>();
+    for( int i=0; i<size; i++) listeners.add( array[ i]);
+    return listeners;
   }
 
   /**
@@ -66,9 +96,12 @@ public class ModelListenerList implements IModelListener
    */
   public IModelListener getIdentical( IModelListener listener)
   {
-    return set.get( listener);
+    if ( set != null) return set.get( listener);
+    
+    int index = indexOf( listener);
+    return (index >= 0)? array[ index]: null;
   }
-  
+
   /**
    * Returns true if this list contains the specified IModelListener.
    * @param listener The listener being tested.
@@ -76,16 +109,39 @@ public class ModelListenerList implements IModelListener
    */
   public boolean contains( IModelListener listener)
   {
-    return set.get( listener) != null;
+    return getIdentical( listener) != null;
   }
-  
+
   /**
    * Returns the number of listeners.
    * @return Returns the number of listeners.
    */
   public int count()
   {
-    return set.size();
+    return (set != null)? set.size(): size;
+  }
+
+  /**
+   * Returns the index of the specified listener in the array of listeners.
+   * @param listener The listener.
+   * @return Returns -1 or the index of the listener.
+   */
+  private int indexOf( IModelListener listener)
+  {
+    for( int i=0; i<size; i++)
+      if ( array[ i].equals( listener))
+        return i;
+    return -1;
+  }
+
+  /**
+   * Returns a copy of the listeners that is not affected by listeners added or removed during notification.
+   * @return Returns a copy of the listeners.
+   */
+  private IModelListener[] toArray()
+  {
+    if ( set != null) return set.keySet().toArray( proto);
+    return (size == 0)? proto: Arrays.copyOf( array, size);
   }
   
   /* (non-Javadoc)
@@ -95,7 +151,7 @@ public class ModelListenerList implements IModelListener
   public void notifyParent( IModelObject child, IModelObject newParent, IModelObject oldParent)
   {
     // NOTE: the listeners have to be copied here because the set must be kept up-to-date elsewhere
-    for( IModelListener listener: set.keySet().toArray( proto))
+    for( IModelListener listener: toArray())
     {
       try
       {
@@ -119,7 +175,7 @@ public class ModelListenerList implements IModelListener
   public void notifyAddChild( IModelObject parent, IModelObject child, int index)
   {
     // NOTE: the listeners have to be copied here because the set must be kept up-to-date elsewhere
-    for( IModelListener listener: set.keySet().toArray( proto))
+    for( IModelListener listener: toArray())
     {
       try
       {
@@ -143,7 +199,7 @@ public class ModelListenerList implements IModelListener
   public void notifyRemoveChild( IModelObject parent, IModelObject child, int index)
   {
     // NOTE: the listeners have to be copied here because the set must be kept up-to-date elsewhere
-    for( IModelListener listener: set.keySet().toArray( proto))
+    for( IModelListener listener: toArray())
     {
       try
       {
@@ -167,7 +223,7 @@ public class ModelListenerList implements IModelListener
   public void notifyChange( IModelObject object, String attrName, Object newValue, Object oldValue)
   {
     // NOTE: the listeners have to be copied here because the set must be kept up-to-date elsewhere
-    for( IModelListener listener: set.keySet().toArray( proto))
+    for( IModelListener listener: toArray())
     {
       try
       {
@@ -191,7 +247,7 @@ public class ModelListenerList implements IModelListener
   public void notifyClear( IModelObject object, String attrName, Object oldValue)
   {
     // NOTE: the listeners have to be copied here because the set must be kept up-to-date elsewhere
-    for( IModelListener listener: set.keySet().toArray( proto))
+    for( IModelListener listener: toArray())
     {
       try
       {
@@ -214,7 +270,7 @@ public class ModelListenerList implements IModelListener
   public void notifyDirty( IModelObject object, boolean dirty)
   {
     // NOTE: the listeners have to be copied here because the set must be kept up-to-date elsewhere
-    for( IModelListener listener: set.keySet().toArray( proto))
+    for( IModelListener listener: toArray())
     {
       try
       {
@@ -276,5 +332,9 @@ public class ModelListenerList implements IModelListener
 //  }
 
   private final static IModelListener[] proto = new IModelListener[ 0];
+  private final static int threshold = 8;
+  
+  private IModelListener[] array;
+  private int size;
   private Map<IModelListener, IModelListener> set;
 }
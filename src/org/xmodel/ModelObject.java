@@ -38,7 +38,10 @@ import org.xmodel.memento.RemoveChildMemento;
 import org.xmodel.memento.SetAttributeMemento;
 import org.xmodel.memento.SetParentMemento;
 import org.xmodel.storage.IStorageClass;
+import org.xmodel.storage.IndexedChildList;
+import org.xmodel.storage.SharedStorageClass;
 import org.xmodel.storage.SmallDataStorageClass;
+import org.xmodel.storage.SymbolTable;
 import org.xmodel.storage.ValueStorageClass;
 import org.xmodel.xml.XmlIO;
 import org.xmodel.xpath.AttributeNode;
@@ -264,6 +267,33 @@ public class ModelObject implements IModelObject
     return storageClass.getAttribute( attrName);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttribute(int)
+   */
+  public Object getAttribute( int symbol)
+  {
+    notifyAccessAttributes( SymbolTable.getName( symbol), false);
+    return storageClass.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsDouble(java.lang.String, double)
+   */
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    notifyAccessAttributes( attrName, false);
+    return storageClass.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsLong(java.lang.String, long)
+   */
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    notifyAccessAttributes( attrName, false);
+    return storageClass.getAttributeAsLong( attrName, defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.IModelObject#getAttributeNode(java.lang.String)
    */
@@ -350,8 +380,12 @@ public class ModelObject implements IModelObject
    */
   protected Object setAttributeImpl( String attrName, Object attrValue)
   {
+    if ( SharedStorageClass.isActive()) SharedStorageClass.isolate( this);
+    
     storageClass = storageClass.getAttributeStorageClass( attrName);
-    return storageClass.setAttribute( attrName, attrValue);
+    Object oldValue = storageClass.setAttribute( attrName, attrValue);
+    updateParentIndex( attrName, oldValue, attrValue);
+    return oldValue;
   }
 
   /**
@@ -361,7 +395,28 @@ public class ModelObject implements IModelObject
    */
   protected Object removeAttributeImpl( String attrName)
   {
-    return storageClass.setAttribute( attrName, null);
+    if ( SharedStorageClass.isActive()) SharedStorageClass.isolate( this);
+    
+    Object oldValue = storageClass.setAttribute( attrName, null);
+    updateParentIndex( attrName, oldValue, null);
+    return oldValue;
+  }
+  
+  /**
+   * Update the child index of the parent when the id attribute, or an attribute with a secondary index, of this
+   * object changes.
+   * @param attrName The name of the attribute.
+   * @param oldValue The old value of the attribute.
+   * @param newValue The new value of the attribute.
+   */
+  private void updateParentIndex( String attrName, Object oldValue, Object newValue)
+  {
+    if ( parent == null) return;
+    if ( !attrName.equals( "id") && !IndexedChildList.isIndexed( getType(), attrName)) return;
+    
+    IStorageClass parentStorageClass = parent.getStorageClass();
+    List<IModelObject> siblings = (parentStorageClass != null)? parentStorageClass.getChildren(): null;
+    if ( siblings instanceof IndexedChildList) ((IndexedChildList)siblings).updateAttribute( this, attrName, oldValue, newValue);
   }
   
   /* (non-Javadoc)
@@ -462,6 +517,8 @@ public class ModelObject implements IModelObject
    */
   protected void addChildImpl( IModelObject child, int index)
   {
+    if ( SharedStorageClass.isActive()) SharedStorageClass.isolate( this);
+    
     storageClass = storageClass.getChildrenStorageClass();
     if ( index == -1) index = storageClass.getChildren().size();
     storageClass.getChildren().add( index, child);
@@ -561,6 +618,8 @@ public class ModelObject implements IModelObject
    */
   protected IModelObject removeChildImpl( int index)
   {
+    if ( SharedStorageClass.isActive()) SharedStorageClass.isolate( this);
+    
     List<IModelObject> children = storageClass.getChildren();
     if ( children == null) return null;
     return children.remove( index);
@@ -628,6 +687,7 @@ public class ModelObject implements IModelObject
     notifyAccessChildren( false);
     
     List<IModelObject> children = storageClass.getChildren();
+    if ( children instanceof IndexedChildList) return ((IndexedChildList)children).getFirstChild( type);
     if ( children != null)
     {
       for( IModelObject child: children)
@@ -645,10 +705,11 @@ public class ModelObject implements IModelObject
     notifyAccessChildren( false);
     
     List<IModelObject> children = storageClass.getChildren();
+    if ( children instanceof IndexedChildList) return ((IndexedChildList)children).getChild( type, id);
     if ( children != null)
     {
       for( IModelObject child: children)
-        if ( child.isType( type) && child.getAttribute( "id").equals( id))
+        if ( child.isType( type) && child.getAttribute( idSymbol).equals( id))
           return child;
     }
     return null;
@@ -692,10 +753,11 @@ public class ModelObject implements IModelObject
     
     List<IModelObject> result = new ArrayList<IModelObject>( 1);
     List<IModelObject> children = storageClass.getChildren();
+    if ( children instanceof IndexedChildList) children = ((IndexedChildList)children).getChildren( type);
     if ( children != null)
     {
       for( IModelObject child: children)
-        if ( child.isType( type) && child.getAttribute( "id").equals( id))
+        if ( child.isType( type) && child.getAttribute( idSymbol).equals( id))
           result.add( child);
     }
     return result;
@@ -723,6 +785,7 @@ public class ModelObject implements IModelObject
     notifyAccessChildren( false);
     
     List<IModelObject> children = storageClass.getChildren();
+    if ( children instanceof IndexedChildList) return new ArrayList<IModelObject>( ((IndexedChildList)children).getChildren( type));
     if ( children != null)
     {
       List<IModelObject> result = new ArrayList<IModelObject>( children.size());
@@ -744,7 +807,11 @@ public class ModelObject implements IModelObject
     
     HashSet<String> set = new HashSet<String>();
     List<IModelObject> children = storageClass.getChildren();
-    if ( children != null)
+    if ( children instanceof IndexedChildList) 
+    {
+      set.addAll( ((IndexedChildList)children).getTypes());
+    }
+    else if ( children != null)
     {
       for( IModelObject child: children)
         set.add( child.getType());
@@ -768,6 +835,8 @@ public class ModelObject implements IModelObject
   public int getNumberOfChildren( String type)
   {
     notifyAccessChildren( false);
+    List<IModelObject> children = storageClass.getChildren();
+    if ( children instanceof IndexedChildList) return ((IndexedChildList)children).getNumberOfChildren( type);
     return getChildren( type).size();
   }
 
@@ -945,10 +1014,13 @@ public class ModelObject implements IModelObject
    */
   public void revertUpdate( IMemento iMemento)
   {
+    if ( SharedStorageClass.isActive()) SharedStorageClass.isolate( this);
+    
     if ( iMemento instanceof SetAttributeMemento)
     {
       SetAttributeMemento memento = (SetAttributeMemento)iMemento;
       storageClass.setAttribute( memento.attrName, memento.oldValue);
+      updateParentIndex( memento.attrName, memento.newValue, memento.oldValue);
     }
     else if ( iMemento instanceof SetParentMemento)
     {
@@ -976,6 +1048,7 @@ public class ModelObject implements IModelObject
     {
       RemoveAttributeMemento memento = (RemoveAttributeMemento)iMemento;
       storageClass.setAttribute( memento.attrName, memento.oldValue);
+      updateParentIndex( memento.attrName, null, memento.oldValue);
     }
   }
 
@@ -984,10 +1057,13 @@ public class ModelObject implements IModelObject
    */
   public void restoreUpdate( IMemento iMemento)
   {
+    if ( SharedStorageClass.isActive()) SharedStorageClass.isolate( this);
+    
     if ( iMemento instanceof SetAttributeMemento)
     {
       SetAttributeMemento memento = (SetAttributeMemento)iMemento;
       storageClass.setAttribute( memento.attrName, memento.newValue);
+      updateParentIndex( memento.attrName, memento.oldValue, memento.newValue);
     }
     else if ( iMemento instanceof SetParentMemento)
     {
@@ -1015,6 +1091,7 @@ public class ModelObject implements IModelObject
     {
       RemoveAttributeMemento memento = (RemoveAttributeMemento)iMemento;
       storageClass.setAttribute( memento.attrName, null);
+      updateParentIndex( memento.attrName, memento.oldValue, null);
     }
   }
 
@@ -1132,8 +1209,14 @@ public class ModelObject implements IModelObject
    */
   private void notifyAddChild( IModelObject child, int index)
   {
+    if ( IdIndex.isActive()) IdIndex.notifyAddChild( this, child);
+    if ( DescendantIndex.isActive()) DescendantIndex.notifyAddChild( this, child);
+    if ( DocumentOrder.isActive()) DocumentOrder.notifyAddChild( this, child, index);
+    
     ModelListenerList listeners = storageClass.getModelListeners();
     if ( listeners != null) listeners.notifyAddChild( this, child, index);
+    
+    if ( SubtreeListeners.isTracking()) SubtreeListeners.notifyAddChild( this, child, index);
   }
   
   /**
@@ -1147,8 +1230,14 @@ public class ModelObject implements IModelObject
    */
   private void notifyRemoveChild( IModelObject child, int index)
   {
+    if ( IdIndex.isActive()) IdIndex.notifyRemoveChild( this, child);
+    if ( DescendantIndex.isActive()) DescendantIndex.notifyRemoveChild( this, child, index);
+    if ( DocumentOrder.isActive()) DocumentOrder.notifyRemoveChild( this, child, index);
+    
     ModelListenerList listeners = storageClass.getModelListeners();
     if ( listeners != null) listeners.notifyRemoveChild( this, child, index);
+    
+    if ( SubtreeListeners.isTracking()) SubtreeListeners.notifyRemoveChild( this, child, index);
   }
   
   /**
@@ -1163,6 +1252,9 @@ public class ModelObject implements IModelObject
    */
   private void notifyChange( String attrName, Object newValue, Object oldValue)
   {
+    if ( IdIndex.isActive() && attrName.equals( "id")) IdIndex.notifyChange( this, newValue, oldValue);
+    if ( DescendantIndex.isActive()) DescendantIndex.notifyChange( this, attrName, newValue, oldValue);
+    
     ModelListenerList listeners = storageClass.getModelListeners();
     if ( listeners != null) listeners.notifyChange( this, attrName, newValue, oldValue);
   }
@@ -1178,6 +1270,9 @@ public class ModelObject implements IModelObject
    */
   private void notifyClear( String attrName, Object oldValue)
   {
+    if ( IdIndex.isActive() && attrName.equals( "id")) IdIndex.notifyChange( this, null, oldValue);
+    if ( DescendantIndex.isActive()) DescendantIndex.notifyChange( this, attrName, null, oldValue);
+    
     ModelListenerList listeners = storageClass.getModelListeners();
     if ( listeners != null) listeners.notifyClear( this, attrName, oldValue);
   }
@@ -1197,4 +1292,5 @@ public class ModelObject implements IModelObject
   protected IStorageClass storageClass;
   
   private static Log log = Log.getLog( ModelObject.class);
+  private final static int idSymbol = SymbolTable.getSymbol( "id");
 }
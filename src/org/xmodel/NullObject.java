@@ -132,6 +132,30 @@ public class NullObject implements IModelObject
     return null;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttribute(int)
+   */
+  public Object getAttribute( int symbol)
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsDouble(java.lang.String, double)
+   */
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return defaultValue;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsLong(java.lang.String, long)
+   */
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return defaultValue;
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.IModelObject#getAttributeNames()
    */
@@ -81,5 +81,14 @@ public class PathListenerList
     return null;
   }
 
+  /**
+   * Returns the IListenerChain instances. The list must not be modified.
+   * @return Returns the IListenerChain instances.
+   */
+  public List<IListenerChain> getListenerChains()
+  {
+    return chains;
+  }
+
   List<IListenerChain> chains;
 }
@@ -121,6 +121,30 @@ public class Reference implements IModelObject
     return referent.getAttribute( attrName);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttribute(int)
+   */
+  public Object getAttribute( int symbol)
+  {
+    return referent.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsDouble(java.lang.String, double)
+   */
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return referent.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsLong(java.lang.String, long)
+   */
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return referent.getAttributeAsLong( attrName, defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.IModelObject#getAttributeNode(java.lang.String)
    */
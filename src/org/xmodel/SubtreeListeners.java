@@ -0,0 +1,361 @@
+package org.xmodel;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.xmodel.log.SLog;
+import org.xmodel.util.WeakIdentityMap;
+
+/**
+ * A registry of listeners that are notified when a child is added to or removed from an object or any of its
+ * descendants.  A subtree listener is stored once on the root of the subtree, and ModelObject consults the
+ * registry by walking the ancestors of the parent after notifying the listeners of the parent, so installing a
+ * subtree listener does not install anything on the descendants, and each change costs O(depth) once any subtree
+ * listener is registered.  A listener that is registered on more than one ancestor of the parent is notified once.
+ * Since the ancestors of the parent are walked for each change, a subtree that is detached from its tree keeps
+ * its listeners without any bookkeeping.
+ * <p>
+ * Each object with subtree listeners has its own registry, which is locked when a listener is added or removed,
+ * and which is read without locking during notification.  Objects are compared by identity and weakly referenced.
+ * <p>
+ * Changes beneath the referent of a Reference are not seen by walking the ancestors of the changed object, so a
+ * subtree listener is also registered on the referent of each Reference in the subtree.  The references are
+ * recorded as they are added to a parent while the <code>enabled</code> flag is set or while any subtree listener
+ * is registered, so installing a subtree listener costs O(depth) for each recorded reference rather than a
+ * traversal of the subtree.
+ */
+public final class SubtreeListeners
+{
+  /**
+   * True if the descendant axis of a listener chain should install a subtree listener instead of a listener on
+   * each descendant.  The flag is read when a listener chain is created.
+   */
+  public static boolean enabled = false;
+
+  /**
+   * Add a listener for child changes in the subtree of the specified object.
+   * @param object The root of the subtree.
+   * @param listener The listener.
+   */
+  public static void addListener( IModelObject object, IModelListener listener)
+  {
+    register( object, listener);
+    registerReferences( object, listener, true, false);
+  }
+
+  /**
+   * Remove a listener for child changes in the subtree of the specified object.
+   * @param object The root of the subtree.
+   * @param listener The listener.
+   */
+  public static void removeListener( IModelObject object, IModelListener listener)
+  {
+    unregister( object, listener);
+    registerReferences( object, listener, false, false);
+  }
+
+  /**
+   * @return Returns true if any subtree listeners are registered.
+   */
+  public static boolean isActive()
+  {
+    return count.get() > 0;
+  }
+
+  /**
+   * Returns true if any subtree listeners are registered on the specified object or its ancestors.
+   * @param object The object.
+   * @return Returns true if changes to the children of the object are seen by subtree listeners.
+   */
+  public static boolean isActive( IModelObject object)
+  {
+    if ( count.get() == 0) return false;
+    for( IModelObject ancestor = object; ancestor != null; ancestor = ancestor.getParent())
+      if ( holders.get( ancestor) != null)
+        return true;
+    return false;
+  }
+
+  /**
+   * Returns true if any subtree listeners are registered on the specified object itself.
+   * @param object The object.
+   * @return Returns true if the object is the root of a subtree with listeners.
+   */
+  public static boolean hasListeners( IModelObject object)
+  {
+    return count.get() > 0 && holders.get( object) != null;
+  }
+
+  /**
+   * @return Returns true if ModelObject should report child changes to this class.
+   */
+  static boolean isTracking()
+  {
+    return enabled || count.get() > 0;
+  }
+
+  /**
+   * Called by ModelObject after a child is added.
+   * @param parent The parent.
+   * @param child The child.
+   * @param index The index of the child.
+   */
+  static void notifyAddChild( IModelObject parent, IModelObject child, int index)
+  {
+    if ( child.getReferent() != child) references.put( child, Boolean.TRUE);
+    if ( count.get() == 0) return;
+
+    // references are registered before notification, since a listener may be removed during notification
+    List<IModelListener> listeners = collect( parent);
+    if ( listeners == null) return;
+
+    for( IModelListener listener: listeners)
+      registerReferences( child, listener, true, true);
+
+    for( IModelListener listener: listeners)
+    {
+      try
+      {
+        listener.notifyAddChild( parent, child, index);
+      }
+      catch( Exception e)
+      {
+        SLog.exception( SubtreeListeners.class, e);
+      }
+      finally
+      {
+        GlobalSettings.getInstance().getModel().restore();
+      }
+    }
+  }
+
+  /**
+   * Called by ModelObject after a child is removed.
+   * @param parent The parent.
+   * @param child The child.
+   * @param index The index of the child.
+   */
+  static void notifyRemoveChild( IModelObject parent, IModelObject child, int index)
+  {
+    List<IModelListener> listeners = (count.get() > 0)? collect( parent): null;
+    if ( listeners != null)
+    {
+      for( IModelListener listener: listeners)
+        registerReferences( child, listener, false, true);
+    }
+
+    // references in the subtree of the child are kept, since they are not reported if the subtree is added again
+    if ( child.getReferent() != child) references.remove( child);
+    if ( listeners == null) return;
+
+    for( IModelListener listener: listeners)
+    {
+      try
+      {
+        listener.notifyRemoveChild( parent, child, index);
+      }
+      catch( Exception e)
+      {
+        SLog.exception( SubtreeListeners.class, e);
+      }
+      finally
+      {
+        GlobalSettings.getInstance().getModel().restore();
+      }
+    }
+  }
+
+  /**
+   * Returns the subtree listeners of the specified object and its ancestors.
+   * @param object The object.
+   * @return Returns null or the listeners.
+   */
+  private static List<IModelListener> collect( IModelObject object)
+  {
+    List<IModelListener> result = null;
+    for( IModelObject ancestor = object; ancestor != null; ancestor = ancestor.getParent())
+    {
+      Holder holder = holders.get( ancestor);
+      if ( holder == null) continue;
+
+      IModelListener[] listeners = holder.listeners;
+      if ( listeners == null) continue;
+
+      if ( result == null) result = new ArrayList<IModelListener>( listeners.length);
+      for( IModelListener listener: listeners)
+        if ( indexOf( result, listener) < 0)
+          result.add( listener);
+    }
+    return result;
+  }
+
+  /**
+   * Register or unregister the specified listener on the referents of the recorded references in the subtree of
+   * the specified object, and on the referents of the references in the subtrees of those referents.
+   * @param object The root of the subtree.
+   * @param listener The listener.
+   * @param add True if the listener should be registered.
+   * @param includeRoot True if the root of the subtree should be checked.
+   */
+  private static void registerReferences( IModelObject object, IModelListener listener, boolean add, boolean includeRoot)
+  {
+    List<IModelObject> candidates = references.keys();
+    if ( candidates.size() == 0) return;
+
+    Map<IModelObject, Boolean> visited = new IdentityHashMap<IModelObject, Boolean>();
+    List<IModelObject> roots = new ArrayList<IModelObject>();
+    roots.add( object);
+    while( roots.size() > 0)
+    {
+      IModelObject root = roots.remove( roots.size() - 1);
+      if ( visited.put( root, Boolean.TRUE) != null) continue;
+
+      for( IModelObject reference: candidates)
+      {
+        if ( reference == root && !includeRoot) continue;
+        if ( !isAncestor( root, reference)) continue;
+        if ( add) register( reference, listener); else unregister( reference, listener);
+        roots.add( Reference.getReferent( reference));
+      }
+      includeRoot = true;
+    }
+  }
+
+  /**
+   * Returns true if the specified ancestor is the specified object or one of its ancestors.
+   * @param ancestor The ancestor.
+   * @param object The object.
+   * @return Returns true if the object is in the subtree of the ancestor.
+   */
+  private static boolean isAncestor( IModelObject ancestor, IModelObject object)
+  {
+    for( ; object != null; object = object.getParent())
+      if ( object == ancestor)
+        return true;
+    return false;
+  }
+
+  /**
+   * Register the specified listener on the specified object, or its referent.
+   * @param object The object.
+   * @param listener The listener.
+   */
+  private static void register( IModelObject object, IModelListener listener)
+  {
+    IModelObject target = Reference.getReferent( object);
+    while( true)
+    {
+      Holder holder = holders.get( target);
+      if ( holder == null)
+      {
+        synchronized( holders)
+        {
+          holder = holders.get( target);
+          if ( holder == null)
+          {
+            holder = new Holder();
+            holders.put( target, holder);
+            count.incrementAndGet();
+          }
+        }
+      }
+
+      synchronized( holder)
+      {
+        if ( holder.listeners != null)
+        {
+          IModelListener[] listeners = new IModelListener[ holder.listeners.length + 1];
+          System.arraycopy( holder.listeners, 0, listeners, 0, holder.listeners.length);
+          listeners[ listeners.length - 1] = listener;
+          holder.listeners = listeners;
+          return;
+        }
+      }
+
+      // the holder lost its last listener concurrently, and is replaced
+      discard( target, holder);
+    }
+  }
+
+  /**
+   * Unregister the specified listener from the specified object, or its referent.
+   * @param object The object.
+   * @param listener The listener.
+   */
+  private static void unregister( IModelObject object, IModelListener listener)
+  {
+    IModelObject target = Reference.getReferent( object);
+    Holder holder = holders.get( target);
+    if ( holder == null) return;
+
+    synchronized( holder)
+    {
+      IModelListener[] listeners = holder.listeners;
+      if ( listeners == null) return;
+
+      int index = listeners.length - 1;
+      while( index >= 0 && listeners[ index] != listener) index--;
+      if ( index < 0) return;
+
+      if ( listeners.length > 1)
+      {
+        IModelListener[] result = new IModelListener[ listeners.length - 1];
+        System.arraycopy( listeners, 0, result, 0, index);
+        System.arraycopy( listeners, index + 1, result, index, result.length - index);
+        holder.listeners = result;
+        return;
+      }
+
+      holder.listeners = null;
+    }
+
+    discard( target, holder);
+  }
+
+  /**
+   * Remove the specified holder, which has no listeners, from the registry.
+   * @param target The object of the holder.
+   * @param holder The holder.
+   */
+  private static void discard( IModelObject target, Holder holder)
+  {
+    synchronized( holders)
+    {
+      if ( holders.get( target) == holder)
+      {
+        holders.remove( target);
+        count.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the specified listener in the specified list by identity.
+   * @param list The list.
+   * @param listener The listener.
+   * @return Returns -1 or the index.
+   */
+  private static int indexOf( List<IModelListener> list, IModelListener listener)
+  {
+    for( int i=0; i<list.size(); i++)
+      if ( list.get( i) == listener)
+        return i;
+    return -1;
+  }
+
+  /**
+   * The subtree listeners of an object.  A listener appears more than once if it was registered through more than
+   * one reference to the object.  The array is replaced, rather than modified, while the holder is locked, and is
+   * null after the last listener is removed.
+   */
+  private final static class Holder
+  {
+    volatile IModelListener[] listeners = new IModelListener[ 0];
+  }
+
+  private final static WeakIdentityMap<IModelObject, Holder> holders = new WeakIdentityMap<IModelObject, Holder>();
+  private final static WeakIdentityMap<IModelObject, Boolean> references = new WeakIdentityMap<IModelObject, Boolean>();
+  private final static AtomicInteger count = new AtomicInteger();
+}
@@ -109,17 +109,7 @@ public class Xlate
   public static long get( IModelObject object, long defaultValue)
   {
     if ( object == null) return defaultValue;
-    Object attrValue = object.getValue();
-    if ( attrValue == null) return defaultValue;
-    if ( attrValue instanceof Number) return ((Number)attrValue).longValue();
-    try
-    {
-      return Long.parseLong( attrValue.toString());
-    }
-    catch ( NumberFormatException e)
-    {
-      return defaultValue;
-    }
+    return object.getAttributeAsLong( "", defaultValue);
   }
 
   /**
@@ -155,17 +145,7 @@ public class Xlate
   public static double get( IModelObject object, double defaultValue)
   {
     if ( object == null) return defaultValue;
-    Object attrValue = object.getValue();
-    if ( attrValue == null) return defaultValue;
-    if ( attrValue instanceof Number) return ((Number)attrValue).doubleValue();
-    try
-    {
-      return Double.parseDouble( attrValue.toString());
-    }
-    catch ( NumberFormatException e)
-    {
-      return defaultValue;
-    }
+    return object.getAttributeAsDouble( "", defaultValue);
   }
 
   /**
@@ -369,17 +349,7 @@ public class Xlate
   public static long get( IModelObject object, String attrName, long defaultValue)
   {
     if ( object == null) return defaultValue;
-    Object attrValue = object.getAttribute( attrName);
-    if ( attrValue == null) return defaultValue;
-    if ( attrValue instanceof Number) return ((Number)attrValue).longValue();
-    try
-    {
-      return Long.parseLong( attrValue.toString());
-    }
-    catch ( NumberFormatException e)
-    {
-      return defaultValue;
-    }
+    return object.getAttributeAsLong( attrName, defaultValue);
   }
 
   /**
@@ -417,17 +387,7 @@ public class Xlate
   public static double get( IModelObject object, String attrName, double defaultValue)
   {
     if ( object == null) return defaultValue;
-    Object attrValue = object.getAttribute( attrName);
-    if ( attrValue == null) return defaultValue;
-    if ( attrValue instanceof Number) return ((Number)attrValue).doubleValue();
-    try
-    {
-      return Double.parseDouble( attrValue.toString());
-    }
-    catch ( NumberFormatException e)
-    {
-      return defaultValue;
-    }
+    return object.getAttributeAsDouble( attrName, defaultValue);
   }
 
   /**
@@ -523,6 +483,113 @@ public class Xlate
   {
     if ( object == null) return defaultValue;
     Object attrValue = object.getAttribute( attrName);
+    if ( attrValue == null) return defaultValue;
+    if ( attrValue instanceof Number)
+      return StringFunction.stringValue( (Number)attrValue);
+    return attrValue.toString();
+  }
+
+  /**
+   * Convert the attribute to the specified return value.  If the attribute is
+   * not defined or cannot be converted then return the specified default value. 
+   * @param object The object from which to retrieve the attribute.
+   * @param symbol The symbol of the attribute name in the SymbolTable.
+   * @param defaultValue The default value returned if the attribute doesn't exist.
+   * @return Returns the converted value of the attribute or the default value.
+   */
+  public static boolean get( IModelObject object, int symbol, boolean defaultValue)
+  {
+    if ( object == null) return defaultValue;
+    Object attrValue = object.getAttribute( symbol);
+    if ( attrValue == null) return defaultValue;
+    if ( attrValue instanceof Boolean) return (Boolean)attrValue;
+    return Boolean.toString( true).equals( attrValue.toString());
+  }
+
+  /**
+   * Convert the attribute to the specified return value.  If the attribute is
+   * not defined or cannot be converted then return the specified default value. 
+   * @param object The object from which to retrieve the attribute.
+   * @param symbol The symbol of the attribute name in the SymbolTable.
+   * @param defaultValue The default value returned if the attribute doesn't exist.
+   * @return Returns the converted value of the attribute or the default value.
+   */
+  public static int get( IModelObject object, int symbol, int defaultValue)
+  {
+    if ( object == null) return defaultValue;
+    Object attrValue = object.getAttribute( symbol);
+    if ( attrValue == null) return defaultValue;
+    if ( attrValue instanceof Number) return ((Number)attrValue).intValue();
+    try
+    {
+      return Integer.parseInt( attrValue.toString());
+    }
+    catch ( NumberFormatException e)
+    {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Convert the attribute to the specified return value.  If the attribute is
+   * not defined or cannot be converted then return the specified default value. 
+   * @param object The object from which to retrieve the attribute.
+   * @param symbol The symbol of the attribute name in the SymbolTable.
+   * @param defaultValue The default value returned if the attribute doesn't exist.
+   * @return Returns the converted value of the attribute or the default value.
+   */
+  public static long get( IModelObject object, int symbol, long defaultValue)
+  {
+    if ( object == null) return defaultValue;
+    Object attrValue = object.getAttribute( symbol);
+    if ( attrValue == null) return defaultValue;
+    if ( attrValue instanceof Number) return ((Number)attrValue).longValue();
+    try
+    {
+      return Long.parseLong( attrValue.toString());
+    }
+    catch ( NumberFormatException e)
+    {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Convert the attribute to the specified return value.  If the attribute is
+   * not defined or cannot be converted then return the specified default value. 
+   * @param object The object from which to retrieve the attribute.
+   * @param symbol The symbol of the attribute name in the SymbolTable.
+   * @param defaultValue The default value returned if the attribute doesn't exist.
+   * @return Returns the converted value of the attribute or the default value.
+   */
+  public static double get( IModelObject object, int symbol, double defaultValue)
+  {
+    if ( object == null) return defaultValue;
+    Object attrValue = object.getAttribute( symbol);
+    if ( attrValue == null) return defaultValue;
+    if ( attrValue instanceof Number) return ((Number)attrValue).doubleValue();
+    try
+    {
+      return Double.parseDouble( attrValue.toString());
+    }
+    catch ( NumberFormatException e)
+    {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Convert the attribute to the specified return value.  If the attribute is
+   * not defined or cannot be converted then return the specified default value. 
+   * @param object The object from which to retrieve the attribute.
+   * @param symbol The symbol of the attribute name in the SymbolTable.
+   * @param defaultValue The default value returned if the attribute doesn't exist.
+   * @return Returns the converted value of the attribute or the default value.
+   */
+  public static String get( IModelObject object, int symbol, String defaultValue)
+  {
+    if ( object == null) return defaultValue;
+    Object attrValue = object.getAttribute( symbol);
     if ( attrValue == null) return defaultValue;
     if ( attrValue instanceof Number)
       return StringFunction.stringValue( (Number)attrValue);
@@ -53,6 +53,7 @@ import org.xmodel.external.NonSyncingListener;
 import org.xmodel.external.UnboundedCache;
 import org.xmodel.log.Log;
 import org.xmodel.log.SLog;
+import org.xmodel.storage.ColumnTable;
 import org.xmodel.util.ThreadLocalMap;
 import org.xmodel.xml.IXmlIO.Style;
 import org.xmodel.xml.XmlException;
@@ -215,11 +216,14 @@ public class SQLTableCachingPolicy extends ConfiguredCachingPolicy
       
       long count = 0;
       IModelObject parent = reference.cloneObject();
+      ColumnTable table = isColumnar()? new ColumnTable(): null;
       while( result.next())
       {
         count++;
         
         IModelObject row = getFactory().createObject( reference, rowElementName);
+        if ( table != null) table.adopt( row);
+        
         if ( stub)
         {
           int k=1;
@@ -255,6 +259,21 @@ public class SQLTableCachingPolicy extends ConfiguredCachingPolicy
     }
   }
   
+  /**
+   * Returns true if the row elements only have attributes, in which case rows are stored in a ColumnTable.
+   * @return Returns true if the row elements only have attributes.
+   */
+  private boolean isColumnar()
+  {
+    if ( stub) return true;
+    for( String columnName: columnNames)
+    {
+      if ( !primaryKeys.contains( columnName) && !otherKeys.contains( columnName) && !attributes.contains( columnName))
+        return false;
+    }
+    return true;
+  }
+  
   /**
    * Create the row element corresponding to the specified unsynced referenced.
    * @param reference The reference which is in the process of being synced.
@@ -7,9 +7,8 @@ import org.xmodel.IModelObject;
 import org.xmodel.ModelListenerList;
 import org.xmodel.PathListenerList;
 import org.xmodel.external.ICachingPolicy;
+import org.xmodel.storage.ExtendedStorageClass;
 import org.xmodel.storage.IStorageClass;
-import org.xmodel.storage.ModelListenerStorageClass;
-import org.xmodel.storage.PathListenerStorageClass;
 
 public class SQLCursorStorageClass implements IStorageClass
 {
@@ -52,7 +51,7 @@ public class SQLCursorStorageClass implements IStorageClass
   @Override
   public IStorageClass getModelListenersStorageClass()
   {
-    return new ModelListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getModelListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -61,7 +60,7 @@ public class SQLCursorStorageClass implements IStorageClass
   @Override
   public IStorageClass getPathListenersStorageClass()
   {
-    return new PathListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getPathListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -127,6 +126,33 @@ public class SQLCursorStorageClass implements IStorageClass
     return storageClass.getAttribute( name);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return storageClass.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return storageClass.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return storageClass.getAttributeAsLong( attrName, defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.storage.IStorageClass#getAttributeNames()
    */
@@ -0,0 +1,129 @@
+package org.xmodel.compress;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.xmodel.IModelObject;
+import org.xmodel.Xlate;
+import org.xmodel.external.ICache;
+import org.xmodel.external.IExternalReference;
+
+/**
+ * An implementation of ICache which maintains an upper bound on the number of synced references whose children
+ * are in the heap.  When the capacity is exceeded, the children of the least recently used reference are paged
+ * out of the heap by an OffHeapCachingPolicy instead of being discarded, so the reference is rehydrated from
+ * the off-heap buffer rather than re-synced from its source.  References that cannot be paged out, because they
+ * have listeners or contain other references, remain in the cache and the capacity is temporarily exceeded.
+ * <p>
+ * Paging out compresses the children of the reference, so it is performed outside of the monitor of the cache by
+ * the thread whose call to <code>add</code> exceeded the capacity.  Other threads that add references while the
+ * eviction is in progress do not wait for it.
+ */
+public class OffHeapCache implements ICache
+{
+  public OffHeapCache()
+  {
+    this( 0);
+  }
+
+  public OffHeapCache( int capacity)
+  {
+    this.capacity = capacity;
+    this.references = new LinkedHashMap<IExternalReference, Boolean>( 16, 0.75f, true);
+    this.cachingPolicy = new OffHeapCachingPolicy( this);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.external.ICache#configure(org.xmodel.IModelObject)
+   */
+  public void configure( IModelObject annotation)
+  {
+    capacity = Xlate.get( annotation, "capacity", 0);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.external.ICache#add(org.xmodel.external.IExternalReference)
+   */
+  public void add( IExternalReference reference)
+  {
+    synchronized( this)
+    {
+      references.put( reference, Boolean.TRUE);
+      if ( evicting || references.size() <= capacity) return;
+      evicting = true;
+    }
+    
+    try
+    {
+      evict();
+    }
+    finally
+    {
+      synchronized( this) { evicting = false;}
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.external.ICache#remove(org.xmodel.external.IExternalReference)
+   */
+  public synchronized void remove( IExternalReference reference)
+  {
+    references.remove( reference);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.external.ICache#touch(org.xmodel.external.IExternalReference)
+   */
+  public synchronized void touch( IExternalReference reference)
+  {
+    references.get( reference);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.external.ICache#size()
+   */
+  public synchronized int size()
+  {
+    return references.size();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.external.ICache#capacity()
+   */
+  public int capacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * Called without the monitor of the cache when the capacity of the cache is exceeded.  The children of the
+   * least recently used references that can be paged out are paged out, and the references are removed from
+   * the cache, until the capacity is no longer exceeded.
+   */
+  protected void evict()
+  {
+    IExternalReference[] candidates;
+    synchronized( this)
+    {
+      candidates = references.keySet().toArray( new IExternalReference[ references.size()]);
+    }
+    
+    for( IExternalReference reference: candidates)
+    {
+      synchronized( this)
+      {
+        if ( references.size() <= capacity) return;
+        if ( !references.containsKey( reference)) continue;
+      }
+      
+      if ( cachingPolicy.pageOut( reference))
+      {
+        synchronized( this) { references.remove( reference);}
+      }
+    }
+  }
+
+  private int capacity;
+  private Map<IExternalReference, Boolean> references;
+  private OffHeapCachingPolicy cachingPolicy;
+  private boolean evicting;
+}
@@ -0,0 +1,207 @@
+package org.xmodel.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import org.xmodel.GlobalSettings;
+import org.xmodel.IModel;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListenerList;
+import org.xmodel.SubtreeListeners;
+import org.xmodel.external.AbstractCachingPolicy;
+import org.xmodel.external.CachingException;
+import org.xmodel.external.ICache;
+import org.xmodel.external.IExternalReference;
+import org.xmodel.log.Log;
+import org.xmodel.storage.OffHeapStorageClass;
+import org.xmodel.storage.Statistics;
+
+/**
+ * A caching policy that pages the children of an IExternalReference out of the heap and rehydrates them
+ * on the next access.  The children are compressed with a TabularCompressor into a direct buffer, and the
+ * storage class of the reference is wrapped in an OffHeapStorageClass which returns this caching policy.
+ * When the reference is synced, the original storage class and caching policy are restored.  If the
+ * children cannot be decompressed, the reference is left dirty and is synced by its original caching policy.
+ */
+public class OffHeapCachingPolicy extends AbstractCachingPolicy
+{
+  /**
+   * Create an OffHeapCachingPolicy.
+   * @param cache The cache that rehydrated references are returned to.
+   */
+  public OffHeapCachingPolicy( ICache cache)
+  {
+    super( cache);
+    setStaticAttributes( new String[] { "*"});
+  }
+
+  /**
+   * Page the children of the specified reference out of the heap.  A reference is not paged out if it is
+   * dirty, if it or any of its descendants have listeners, if it or any of its ancestors or descendants have
+   * subtree listeners, or if any of its descendants have a caching policy.
+   * @param reference The reference.
+   * @return Returns true if the children of the reference were paged out.
+   */
+  public boolean pageOut( IExternalReference reference) throws CachingException
+  {
+    if ( !isPageable( reference)) return false;
+
+    try
+    {
+      List<byte[]> buffers = new TabularCompressor( false, false).compress( reference);
+
+      int length = 0;
+      for( byte[] bytes: buffers) length += bytes.length;
+
+      ByteBuffer buffer = ByteBuffer.allocateDirect( length);
+      for( byte[] bytes: buffers) buffer.put( bytes);
+      buffer.flip();
+
+      // turn off syncing while removing children
+      IModel model = GlobalSettings.getInstance().getModel();
+      boolean syncLock = model.getSyncLock();
+      try
+      {
+        model.setSyncLock( true);
+        reference.removeChildren();
+      }
+      finally
+      {
+        model.setSyncLock( syncLock);
+      }
+
+      reference.setStorageClass( new OffHeapStorageClass( reference.getStorageClass(), buffer, this));
+      reference.setDirty( true);
+
+      log.debugf( "Paged out %s, %d bytes", reference.getType(), length);
+      return true;
+    }
+    catch( IOException e)
+    {
+      throw new CachingException( String.format( "Unable to page out reference, %s", reference.getType()), e);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.external.ICachingPolicy#sync(org.xmodel.external.IExternalReference)
+   */
+  @Override
+  public void sync( IExternalReference reference) throws CachingException
+  {
+    log.debugf( "Rehydrate: %s", reference.getType());
+
+    // restore original storage class and caching policy
+    OffHeapStorageClass storageClass = (OffHeapStorageClass)reference.getStorageClass();
+    reference.setStorageClass( storageClass.getDelegate());
+    if ( Statistics.enabled) Statistics.decrement( storageClass);
+
+    try
+    {
+      InputStream stream = new ByteBufferInputStream( storageClass.getBuffer());
+      IModelObject element = new TabularCompressor( false, false).decompress( stream);
+
+      List<IModelObject> children = new ArrayList<IModelObject>( element.getChildren());
+      for( IModelObject child: children)
+      {
+        child.removeFromParent();
+        reference.addChild( child);
+      }
+    }
+    catch( IOException e)
+    {
+      throw new CachingException( String.format( "Unable to rehydrate reference, %s", reference.getType()), e);
+    }
+  }
+
+  /**
+   * Returns true if the children of the specified reference can be paged out.
+   * @param reference The reference.
+   * @return Returns true if the children of the reference can be paged out.
+   */
+  private static boolean isPageable( IExternalReference reference)
+  {
+    if ( reference.isDirty() || hasListeners( reference)) return false;
+    
+    // the subtree listeners of ancestors are not installed on the reference
+    if ( SubtreeListeners.isActive( reference)) return false;
+    if ( reference.getStorageClass() instanceof OffHeapStorageClass) return false;
+
+    // access storage class directly to avoid touching the cache
+    List<IModelObject> children = reference.getStorageClass().getChildren();
+    if ( children == null || children.size() == 0) return false;
+
+    Deque<IModelObject> stack = new ArrayDeque<IModelObject>( children);
+    while( !stack.isEmpty())
+    {
+      IModelObject node = stack.pop();
+      if ( node.getCachingPolicy() != null || hasListeners( node)) return false;
+
+      children = node.getStorageClass().getChildren();
+      if ( children != null) stack.addAll( children);
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns true if the specified node has model listeners or subtree listeners.  Path listeners install model
+   * listeners on each node of the path, so they do not need to be checked separately.
+   * @param node The node.
+   * @return Returns true if the specified node has listeners.
+   */
+  private static boolean hasListeners( IModelObject node)
+  {
+    if ( SubtreeListeners.hasListeners( node)) return true;
+    ModelListenerList listeners = node.getStorageClass().getModelListeners();
+    return listeners != null && listeners.count() > 0;
+  }
+
+  /**
+   * An InputStream that reads from a ByteBuffer.
+   */
+  private static class ByteBufferInputStream extends InputStream
+  {
+    public ByteBufferInputStream( ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.InputStream#read()
+     */
+    @Override
+    public int read() throws IOException
+    {
+      return buffer.hasRemaining()? (buffer.get() & 0xff): -1;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    @Override
+    public int read( byte[] bytes, int offset, int length) throws IOException
+    {
+      if ( !buffer.hasRemaining()) return -1;
+      int count = Math.min( length, buffer.remaining());
+      buffer.get( bytes, offset, count);
+      return count;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.InputStream#available()
+     */
+    @Override
+    public int available() throws IOException
+    {
+      return buffer.remaining();
+    }
+
+    private ByteBuffer buffer;
+  }
+
+  private final static Log log = Log.getLog( OffHeapCachingPolicy.class);
+}
@@ -0,0 +1,199 @@
+package org.xmodel.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.xmodel.IModelObject;
+import org.xmodel.log.Log;
+import org.xmodel.util.PrefixThreadFactory;
+
+/**
+ * An opt-in concurrent mode for the model in which independent subtrees are written by different threads in
+ * parallel.  Each subtree root is assigned to one of a fixed number of stripes, and each stripe is a single-writer
+ * executor with its own thread.  All reads and writes of a subtree, and therefore all notifications of the
+ * listeners installed on the subtree, are performed by the thread of its stripe, using the IModel of that thread.
+ * <p>
+ * Ordering guarantee: tasks submitted for the same subtree root are executed one at a time in the order in which
+ * they were submitted, and the listener notifications caused by a task are delivered before the next task for the
+ * subtree begins.  No ordering is defined between tasks of different subtrees, unless they share a stripe.
+ * <p>
+ * The subtrees must be disjoint, a listener must not be installed on more than one subtree, and an element must
+ * not be moved between subtrees.  Other threads may read a subtree with <code>submit</code>, or may read a sealed
+ * copy created with <code>ModelAlgorithms.seal</code>.  A task that waits for the result of a task on its own stripe
+ * will deadlock.
+ * <p>
+ * A write to a subtree does not lock the global indexes of the model, IdIndex, DescendantIndex and DocumentOrder,
+ * unless it adds a root that was queried with IdIndex to another tree, moves elements with id listeners out of
+ * their tree, or adds a root whose document order was computed to a parent whose document order was not.
+ */
+public class SubtreeExecutor
+{
+  /**
+   * Create a SubtreeExecutor with one stripe per available processor.
+   * @param name The prefix for the names of the stripe threads.
+   */
+  public SubtreeExecutor( String name)
+  {
+    this( name, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Create a SubtreeExecutor with at least the specified number of stripes.  The number of stripes is rounded up
+   * to a power of two.
+   * @param name The prefix for the names of the stripe threads.
+   * @param stripes The number of stripes.
+   */
+  public SubtreeExecutor( String name, int stripes)
+  {
+    if ( stripes < 1) throw new IllegalArgumentException( "Stripe count must be positive.");
+
+    int count = Integer.highestOneBit( stripes);
+    if ( count < stripes) count <<= 1;
+
+    this.mask = count - 1;
+    this.stripes = new Stripe[ count];
+    for( int i=0; i<count; i++)
+      this.stripes[ i] = new Stripe( new PrefixThreadFactory( name+"-"+i));
+  }
+
+  /**
+   * Execute the specified task on the stripe of the specified subtree.
+   * @param root The root of the subtree.
+   * @param runnable The task.
+   */
+  public void execute( IModelObject root, Runnable runnable)
+  {
+    getStripe( root).execute( runnable);
+  }
+
+  /**
+   * Execute the specified task on the stripe of the specified subtree.
+   * @param root The root of the subtree.
+   * @param callable The task.
+   * @return Returns the future result of the task.
+   */
+  public <T> Future<T> submit( IModelObject root, Callable<T> callable)
+  {
+    return getStripe( root).executor.submit( callable);
+  }
+
+  /**
+   * Returns an Executor that executes tasks on the stripe of the specified subtree.  The Executor may be used
+   * wherever an Executor is expected, for example as the executor of a MasterSlaveListener whose slave is in the
+   * subtree.
+   * @param root The root of the subtree.
+   * @return Returns the Executor for the subtree.
+   */
+  public Executor getExecutor( IModelObject root)
+  {
+    return getStripe( root);
+  }
+
+  /**
+   * Returns true if the current thread is the thread of the stripe of the specified subtree.  A task for the
+   * subtree that is already executing on its stripe may access the subtree directly.
+   * @param root The root of the subtree.
+   * @return Returns true if the current thread is the thread of the stripe of the subtree.
+   */
+  public boolean isStripeThread( IModelObject root)
+  {
+    return getStripe( root).thread == Thread.currentThread();
+  }
+
+  /**
+   * @return Returns the number of stripes.
+   */
+  public int getStripeCount()
+  {
+    return stripes.length;
+  }
+
+  /**
+   * Shutdown the stripes after the tasks that have already been submitted have been executed.
+   */
+  public void shutdown()
+  {
+    for( Stripe stripe: stripes) stripe.executor.shutdown();
+  }
+
+  /**
+   * Shutdown the stripes and wait for the tasks that have already been submitted to be executed.
+   * @param timeout The timeout in milliseconds.
+   * @return Returns true if all of the tasks were executed before the timeout.
+   */
+  public boolean shutdownAndWait( long timeout) throws InterruptedException
+  {
+    shutdown();
+
+    long deadline = System.currentTimeMillis() + timeout;
+    for( Stripe stripe: stripes)
+    {
+      long remaining = deadline - System.currentTimeMillis();
+      if ( remaining <= 0 || !stripe.executor.awaitTermination( remaining, TimeUnit.MILLISECONDS))
+      {
+        log.warn( "Timeout waiting for stripes to finish.");
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the stripe of the specified subtree.  The identity hash code of the subtree root is used, since the
+   * hash code of an element may depend on its content.
+   * @param root The root of the subtree.
+   * @return Returns the stripe.
+   */
+  private Stripe getStripe( IModelObject root)
+  {
+    int hash = System.identityHashCode( root);
+    hash ^= (hash >>> 16);
+    return stripes[ hash & mask];
+  }
+
+  private final static class Stripe implements Executor, ThreadFactory
+  {
+    public Stripe( ThreadFactory factory)
+    {
+      this.factory = factory;
+      this.executor = new ThreadPoolExecutor( 1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), this);
+
+      // the thread is created before the stripe is published
+      executor.prestartCoreThread();
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+     */
+    @Override
+    public Thread newThread( Runnable runnable)
+    {
+      // a thread that replaces a failed thread is recorded before it executes a task
+      Thread thread = factory.newThread( runnable);
+      this.thread = thread;
+      return thread;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+     */
+    @Override
+    public void execute( Runnable runnable)
+    {
+      executor.execute( runnable);
+    }
+
+    private final ThreadFactory factory;
+    public final ThreadPoolExecutor executor;
+    public volatile Thread thread;
+  }
+
+  private static Log log = Log.getLog( SubtreeExecutor.class);
+
+  private final Stripe[] stripes;
+  private final int mask;
+}
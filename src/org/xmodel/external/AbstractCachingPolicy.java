@@ -30,6 +30,9 @@ import org.xmodel.ModelAlgorithms;
 import org.xmodel.ModelObjectFactory;
 import org.xmodel.diff.IXmlDiffer;
 import org.xmodel.diff.XmlDiffer;
+import org.xmodel.storage.ColumnarStorageClass;
+import org.xmodel.storage.IStorageClass;
+import org.xmodel.storage.ValueStorageClass;
 import org.xmodel.xpath.expression.Context;
 import org.xmodel.xpath.expression.IExpression;
 
@@ -40,6 +43,13 @@ import org.xmodel.xpath.expression.IExpression;
  */
 public abstract class AbstractCachingPolicy implements ICachingPolicy
 {
+  /**
+   * True if the <code>update</code> method should apply its diff inside a batch update (see IModel.beginBatch),
+   * so that the node-set changes of bound expressions are delivered once when the update is complete.  If the
+   * diff fails, the changes which were applied before the failure are delivered before the exception is thrown.
+   */
+  public static boolean batchUpdates = false;
+  
   /**
    * Create an AbstractCachingPolicy which keeps everything in memory.
    */
@@ -144,7 +154,13 @@ public abstract class AbstractCachingPolicy implements ICachingPolicy
   public IExternalReference createExternalTree( IModelObject local, boolean dirty, IExternalReference proto)
   {
     IExternalReference external = (IExternalReference)proto.createObject( local.getType());
-    if ( dirty)
+    if ( local.getStorageClass() instanceof ColumnarStorageClass)
+    {
+      // transfer the row of the column table instead of copying attributes
+      transferRow( local, external, dirty);
+      if ( !dirty) applyNextStages( external, proto);
+    }
+    else if ( dirty)
     {
       // copy static attributes to reference which will become dirty
       for( String attrName: getStaticAttributes())
@@ -174,6 +190,28 @@ public abstract class AbstractCachingPolicy implements ICachingPolicy
     return external;
   }
 
+  /**
+   * Transfer the ColumnarStorageClass of the specified local object to the specified external reference.
+   * If the external reference will be dirty, then attributes which are not static are cleared.
+   * @param local The local object, which must have a ColumnarStorageClass and no children.
+   * @param external The newly created external reference.
+   * @param dirty True if the external reference will be dirty.
+   */
+  private void transferRow( IModelObject local, IExternalReference external, boolean dirty)
+  {
+    IStorageClass storageClass = ((ColumnarStorageClass)local.getStorageClass()).transfer( external);
+    local.setStorageClass( new ValueStorageClass());
+    
+    if ( dirty)
+    {
+      for( String attrName: storageClass.getAttributeNames())
+        if ( !isStaticAttribute( attrName))
+          storageClass.setAttribute( attrName, null);
+    }
+    
+    external.setStorageClass( storageClass);
+  }
+  
   /**
    * Apply the next stages to the specified subtree. This method transforms objects in the subtree
    * which should be, but are not yet, external references according to the next stages defined on
@@ -336,6 +374,8 @@ public abstract class AbstractCachingPolicy implements ICachingPolicy
     // turn off syncing while updating reference
     IModel model = GlobalSettings.getInstance().getModel();
     boolean syncLock = model.getSyncLock();
+    boolean batch = batchUpdates;
+    if ( batch) model.beginBatch();
     try
     {
       model.setSyncLock( true);
@@ -347,6 +387,7 @@ public abstract class AbstractCachingPolicy implements ICachingPolicy
     finally
     {
       model.setSyncLock( syncLock);
+      if ( batch) model.commitBatch();
     }
   }
 
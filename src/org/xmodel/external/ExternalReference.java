@@ -23,7 +23,7 @@ import org.xmodel.GlobalSettings;
 import org.xmodel.IModel;
 import org.xmodel.IModelObject;
 import org.xmodel.ModelObject;
-import org.xmodel.storage.CachingPolicyStorageClass;
+import org.xmodel.storage.ExtendedStorageClass;
 import org.xmodel.storage.ValueStorageClass;
 
 /**
@@ -37,7 +37,7 @@ public class ExternalReference extends ModelObject implements IExternalReference
    */
   public ExternalReference( String type)
   {
-    super( new CachingPolicyStorageClass( new ValueStorageClass()), type);
+    super( new ExtendedStorageClass( new ValueStorageClass()), type);
   }
   
   /* (non-Javadoc)
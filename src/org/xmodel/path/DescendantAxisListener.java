@@ -19,8 +19,11 @@
  */
 package org.xmodel.path;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.xmodel.BreadthFirstIterator;
 import org.xmodel.IModelObject;
+import org.xmodel.SubtreeListeners;
 
 
 /**
@@ -32,6 +35,10 @@ import org.xmodel.IModelObject;
  * marked with *). A listener chain whose next to last link is one of these axis listeners will not
  * be able to detect that fanout is required if the client adds an element on the axis during
  * notification.</b>
+ * <p>
+ * If SubtreeListeners is enabled when the chain is created, then a single subtree listener is installed on the
+ * object instead of a listener on each descendant.  Subtree listeners are not used by lazy chains, because a
+ * pending object must receive its own notifyDirty.
  */
 public class DescendantAxisListener extends FanoutListener
 {
@@ -45,6 +52,12 @@ public class DescendantAxisListener extends FanoutListener
    */
   protected void installListeners( IModelObject object)
   {
+    if ( subtree)
+    {
+      SubtreeListeners.addListener( object, this);
+      return;
+    }
+    
     BreadthFirstIterator iter = new BreadthFirstIterator( object);
     while( iter.hasNext())
     {
@@ -58,6 +71,12 @@ public class DescendantAxisListener extends FanoutListener
    */
   protected void uninstallListeners( IModelObject object)
   {
+    if ( subtree)
+    {
+      SubtreeListeners.removeListener( object, this);
+      return;
+    }
+    
     BreadthFirstIterator iter = new BreadthFirstIterator( object);
     while( iter.hasNext())
     {
@@ -81,16 +100,22 @@ public class DescendantAxisListener extends FanoutListener
   public void notifyAddChild( IModelObject parent, IModelObject child, int index)
   {
     // install next link (* see above)
-    BreadthFirstIterator iter = new BreadthFirstIterator( child);
-    while( iter.hasNext())
-    {
-      IModelObject descendant = (IModelObject)iter.next();
-      if ( fanoutElement.evaluate( null, null, descendant)) 
-        getNextListener().incrementalInstall( descendant);
-    }
+    for( IModelObject descendant: getFanout( child))
+      getNextListener().incrementalInstall( descendant);
     
     // install my listeners (* see above)
-    installListeners( child);
+    if ( !subtree) 
+    {
+      boolean wasLocked = lock();
+      try
+      {
+        installListeners( child);
+      }
+      finally
+      {
+        unlock( wasLocked);
+      }
+    }
   }
 
   /* (non-Javadoc)
@@ -100,15 +125,48 @@ public class DescendantAxisListener extends FanoutListener
   public void notifyRemoveChild( IModelObject parent, IModelObject child, int index)
   {
     // uninstall my listeners
-    uninstallListeners( child);
+    if ( !subtree) 
+    {
+      boolean wasLocked = lock();
+      try
+      {
+        uninstallListeners( child);
+      }
+      finally
+      {
+        unlock( wasLocked);
+      }
+    }
 
     // uninstall next link
-    BreadthFirstIterator iter = new BreadthFirstIterator( child);
-    while( iter.hasNext())
+    for( IModelObject descendant: getFanout( child))
+      getNextListener().incrementalUninstall( descendant);
+  }
+  
+  /**
+   * Returns the descendants of the specified child, including the child, which match the fanout element.
+   * @param child The child.
+   * @return Returns the matching descendants.
+   */
+  private List<IModelObject> getFanout( IModelObject child)
+  {
+    List<IModelObject> result = new ArrayList<IModelObject>();
+    boolean wasLocked = lock();
+    try
     {
-      IModelObject descendant = (IModelObject)iter.next();
-      if ( fanoutElement.evaluate( null, null, descendant)) 
-        getNextListener().incrementalUninstall( descendant);
+      BreadthFirstIterator iter = new BreadthFirstIterator( child);
+      while( iter.hasNext())
+      {
+        IModelObject descendant = (IModelObject)iter.next();
+        if ( fanoutElement.evaluate( null, null, descendant)) result.add( descendant);
+      }
     }
+    finally
+    {
+      unlock( wasLocked);
+    }
+    return result;
   }
+  
+  private final boolean subtree = SubtreeListeners.enabled && !lazy;
 }
@@ -19,9 +19,15 @@
  */
 package org.xmodel.path;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
+import org.xmodel.GlobalSettings;
+import org.xmodel.IAxis;
+import org.xmodel.IModel;
 import org.xmodel.IModelObject;
 import org.xmodel.IPathElement;
 import org.xmodel.xpath.PathElement;
@@ -30,6 +36,9 @@ import org.xmodel.xpath.expression.IContext;
 
 /**
  * A base implementation of IFanoutListener which does the fanout during install/uninstall.
+ * <p>
+ * If the listener chain is lazy (see ListenerChain.setLazy), the fanout from a dirty object on an axis below the
+ * object is deferred, and the object is recorded as pending until it is synced.
  */
 public abstract class FanoutListener extends ListenerChainLink
 {
@@ -38,6 +47,7 @@ public abstract class FanoutListener extends ListenerChainLink
     super( chain, chainIndex);
     IPathElement pathElement = chain.getPath().getPathElement( chainIndex);
     fanoutElement = new PathElement( pathElement.axis(), pathElement.type());
+    lazy = chain.isLazy() && (pathElement.axis() & deferredAxes) != 0;
   }
   
   /* (non-Javadoc)
@@ -47,11 +57,19 @@ public abstract class FanoutListener extends ListenerChainLink
   {
     // install listeners and do notification
     notifyAdd( list);
-    for ( IModelObject object: list) installListeners( object);
+    List<IModelObject> result;
+    boolean wasLocked = lock();
+    try
+    {
+      for ( IModelObject object: list) installListeners( object);
+      result = fanout( list, true);
+    }
+    finally
+    {
+      unlock( wasLocked);
+    }
     
     // install next link
-    IContext context = getListenerChain().getContext();
-    List<IModelObject> result = fanoutElement.query( context, list, null);
     IListenerChainLink nextListener = getNextListener();
     if ( result.size() > 0) nextListener.install( result);    
   }
@@ -62,11 +80,19 @@ public abstract class FanoutListener extends ListenerChainLink
   public void uninstall( List<IModelObject> list)
   {
     // uninstall listeners
-    for ( IModelObject object: list) uninstallListeners( object);
+    List<IModelObject> result;
+    boolean wasLocked = lock();
+    try
+    {
+      for ( IModelObject object: list) uninstallListeners( object);
+      result = fanout( list, false);
+    }
+    finally
+    {
+      unlock( wasLocked);
+    }
     
     // uninstall next link
-    IContext context = getListenerChain().getContext();
-    List<IModelObject> result = fanoutElement.query( context, list, null);
     IListenerChainLink nextListener = getNextListener();
     if ( result.size() > 0) nextListener.uninstall( result);    
 
@@ -99,14 +125,21 @@ public abstract class FanoutListener extends ListenerChainLink
     notifyAdd( list);
     
     // install next link
-    IContext context = getListenerChain().getContext();
     IListenerChainLink nextListener = getNextListener();
-    List<IModelObject> fanoutNodes = fanoutElement.query( context, list, null);
+    List<IModelObject> fanoutNodes = fanoutLocked( list, true);
     if ( fanoutNodes.size() > 0) nextListener.incrementalInstall( fanoutNodes);
 
     // install listeners after fanout to avoid specious notifications such as when an
     // IExternalReference is synced because of the fanout query above.
-    for( IModelObject object: list) installListeners( object);
+    boolean wasLocked = lock();
+    try
+    {
+      for( IModelObject object: list) installListeners( object);
+    }
+    finally
+    {
+      unlock( wasLocked);
+    }
   }
 
   /* (non-Javadoc)
@@ -115,18 +148,124 @@ public abstract class FanoutListener extends ListenerChainLink
   public void incrementalUninstall( List<IModelObject> list)
   {
     // uninstall listeners before fanout to avoid specious notifications
-    for( IModelObject object: list) uninstallListeners( object);
+    boolean wasLocked = lock();
+    try
+    {
+      for( IModelObject object: list) uninstallListeners( object);
+    }
+    finally
+    {
+      unlock( wasLocked);
+    }
     
     // uninstall next link
-    IContext context = getListenerChain().getContext();
     IListenerChainLink nextListener = getNextListener();
-    List<IModelObject> fanoutNodes = fanoutElement.query( context, list, null);
+    List<IModelObject> fanoutNodes = fanoutLocked( list, false);
     if ( fanoutNodes.size() > 0) nextListener.incrementalUninstall( fanoutNodes);
 
     // do notification
     notifyRemove( list);
   }
 
+  /**
+   * Returns the result of the fanout query for the specified objects.  If the listener is lazy, dirty objects
+   * are excluded from the query, and are added to the pending objects when the listener is being installed, or
+   * removed from the pending objects when the listener is being uninstalled.
+   * @param list The objects.
+   * @param install True if the listener is being installed.
+   * @return Returns the result of the fanout query.
+   */
+  private List<IModelObject> fanout( List<IModelObject> list, boolean install)
+  {
+    IContext context = getListenerChain().getContext();
+    if ( !lazy) return fanoutElement.query( context, list, null);
+    
+    List<IModelObject> ready = null;
+    for( int i=0; i<list.size(); i++)
+    {
+      IModelObject object = list.get( i);
+      boolean deferred = install? defer( object): (pending != null && pending.remove( object));
+      if ( deferred && ready == null)
+      {
+        ready = new ArrayList<IModelObject>( list.size());
+        ready.addAll( list.subList( 0, i));
+      }
+      else if ( !deferred && ready != null)
+      {
+        ready.add( object);
+      }
+    }
+    
+    if ( ready == null) ready = list;
+    if ( ready.size() == 0) return Collections.emptyList();
+    return fanoutElement.query( context, ready, null);
+  }
+  
+  /**
+   * Returns the result of the fanout query for the specified objects with the sync lock (see fanout).
+   * @param list The objects.
+   * @param install True if the listener is being installed.
+   * @return Returns the result of the fanout query.
+   */
+  private List<IModelObject> fanoutLocked( List<IModelObject> list, boolean install)
+  {
+    boolean wasLocked = lock();
+    try
+    {
+      return fanout( list, install);
+    }
+    finally
+    {
+      unlock( wasLocked);
+    }
+  }
+  
+  /**
+   * Add the specified object to the pending objects if it is dirty.  Pending objects are compared by identity,
+   * so that a reference and its referent are recorded separately.
+   * @param object The object.
+   * @return Returns true if the fanout from the object is deferred.
+   */
+  private boolean defer( IModelObject object)
+  {
+    if ( !object.isDirty()) return false;
+    if ( pending == null) pending = Collections.newSetFromMap( new IdentityHashMap<IModelObject, Boolean>());
+    pending.add( object);
+    return true;
+  }
+  
+  /**
+   * Set the sync lock if the listener is lazy, so that the traversal of the model during installation does not
+   * sync external references.
+   * @return Returns the previous state of the sync lock.
+   */
+  protected boolean lock()
+  {
+    if ( !lazy) return false;
+    IModel model = GlobalSettings.getInstance().getModel();
+    boolean wasLocked = model.getSyncLock();
+    model.setSyncLock( true);
+    return wasLocked;
+  }
+  
+  /**
+   * Restore the sync lock after a call to <code>lock</code>.
+   * @param wasLocked The value returned by <code>lock</code>.
+   */
+  protected void unlock( boolean wasLocked)
+  {
+    if ( !lazy) return;
+    GlobalSettings.getInstance().getModel().setSyncLock( wasLocked);
+  }
+  
+  /**
+   * @return Returns the number of objects whose fanout is deferred until they are synced.
+   */
+  public int getPendingCount()
+  {
+    return (pending != null)? pending.size(): 0;
+  }
+  
   /**
    * This method should be overridden to install the listeners in the model.
    * @param object The entry point into the model.
@@ -145,6 +284,13 @@ public abstract class FanoutListener extends ListenerChainLink
   @Override
   public void notifyDirty( IModelObject object, boolean dirty)
   {
+    // complete the installation of a lazy chain when a pending object is synced
+    if ( !dirty && pending != null && pending.remove( object))
+    {
+      List<IModelObject> fanoutNodes = fanoutLocked( Collections.singletonList( object), true);
+      if ( fanoutNodes.size() > 0) getNextListener().incrementalInstall( fanoutNodes);
+    }
+    
 //    if ( dirty)
 //    {
 //      // AbstractCachingPolicy is required to remove children when clearCache is called. Therefore, it is not
@@ -181,4 +327,8 @@ public abstract class FanoutListener extends ListenerChainLink
   }
 
   IPathElement fanoutElement;
+  final boolean lazy;
+  private Set<IModelObject> pending;
+  
+  private final static int deferredAxes = IAxis.CHILD | IAxis.ATTRIBUTE | IAxis.DESCENDANT | IAxis.NESTED;
 }
@@ -54,6 +54,12 @@ public interface IListenerChain
    */
   public IPathListener getPathListener();
 
+  /**
+   * Returns true if the chain was created while lazy binding was set (see ListenerChain.setLazy).
+   * @return Returns true if the chain is lazy.
+   */
+  public boolean isLazy();
+
   /**
    * Install the first link in the listener chain on the specified object.
    * @param object The object where the listener chain will be installed.
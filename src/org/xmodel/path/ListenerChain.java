@@ -48,6 +48,7 @@ public class ListenerChain implements IListenerChain
     this.context = context;
     this.listener = listener;
     this.installed = false;
+    this.lazy = chain.isLazy();
     
     // clone links
     IListenerChainLink[] links = chain.getLinks();
@@ -67,9 +68,37 @@ public class ListenerChain implements IListenerChain
     this.context = context;
     this.listener = listener;
     this.installed = false;
+    this.lazy = getLazy();
     buildListenerChain();
   }
   
+  /**
+   * Set whether the listener chains created by the current thread are lazy.  The links of a lazy chain do not
+   * fan out from a dirty object on the child, attribute, descendant or nested axis.  Instead, the object is
+   * recorded as pending, and the installation of the rest of the chain is completed when the object is synced
+   * for another reason.  Other fanout queries of a lazy chain are performed with the sync lock, so binding a
+   * lazy chain does not sync any external references.  Nodes beneath a pending object are not part of the
+   * initial node-set, and are reported with notifyAdd when the object is synced.  The flag is read once when a
+   * chain is created (see isLazy).
+   * @param lazy True if chains should be lazy.
+   * @return Returns the previous value.
+   */
+  public static boolean setLazy( boolean lazy)
+  {
+    boolean wasLazy = getLazy();
+    lazyFlag.set( lazy);
+    return wasLazy;
+  }
+  
+  /**
+   * @return Returns true if the listener chains created by the current thread are lazy.
+   */
+  public static boolean getLazy()
+  {
+    Boolean lazy = lazyFlag.get();
+    return lazy != null && lazy;
+  }
+  
   /* (non-Javadoc)
    * @see org.xmodel.path.IListenerChain#getListeners()
    */
@@ -95,6 +124,14 @@ public class ListenerChain implements IListenerChain
     return context;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.path.IListenerChain#isLazy()
+   */
+  public boolean isLazy()
+  {
+    return lazy;
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.path.IListenerChain#getPathListener()
    */
@@ -248,4 +285,7 @@ public class ListenerChain implements IListenerChain
   private IContext context;
   private IPathListener listener;
   private boolean installed;
+  private final boolean lazy;
+  
+  private static ThreadLocal<Boolean> lazyFlag = new ThreadLocal<Boolean>();
 }
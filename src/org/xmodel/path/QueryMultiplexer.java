@@ -0,0 +1,273 @@
+package org.xmodel.path;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.xmodel.IModelObject;
+import org.xmodel.IPath;
+import org.xmodel.IPathElement;
+import org.xmodel.IPathListener;
+import org.xmodel.IPredicate;
+import org.xmodel.PathListenerList;
+import org.xmodel.xpath.expression.Context;
+import org.xmodel.xpath.expression.ForExpression;
+import org.xmodel.xpath.expression.IContext;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.LetExpression;
+import org.xmodel.xpath.expression.PathExpression;
+import org.xmodel.xpath.expression.PredicateExpression;
+import org.xmodel.xpath.expression.VariableExpression;
+import org.xmodel.xpath.function.Function;
+
+/**
+ * An IPathListener which shares one listener chain between all of the PathExpression instances that bind the
+ * same path to the same context object.  The first binding installs a chain on the context object, and later
+ * bindings subscribe to the installed chain, so the number of listeners installed in the model depends on the
+ * number of distinct paths rather than the number of bindings.  The notifications for the leaves of the path are
+ * forwarded to each subscriber with the context of its binding.
+ * <p>
+ * Chains are shared per context object, not per tree: bindings of the same path to different objects of a tree
+ * still install separate chains.  A path is only shared if its predicates do not depend on the binding context,
+ * since the shared chain evaluates them in a context without a variable scope.  This means that they may not
+ * reference variables or call custom functions (see isContextFree).  Multiplexing is disabled by default and is enabled by setting
+ * the <code>enabled</code> flag before paths are bound.  Lazy bindings (see ListenerChain.setLazy) are not
+ * multiplexed.
+ */
+public final class QueryMultiplexer implements IPathListener
+{
+  /**
+   * True if bindings should be multiplexed.
+   */
+  public static boolean enabled = false;
+
+  private QueryMultiplexer( IPath path)
+  {
+    this.path = path;
+    this.spec = path.toString();
+    this.subscribers = new ArrayList<Subscriber>( 2);
+  }
+
+  /**
+   * Returns true if the specified listener of the specified path can share a listener chain.
+   * @param path The path.
+   * @param listener The listener.
+   * @return Returns true if the binding can be multiplexed.
+   */
+  public static boolean isShareable( IPath path, IPathListener listener)
+  {
+    if ( !enabled || ListenerChain.getLazy() || !(listener instanceof PathExpression)) return false;
+
+    for( int i=0; i<path.length(); i++)
+    {
+      IPathElement element = path.getPathElement( i);
+      if ( element.predicate() == null) continue;
+      if ( !(element.predicate() instanceof PredicateExpression)) return false;
+      if ( !isContextFree( (PredicateExpression)element.predicate())) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns true if the specified expression depends only on the context object, position and size of its 
+   * context, and not on the variable scope or other state of the context.  Expressions which declare or
+   * reference variables are rejected, as well as functions other than the standard XPath functions, since
+   * custom functions are free to use the context.
+   * @param expression The expression.
+   * @return Returns true if the expression can be evaluated with any context having the same object.
+   */
+  static boolean isContextFree( IExpression expression)
+  {
+    if ( expression instanceof VariableExpression) return false;
+    if ( expression instanceof LetExpression || expression instanceof ForExpression) return false;
+    
+    String name = expression.getClass().getName();
+    String packageName = name.substring( 0, name.lastIndexOf( '.'));
+    if ( expression instanceof Function)
+    {
+      if ( !packageName.equals( functionPackage)) return false;
+    }
+    else if ( !packageName.equals( expressionPackage))
+    {
+      return false;
+    }
+
+    if ( expression instanceof PathExpression)
+    {
+      IPath path = ((PathExpression)expression).getPath();
+      for( int i=0; i<path.length(); i++)
+      {
+        IPredicate predicate = path.getPathElement( i).predicate();
+        if ( predicate == null) continue;
+        if ( !(predicate instanceof PredicateExpression)) return false;
+        if ( !isContextFree( (PredicateExpression)predicate)) return false;
+      }
+    }
+
+    for( IExpression argument: expression.getArguments())
+      if ( !isContextFree( argument))
+        return false;
+
+    return true;
+  }
+
+  /**
+   * Subscribe the specified listener to the shared listener chain for the specified path on the context object,
+   * and install the chain if this is the first subscriber.
+   * @param path The path.
+   * @param context The context of the binding.
+   * @param listener The listener.
+   */
+  public static void addPathListener( IPath path, IContext context, IPathListener listener)
+  {
+    IModelObject object = context.getObject();
+    PathListenerList list = object.getPathListeners();
+    QueryMultiplexer multiplexer = findMultiplexer( list, path);
+    if ( multiplexer == null)
+    {
+      multiplexer = new QueryMultiplexer( path.clone());
+      multiplexer.subscribers.add( new Subscriber( path, context, listener));
+
+      multiplexer.chain = new ListenerChain( multiplexer.path, new Context( object), multiplexer);
+      multiplexer.chain.install( object);
+      list.addListenerChain( multiplexer.chain);
+    }
+    else if ( multiplexer.findSubscriber( context, listener) < 0)
+    {
+      multiplexer.subscribers.add( new Subscriber( path, context, listener));
+
+      // initial notification which would have been performed by installing a chain
+      List<IModelObject> nodes = path.query( context, null);
+      if ( nodes.size() > 0) listener.notifyAdd( context, path, path.length(), nodes);
+    }
+  }
+
+  /**
+   * Unsubscribe the specified listener from the shared listener chain for the specified path on the context
+   * object, and uninstall the chain if there are no more subscribers.
+   * @param path The path.
+   * @param context The context of the binding.
+   * @param listener The listener.
+   * @return Returns false if the listener was not subscribed.
+   */
+  public static boolean removePathListener( IPath path, IContext context, IPathListener listener)
+  {
+    IModelObject object = context.getObject();
+    PathListenerList list = object.getPathListeners();
+    QueryMultiplexer multiplexer = findMultiplexer( list, path);
+    if ( multiplexer == null) return false;
+
+    int index = multiplexer.findSubscriber( context, listener);
+    if ( index < 0) return false;
+
+    // final notification which would have been performed by uninstalling a chain
+    multiplexer.subscribers.remove( index);
+    List<IModelObject> nodes = path.query( context, null);
+    if ( nodes.size() > 0) listener.notifyRemove( context, path, path.length(), nodes);
+
+    if ( multiplexer.subscribers.size() == 0)
+    {
+      list.removeListenerChain( multiplexer.chain.getContext(), multiplexer);
+      multiplexer.chain.uninstall( object);
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns the multiplexer for the specified path in the specified list.
+   * @param list The path listeners of the context object.
+   * @param path The path.
+   * @return Returns null or the multiplexer.
+   */
+  private static QueryMultiplexer findMultiplexer( PathListenerList list, IPath path)
+  {
+    String spec = null;
+    for( IListenerChain chain: list.getListenerChains())
+    {
+      IPathListener listener = chain.getPathListener();
+      if ( listener instanceof QueryMultiplexer)
+      {
+        if ( spec == null) spec = path.toString();
+        QueryMultiplexer multiplexer = (QueryMultiplexer)listener;
+        if ( multiplexer.spec.equals( spec)) return multiplexer;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the index of the subscriber with the specified context and listener.
+   * @param context The context.
+   * @param listener The listener.
+   * @return Returns -1 or the index.
+   */
+  private int findSubscriber( IContext context, IPathListener listener)
+  {
+    for( int i=0; i<subscribers.size(); i++)
+    {
+      Subscriber subscriber = subscribers.get( i);
+      if ( subscriber.listener == listener && (subscriber.context == context || subscriber.context.equals( context)))
+        return i;
+    }
+    return -1;
+  }
+
+  /**
+   * @return Returns the number of bindings that share the listener chain.
+   */
+  public int getSubscriberCount()
+  {
+    return subscribers.size();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IPathListener#notifyAdd(org.xmodel.xpath.expression.IContext, org.xmodel.IPath, int, java.util.List)
+   */
+  public void notifyAdd( IContext context, IPath path, int pathIndex, List<IModelObject> nodes)
+  {
+    if ( pathIndex < path.length()) return;
+    for( Subscriber subscriber: subscribers.toArray( new Subscriber[ subscribers.size()]))
+      subscriber.listener.notifyAdd( subscriber.context, subscriber.path, subscriber.path.length(), nodes);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IPathListener#notifyRemove(org.xmodel.xpath.expression.IContext, org.xmodel.IPath, int, java.util.List)
+   */
+  public void notifyRemove( IContext context, IPath path, int pathIndex, List<IModelObject> nodes)
+  {
+    if ( pathIndex < path.length()) return;
+    for( Subscriber subscriber: subscribers.toArray( new Subscriber[ subscribers.size()]))
+      subscriber.listener.notifyRemove( subscriber.context, subscriber.path, subscriber.path.length(), nodes);
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString()
+  {
+    return spec+" ("+subscribers.size()+" subscribers)";
+  }
+
+  private final static class Subscriber
+  {
+    Subscriber( IPath path, IContext context, IPathListener listener)
+    {
+      this.path = path;
+      this.context = context;
+      this.listener = listener;
+    }
+
+    IPath path;
+    IContext context;
+    IPathListener listener;
+  }
+
+  private final static String expressionPackage = IExpression.class.getPackage().getName();
+  private final static String functionPackage = Function.class.getPackage().getName();
+
+  private IPath path;
+  private String spec;
+  private IListenerChain chain;
+  private List<Subscriber> subscribers;
+}
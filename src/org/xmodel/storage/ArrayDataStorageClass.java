@@ -0,0 +1,306 @@
+package org.xmodel.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListenerList;
+import org.xmodel.PathListenerList;
+import org.xmodel.external.ICachingPolicy;
+
+/**
+ * An IStorageClass that stores attributes in parallel arrays of symbols and values, plus children.  Attribute
+ * names are converted to symbols using the SymbolTable, so attributes are found by comparing integers.  This
+ * storage class is promoted to DataStorageClass when the number of attributes exceeds <i>maxAttributes</i>.
+ */
+public final class ArrayDataStorageClass implements IStorageClass
+{
+  /**
+   * Copy the data from the specified storage class.
+   * @param storageClass The storage class to be copied.
+   */
+  public ArrayDataStorageClass( SmallDataStorageClass storageClass)
+  {
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
+
+    symbols = new int[ 6];
+    values = new Object[ 6];
+    copy( storageClass.name1, storageClass.value1);
+    copy( storageClass.name2, storageClass.value2);
+    copy( storageClass.name3, storageClass.value3);
+  }
+
+  /**
+   * Copy the data from the specified storage class.
+   * @param storageClass The storage class to be copied.
+   */
+  public ArrayDataStorageClass( MediumDataStorageClass storageClass)
+  {
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
+
+    symbols = new int[ 6];
+    values = new Object[ 6];
+    copy( storageClass.name1, storageClass.value1);
+    copy( storageClass.name2, storageClass.value2);
+    copy( storageClass.name3, storageClass.value3);
+    children = storageClass.children;
+  }
+
+//  /* (non-Javadoc)
+//   * @see java.lang.Object#finalize()
+//   */
+//  @Override
+//  protected void finalize() throws Throwable
+//  {
+//    super.finalize();
+//    Statistics.decrement( this);
+//  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicyStorageClass()
+   */
+  @Override
+  public IStorageClass getCachingPolicyStorageClass()
+  {
+    return new ExtendedStorageClass( this);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildrenStorageClass()
+   */
+  @Override
+  public IStorageClass getChildrenStorageClass()
+  {
+    if ( children == null || children.size() < IndexedDataStorageClass.threshold) return this;
+    return new IndexedDataStorageClass( this);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttributeStorageClass(java.lang.String)
+   */
+  @Override
+  public IStorageClass getAttributeStorageClass( String name)
+  {
+    if ( count < maxAttributes || indexOf( SymbolTable.findSymbol( name)) >= 0) return this;
+    return new DataStorageClass( this);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getModelListenersStorageClass()
+  {
+    return new ExtendedStorageClass( this).getModelListenersStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getPathListenersStorageClass()
+  {
+    return new ExtendedStorageClass( this).getPathListenersStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setDirty(boolean)
+   */
+  @Override
+  public void setDirty( boolean dirty)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getDirty()
+   */
+  @Override
+  public boolean getDirty()
+  {
+    return false;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicy(org.xmodel.external.ICachingPolicy)
+   */
+  @Override
+  public void setCachingPolicy( ICachingPolicy cachingPolicy)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getCachingPolicy()
+   */
+  @Override
+  public ICachingPolicy getCachingPolicy()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildren()
+   */
+  @Override
+  public List<IModelObject> getChildren()
+  {
+    // children may be null coming from SmallDataStorageClass
+    if ( children == null) children = new ArrayList<IModelObject>( 3);
+    return children;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttribute(java.lang.String, java.lang.Object)
+   */
+  @Override
+  public Object setAttribute( String name, Object value)
+  {
+    if ( value == null)
+    {
+      int symbol = SymbolTable.findSymbol( name);
+      return (symbol >= 0)? remove( indexOf( symbol)): null;
+    }
+
+    int symbol = SymbolTable.getSymbol( name);
+    int index = indexOf( symbol);
+    if ( index >= 0)
+    {
+      Object old = values[ index];
+      values[ index] = value;
+      return old;
+    }
+
+    if ( count == symbols.length)
+    {
+      symbols = Arrays.copyOf( symbols, count * 2);
+      values = Arrays.copyOf( values, count * 2);
+    }
+
+    symbols[ count] = symbol;
+    values[ count++] = value;
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(java.lang.String)
+   */
+  @Override
+  public Object getAttribute( String name)
+  {
+    int index = indexOf( SymbolTable.findSymbol( name));
+    return (index >= 0)? values[ index]: null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    int index = indexOf( symbol);
+    return (index >= 0)? values[ index]: null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return Primitives.toDouble( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return Primitives.toLong( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeNames()
+   */
+  @Override
+  public Collection<String> getAttributeNames()
+  {
+    List<String> names = new ArrayList<String>( count);
+    for( int i=0; i<count; i++) names.add( SymbolTable.getName( symbols[ i]));
+    return names;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListeners()
+   */
+  @Override
+  public ModelListenerList getModelListeners()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListeners()
+   */
+  @Override
+  public PathListenerList getPathListeners()
+  {
+    return null;
+  }
+
+  /**
+   * Copy an attribute from a storage class with named slots.
+   * @param name Null or the name of the attribute.
+   * @param value The value of the attribute.
+   */
+  private void copy( String name, Object value)
+  {
+    if ( name == null) return;
+    symbols[ count] = SymbolTable.getSymbol( name);
+    values[ count++] = value;
+  }
+
+  /**
+   * Returns the index of the specified symbol.
+   * @param symbol The symbol.
+   * @return Returns -1 or the index of the specified symbol.
+   */
+  private int indexOf( int symbol)
+  {
+    for( int i=0; i<count; i++)
+      if ( symbols[ i] == symbol)
+        return i;
+    return -1;
+  }
+
+  /**
+   * Remove the attribute at the specified index preserving the order of the remaining attributes.
+   * @param index -1 or the index of the attribute.
+   * @return Returns null or the value of the attribute.
+   */
+  private Object remove( int index)
+  {
+    if ( index < 0) return null;
+    Object old = values[ index];
+    int moved = count - index - 1;
+    if ( moved > 0)
+    {
+      System.arraycopy( symbols, index+1, symbols, index, moved);
+      System.arraycopy( values, index+1, values, index, moved);
+    }
+    values[ --count] = null;
+    return old;
+  }
+
+  /**
+   * The number of attributes at which this storage class is promoted to DataStorageClass.
+   */
+  public final static int maxAttributes = 32;
+
+  protected int[] symbols;
+  protected Object[] values;
+  protected int count;
+  protected List<IModelObject> children;
+}
@@ -13,6 +13,7 @@ public class ByteArrayStorageClass implements IStorageClass
 {
   public ByteArrayStorageClass( IStorageClass storageClass, ByteArrayInputStream stream)
   {
+    if ( Statistics.enabled) Statistics.increment( this);
     this.storageClass = storageClass;
     this.stream = stream;
   }
@@ -146,6 +147,33 @@ public class ByteArrayStorageClass implements IStorageClass
     return storageClass.getAttribute( name);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return storageClass.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return storageClass.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return storageClass.getAttributeAsLong( attrName, defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.storage.IStorageClass#getAttributeNames()
    */
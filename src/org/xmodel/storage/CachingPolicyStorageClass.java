@@ -7,11 +7,16 @@ import org.xmodel.ModelListenerList;
 import org.xmodel.PathListenerList;
 import org.xmodel.external.ICachingPolicy;
 
+/**
+ * An IStorageClass that stores a caching policy and the dirty flag.
+ * @deprecated Use ExtendedStorageClass instead.
+ */
+@Deprecated
 public class CachingPolicyStorageClass implements IStorageClass
 {
   public CachingPolicyStorageClass( IStorageClass storageClass)
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.increment( this);
     this.storageClass = storageClass;
   }
  
@@ -127,6 +132,33 @@ public class CachingPolicyStorageClass implements IStorageClass
     return storageClass.getAttribute( name);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return storageClass.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return storageClass.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return storageClass.getAttributeAsLong( attrName, defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.storage.IStorageClass#getAttributeNames()
    */
@@ -0,0 +1,604 @@
+package org.xmodel.storage;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.xmodel.IModelObject;
+
+/**
+ * A table of attribute values stored by column that is shared by a set of homogeneous elements, such as the
+ * rows of a database table.  Each element stores its attributes in a ColumnarStorageClass, which is a
+ * flyweight that only holds the index of its row in this table.  Integral and floating-point columns are
+ * stored in primitive arrays, and string columns are dictionary-encoded.  A column whose values are not
+ * uniformly typed is stored in an array of objects.
+ * <p>
+ * Attributes that are not columns of the table may only be added by the last row of the table, which is
+ * the row that is being populated.  Any other row is promoted to a DataStorageClass when a new attribute
+ * or children are added.
+ * <p>
+ * The table maps each row index to the storage class of the row, which is also a weak reference to the element
+ * of the row, so that a row costs one small object in addition to its element.  The slot of a row is reclaimed
+ * when its element is promoted to a DataStorageClass, or when its element is garbage-collected.  Reclaimed slots
+ * are cleared and reused by new rows, so the columns do not grow when rows are replaced.  The dictionary of a
+ * string column counts the rows that use each string, and its unused strings are discarded.
+ */
+public final class ColumnTable
+{
+  public ColumnTable()
+  {
+    columns = new LinkedHashMap<String, Column>();
+    slots = new ColumnarStorageClass[ 0];
+    free = new int[ 0];
+    queue = new ReferenceQueue<IModelObject>();
+    last = -1;
+  }
+
+  /**
+   * Create a new row in this table for the specified element.
+   * @param element The element which will store its attributes in the row.
+   * @return Returns the storage class for the new row.
+   */
+  public ColumnarStorageClass createRow( IModelObject element)
+  {
+    expunge();
+    
+    int row = (freeCount > 0)? free[ --freeCount]: rows++;
+    ColumnarStorageClass storageClass = new ColumnarStorageClass( this, row, element, queue);
+    if ( row >= slots.length) slots = Arrays.copyOf( slots, grow( slots.length, row));
+    slots[ row] = storageClass;
+    last = row;
+    return storageClass;
+  }
+
+  /**
+   * Returns a storage class for the row of the specified storage class, which belongs to the specified element.
+   * The specified storage class must no longer be used.
+   * @param storageClass The storage class of the row.
+   * @param element The element to which the row is transferred.
+   * @return Returns the new storage class of the row.
+   */
+  protected ColumnarStorageClass transfer( ColumnarStorageClass storageClass, IModelObject element)
+  {
+    int row = storageClass.row;
+    ColumnarStorageClass transferred = new ColumnarStorageClass( this, row, element, queue);
+    slots[ row] = transferred;
+    storageClass.clear();
+    return transferred;
+  }
+
+  /**
+   * Replace the storage class of the specified element with a new row in this table.  The storage class of
+   * the element is only replaced if it stores nothing more than the element value.
+   * @param element A newly created element.
+   * @return Returns true if the element now stores its attributes in this table.
+   */
+  public boolean adopt( IModelObject element)
+  {
+    IStorageClass storageClass = element.getStorageClass();
+    if ( !(storageClass instanceof ValueStorageClass)) return false;
+
+    ColumnarStorageClass row = createRow( element);
+    Object value = ((ValueStorageClass)storageClass).value;
+    if ( value != null) row.setAttribute( "", value);
+
+    element.setStorageClass( row);
+    return true;
+  }
+
+  /**
+   * @return Returns the number of rows of this table that have not been reclaimed.
+   */
+  public int getRowCount()
+  {
+    expunge();
+    return rows - freeCount;
+  }
+
+  /**
+   * @return Returns the number of slots in the columns of this table, including reclaimed slots.
+   */
+  public int getCapacity()
+  {
+    return rows;
+  }
+
+  /**
+   * @return Returns the names of the columns of this table.
+   */
+  public Collection<String> getColumnNames()
+  {
+    return columns.keySet();
+  }
+
+  /**
+   * Returns true if the table has the specified column.
+   * @param name The name of the column.
+   * @return Returns true if the table has the specified column.
+   */
+  public boolean hasColumn( String name)
+  {
+    return columns.containsKey( name);
+  }
+
+  /**
+   * Returns true if the specified row is the last row that was created.
+   * @param row The row index.
+   * @return Returns true if the specified row is the last row that was created.
+   */
+  protected boolean isLastRow( int row)
+  {
+    return row == last;
+  }
+
+  /**
+   * Returns the value of a column in the specified row.
+   * @param row The row index.
+   * @param name The name of the column.
+   * @return Returns null or the value.
+   */
+  protected Object get( int row, String name)
+  {
+    Column column = columns.get( name);
+    return (column != null)? column.get( row): null;
+  }
+
+  /**
+   * Returns the value of a column in the specified row as a double.  Values in integral and floating-point
+   * columns are read from the primitive array of the column without boxing.
+   * @param row The row index.
+   * @param name The name of the column.
+   * @param defaultValue The value returned if the row does not have a numeric value in the column.
+   * @return Returns the value or the default value.
+   */
+  protected double getDouble( int row, String name, double defaultValue)
+  {
+    Column column = columns.get( name);
+    return (column != null)? column.getDouble( row, defaultValue): defaultValue;
+  }
+
+  /**
+   * Returns the value of a column in the specified row as a long.  Values in integral and floating-point
+   * columns are read from the primitive array of the column without boxing.
+   * @param row The row index.
+   * @param name The name of the column.
+   * @param defaultValue The value returned if the row does not have a numeric value in the column.
+   * @return Returns the value or the default value.
+   */
+  protected long getLong( int row, String name, long defaultValue)
+  {
+    Column column = columns.get( name);
+    return (column != null)? column.getLong( row, defaultValue): defaultValue;
+  }
+
+  /**
+   * Set the value of a column in the specified row, creating the column if necessary.
+   * @param row The row index.
+   * @param name The name of the column.
+   * @param value Null or the new value.
+   * @return Returns null or the previous value.
+   */
+  protected Object set( int row, String name, Object value)
+  {
+    Column column = columns.get( name);
+    if ( column == null)
+    {
+      if ( value == null) return null;
+      column = createColumn( value);
+      columns.put( name, column);
+    }
+    else if ( value != null && !column.accepts( value))
+    {
+      column = new ObjectColumn( column, rows);
+      columns.put( name, column);
+    }
+
+    return column.set( row, value);
+  }
+
+  /**
+   * Returns the names of the columns that have a value in the specified row.
+   * @param row The row index.
+   * @return Returns the names of the columns that have a value in the specified row.
+   */
+  protected List<String> getAttributeNames( int row)
+  {
+    List<String> names = new ArrayList<String>( columns.size());
+    for( Map.Entry<String, Column> entry: columns.entrySet())
+      if ( entry.getValue().get( row) != null)
+        names.add( entry.getKey());
+    return names;
+  }
+
+  /**
+   * Copy the values of the specified row into the specified map and clear the row.
+   * @param row The row index.
+   * @param map The map.
+   */
+  protected void release( int row, Map<String, Object> map)
+  {
+    for( Map.Entry<String, Column> entry: columns.entrySet())
+    {
+      Object value = entry.getValue().set( row, null);
+      if ( value != null) map.put( entry.getKey(), value);
+    }
+    
+    // the storage class of the row is no longer used
+    ColumnarStorageClass storageClass = slots[ row];
+    if ( storageClass != null) storageClass.clear();
+    reclaim( row);
+  }
+
+  /**
+   * Returns the number of strings in the dictionary of the specified column.
+   * @param name The name of the column.
+   * @return Returns -1 if the column is not a string column.
+   */
+  int getDictionarySize( String name)
+  {
+    Column column = columns.get( name);
+    return (column instanceof StringColumn)? ((StringColumn)column).lookup.size(): -1;
+  }
+
+  /**
+   * Reclaim the rows whose element has been garbage-collected.
+   */
+  private void expunge()
+  {
+    ColumnarStorageClass storageClass = (ColumnarStorageClass)queue.poll();
+    while( storageClass != null)
+    {
+      int row = storageClass.row;
+      if ( slots[ row] == storageClass)
+      {
+        for( Column column: columns.values()) column.set( row, null);
+        reclaim( row);
+      }
+      storageClass = (ColumnarStorageClass)queue.poll();
+    }
+  }
+
+  /**
+   * Add the specified row, which must be empty, to the free slots.
+   * @param row The row index.
+   */
+  private void reclaim( int row)
+  {
+    slots[ row] = null;
+    if ( row == last) last = -1;
+    if ( freeCount == free.length) free = Arrays.copyOf( free, grow( free.length, freeCount));
+    free[ freeCount++] = row;
+  }
+
+  /**
+   * Create a column suitable for storing the specified value.
+   * @param value The first value of the column.
+   * @return Returns the new column.
+   */
+  private static Column createColumn( Object value)
+  {
+    Class<?> kind = value.getClass();
+    if ( kind == Integer.class || kind == Long.class || kind == Short.class || kind == Byte.class) return new LongColumn( kind);
+    if ( kind == Double.class || kind == Float.class) return new DoubleColumn( kind);
+    if ( kind == String.class) return new StringColumn();
+    return new ObjectColumn();
+  }
+
+  /**
+   * Returns the new capacity of an array that must store the specified row.
+   * @param length The current length of the array.
+   * @param row The row index.
+   * @return Returns the new capacity.
+   */
+  private static int grow( int length, int row)
+  {
+    int capacity = (length == 0)? 16: length;
+    while( capacity <= row) capacity <<= 1;
+    return capacity;
+  }
+
+  private static abstract class Column
+  {
+    /**
+     * @return Returns true if the specified non-null value can be stored in this column.
+     */
+    public abstract boolean accepts( Object value);
+
+    /**
+     * @return Returns null or the value of the specified row.
+     */
+    public abstract Object get( int row);
+
+    /**
+     * @return Returns the value of the specified row as a double, or the default value.
+     */
+    public double getDouble( int row, double defaultValue)
+    {
+      return Primitives.toDouble( get( row), defaultValue);
+    }
+
+    /**
+     * @return Returns the value of the specified row as a long, or the default value.
+     */
+    public long getLong( int row, long defaultValue)
+    {
+      return Primitives.toLong( get( row), defaultValue);
+    }
+
+    /**
+     * Set the value of the specified row.
+     * @return Returns null or the previous value.
+     */
+    public abstract Object set( int row, Object value);
+  }
+
+  private static final class LongColumn extends Column
+  {
+    public LongColumn( Class<?> kind)
+    {
+      this.kind = kind;
+      this.values = new long[ 0];
+      this.present = new BitSet();
+    }
+
+    @Override
+    public boolean accepts( Object value)
+    {
+      return value.getClass() == kind;
+    }
+
+    @Override
+    public Object get( int row)
+    {
+      if ( !present.get( row)) return null;
+      long value = values[ row];
+      if ( kind == Integer.class) return Integer.valueOf( (int)value);
+      if ( kind == Long.class) return Long.valueOf( value);
+      if ( kind == Short.class) return Short.valueOf( (short)value);
+      return Byte.valueOf( (byte)value);
+    }
+
+    @Override
+    public double getDouble( int row, double defaultValue)
+    {
+      return present.get( row)? values[ row]: defaultValue;
+    }
+
+    @Override
+    public long getLong( int row, long defaultValue)
+    {
+      return present.get( row)? values[ row]: defaultValue;
+    }
+
+    @Override
+    public Object set( int row, Object value)
+    {
+      Object old = get( row);
+      if ( value == null)
+      {
+        present.clear( row);
+      }
+      else
+      {
+        if ( row >= values.length) values = Arrays.copyOf( values, grow( values.length, row));
+        values[ row] = ((Number)value).longValue();
+        present.set( row);
+      }
+      return old;
+    }
+
+    private Class<?> kind;
+    private long[] values;
+    private BitSet present;
+  }
+
+  private static final class DoubleColumn extends Column
+  {
+    public DoubleColumn( Class<?> kind)
+    {
+      this.kind = kind;
+      this.values = new double[ 0];
+      this.present = new BitSet();
+    }
+
+    @Override
+    public boolean accepts( Object value)
+    {
+      return value.getClass() == kind;
+    }
+
+    @Override
+    public Object get( int row)
+    {
+      if ( !present.get( row)) return null;
+      double value = values[ row];
+      if ( kind == Double.class) return Double.valueOf( value);
+      return Float.valueOf( (float)value);
+    }
+
+    @Override
+    public double getDouble( int row, double defaultValue)
+    {
+      return present.get( row)? values[ row]: defaultValue;
+    }
+
+    @Override
+    public long getLong( int row, long defaultValue)
+    {
+      return present.get( row)? (long)values[ row]: defaultValue;
+    }
+
+    @Override
+    public Object set( int row, Object value)
+    {
+      Object old = get( row);
+      if ( value == null)
+      {
+        present.clear( row);
+      }
+      else
+      {
+        if ( row >= values.length) values = Arrays.copyOf( values, grow( values.length, row));
+        values[ row] = ((Number)value).doubleValue();
+        present.set( row);
+      }
+      return old;
+    }
+
+    private Class<?> kind;
+    private double[] values;
+    private BitSet present;
+  }
+
+  private static final class StringColumn extends Column
+  {
+    public StringColumn()
+    {
+      codes = new int[ 0];
+      dictionary = new ArrayList<String>();
+      counts = new int[ 0];
+      unused = new int[ 0];
+      lookup = new HashMap<String, Integer>();
+    }
+
+    @Override
+    public boolean accepts( Object value)
+    {
+      if ( !(value instanceof String)) return false;
+
+      // stop dictionary-encoding when most values are distinct
+      return lookup.size() < maxDictionarySize || lookup.containsKey( value);
+    }
+
+    @Override
+    public Object get( int row)
+    {
+      if ( row >= codes.length) return null;
+      int code = codes[ row];
+      return (code == 0)? null: dictionary.get( code - 1);
+    }
+
+    @Override
+    public Object set( int row, Object value)
+    {
+      Object old = get( row);
+      int oldCode = (row < codes.length)? codes[ row]: 0;
+      if ( value == null)
+      {
+        if ( oldCode == 0) return null;
+        codes[ row] = 0;
+      }
+      else
+      {
+        Integer code = lookup.get( value);
+        if ( code == null) code = add( (String)value);
+        if ( code == oldCode) return old;
+
+        if ( row >= codes.length) codes = Arrays.copyOf( codes, grow( codes.length, row));
+        codes[ row] = code;
+        counts[ code - 1]++;
+      }
+      
+      if ( oldCode != 0 && --counts[ oldCode - 1] == 0) remove( oldCode);
+      return old;
+    }
+
+    /**
+     * Add the specified string to the dictionary, reusing the code of a discarded string if possible.
+     * @param value The string.
+     * @return Returns the code of the string.
+     */
+    private int add( String value)
+    {
+      int code;
+      if ( unusedCount > 0)
+      {
+        code = unused[ --unusedCount];
+        dictionary.set( code - 1, value);
+      }
+      else
+      {
+        dictionary.add( value);
+        code = dictionary.size();
+        if ( code > counts.length) counts = Arrays.copyOf( counts, grow( counts.length, code));
+      }
+      lookup.put( value, code);
+      return code;
+    }
+
+    /**
+     * Discard the string with the specified code, which is no longer used by any row.
+     * @param code The code.
+     */
+    private void remove( int code)
+    {
+      lookup.remove( dictionary.set( code - 1, null));
+      if ( unusedCount == unused.length) unused = Arrays.copyOf( unused, grow( unused.length, unusedCount));
+      unused[ unusedCount++] = code;
+    }
+
+    private final static int maxDictionarySize = 4096;
+
+    private int[] codes;
+    private List<String> dictionary;
+    private int[] counts;
+    private int[] unused;
+    private int unusedCount;
+    private Map<String, Integer> lookup;
+  }
+
+  private static final class ObjectColumn extends Column
+  {
+    public ObjectColumn()
+    {
+      values = new Object[ 0];
+    }
+
+    public ObjectColumn( Column column, int rows)
+    {
+      values = new Object[ grow( 0, rows)];
+      for( int i=0; i<rows; i++) values[ i] = column.get( i);
+    }
+
+    @Override
+    public boolean accepts( Object value)
+    {
+      return true;
+    }
+
+    @Override
+    public Object get( int row)
+    {
+      return (row < values.length)? values[ row]: null;
+    }
+
+    @Override
+    public Object set( int row, Object value)
+    {
+      if ( row >= values.length)
+      {
+        if ( value == null) return null;
+        values = Arrays.copyOf( values, grow( values.length, row));
+      }
+
+      Object old = values[ row];
+      values[ row] = value;
+      return old;
+    }
+
+    private Object[] values;
+  }
+
+  private Map<String, Column> columns;
+  private ColumnarStorageClass[] slots;
+  private ReferenceQueue<IModelObject> queue;
+  private int[] free;
+  private int freeCount;
+  private int rows;
+  private int last;
+}
@@ -0,0 +1,228 @@
+package org.xmodel.storage;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.List;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListenerList;
+import org.xmodel.PathListenerList;
+import org.xmodel.external.ICachingPolicy;
+
+/**
+ * An IStorageClass that stores attributes in a row of a ColumnTable.  This storage class is promoted to
+ * a DataStorageClass when children are added, or when an attribute that is not a column of the table is
+ * set on a row other than the last row of the table.  The storage class weakly references the element of
+ * the row, so that the table can reclaim the row when the element is garbage-collected.
+ */
+public final class ColumnarStorageClass extends WeakReference<IModelObject> implements IStorageClass
+{
+  /**
+   * Create a storage class for the specified row of the specified table.
+   * @param table The table.
+   * @param row The row index.
+   * @param element The element of the row.
+   * @param queue The queue of the table.
+   */
+  protected ColumnarStorageClass( ColumnTable table, int row, IModelObject element, ReferenceQueue<IModelObject> queue)
+  {
+    super( element, queue);
+    if ( Statistics.enabled) Statistics.increment( this);
+    this.table = table;
+    this.row = row;
+  }
+
+  /**
+   * Returns a storage class for the row of this storage class which belongs to the specified element.  This
+   * storage class must not be used afterwards.
+   * @param element The element to which the row is transferred.
+   * @return Returns the storage class for the element.
+   */
+  public ColumnarStorageClass transfer( IModelObject element)
+  {
+    return table.transfer( this, element);
+  }
+
+  /**
+   * @return Returns the table that stores the attributes.
+   */
+  public ColumnTable getTable()
+  {
+    return table;
+  }
+
+  /**
+   * @return Returns the index of the row in the table.
+   */
+  public int getRow()
+  {
+    return row;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicyStorageClass()
+   */
+  @Override
+  public IStorageClass getCachingPolicyStorageClass()
+  {
+    return new ExtendedStorageClass( this);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildrenStorageClass()
+   */
+  @Override
+  public IStorageClass getChildrenStorageClass()
+  {
+    return new DataStorageClass( this);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttributeStorageClass(java.lang.String)
+   */
+  @Override
+  public IStorageClass getAttributeStorageClass( String name)
+  {
+    if ( table.hasColumn( name) || table.isLastRow( row)) return this;
+    return new DataStorageClass( this);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getModelListenersStorageClass()
+  {
+    return new ExtendedStorageClass( this).getModelListenersStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getPathListenersStorageClass()
+  {
+    return new ExtendedStorageClass( this).getPathListenersStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setDirty(boolean)
+   */
+  @Override
+  public void setDirty( boolean dirty)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getDirty()
+   */
+  @Override
+  public boolean getDirty()
+  {
+    return false;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicy(org.xmodel.external.ICachingPolicy)
+   */
+  @Override
+  public void setCachingPolicy( ICachingPolicy cachingPolicy)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getCachingPolicy()
+   */
+  @Override
+  public ICachingPolicy getCachingPolicy()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildren()
+   */
+  @Override
+  public List<IModelObject> getChildren()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttribute(java.lang.String, java.lang.Object)
+   */
+  @Override
+  public Object setAttribute( String name, Object value)
+  {
+    if ( value != null && !table.hasColumn( name) && !table.isLastRow( row)) throw new IllegalStateException();
+    return table.set( row, name, value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(java.lang.String)
+   */
+  @Override
+  public Object getAttribute( String name)
+  {
+    return table.get( row, name);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return table.getDouble( row, attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return table.getLong( row, attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeNames()
+   */
+  @Override
+  public Collection<String> getAttributeNames()
+  {
+    return table.getAttributeNames( row);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListeners()
+   */
+  @Override
+  public ModelListenerList getModelListeners()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListeners()
+   */
+  @Override
+  public PathListenerList getPathListeners()
+  {
+    return null;
+  }
+
+  protected ColumnTable table;
+  protected int row;
+}
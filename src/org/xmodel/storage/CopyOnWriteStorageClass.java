@@ -0,0 +1,252 @@
+package org.xmodel.storage;
+
+import java.util.Collection;
+import java.util.List;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListenerList;
+import org.xmodel.PathListenerList;
+import org.xmodel.external.ICachingPolicy;
+
+/**
+ * An IStorageClass for a copy-on-write clone that reads the attributes of the element from which it was cloned.
+ * When the clone is written, when its children are accessed, or when its source is about to be written, the
+ * attributes of the source are copied into a new storage class and the children of the source are cloned with
+ * <code>SharedStorageClass.share</code>, so the subtree is copied one level at a time as it is accessed.
+ * @see SharedStorageClass
+ */
+public final class CopyOnWriteStorageClass implements IStorageClass
+{
+  /**
+   * Create a CopyOnWriteStorageClass.
+   * @param source The element from which the clone was created.
+   * @param owner The clone.
+   */
+  public CopyOnWriteStorageClass( IModelObject source, IModelObject owner)
+  {
+    if ( Statistics.enabled) Statistics.increment( this);
+    this.source = source;
+    this.owner = owner;
+  }
+
+  /**
+   * @return Returns the element from which the clone was created.
+   */
+  public IModelObject getSource()
+  {
+    return source;
+  }
+
+  /**
+   * Copy the attributes of the source and create clones of its children, and replace this storage class.  If
+   * this storage class has already been replaced, then the current storage class of the clone is returned.
+   * @return Returns the storage class that replaces this storage class.
+   */
+  public IStorageClass materialize()
+  {
+    if ( materialized) return owner.getStorageClass();
+    materialized = true;
+    
+    IStorageClass sourceStorageClass = source.getStorageClass();
+    IStorageClass data = sourceStorageClass;
+    if ( data instanceof SharedStorageClass) data = ((SharedStorageClass)data).getDelegate();
+
+    IStorageClass result = new ValueStorageClass();
+    for( String attrName: data.getAttributeNames())
+    {
+      result = result.getAttributeStorageClass( attrName);
+      result.setAttribute( attrName, data.getAttribute( attrName));
+    }
+
+    // the clone must replace this storage class before sharing the children of the source
+    owner.setStorageClass( result);
+    if ( sourceStorageClass instanceof SharedStorageClass)
+      ((SharedStorageClass)sourceStorageClass).removeClone( source, owner);
+
+    List<IModelObject> children = data.getChildren();
+    if ( children != null && children.size() > 0)
+    {
+      result = result.getChildrenStorageClass();
+      owner.setStorageClass( result);
+
+      for( int i=0; i<children.size(); i++)
+      {
+        IModelObject clone = SharedStorageClass.share( children.get( i));
+        clone.internal_setParent( owner);
+        result.getChildren().add( clone);
+      }
+
+      // promote to an indexed storage class if the children exceed the threshold
+      result = result.getChildrenStorageClass();
+      owner.setStorageClass( result);
+    }
+
+    if ( Statistics.enabled) Statistics.promote( this, result);
+    return result;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicyStorageClass()
+   */
+  @Override
+  public IStorageClass getCachingPolicyStorageClass()
+  {
+    return materialize().getCachingPolicyStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildrenStorageClass()
+   */
+  @Override
+  public IStorageClass getChildrenStorageClass()
+  {
+    return materialize().getChildrenStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttributeStorageClass(java.lang.String)
+   */
+  @Override
+  public IStorageClass getAttributeStorageClass( String name)
+  {
+    return materialize().getAttributeStorageClass( name);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getModelListenersStorageClass()
+  {
+    return materialize().getModelListenersStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getPathListenersStorageClass()
+  {
+    return materialize().getPathListenersStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setDirty(boolean)
+   */
+  @Override
+  public void setDirty( boolean dirty)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getDirty()
+   */
+  @Override
+  public boolean getDirty()
+  {
+    return false;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicy(org.xmodel.external.ICachingPolicy)
+   */
+  @Override
+  public void setCachingPolicy( ICachingPolicy cachingPolicy)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getCachingPolicy()
+   */
+  @Override
+  public ICachingPolicy getCachingPolicy()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildren()
+   */
+  @Override
+  public List<IModelObject> getChildren()
+  {
+    return materialize().getChildren();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttribute(java.lang.String, java.lang.Object)
+   */
+  @Override
+  public Object setAttribute( String name, Object value)
+  {
+    return materialize().getAttributeStorageClass( name).setAttribute( name, value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(java.lang.String)
+   */
+  @Override
+  public Object getAttribute( String name)
+  {
+    return source.getStorageClass().getAttribute( name);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return source.getStorageClass().getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return source.getStorageClass().getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return source.getStorageClass().getAttributeAsLong( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeNames()
+   */
+  @Override
+  public Collection<String> getAttributeNames()
+  {
+    return source.getStorageClass().getAttributeNames();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListeners()
+   */
+  @Override
+  public ModelListenerList getModelListeners()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListeners()
+   */
+  @Override
+  public PathListenerList getPathListeners()
+  {
+    return null;
+  }
+
+  private IModelObject source;
+  private IModelObject owner;
+  private boolean materialized;
+}
@@ -21,7 +21,7 @@ public final class DataStorageClass implements IStorageClass
    */
   public DataStorageClass( SmallDataStorageClass storageClass)
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
     
     attributes = new LinkedHashMap<String, Object>();
     attributes.put( storageClass.name1, storageClass.value1);
@@ -35,7 +35,7 @@ public final class DataStorageClass implements IStorageClass
    */
   public DataStorageClass( MediumDataStorageClass storageClass)
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
     
     attributes = new LinkedHashMap<String, Object>();
     attributes.put( storageClass.name1, storageClass.value1);
@@ -44,6 +44,32 @@ public final class DataStorageClass implements IStorageClass
     children = storageClass.children;
   }
   
+  /**
+   * Copy the data from the specified storage class.
+   * @param storageClass The storage class to be copied.
+   */
+  public DataStorageClass( ArrayDataStorageClass storageClass)
+  {
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
+    
+    attributes = new LinkedHashMap<String, Object>();
+    for( int i=0; i<storageClass.count; i++)
+      attributes.put( SymbolTable.getName( storageClass.symbols[ i]), storageClass.values[ i]);
+    children = storageClass.children;
+  }
+  
+  /**
+   * Copy the data from the specified storage class and release its row.
+   * @param storageClass The storage class to be copied.
+   */
+  public DataStorageClass( ColumnarStorageClass storageClass)
+  {
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
+    
+    attributes = new LinkedHashMap<String, Object>();
+    storageClass.table.release( storageClass.row, attributes);
+  }
+  
 //  /* (non-Javadoc)
 //   * @see java.lang.Object#finalize()
 //   */
@@ -60,7 +86,7 @@ public final class DataStorageClass implements IStorageClass
   @Override
   public IStorageClass getCachingPolicyStorageClass()
   {
-    return new CachingPolicyStorageClass( this);
+    return new ExtendedStorageClass( this);
   }
 
   /* (non-Javadoc)
@@ -69,7 +95,8 @@ public final class DataStorageClass implements IStorageClass
   @Override
   public IStorageClass getChildrenStorageClass()
   {
-    return this;
+    if ( children == null || children.size() < IndexedDataStorageClass.threshold) return this;
+    return new IndexedDataStorageClass( this);
   }
 
   /* (non-Javadoc)
@@ -87,7 +114,7 @@ public final class DataStorageClass implements IStorageClass
   @Override
   public IStorageClass getModelListenersStorageClass()
   {
-    return new ModelListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getModelListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -96,7 +123,7 @@ public final class DataStorageClass implements IStorageClass
   @Override
   public IStorageClass getPathListenersStorageClass()
   {
-    return new PathListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getPathListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -167,6 +194,33 @@ public final class DataStorageClass implements IStorageClass
     return attributes.get( name);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return Primitives.toDouble( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return Primitives.toLong( getAttribute( attrName), defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.storage.IStorageClass#getAttributeNames()
    */
@@ -0,0 +1,267 @@
+package org.xmodel.storage;
+
+import java.util.Collection;
+import java.util.List;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListenerList;
+import org.xmodel.PathListenerList;
+import org.xmodel.external.ICachingPolicy;
+
+/**
+ * An IStorageClass that adds model listeners, path listeners, a caching policy and the dirty flag to the storage
+ * class that it wraps.  Each extension is stored in a slot of a compact array that only contains the extensions
+ * that are present, and the index of a slot is computed from a bitmask of the extensions that are present.  The
+ * dirty flag is a bit of the mask, and a single extension is stored without an array.  Adding an extension grows
+ * the array in place, so the element is not re-wrapped, and promotions of the wrapped storage class are absorbed
+ * by this storage class.
+ */
+public final class ExtendedStorageClass implements IStorageClass
+{
+  public ExtendedStorageClass( IStorageClass storageClass)
+  {
+    if ( Statistics.enabled) Statistics.increment( this);
+    this.storageClass = storageClass;
+  }
+
+  /**
+   * @return Returns the storage class that stores the attributes and children.
+   */
+  public IStorageClass getDelegate()
+  {
+    return storageClass;
+  }
+
+  /**
+   * @return Returns the number of extension slots that are allocated.
+   */
+  public int getSlotCount()
+  {
+    return Integer.bitCount( mask & slotMask);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicyStorageClass()
+   */
+  @Override
+  public IStorageClass getCachingPolicyStorageClass()
+  {
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildrenStorageClass()
+   */
+  @Override
+  public IStorageClass getChildrenStorageClass()
+  {
+    storageClass = storageClass.getChildrenStorageClass();
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttributeStorageClass(java.lang.String)
+   */
+  @Override
+  public IStorageClass getAttributeStorageClass( String name)
+  {
+    storageClass = storageClass.getAttributeStorageClass( name);
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getModelListenersStorageClass()
+  {
+    if ( (mask & modelListenersBit) == 0) setSlot( modelListenersBit, new ModelListenerList());
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getPathListenersStorageClass()
+  {
+    if ( (mask & pathListenersBit) == 0) setSlot( pathListenersBit, new PathListenerList());
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setDirty(boolean)
+   */
+  @Override
+  public void setDirty( boolean dirty)
+  {
+    if ( dirty) mask |= dirtyBit; else mask &= ~dirtyBit;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getDirty()
+   */
+  @Override
+  public boolean getDirty()
+  {
+    return (mask & dirtyBit) != 0;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicy(org.xmodel.external.ICachingPolicy)
+   */
+  @Override
+  public void setCachingPolicy( ICachingPolicy cachingPolicy)
+  {
+    if ( cachingPolicy != null || (mask & cachingPolicyBit) != 0) setSlot( cachingPolicyBit, cachingPolicy);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getCachingPolicy()
+   */
+  @Override
+  public ICachingPolicy getCachingPolicy()
+  {
+    return (ICachingPolicy)getSlot( cachingPolicyBit);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildren()
+   */
+  @Override
+  public List<IModelObject> getChildren()
+  {
+    return storageClass.getChildren();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttribute(java.lang.String, java.lang.Object)
+   */
+  @Override
+  public Object setAttribute( String name, Object value)
+  {
+    return storageClass.setAttribute( name, value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(java.lang.String)
+   */
+  @Override
+  public Object getAttribute( String name)
+  {
+    return storageClass.getAttribute( name);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return storageClass.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return storageClass.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return storageClass.getAttributeAsLong( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeNames()
+   */
+  @Override
+  public Collection<String> getAttributeNames()
+  {
+    return storageClass.getAttributeNames();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListeners()
+   */
+  @Override
+  public ModelListenerList getModelListeners()
+  {
+    return (ModelListenerList)getSlot( modelListenersBit);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListeners()
+   */
+  @Override
+  public PathListenerList getPathListeners()
+  {
+    return (PathListenerList)getSlot( pathListenersBit);
+  }
+
+  /**
+   * Returns the content of the slot of the specified extension.
+   * @param bit The bit of the extension.
+   * @return Returns null or the content of the slot.
+   */
+  private Object getSlot( int bit)
+  {
+    if ( (mask & bit) == 0) return null;
+    if ( !(slots instanceof Object[])) return slots;
+    return ((Object[])slots)[ Integer.bitCount( mask & (bit - 1))];
+  }
+
+  /**
+   * Set the content of the slot of the specified extension, inserting the slot if necessary.  A single slot is
+   * stored without an array.  The slots are ordered by the bits of their extensions, so the slots that follow
+   * an inserted slot are shifted.
+   * @param bit The bit of the extension.
+   * @param value The content of the slot.
+   */
+  private void setSlot( int bit, Object value)
+  {
+    int count = Integer.bitCount( mask & slotMask);
+    int index = Integer.bitCount( mask & (bit - 1));
+    if ( (mask & bit) != 0)
+    {
+      if ( count == 1) slots = value; else ((Object[])slots)[ index] = value;
+    }
+    else if ( count == 0)
+    {
+      slots = value;
+      mask |= bit;
+    }
+    else
+    {
+      Object[] array = new Object[ count + 1];
+      if ( count == 1)
+      {
+        array[ 1 - index] = slots;
+      }
+      else
+      {
+        System.arraycopy( slots, 0, array, 0, index);
+        System.arraycopy( slots, index, array, index + 1, count - index);
+      }
+      array[ index] = value;
+      slots = array;
+      mask |= bit;
+    }
+  }
+
+  private final static int modelListenersBit = 0x01;
+  private final static int pathListenersBit = 0x02;
+  private final static int cachingPolicyBit = 0x04;
+  private final static int slotMask = 0x07;
+  private final static int dirtyBit = 0x80;
+
+  protected IStorageClass storageClass;
+  private Object slots;
+  private int mask;
+}
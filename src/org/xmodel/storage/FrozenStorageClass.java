@@ -0,0 +1,219 @@
+package org.xmodel.storage;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListenerList;
+import org.xmodel.PathListenerList;
+import org.xmodel.external.ICachingPolicy;
+
+/**
+ * An immutable IStorageClass for the elements of a sealed subtree.  The attributes and children are stored in
+ * final fields, and children lists larger than the index threshold are stored in a sealed IndexedChildList whose
+ * indexes are built eagerly, so the storage class can be read by any number of threads without synchronization.
+ * All methods that would modify the storage class throw UnsupportedOperationException.
+ * @see org.xmodel.FrozenObject
+ */
+public final class FrozenStorageClass implements IStorageClass
+{
+  /**
+   * Create a FrozenStorageClass.
+   * @param names The attribute names.
+   * @param values The attribute values in the same order as the names.
+   * @param children Null or the children.
+   */
+  public FrozenStorageClass( String[] names, Object[] values, IModelObject[] children)
+  {
+    if ( Statistics.enabled) Statistics.increment( this);
+    this.names = names;
+    this.values = values;
+    this.attrNames = Collections.unmodifiableList( Arrays.asList( names));
+
+    if ( children == null || children.length == 0)
+    {
+      this.children = null;
+    }
+    else if ( children.length < IndexedDataStorageClass.threshold)
+    {
+      this.children = Collections.unmodifiableList( Arrays.asList( children));
+    }
+    else
+    {
+      IndexedChildList list = new IndexedChildList( Arrays.asList( children));
+      list.seal();
+      this.children = list;
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicyStorageClass()
+   */
+  @Override
+  public IStorageClass getCachingPolicyStorageClass()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildrenStorageClass()
+   */
+  @Override
+  public IStorageClass getChildrenStorageClass()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttributeStorageClass(java.lang.String)
+   */
+  @Override
+  public IStorageClass getAttributeStorageClass( String name)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getModelListenersStorageClass()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getPathListenersStorageClass()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setDirty(boolean)
+   */
+  @Override
+  public void setDirty( boolean dirty)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getDirty()
+   */
+  @Override
+  public boolean getDirty()
+  {
+    return false;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicy(org.xmodel.external.ICachingPolicy)
+   */
+  @Override
+  public void setCachingPolicy( ICachingPolicy cachingPolicy)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getCachingPolicy()
+   */
+  @Override
+  public ICachingPolicy getCachingPolicy()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildren()
+   */
+  @Override
+  public List<IModelObject> getChildren()
+  {
+    return children;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttribute(java.lang.String, java.lang.Object)
+   */
+  @Override
+  public Object setAttribute( String name, Object value)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(java.lang.String)
+   */
+  @Override
+  public Object getAttribute( String name)
+  {
+    for( int i=0; i<names.length; i++)
+      if ( names[ i].equals( name))
+        return values[ i];
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return Primitives.toDouble( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return Primitives.toLong( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeNames()
+   */
+  @Override
+  public Collection<String> getAttributeNames()
+  {
+    return attrNames;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListeners()
+   */
+  @Override
+  public ModelListenerList getModelListeners()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListeners()
+   */
+  @Override
+  public PathListenerList getPathListeners()
+  {
+    return null;
+  }
+
+  private final String[] names;
+  private final Object[] values;
+  private final List<String> attrNames;
+  private final List<IModelObject> children;
+}
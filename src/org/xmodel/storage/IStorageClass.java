@@ -89,6 +89,31 @@ public interface IStorageClass
    */
   public Object getAttribute( String attrName);
 
+  /**
+   * Get the value of an attribute by its symbol in the SymbolTable.
+   * @param symbol The symbol of the attribute name.
+   * @return Returns null or the value of the attribute.
+   */
+  public Object getAttribute( int symbol);
+
+  /**
+   * Get the value of an attribute as a double.  Storage classes that store numeric attributes in
+   * primitive slots return the value without boxing.
+   * @param attrName The name of the attribute.
+   * @param defaultValue The value returned if the attribute does not exist or is not numeric.
+   * @return Returns the value of the attribute or the default value.
+   */
+  public double getAttributeAsDouble( String attrName, double defaultValue);
+
+  /**
+   * Get the value of an attribute as a long.  Storage classes that store numeric attributes in
+   * primitive slots return the value without boxing.
+   * @param attrName The name of the attribute.
+   * @param defaultValue The value returned if the attribute does not exist or is not numeric.
+   * @return Returns the value of the attribute or the default value.
+   */
+  public long getAttributeAsLong( String attrName, long defaultValue);
+
   /**
    * Return a collection containing the names of all attributes on this object.
    * @return Returns the names of all the attributes.
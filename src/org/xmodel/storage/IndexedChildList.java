@@ -0,0 +1,711 @@
+package org.xmodel.storage;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import org.xmodel.IModelObject;
+import org.xmodel.xpath.function.StringFunction;
+
+/**
+ * A list of children that maintains an index of the children by type, and a lazily created index of the
+ * children of a type by the value of their <i>id</i> attribute.  All modifications of the list, including
+ * those performed by mementos, pass through the <code>add</code>, <code>remove</code> and <code>set</code>
+ * methods, so the index is always consistent with the list.  Changes to the <i>id</i> attribute of a child
+ * must be reported by calling the <code>updateId</code> method.  A list that has been sealed rejects
+ * modifications.
+ * <p>
+ * The children with each id are kept in document order, so removing a child does not scan its siblings.  The
+ * attributes of a Reference belong to its referent, whose changes are not reported to this list, so references
+ * are never indexed by attribute.  Lookups by attribute among the children of a type that includes a reference
+ * scan the children of the type instead.
+ * <p>
+ * In addition, secondary indexes of the children of a type by the string-value of an attribute may be declared
+ * globally with <code>addIndex</code>.  A secondary index is created the first time it is queried and is then
+ * maintained incrementally.  Changes to an indexed attribute must be reported by calling the
+ * <code>updateAttribute</code> method.
+ */
+public final class IndexedChildList extends AbstractList<IModelObject> implements RandomAccess
+{
+  /**
+   * Create an index containing the specified children.
+   * @param children The initial children.
+   */
+  public IndexedChildList( List<IModelObject> children)
+  {
+    this.children = new ArrayList<IModelObject>( (children != null)? children: Collections.<IModelObject>emptyList());
+    this.types = new HashMap<String, List<IModelObject>>();
+
+    for( IModelObject child: this.children)
+    {
+      getTypeList( child.getType(), true).add( child);
+      if ( isReference( child)) countReference( child.getType(), 1);
+    }
+  }
+
+  /**
+   * Returns the children with the specified type in document order.  The returned list must not be modified.
+   * @param type The type.
+   * @return Returns the children with the specified type.
+   */
+  public List<IModelObject> getChildren( String type)
+  {
+    List<IModelObject> list = types.get( type);
+    if ( list == null) return Collections.emptyList();
+    return list;
+  }
+
+  /**
+   * Returns the first child with the specified type.
+   * @param type The type.
+   * @return Returns null or the first child with the specified type.
+   */
+  public IModelObject getFirstChild( String type)
+  {
+    List<IModelObject> list = types.get( type);
+    return (list != null)? list.get( 0): null;
+  }
+
+  /**
+   * Returns the first child with the specified type and id.
+   * @param type The type.
+   * @param id The value of the id attribute.
+   * @return Returns null or the first child with the specified type and id.
+   */
+  public IModelObject getChild( String type, Object id)
+  {
+    if ( id == null) return null;
+    if ( hasReferences( type)) return findFirst( type, id);
+    
+    Map<Object, List<IModelObject>> map = getIdMap( type);
+    List<IModelObject> bucket = (map != null)? map.get( id): null;
+    return (bucket != null)? bucket.get( 0): null;
+  }
+
+  /**
+   * @return Returns the number of children with the specified type.
+   */
+  public int getNumberOfChildren( String type)
+  {
+    List<IModelObject> list = types.get( type);
+    return (list != null)? list.size(): 0;
+  }
+
+  /**
+   * @return Returns the types of the children.
+   */
+  public Set<String> getTypes()
+  {
+    return types.keySet();
+  }
+
+  /**
+   * Declare a secondary index of the children with the specified type by the value of the specified attribute.
+   * The index is created in each IndexedChildList that contains children of the type when it is first queried.
+   * Only attributes can be indexed, so a predicate that compares a child element of the children, such as
+   * <i>[name = 'foo']</i>, does not use the index.
+   * @param type The type of the children.
+   * @param attrName The name of the attribute.
+   */
+  public static synchronized void addIndex( String type, String attrName)
+  {
+    Map<String, Set<String>> map = new HashMap<String, Set<String>>( declared);
+    Set<String> attrNames = new HashSet<String>();
+    if ( map.containsKey( type)) attrNames.addAll( map.get( type));
+    attrNames.add( attrName);
+    map.put( type, attrNames);
+    declared = map;
+  }
+
+  /**
+   * Remove the declaration of a secondary index.  Indexes that have already been created are discarded when the
+   * list is cleared.
+   * @param type The type of the children.
+   * @param attrName The name of the attribute.
+   */
+  public static synchronized void removeIndex( String type, String attrName)
+  {
+    Set<String> existing = declared.get( type);
+    if ( existing == null || !existing.contains( attrName)) return;
+
+    Map<String, Set<String>> map = new HashMap<String, Set<String>>( declared);
+    Set<String> attrNames = new HashSet<String>( existing);
+    attrNames.remove( attrName);
+    if ( attrNames.size() == 0) map.remove( type); else map.put( type, attrNames);
+    declared = map;
+  }
+
+  /**
+   * Returns true if a secondary index has been declared for the specified type and attribute.
+   * @param type The type of the children.
+   * @param attrName The name of the attribute.
+   * @return Returns true if a secondary index has been declared.
+   */
+  public static boolean isIndexed( String type, String attrName)
+  {
+    Map<String, Set<String>> map = declared;
+    if ( map.size() == 0) return false;
+    Set<String> attrNames = map.get( type);
+    return attrNames != null && attrNames.contains( attrName);
+  }
+
+  /**
+   * Returns the children with the specified type whose attribute has the specified string-value, in document
+   * order, using a secondary index.  The returned list must not be modified.
+   * @param type The type.
+   * @param attrName The name of the attribute.
+   * @param value The string-value of the attribute.
+   * @return Returns null if a secondary index has not been declared, otherwise the matching children.
+   */
+  public List<IModelObject> getChildren( String type, String attrName, String value)
+  {
+    if ( !isIndexed( type, attrName) || hasReferences( type)) return null;
+
+    AttributeIndex index = getAttributeIndex( type, attrName, !sealed);
+    if ( index == null) return sealed? null: Collections.<IModelObject>emptyList();
+
+    List<IModelObject> list = index.values.get( value);
+    if ( index.stale != null && index.stale.remove( value))
+    {
+      list = null;
+      for( IModelObject child: getChildren( type))
+      {
+        if ( !isReference( child) && value.equals( key( child.getAttribute( attrName))))
+        {
+          if ( list == null) list = new ArrayList<IModelObject>( 2);
+          list.add( child);
+        }
+      }
+      if ( list != null) index.values.put( value, list); else index.values.remove( value);
+      if ( index.stale.size() == 0) index.stale = null;
+    }
+
+    if ( list == null) return Collections.emptyList();
+    return list;
+  }
+
+  /**
+   * Build the id index of every type and reject subsequent modifications, so that the list can be read by
+   * any number of threads without synchronization once it has been safely published.
+   */
+  public void seal()
+  {
+    for( String type: types.keySet()) 
+    {
+      getIdMap( type);
+      Set<String> attrNames = declared.get( type);
+      if ( attrNames != null) for( String attrName: attrNames) getAttributeIndex( type, attrName, true);
+    }
+    sealed = true;
+  }
+
+  /**
+   * Update the id index after the id attribute of the specified child has changed.
+   * @param child The child.
+   * @param oldId The previous value of the id attribute.
+   * @param newId The new value of the id attribute.
+   */
+  public void updateId( IModelObject child, Object oldId, Object newId)
+  {
+    if ( sealed) throw new UnsupportedOperationException();
+    if ( ids == null || isReference( child)) return;
+
+    Map<Object, List<IModelObject>> map = ids.get( child.getType());
+    if ( map == null) return;
+
+    if ( oldId != null) unindexId( map, child, oldId);
+    if ( newId != null) indexId( map, child, newId, false);
+  }
+
+  /**
+   * Update the id index and the secondary indexes after an attribute of the specified child has changed.
+   * @param child The child.
+   * @param attrName The name of the attribute.
+   * @param oldValue The previous value of the attribute.
+   * @param newValue The new value of the attribute.
+   */
+  public void updateAttribute( IModelObject child, String attrName, Object oldValue, Object newValue)
+  {
+    if ( attrName.equals( "id")) updateId( child, oldValue, newValue);
+
+    if ( attrs == null || isReference( child)) return;
+    AttributeIndex index = getAttributeIndex( child.getType(), attrName, false);
+    if ( index == null) return;
+
+    String oldKey = key( oldValue);
+    if ( oldKey != null) index.remove( child, oldKey);
+
+    // the position of the child among the children with the new value is not known
+    String newKey = key( newValue);
+    if ( newKey != null) index.invalidate( newKey);
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.AbstractList#get(int)
+   */
+  @Override
+  public IModelObject get( int index)
+  {
+    return children.get( index);
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size()
+  {
+    return children.size();
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.AbstractList#add(int, java.lang.Object)
+   */
+  @Override
+  public void add( int index, IModelObject child)
+  {
+    if ( sealed) throw new UnsupportedOperationException();
+    
+    boolean append = index == children.size();
+    children.add( index, child);
+    modCount++;
+
+    String type = child.getType();
+    List<IModelObject> list = getTypeList( type, true);
+    if ( append) list.add( child); else list.add( countPreceding( type, index), child);
+    
+    if ( isReference( child))
+    {
+      countReference( type, 1);
+      return;
+    }
+
+    if ( ids != null)
+    {
+      Map<Object, List<IModelObject>> map = ids.get( type);
+      if ( map != null)
+      {
+        Object id = child.getAttribute( "id");
+        if ( id != null) indexId( map, child, id, append);
+      }
+    }
+
+    if ( attrs != null)
+    {
+      List<AttributeIndex> indexes = attrs.get( type);
+      if ( indexes != null)
+      {
+        for( AttributeIndex attrIndex: indexes)
+        {
+          String key = key( child.getAttribute( attrIndex.attrName));
+          if ( key == null) continue;
+          if ( append) attrIndex.append( child, key); else attrIndex.invalidate( key);
+        }
+      }
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.AbstractList#remove(int)
+   */
+  @Override
+  public IModelObject remove( int index)
+  {
+    if ( sealed) throw new UnsupportedOperationException();
+    
+    IModelObject child = children.remove( index);
+    modCount++;
+
+    String type = child.getType();
+    List<IModelObject> list = getTypeList( type, false);
+    if ( list != null)
+    {
+      removeIdentity( list, child);
+      if ( list.size() == 0) types.remove( type);
+    }
+    
+    boolean empty = list == null || list.size() == 0;
+    if ( isReference( child))
+    {
+      countReference( type, -1);
+      if ( !empty) return child;
+    }
+
+    if ( ids != null)
+    {
+      Map<Object, List<IModelObject>> map = ids.get( type);
+      if ( map != null)
+      {
+        if ( empty)
+        {
+          ids.remove( type);
+        }
+        else
+        {
+          Object id = child.getAttribute( "id");
+          if ( id != null) unindexId( map, child, id);
+        }
+      }
+    }
+
+    if ( attrs != null)
+    {
+      List<AttributeIndex> indexes = attrs.get( type);
+      if ( indexes != null)
+      {
+        if ( list == null || list.size() == 0)
+        {
+          attrs.remove( type);
+        }
+        else
+        {
+          for( AttributeIndex attrIndex: indexes)
+          {
+            String key = key( child.getAttribute( attrIndex.attrName));
+            if ( key != null) attrIndex.remove( child, key);
+          }
+        }
+      }
+    }
+
+    return child;
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.AbstractList#set(int, java.lang.Object)
+   */
+  @Override
+  public IModelObject set( int index, IModelObject child)
+  {
+    IModelObject old = remove( index);
+    add( index, child);
+    return old;
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.AbstractList#clear()
+   */
+  @Override
+  public void clear()
+  {
+    if ( sealed) throw new UnsupportedOperationException();
+    
+    children.clear();
+    types.clear();
+    references = null;
+    ids = null;
+    attrs = null;
+    modCount++;
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.AbstractList#indexOf(java.lang.Object)
+   */
+  @Override
+  public int indexOf( Object object)
+  {
+    return children.indexOf( object);
+  }
+
+  /* (non-Javadoc)
+   * @see java.util.AbstractList#lastIndexOf(java.lang.Object)
+   */
+  @Override
+  public int lastIndexOf( Object object)
+  {
+    return children.lastIndexOf( object);
+  }
+
+  /**
+   * Returns the list of children with the specified type.
+   * @param type The type.
+   * @param create True if the list should be created.
+   * @return Returns null or the list of children with the specified type.
+   */
+  private List<IModelObject> getTypeList( String type, boolean create)
+  {
+    List<IModelObject> list = types.get( type);
+    if ( list == null && create)
+    {
+      list = new ArrayList<IModelObject>( 4);
+      types.put( type, list);
+    }
+    return list;
+  }
+
+  /**
+   * Returns true if the specified child is a reference, whose attributes are not indexed.
+   * @param child The child.
+   * @return Returns true if the child is a reference.
+   */
+  private static boolean isReference( IModelObject child)
+  {
+    return child.getReferent() != child;
+  }
+  
+  /**
+   * Update the number of references with the specified type.
+   * @param type The type.
+   * @param delta The change in the number of references.
+   */
+  private void countReference( String type, int delta)
+  {
+    if ( references == null) references = new HashMap<String, Integer>( 2);
+    Integer count = references.get( type);
+    int result = ((count != null)? count: 0) + delta;
+    if ( result > 0) references.put( type, result); else references.remove( type);
+  }
+  
+  /**
+   * Returns true if any of the children with the specified type are references.
+   * @param type The type.
+   * @return Returns true if the type has references.
+   */
+  private boolean hasReferences( String type)
+  {
+    return references != null && references.containsKey( type);
+  }
+
+  /**
+   * Returns the id index for the specified type, creating it if necessary.
+   * @param type The type.
+   * @return Returns null or the id index.
+   */
+  private Map<Object, List<IModelObject>> getIdMap( String type)
+  {
+    List<IModelObject> list = types.get( type);
+    if ( list == null) return null;
+
+    if ( ids == null) ids = new HashMap<String, Map<Object, List<IModelObject>>>();
+    Map<Object, List<IModelObject>> map = ids.get( type);
+    if ( map == null)
+    {
+      map = new HashMap<Object, List<IModelObject>>( list.size() * 2);
+      for( IModelObject child: list)
+      {
+        if ( isReference( child)) continue;
+        Object id = child.getAttribute( "id");
+        if ( id != null) indexId( map, child, id, true);
+      }
+      ids.put( type, map);
+    }
+    return map;
+  }
+
+  /**
+   * Returns the secondary index for the specified type and attribute.
+   * @param type The type.
+   * @param attrName The name of the attribute.
+   * @param create True if the index should be created.
+   * @return Returns null or the secondary index.
+   */
+  private AttributeIndex getAttributeIndex( String type, String attrName, boolean create)
+  {
+    List<AttributeIndex> indexes = (attrs != null)? attrs.get( type): null;
+    if ( indexes != null)
+    {
+      for( AttributeIndex index: indexes)
+        if ( index.attrName.equals( attrName))
+          return index;
+    }
+
+    List<IModelObject> list = types.get( type);
+    if ( !create || list == null) return null;
+
+    AttributeIndex index = new AttributeIndex( attrName);
+    for( IModelObject child: list)
+    {
+      if ( isReference( child)) continue;
+      String key = key( child.getAttribute( attrName));
+      if ( key != null) index.append( child, key);
+    }
+
+    if ( attrs == null) attrs = new HashMap<String, List<AttributeIndex>>();
+    if ( indexes == null)
+    {
+      indexes = new ArrayList<AttributeIndex>( 1);
+      attrs.put( type, indexes);
+    }
+    indexes.add( index);
+    return index;
+  }
+
+  /**
+   * Returns the key of the specified attribute value in a secondary index, which is the string-value of the
+   * attribute as defined by StringFunction.
+   * @param value Null or the value of the attribute.
+   * @return Returns null or the key.
+   */
+  private static String key( Object value)
+  {
+    return StringFunction.stringValueOf( value);
+  }
+
+  /**
+   * Add the specified child to the children with the same id in the id index, in document order.
+   * @param map The id index.
+   * @param child The child.
+   * @param id The id of the child.
+   * @param append True if the child is known to be the last child of its type.
+   */
+  private void indexId( Map<Object, List<IModelObject>> map, IModelObject child, Object id, boolean append)
+  {
+    List<IModelObject> bucket = map.get( id);
+    if ( bucket == null)
+    {
+      bucket = new ArrayList<IModelObject>( 1);
+      map.put( id, bucket);
+    }
+    
+    if ( append || bucket.size() == 0)
+    {
+      bucket.add( child);
+      return;
+    }
+    
+    // count the children with the same id that precede the child
+    int index = 0;
+    for( IModelObject sibling: getChildren( child.getType()))
+    {
+      if ( sibling == child) break;
+      if ( index < bucket.size() && bucket.get( index) == sibling) index++;
+    }
+    bucket.add( index, child);
+  }
+
+  /**
+   * Remove the specified child from the children with the same id in the id index.
+   * @param map The id index.
+   * @param child The child.
+   * @param id The id of the child.
+   */
+  private void unindexId( Map<Object, List<IModelObject>> map, IModelObject child, Object id)
+  {
+    List<IModelObject> bucket = map.get( id);
+    if ( bucket == null) return;
+    
+    removeIdentity( bucket, child);
+    if ( bucket.size() == 0) map.remove( id);
+  }
+
+  /**
+   * Find the first child with the specified type and id by scanning.
+   * @param type The type.
+   * @param id The id.
+   * @return Returns null or the first matching child.
+   */
+  private IModelObject findFirst( String type, Object id)
+  {
+    for( IModelObject child: getChildren( type))
+      if ( id.equals( child.getAttribute( "id")))
+        return child;
+    return null;
+  }
+
+  /**
+   * Returns the number of children with the specified type that precede the specified index.
+   * @param type The type.
+   * @param index The index.
+   * @return Returns the number of preceding children with the specified type.
+   */
+  private int countPreceding( String type, int index)
+  {
+    int count = 0;
+    for( int i=0; i<index; i++)
+      if ( children.get( i).getType().equals( type))
+        count++;
+    return count;
+  }
+
+  /**
+   * Remove the specified object from the list by identity searching from the end of the list.
+   * @param list The list.
+   * @param object The object.
+   */
+  private static void removeIdentity( List<IModelObject> list, IModelObject object)
+  {
+    for( int i=list.size()-1; i>=0; i--)
+    {
+      if ( list.get( i) == object)
+      {
+        list.remove( i);
+        return;
+      }
+    }
+  }
+
+  /**
+   * A secondary index of the children of a type by the string-value of an attribute.  The children with each
+   * value are stored in document order.  When the position of a child among the children with its value is not
+   * known, the value is marked stale and its list is rebuilt when it is next queried.
+   */
+  private final static class AttributeIndex
+  {
+    public AttributeIndex( String attrName)
+    {
+      this.attrName = attrName;
+      this.values = new HashMap<String, List<IModelObject>>();
+    }
+
+    /**
+     * Add a child that follows all other children with the same value.
+     * @param child The child.
+     * @param key The value.
+     */
+    public void append( IModelObject child, String key)
+    {
+      if ( stale != null && stale.contains( key)) return;
+
+      List<IModelObject> list = values.get( key);
+      if ( list == null)
+      {
+        list = new ArrayList<IModelObject>( 2);
+        values.put( key, list);
+      }
+      list.add( child);
+    }
+
+    /**
+     * Remove a child.
+     * @param child The child.
+     * @param key The value.
+     */
+    public void remove( IModelObject child, String key)
+    {
+      List<IModelObject> list = values.get( key);
+      if ( list == null) return;
+
+      removeIdentity( list, child);
+      if ( list.size() == 0) values.remove( key);
+    }
+
+    /**
+     * Mark the specified value stale.
+     * @param key The value.
+     */
+    public void invalidate( String key)
+    {
+      values.remove( key);
+      if ( stale == null) stale = new HashSet<String>();
+      stale.add( key);
+    }
+
+    public final String attrName;
+    public final Map<String, List<IModelObject>> values;
+    public Set<String> stale;
+  }
+
+  private static volatile Map<String, Set<String>> declared = Collections.emptyMap();
+
+  private List<IModelObject> children;
+  private Map<String, List<IModelObject>> types;
+  private Map<String, Integer> references;
+  private Map<String, Map<Object, List<IModelObject>>> ids;
+  private Map<String, List<AttributeIndex>> attrs;
+  private boolean sealed;
+}
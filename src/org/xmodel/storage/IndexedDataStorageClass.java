@@ -0,0 +1,243 @@
+package org.xmodel.storage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListenerList;
+import org.xmodel.PathListenerList;
+import org.xmodel.external.ICachingPolicy;
+
+/**
+ * An IStorageClass that stores attributes and a large number of children.  The children are stored in an
+ * IndexedChildList so that lookups by type and id do not require a scan of the children.
+ */
+public final class IndexedDataStorageClass implements IStorageClass
+{
+  /**
+   * Copy the data from the specified storage class.
+   * @param storageClass The storage class to be copied.
+   */
+  public IndexedDataStorageClass( MediumDataStorageClass storageClass)
+  {
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
+    
+    attributes = new LinkedHashMap<String, Object>();
+    if ( storageClass.name1 != null) attributes.put( storageClass.name1, storageClass.value1);
+    if ( storageClass.name2 != null) attributes.put( storageClass.name2, storageClass.value2);
+    if ( storageClass.name3 != null) attributes.put( storageClass.name3, storageClass.value3);
+    children = new IndexedChildList( storageClass.children);
+  }
+  
+  /**
+   * Copy the data from the specified storage class.
+   * @param storageClass The storage class to be copied.
+   */
+  public IndexedDataStorageClass( ArrayDataStorageClass storageClass)
+  {
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
+    
+    attributes = new LinkedHashMap<String, Object>();
+    for( int i=0; i<storageClass.count; i++)
+      attributes.put( SymbolTable.getName( storageClass.symbols[ i]), storageClass.values[ i]);
+    children = new IndexedChildList( storageClass.children);
+  }
+  
+  /**
+   * Copy the data from the specified storage class.
+   * @param storageClass The storage class to be copied.
+   */
+  public IndexedDataStorageClass( DataStorageClass storageClass)
+  {
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
+    
+    attributes = storageClass.attributes;
+    children = new IndexedChildList( storageClass.children);
+  }
+  
+//  /* (non-Javadoc)
+//   * @see java.lang.Object#finalize()
+//   */
+//  @Override
+//  protected void finalize() throws Throwable
+//  {
+//    super.finalize();
+//    Statistics.decrement( this);
+//  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicyStorageClass()
+   */
+  @Override
+  public IStorageClass getCachingPolicyStorageClass()
+  {
+    return new ExtendedStorageClass( this);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildrenStorageClass()
+   */
+  @Override
+  public IStorageClass getChildrenStorageClass()
+  {
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttributeStorageClass(java.lang.String)
+   */
+  @Override
+  public IStorageClass getAttributeStorageClass( String name)
+  {
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getModelListenersStorageClass()
+  {
+    return new ExtendedStorageClass( this).getModelListenersStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getPathListenersStorageClass()
+  {
+    return new ExtendedStorageClass( this).getPathListenersStorageClass();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setDirty(boolean)
+   */
+  @Override
+  public void setDirty( boolean dirty)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getDirty()
+   */
+  @Override
+  public boolean getDirty()
+  {
+    return false;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicy(org.xmodel.external.ICachingPolicy)
+   */
+  @Override
+  public void setCachingPolicy( ICachingPolicy cachingPolicy)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getCachingPolicy()
+   */
+  @Override
+  public ICachingPolicy getCachingPolicy()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildren()
+   */
+  @Override
+  public List<IModelObject> getChildren()
+  {
+    return children;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttribute(java.lang.String, java.lang.Object)
+   */
+  @Override
+  public Object setAttribute( String name, Object value)
+  {
+    if ( value == null) return (attributes != null)? attributes.remove( name): null;
+    if ( attributes == null) attributes = new LinkedHashMap<String, Object>();
+    return attributes.put( name, value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(java.lang.String)
+   */
+  @Override
+  public Object getAttribute( String name)
+  {
+    if ( attributes == null) return null;
+    return attributes.get( name);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return Primitives.toDouble( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return Primitives.toLong( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeNames()
+   */
+  @Override
+  public Collection<String> getAttributeNames()
+  {
+    if ( attributes == null) return Collections.emptyList();
+    return attributes.keySet();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListeners()
+   */
+  @Override
+  public ModelListenerList getModelListeners()
+  {
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListeners()
+   */
+  @Override
+  public PathListenerList getPathListeners()
+  {
+    return null;
+  }
+
+  /**
+   * The number of children at which MediumDataStorageClass and DataStorageClass are upgraded.
+   */
+  public final static int threshold = 64;
+  
+  protected Map<String, Object> attributes;
+  protected IndexedChildList children;
+}
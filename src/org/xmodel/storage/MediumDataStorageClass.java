@@ -19,7 +19,7 @@ public final class MediumDataStorageClass implements IStorageClass
    */
   public MediumDataStorageClass( ValueStorageClass storageClass)
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
     
     if ( storageClass.value != null)
     {
@@ -36,7 +36,7 @@ public final class MediumDataStorageClass implements IStorageClass
    */
   public MediumDataStorageClass( SmallDataStorageClass storageClass)
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
     
     name1 = storageClass.name1;
     value1 = storageClass.value1;
@@ -64,7 +64,7 @@ public final class MediumDataStorageClass implements IStorageClass
   @Override
   public IStorageClass getCachingPolicyStorageClass()
   {
-    return new CachingPolicyStorageClass( this);
+    return new ExtendedStorageClass( this);
   }
 
   /* (non-Javadoc)
@@ -73,7 +73,8 @@ public final class MediumDataStorageClass implements IStorageClass
   @Override
   public IStorageClass getChildrenStorageClass()
   {
-    return this;
+    if ( children.size() < IndexedDataStorageClass.threshold) return this;
+    return new IndexedDataStorageClass( this);
   }
 
   /* (non-Javadoc)
@@ -85,7 +86,7 @@ public final class MediumDataStorageClass implements IStorageClass
     if ( name1 == null || name1.equals( name)) return this;
     if ( name2 == null || name2.equals( name)) return this;
     if ( name3 == null || name3.equals( name)) return this;
-    return new DataStorageClass( this);
+    return new ArrayDataStorageClass( this);
   }
 
   /* (non-Javadoc)
@@ -94,7 +95,7 @@ public final class MediumDataStorageClass implements IStorageClass
   @Override
   public IStorageClass getModelListenersStorageClass()
   {
-    return new ModelListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getModelListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -103,7 +104,7 @@ public final class MediumDataStorageClass implements IStorageClass
   @Override
   public IStorageClass getPathListenersStorageClass()
   {
-    return new PathListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getPathListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -191,6 +192,33 @@ public final class MediumDataStorageClass implements IStorageClass
     return null;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return Primitives.toDouble( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return Primitives.toLong( getAttribute( attrName), defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.storage.IStorageClass#getAttributeNames()
    */
@@ -9,12 +9,14 @@ import org.xmodel.external.ICachingPolicy;
 
 /**
  * An IStorageClass that caches an IModel instance, stores all data, and has a ModelListenerList instance.
+ * @deprecated Use ExtendedStorageClass instead.
  */
+@Deprecated
 public final class ModelListenerStorageClass implements IStorageClass
 {
   public ModelListenerStorageClass( IStorageClass storageClass)
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.increment( this);
     this.storageClass = storageClass;
     modelListeners = new ModelListenerList();
   }
@@ -140,6 +142,33 @@ public final class ModelListenerStorageClass implements IStorageClass
     return storageClass.getAttribute( name);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return storageClass.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return storageClass.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return storageClass.getAttributeAsLong( attrName, defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.storage.IStorageClass#getAttributeNames()
    */
@@ -0,0 +1,227 @@
+package org.xmodel.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListenerList;
+import org.xmodel.PathListenerList;
+import org.xmodel.external.ICachingPolicy;
+
+/**
+ * An IStorageClass for an IExternalReference whose children have been paged out of the heap.  The children
+ * are stored in compressed form in a buffer that is allocated outside of the garbage-collected heap, and the
+ * reference is marked dirty.  The caching policy returned by this storage class rehydrates the children
+ * from the buffer on the next access and restores the delegate storage class, which retains the attributes,
+ * the dirty flag and the original caching policy of the reference.
+ */
+public class OffHeapStorageClass implements IStorageClass
+{
+  /**
+   * Create an OffHeapStorageClass.
+   * @param storageClass The delegate storage class.
+   * @param buffer The buffer containing the compressed children.
+   * @param cachingPolicy The caching policy that rehydrates the children.
+   */
+  public OffHeapStorageClass( IStorageClass storageClass, ByteBuffer buffer, ICachingPolicy cachingPolicy)
+  {
+    if ( Statistics.enabled) Statistics.increment( this);
+    this.storageClass = storageClass;
+    this.buffer = buffer;
+    this.cachingPolicy = cachingPolicy;
+  }
+  
+  /**
+   * @return Returns a read-only view of the buffer containing the compressed children.
+   */
+  public ByteBuffer getBuffer()
+  {
+    return buffer.asReadOnlyBuffer();
+  }
+  
+  /**
+   * @return Returns the size of the compressed children in bytes.
+   */
+  public int getSize()
+  {
+    return buffer.capacity();
+  }
+  
+  /**
+   * @return Returns the delegate storage class.
+   */
+  public IStorageClass getDelegate()
+  {
+    return storageClass;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicyStorageClass()
+   */
+  @Override
+  public IStorageClass getCachingPolicyStorageClass()
+  {
+    return this;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildrenStorageClass()
+   */
+  @Override
+  public IStorageClass getChildrenStorageClass()
+  {
+    storageClass = storageClass.getChildrenStorageClass();
+    return this;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttributeStorageClass(java.lang.String)
+   */
+  @Override
+  public IStorageClass getAttributeStorageClass( String name)
+  {
+    storageClass = storageClass.getAttributeStorageClass( name);
+    return this;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getModelListenersStorageClass()
+  {
+    storageClass = storageClass.getModelListenersStorageClass();
+    return this;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getPathListenersStorageClass()
+  {
+    storageClass = storageClass.getPathListenersStorageClass();
+    return this;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setDirty(boolean)
+   */
+  @Override
+  public void setDirty( boolean dirty)
+  {
+    storageClass.setDirty( dirty);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getDirty()
+   */
+  @Override
+  public boolean getDirty()
+  {
+    return storageClass.getDirty();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicy(org.xmodel.external.ICachingPolicy)
+   */
+  @Override
+  public void setCachingPolicy( ICachingPolicy cachingPolicy)
+  {
+    storageClass.setCachingPolicy( cachingPolicy);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getCachingPolicy()
+   */
+  @Override
+  public ICachingPolicy getCachingPolicy()
+  {
+    return cachingPolicy;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildren()
+   */
+  @Override
+  public List<IModelObject> getChildren()
+  {
+    return storageClass.getChildren();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttribute(java.lang.String, java.lang.Object)
+   */
+  @Override
+  public Object setAttribute( String name, Object value)
+  {
+    return storageClass.setAttribute( name, value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(java.lang.String)
+   */
+  @Override
+  public Object getAttribute( String name)
+  {
+    return storageClass.getAttribute( name);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return storageClass.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return storageClass.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return storageClass.getAttributeAsLong( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeNames()
+   */
+  @Override
+  public Collection<String> getAttributeNames()
+  {
+    return storageClass.getAttributeNames();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListeners()
+   */
+  @Override
+  public ModelListenerList getModelListeners()
+  {
+    return storageClass.getModelListeners();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListeners()
+   */
+  @Override
+  public PathListenerList getPathListeners()
+  {
+    return storageClass.getPathListeners();
+  }
+
+  protected IStorageClass storageClass;
+  protected ICachingPolicy cachingPolicy;
+  private ByteBuffer buffer;
+}
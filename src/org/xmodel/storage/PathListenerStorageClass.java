@@ -9,12 +9,14 @@ import org.xmodel.external.ICachingPolicy;
 
 /**
  * An IStorageClass that stores everything.
+ * @deprecated Use ExtendedStorageClass instead.
  */
+@Deprecated
 public final class PathListenerStorageClass implements IStorageClass
 {
   public PathListenerStorageClass( IStorageClass storageClass)
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.increment( this);
     this.storageClass = storageClass;
     modelListeners = new ModelListenerList();
     pathListeners = new PathListenerList();
@@ -22,7 +24,7 @@ public final class PathListenerStorageClass implements IStorageClass
   
   public PathListenerStorageClass( ModelListenerStorageClass storageClass)
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
     this.storageClass = storageClass.storageClass;
     modelListeners = storageClass.modelListeners;
     pathListeners = new PathListenerList();
@@ -149,6 +151,33 @@ public final class PathListenerStorageClass implements IStorageClass
     return storageClass.getAttribute( name);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return storageClass.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return storageClass.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return storageClass.getAttributeAsLong( attrName, defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.storage.IStorageClass#getAttributeNames()
    */
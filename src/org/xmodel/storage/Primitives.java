@@ -0,0 +1,51 @@
+package org.xmodel.storage;
+
+/**
+ * Conversions of attribute values to primitive numbers that are shared by the storage classes that store
+ * attribute values as objects.  The conversion rules are the same as those of the numeric methods of Xlate:
+ * numbers are converted directly, and any other value is parsed from its string representation.
+ */
+public final class Primitives
+{
+  /**
+   * Convert the specified attribute value to a double.
+   * @param value Null or the attribute value.
+   * @param defaultValue The value returned if the attribute value is null or cannot be converted.
+   * @return Returns the converted value or the default value.
+   */
+  public static double toDouble( Object value, double defaultValue)
+  {
+    if ( value == null) return defaultValue;
+    if ( value instanceof Number) return ((Number)value).doubleValue();
+    if ( value instanceof Boolean) return defaultValue;
+    try
+    {
+      return Double.parseDouble( value.toString());
+    }
+    catch( NumberFormatException e)
+    {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Convert the specified attribute value to a long.
+   * @param value Null or the attribute value.
+   * @param defaultValue The value returned if the attribute value is null or cannot be converted.
+   * @return Returns the converted value or the default value.
+   */
+  public static long toLong( Object value, long defaultValue)
+  {
+    if ( value == null) return defaultValue;
+    if ( value instanceof Number) return ((Number)value).longValue();
+    if ( value instanceof Boolean) return defaultValue;
+    try
+    {
+      return Long.parseLong( value.toString());
+    }
+    catch( NumberFormatException e)
+    {
+      return defaultValue;
+    }
+  }
+}
@@ -0,0 +1,351 @@
+package org.xmodel.storage;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.xmodel.FrozenObject;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelAlgorithms;
+import org.xmodel.ModelListenerList;
+import org.xmodel.ModelObject;
+import org.xmodel.PathListenerList;
+import org.xmodel.external.ICachingPolicy;
+
+/**
+ * An IStorageClass that marks an element whose attributes and children are shared with one or more copy-on-write
+ * clones.  The clones read the element through their CopyOnWriteStorageClass until they are written or their
+ * children are accessed.  Before the element, or any of its descendants, is written, the method <code>isolate</code>
+ * is called and each clone copies the attributes of the element and creates clones of its children, which in turn
+ * share the children.  The reference count of this storage class is the number of clones plus the element itself.
+ * <p>
+ * Clones are held by weak references, so a discarded clone does not retain its source.  The copy-on-write mode
+ * does not provide isolation between threads, and the source and its clones must be accessed by the same thread.
+ * Since a shared tree is confined to that thread, the number of shared elements is counted per thread, and writes
+ * to trees owned by other threads do not search their ancestors for a shared element.
+ */
+public final class SharedStorageClass implements IStorageClass
+{
+  public SharedStorageClass( IStorageClass storageClass)
+  {
+    if ( Statistics.enabled) Statistics.increment( this);
+    this.storageClass = storageClass;
+    this.clones = new ArrayList<WeakReference<IModelObject>>( 1);
+    this.scope = count.get();
+  }
+
+  /**
+   * Create a copy-on-write clone of the specified subtree.  The clone shares the attributes and children of the
+   * subtree until either is written.  Elements that are not instances of ModelObject, or that have a caching
+   * policy, are cloned with <code>ModelAlgorithms.cloneTree</code> instead.  Elements of a sealed subtree are
+   * shared without being marked, since they cannot be written.
+   * @param object The root of the subtree.
+   * @return Returns the clone.
+   */
+  public static IModelObject share( IModelObject object)
+  {
+    // a sealed subtree never changes, so its clones do not need to be released
+    if ( object instanceof FrozenObject)
+    {
+      ModelObject clone = new ModelObject( object.getType());
+      clone.setStorageClass( new CopyOnWriteStorageClass( object, clone));
+      return clone;
+    }
+    
+    if ( object.getClass() != ModelObject.class || object.getCachingPolicy() != null)
+      return ModelAlgorithms.cloneTree( object);
+
+    IStorageClass storageClass = object.getStorageClass();
+    if ( storageClass instanceof CopyOnWriteStorageClass)
+      storageClass = ((CopyOnWriteStorageClass)storageClass).materialize();
+
+    SharedStorageClass shared;
+    if ( storageClass instanceof SharedStorageClass)
+    {
+      shared = (SharedStorageClass)storageClass;
+    }
+    else
+    {
+      shared = new SharedStorageClass( storageClass);
+      object.setStorageClass( shared);
+      shared.scope.incrementAndGet();
+    }
+
+    ModelObject clone = new ModelObject( object.getType());
+    clone.setStorageClass( new CopyOnWriteStorageClass( object, clone));
+    shared.clones.add( new WeakReference<IModelObject>( clone));
+    return clone;
+  }
+
+  /**
+   * @return Returns true if any element accessed by the current thread is shared with a copy-on-write clone.
+   */
+  public static boolean isActive()
+  {
+    return count.get().get() > 0;
+  }
+
+  /**
+   * Called before the attributes or children of the specified element are written.  The clones of the element,
+   * and the clones of its ancestors, are given their own copies of the elements on the path from the root to the
+   * specified element, so that the write is not visible to the clones.
+   * @param object The element that will be written.
+   */
+  public static void isolate( IModelObject object)
+  {
+    IModelObject top = null;
+    for( IModelObject ancestor = object; ancestor != null; ancestor = ancestor.getParent())
+      if ( ancestor.getStorageClass() instanceof SharedStorageClass)
+        top = ancestor;
+
+    if ( top == null) return;
+
+    List<IModelObject> path = new ArrayList<IModelObject>();
+    for( IModelObject ancestor = object; ancestor != top; ancestor = ancestor.getParent()) path.add( ancestor);
+    path.add( top);
+
+    // release from the top, since releasing an ancestor shares its children
+    for( int i=path.size() - 1; i >= 0; i--)
+    {
+      IModelObject node = path.get( i);
+      IStorageClass storageClass = node.getStorageClass();
+      if ( storageClass instanceof SharedStorageClass) ((SharedStorageClass)storageClass).release( node);
+    }
+  }
+
+  /**
+   * Restore the delegate storage class of the specified element and give each clone its own copy.
+   * @param object The element that owns this storage class.
+   */
+  private void release( IModelObject object)
+  {
+    object.setStorageClass( storageClass);
+    scope.decrementAndGet();
+
+    for( WeakReference<IModelObject> reference: clones)
+    {
+      IModelObject clone = reference.get();
+      if ( clone == null) continue;
+
+      IStorageClass cloneStorageClass = clone.getStorageClass();
+      if ( cloneStorageClass instanceof CopyOnWriteStorageClass)
+        ((CopyOnWriteStorageClass)cloneStorageClass).materialize();
+    }
+    clones.clear();
+  }
+
+  /**
+   * Remove the specified clone after it has made its own copy of the shared element.
+   * @param object The shared element.
+   * @param clone The clone.
+   */
+  void removeClone( IModelObject object, IModelObject clone)
+  {
+    for( int i=0; i<clones.size(); i++)
+    {
+      IModelObject referent = clones.get( i).get();
+      if ( referent == null || referent == clone) clones.remove( i--);
+    }
+
+    if ( clones.size() == 0)
+    {
+      object.setStorageClass( storageClass);
+      scope.decrementAndGet();
+    }
+  }
+
+  /**
+   * @return Returns the number of elements that share this storage class, including discarded clones.
+   */
+  public int getReferenceCount()
+  {
+    return clones.size() + 1;
+  }
+
+  /**
+   * @return Returns the storage class that stores the attributes and children.
+   */
+  public IStorageClass getDelegate()
+  {
+    return storageClass;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicyStorageClass()
+   */
+  @Override
+  public IStorageClass getCachingPolicyStorageClass()
+  {
+    storageClass = storageClass.getCachingPolicyStorageClass();
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildrenStorageClass()
+   */
+  @Override
+  public IStorageClass getChildrenStorageClass()
+  {
+    storageClass = storageClass.getChildrenStorageClass();
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttributeStorageClass(java.lang.String)
+   */
+  @Override
+  public IStorageClass getAttributeStorageClass( String name)
+  {
+    storageClass = storageClass.getAttributeStorageClass( name);
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getModelListenersStorageClass()
+  {
+    storageClass = storageClass.getModelListenersStorageClass();
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListenersStorageClass()
+   */
+  @Override
+  public IStorageClass getPathListenersStorageClass()
+  {
+    storageClass = storageClass.getPathListenersStorageClass();
+    return this;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setDirty(boolean)
+   */
+  @Override
+  public void setDirty( boolean dirty)
+  {
+    storageClass.setDirty( dirty);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getDirty()
+   */
+  @Override
+  public boolean getDirty()
+  {
+    return storageClass.getDirty();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setCachingPolicy(org.xmodel.external.ICachingPolicy)
+   */
+  @Override
+  public void setCachingPolicy( ICachingPolicy cachingPolicy)
+  {
+    storageClass.setCachingPolicy( cachingPolicy);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getCachingPolicy()
+   */
+  @Override
+  public ICachingPolicy getCachingPolicy()
+  {
+    return storageClass.getCachingPolicy();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getChildren()
+   */
+  @Override
+  public List<IModelObject> getChildren()
+  {
+    return storageClass.getChildren();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#setAttribute(java.lang.String, java.lang.Object)
+   */
+  @Override
+  public Object setAttribute( String name, Object value)
+  {
+    return storageClass.setAttribute( name, value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(java.lang.String)
+   */
+  @Override
+  public Object getAttribute( String name)
+  {
+    return storageClass.getAttribute( name);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return storageClass.getAttribute( symbol);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return storageClass.getAttributeAsDouble( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return storageClass.getAttributeAsLong( attrName, defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeNames()
+   */
+  @Override
+  public Collection<String> getAttributeNames()
+  {
+    return storageClass.getAttributeNames();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getModelListeners()
+   */
+  @Override
+  public ModelListenerList getModelListeners()
+  {
+    return storageClass.getModelListeners();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getPathListeners()
+   */
+  @Override
+  public PathListenerList getPathListeners()
+  {
+    return storageClass.getPathListeners();
+  }
+
+  private final static ThreadLocal<AtomicInteger> count = new ThreadLocal<AtomicInteger>() {
+    protected AtomicInteger initialValue()
+    {
+      return new AtomicInteger();
+    }
+  };
+
+  protected IStorageClass storageClass;
+  private List<WeakReference<IModelObject>> clones;
+  private AtomicInteger scope;
+}
@@ -15,7 +15,7 @@ public final class SmallDataStorageClass implements IStorageClass
 {
   public SmallDataStorageClass()
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.increment( this);
   }
   
 //  /* (non-Javadoc)
@@ -34,7 +34,7 @@ public final class SmallDataStorageClass implements IStorageClass
    */
   public SmallDataStorageClass( ValueStorageClass storageClass)
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.promote( storageClass, this);
     
     if ( storageClass.value != null)
     {
@@ -49,7 +49,7 @@ public final class SmallDataStorageClass implements IStorageClass
   @Override
   public IStorageClass getCachingPolicyStorageClass()
   {
-    return new CachingPolicyStorageClass( this);
+    return new ExtendedStorageClass( this);
   }
 
   /* (non-Javadoc)
@@ -70,7 +70,7 @@ public final class SmallDataStorageClass implements IStorageClass
     if ( name1 == null || name1.equals( name)) return this;
     if ( name2 == null || name2.equals( name)) return this;
     if ( name3 == null || name3.equals( name)) return this;
-    return new DataStorageClass( this);
+    return new ArrayDataStorageClass( this);
   }
 
   /* (non-Javadoc)
@@ -79,7 +79,7 @@ public final class SmallDataStorageClass implements IStorageClass
   @Override
   public IStorageClass getModelListenersStorageClass()
   {
-    return new ModelListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getModelListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -88,7 +88,7 @@ public final class SmallDataStorageClass implements IStorageClass
   @Override
   public IStorageClass getPathListenersStorageClass()
   {
-    return new PathListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getPathListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -176,6 +176,33 @@ public final class SmallDataStorageClass implements IStorageClass
     return null;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return Primitives.toDouble( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return Primitives.toLong( getAttribute( attrName), defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.storage.IStorageClass#getAttributeNames()
    */
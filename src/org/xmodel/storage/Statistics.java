@@ -1,57 +1,390 @@
 package org.xmodel.storage;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import org.xmodel.log.SLog;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.xmodel.IModelObject;
+import org.xmodel.storage.mbean.StorageStatistics;
 
-public class Statistics
+/**
+ * Instrumentation of the storage class hierarchy.  When enabled with the <i>org.xmodel.storage.statistics</i>
+ * system property, each storage class counts the instances that are created, and the instances that are
+ * discarded when an element is promoted to another storage class.  The counters are striped by thread, so
+ * that counting does not contend, and are published by the StorageStatistics MBean.
+ * <p>
+ * Instances that are discarded because their element is garbage collected are not observed, so the number of
+ * live instances is an upper bound.  The size of a subtree can be estimated on demand with the method
+ * <code>estimateSize</code>, which does not require statistics to be enabled.
+ */
+public final class Statistics
 {
-  public synchronized static void increment( IStorageClass storageClass)
+  /**
+   * True if the storage classes should count instances.
+   */
+  public final static boolean enabled = Boolean.getBoolean( "org.xmodel.storage.statistics");
+
+  /**
+   * Count a new instance of the specified storage class.
+   * @param storageClass The new storage class.
+   */
+  public static void increment( IStorageClass storageClass)
+  {
+    getCounters( storageClass.getClass()).created.increment();
+  }
+
+  /**
+   * Count a discarded instance of the specified storage class.
+   * @param storageClass The discarded storage class.
+   */
+  public static void decrement( IStorageClass storageClass)
+  {
+    getCounters( storageClass.getClass()).released.increment();
+  }
+
+  /**
+   * Count the promotion of an element from one storage class to another.  The previous storage class is
+   * counted as discarded and the new storage class is counted as created.
+   * @param from The previous storage class.
+   * @param to The new storage class.
+   */
+  public static void promote( IStorageClass from, IStorageClass to)
+  {
+    Counters counters = getCounters( from.getClass());
+    counters.released.increment();
+    counters.getPromotions( to.getClass()).increment();
+    increment( to);
+  }
+
+  /**
+   * @return Returns the storage classes for which instances have been counted.
+   */
+  public static Collection<Class<?>> getStorageClasses()
   {
-    AtomicInteger count = counts.get( storageClass.getClass());
-    if ( count == null)
+    return counters.keySet();
+  }
+
+  /**
+   * Returns the number of live instances of the specified storage class.
+   * @param storageClass The storage class.
+   * @return Returns the number of live instances.
+   */
+  public static long getLiveCount( Class<?> storageClass)
+  {
+    Counters counters = Statistics.counters.get( storageClass);
+    return (counters != null)? counters.created.sum() - counters.released.sum(): 0;
+  }
+
+  /**
+   * Returns the number of promotions from one storage class to another.
+   * @param from The previous storage class.
+   * @param to The new storage class.
+   * @return Returns the number of promotions.
+   */
+  public static long getPromotionCount( Class<?> from, Class<?> to)
+  {
+    Counters counters = Statistics.counters.get( from);
+    if ( counters == null) return 0;
+
+    Counter counter = counters.promotions.get( to);
+    return (counter != null)? counter.sum(): 0;
+  }
+
+  /**
+   * Returns the number of promotions from the specified storage class by the class to which it was promoted.
+   * @param from The previous storage class.
+   * @return Returns the number of promotions by storage class.
+   */
+  public static Map<Class<?>, Long> getPromotionCounts( Class<?> from)
+  {
+    Map<Class<?>, Long> result = new HashMap<Class<?>, Long>();
+    Counters counters = Statistics.counters.get( from);
+    if ( counters != null)
     {
-      count = new AtomicInteger();
-      counts.put( storageClass.getClass(), count);
+      for( Map.Entry<Class<?>, Counter> entry: counters.promotions.entrySet())
+        result.put( entry.getKey(), entry.getValue().sum());
     }
-    
-    count.incrementAndGet();
-    dump();
+    return result;
   }
-  
-  public synchronized static void decrement( IStorageClass storageClass)
+
+  /**
+   * Returns the estimated number of bytes used by the live instances of the specified storage class, not
+   * including attribute values and children.
+   * @param storageClass The storage class.
+   * @return Returns the estimated number of bytes.
+   */
+  public static long getEstimatedBytes( Class<?> storageClass)
+  {
+    return getLiveCount( storageClass) * getShallowSize( storageClass);
+  }
+
+  /**
+   * Estimate the number of bytes of heap used by the specified subtree, including storage classes, attribute
+   * values and child lists.  The estimate assumes a 64-bit JVM with compressed references.  The subtree is
+   * traversed through the storage classes, so external references are not synced, and children that have
+   * been paged out of the heap are not included.
+   * @param root The root of the subtree.
+   * @return Returns the estimated number of bytes.
+   */
+  public static long estimateSize( IModelObject root)
   {
-    AtomicInteger count = counts.get( storageClass.getClass());
-    if ( count == null)
+    long size = 0;
+
+    Deque<IModelObject> stack = new ArrayDeque<IModelObject>();
+    stack.push( root);
+    while( !stack.isEmpty())
     {
-      count = new AtomicInteger();
-      counts.put( storageClass.getClass(), count);
+      IModelObject node = stack.pop();
+      IStorageClass storageClass = node.getStorageClass();
+
+      size += elementSize;
+      size += estimateSize( storageClass);
+
+      // the subtree of a copy-on-write clone is shared until it is accessed
+      if ( storageClass instanceof CopyOnWriteStorageClass) continue;
+
+      List<IModelObject> children = storageClass.getChildren();
+      if ( children != null)
+      {
+        size += listSize + referenceSize * children.size();
+        for( IModelObject child: children) stack.push( child);
+      }
     }
-    
-    count.decrementAndGet();
-    dump();
+
+    return size;
   }
-  
-  private static void dump()
+
+  /**
+   * Estimate the number of bytes used by the specified storage class and its attribute values.
+   * @param storageClass The storage class.
+   * @return Returns the estimated number of bytes.
+   */
+  private static long estimateSize( IStorageClass storageClass)
+  {
+    long size = 0;
+
+    IStorageClass delegate = storageClass;
+    while( delegate != null)
+    {
+      size += getShallowSize( delegate.getClass());
+      delegate = getDelegate( delegate);
+    }
+
+    if ( storageClass instanceof CopyOnWriteStorageClass) return size;
+
+    IStorageClass base = getBase( storageClass);
+    boolean mapped = base instanceof DataStorageClass || base instanceof IndexedDataStorageClass;
+    for( String attrName: storageClass.getAttributeNames())
+    {
+      if ( mapped) size += mapEntrySize;
+
+      // columnar values are stored in primitive arrays or dictionaries shared by the table
+      size += (base instanceof ColumnarStorageClass)? 8: estimateValueSize( storageClass.getAttribute( attrName));
+    }
+
+    return size;
+  }
+
+  /**
+   * Estimate the number of bytes used by an attribute value.
+   * @param value The value.
+   * @return Returns the estimated number of bytes.
+   */
+  private static long estimateValueSize( Object value)
   {
-    long time = System.currentTimeMillis();
-    if ( time > timestamp.get()) 
+    if ( value == null) return 0;
+    if ( value instanceof String) return align( 24 + 16 + ((String)value).length() * 2);
+    if ( value instanceof Long || value instanceof Double) return 24;
+    if ( value instanceof Number || value instanceof Boolean) return 16;
+    if ( value instanceof byte[]) return align( 16 + ((byte[])value).length);
+    return 32;
+  }
+
+  /**
+   * Returns the storage class wrapped by the specified storage class.
+   * @param storageClass The storage class.
+   * @return Returns null or the wrapped storage class.
+   */
+  @SuppressWarnings("deprecation")
+  private static IStorageClass getDelegate( IStorageClass storageClass)
+  {
+    if ( storageClass instanceof SharedStorageClass) return ((SharedStorageClass)storageClass).storageClass;
+    if ( storageClass instanceof ExtendedStorageClass) return ((ExtendedStorageClass)storageClass).storageClass;
+    if ( storageClass instanceof CachingPolicyStorageClass) return ((CachingPolicyStorageClass)storageClass).storageClass;
+    if ( storageClass instanceof ModelListenerStorageClass) return ((ModelListenerStorageClass)storageClass).storageClass;
+    if ( storageClass instanceof PathListenerStorageClass) return ((PathListenerStorageClass)storageClass).storageClass;
+    if ( storageClass instanceof ByteArrayStorageClass) return ((ByteArrayStorageClass)storageClass).storageClass;
+    if ( storageClass instanceof OffHeapStorageClass) return ((OffHeapStorageClass)storageClass).storageClass;
+    return null;
+  }
+
+  /**
+   * Returns the innermost storage class of a chain of wrapping storage classes.
+   * @param storageClass The storage class.
+   * @return Returns the storage class that is not a wrapper.
+   */
+  private static IStorageClass getBase( IStorageClass storageClass)
+  {
+    IStorageClass delegate = getDelegate( storageClass);
+    while( delegate != null)
     {
-      timestamp.set( time + 10000);
-      
-      StringBuilder sb = new StringBuilder();
-      sb.append( "Storage class statistics: \n");
-      for( Map.Entry<Class<?>, AtomicInteger> entry: counts.entrySet())
+      storageClass = delegate;
+      delegate = getDelegate( storageClass);
+    }
+    return storageClass;
+  }
+
+  /**
+   * Returns the estimated size of an instance of the specified storage class, not including attribute values
+   * and children.
+   * @param storageClass The storage class.
+   * @return Returns the estimated number of bytes.
+   */
+  private static long getShallowSize( Class<?> storageClass)
+  {
+    Integer size = shallowSizes.get( storageClass);
+    return (size != null)? size: 24;
+  }
+
+  /**
+   * Round the specified size up to the object alignment.
+   * @param size The size.
+   * @return Returns the aligned size.
+   */
+  private static long align( long size)
+  {
+    return (size + 7) & ~7;
+  }
+
+  /**
+   * Returns the counters for the specified storage class, creating them if necessary.
+   * @param storageClass The storage class.
+   * @return Returns the counters.
+   */
+  private static Counters getCounters( Class<?> storageClass)
+  {
+    Counters result = counters.get( storageClass);
+    if ( result == null)
+    {
+      result = new Counters();
+      Counters existing = counters.putIfAbsent( storageClass, result);
+      if ( existing != null) result = existing;
+    }
+    return result;
+  }
+
+  /**
+   * The counters for one storage class.
+   */
+  private static final class Counters
+  {
+    /**
+     * Returns the counter of promotions to the specified storage class, creating it if necessary.
+     * @param storageClass The storage class.
+     * @return Returns the counter.
+     */
+    public Counter getPromotions( Class<?> storageClass)
+    {
+      Counter result = promotions.get( storageClass);
+      if ( result == null)
       {
-        sb.append( String.format( "%s: %d\n", entry.getKey().getSimpleName(), entry.getValue().get()));
+        result = new Counter();
+        Counter existing = promotions.putIfAbsent( storageClass, result);
+        if ( existing != null) result = existing;
       }
-      
-      SLog.info( Statistics.class, sb.toString());
+      return result;
+    }
+
+    public final Counter created = new Counter();
+    public final Counter released = new Counter();
+    public final ConcurrentMap<Class<?>, Counter> promotions = new ConcurrentHashMap<Class<?>, Counter>();
+  }
+
+  /**
+   * A counter that is striped by thread, so that threads counting concurrently update different cache lines.
+   */
+  private static final class Counter
+  {
+    /**
+     * Increment the counter.
+     */
+    public void increment()
+    {
+      int stripe = (int)Thread.currentThread().getId() & stripeMask;
+      cells.getAndIncrement( stripe * stripeWidth);
+    }
+
+    /**
+     * @return Returns the sum of the stripes.
+     */
+    public long sum()
+    {
+      long sum = 0;
+      for( int i=0; i<=stripeMask; i++) sum += cells.get( i * stripeWidth);
+      return sum;
     }
+
+    private final AtomicLongArray cells = new AtomicLongArray( (stripeMask + 1) * stripeWidth);
+  }
+
+  /**
+   * @return Returns the number of stripes minus one.
+   */
+  private static int getStripeMask()
+  {
+    int processors = Runtime.getRuntime().availableProcessors();
+    int stripes = 1;
+    while( stripes < processors) stripes <<= 1;
+    return stripes - 1;
+  }
+
+  private final static int stripeMask = getStripeMask();
+  private final static int stripeWidth = 8;
+
+  private final static int elementSize = 24;
+  private final static int listSize = 40;
+  private final static int referenceSize = 4;
+  private final static int mapEntrySize = 40;
+
+  private final static Map<Class<?>, Integer> shallowSizes = new HashMap<Class<?>, Integer>();
+  static
+  {
+    shallowSizes.put( ValueStorageClass.class, 16);
+    shallowSizes.put( SmallDataStorageClass.class, 40);
+    shallowSizes.put( MediumDataStorageClass.class, 40);
+    shallowSizes.put( ArrayDataStorageClass.class, 96);
+    shallowSizes.put( DataStorageClass.class, 120);
+    shallowSizes.put( IndexedDataStorageClass.class, 240);
+    shallowSizes.put( ColumnarStorageClass.class, 40);
+    shallowSizes.put( ExtendedStorageClass.class, 24);
+    putDeprecatedSizes();
+    shallowSizes.put( ByteArrayStorageClass.class, 64);
+    shallowSizes.put( OffHeapStorageClass.class, 24);
+    shallowSizes.put( SharedStorageClass.class, 48);
+    shallowSizes.put( CopyOnWriteStorageClass.class, 24);
+    shallowSizes.put( FrozenStorageClass.class, 32);
+  }
+
+  /**
+   * Add the shallow sizes of the deprecated storage classes, which are still reported while they are in use.
+   */
+  @SuppressWarnings("deprecation")
+  private static void putDeprecatedSizes()
+  {
+    shallowSizes.put( CachingPolicyStorageClass.class, 24);
+    shallowSizes.put( ModelListenerStorageClass.class, 48);
+    shallowSizes.put( PathListenerStorageClass.class, 88);
   }
   
-  private static Map<Class<?>, AtomicInteger> counts = new HashMap<Class<?>, AtomicInteger>();
-  private static AtomicLong timestamp = new AtomicLong();
+  private final static ConcurrentMap<Class<?>, Counters> counters = new ConcurrentHashMap<Class<?>, Counters>();
+
+  static
+  {
+    if ( enabled) StorageStatistics.getInstance();
+  }
 }
@@ -0,0 +1,121 @@
+package org.xmodel.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A global table that assigns a small integer, or symbol, to each attribute name and element type.  Symbols
+ * are never reclaimed, and the same name always has the same symbol for the life of the process, so symbols
+ * may be computed once and stored in static fields.  Storage classes that store attributes by symbol can be
+ * accessed with <code>IModelObject.getAttribute( int)</code> without hashing or comparing strings.
+ * <p>
+ * Attribute names are usually string literals, so the symbol of a name is also cached in a small direct-mapped
+ * table that is probed by the identity of the string.  A name that is found in the table, which is the case for
+ * each literal after its first use, is resolved without a hash table lookup.  Only interned names are cached.
+ */
+public final class SymbolTable
+{
+  /**
+   * Returns the symbol for the specified name, creating a new symbol if necessary.
+   * @param name The name.
+   * @return Returns the symbol for the specified name.
+   */
+  public static int getSymbol( String name)
+  {
+    int cached = probe( name);
+    if ( cached >= 0) return cached;
+    
+    Integer symbol = symbols.get( name);
+    if ( symbol != null) return remember( name, symbol);
+
+    synchronized( symbols)
+    {
+      symbol = symbols.get( name);
+      if ( symbol != null) return symbol;
+
+      int next = count;
+      if ( next == names.length) names = Arrays.copyOf( names, next * 2);
+      names[ next] = name.intern();
+      count = next + 1;
+
+      symbols.put( names[ next], next);
+      return remember( name, next);
+    }
+  }
+
+  /**
+   * Returns the symbol for the specified name without creating a new symbol.
+   * @param name The name.
+   * @return Returns -1 or the symbol for the specified name.
+   */
+  public static int findSymbol( String name)
+  {
+    int cached = probe( name);
+    if ( cached >= 0) return cached;
+    
+    Integer symbol = symbols.get( name);
+    return (symbol != null)? remember( name, symbol): -1;
+  }
+
+  /**
+   * Returns the name of the specified symbol.
+   * @param symbol The symbol.
+   * @return Returns the name of the specified symbol.
+   */
+  public static String getName( int symbol)
+  {
+    return names[ symbol];
+  }
+
+  /**
+   * @return Returns the number of symbols that have been created.
+   */
+  public static int size()
+  {
+    return count;
+  }
+
+  /**
+   * Returns the symbol of the specified string from the identity cache.
+   * @param name The name.
+   * @return Returns -1 or the symbol.
+   */
+  private static int probe( String name)
+  {
+    Entry entry = cache[ System.identityHashCode( name) & cacheMask];
+    return (entry != null && entry.name == name)? entry.symbol: -1;
+  }
+  
+  /**
+   * Store the symbol of the specified string in the identity cache, if the string is the interned instance of
+   * the name.  Strings that are built at runtime are not cached, since they are rarely looked up twice.
+   * @param name The name.
+   * @param symbol The symbol.
+   * @return Returns the symbol.
+   */
+  private static int remember( String name, int symbol)
+  {
+    if ( name != names[ symbol]) return symbol;
+    cache[ System.identityHashCode( name) & cacheMask] = new Entry( name, symbol);
+    return symbol;
+  }
+  
+  private final static class Entry
+  {
+    Entry( String name, int symbol)
+    {
+      this.name = name;
+      this.symbol = symbol;
+    }
+    
+    final String name;
+    final int symbol;
+  }
+  
+  private final static int cacheMask = 1023;
+  private final static Entry[] cache = new Entry[ cacheMask + 1];
+  
+  private static ConcurrentHashMap<String, Integer> symbols = new ConcurrentHashMap<String, Integer>();
+  private static volatile String[] names = new String[ 256];
+  private static volatile int count;
+}
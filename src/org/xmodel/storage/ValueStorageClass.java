@@ -15,7 +15,7 @@ public final class ValueStorageClass implements IStorageClass
 {
   public ValueStorageClass()
   {
-    // Statistics.increment( this);
+    if ( Statistics.enabled) Statistics.increment( this);
   }
   
 //  /* (non-Javadoc)
@@ -34,7 +34,7 @@ public final class ValueStorageClass implements IStorageClass
   @Override
   public IStorageClass getCachingPolicyStorageClass()
   {
-    return new CachingPolicyStorageClass( this);
+    return new ExtendedStorageClass( this);
   }
 
   /* (non-Javadoc)
@@ -61,7 +61,7 @@ public final class ValueStorageClass implements IStorageClass
   @Override
   public IStorageClass getModelListenersStorageClass()
   {
-    return new ModelListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getModelListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -70,7 +70,7 @@ public final class ValueStorageClass implements IStorageClass
   @Override
   public IStorageClass getPathListenersStorageClass()
   {
-    return new PathListenerStorageClass( this);
+    return new ExtendedStorageClass( this).getPathListenersStorageClass();
   }
 
   /* (non-Javadoc)
@@ -146,6 +146,33 @@ public final class ValueStorageClass implements IStorageClass
     return value;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttribute(int)
+   */
+  @Override
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsDouble(java.lang.String, double)
+   */
+  @Override
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return Primitives.toDouble( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.IStorageClass#getAttributeAsLong(java.lang.String, long)
+   */
+  @Override
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return Primitives.toLong( getAttribute( attrName), defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.storage.IStorageClass#getAttributeNames()
    */
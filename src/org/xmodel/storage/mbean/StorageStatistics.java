@@ -0,0 +1,84 @@
+package org.xmodel.storage.mbean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.xmodel.log.SLog;
+import org.xmodel.storage.Statistics;
+
+public class StorageStatistics implements StorageStatisticsMBean
+{
+  protected StorageStatistics()
+  {
+    try
+    {
+      MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName( "org.xmodel.storage:type=StorageStatistics");   
+      mbs.registerMBean( this, name);
+    }
+    catch( Exception e)
+    {
+      SLog.exception( this, e);
+    }
+  }
+  
+  /**
+   * @return Returns the singleton instance.
+   */
+  public static StorageStatistics getInstance()
+  {
+    return instance;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.mbean.StorageStatisticsMBean#getLiveCounts()
+   */
+  public String[] getLiveCounts()
+  {
+    List<String> result = new ArrayList<String>();
+    for( Class<?> storageClass: Statistics.getStorageClasses())
+      result.add( String.format( "%s: %d", storageClass.getSimpleName(), Statistics.getLiveCount( storageClass)));
+    return result.toArray( new String[ 0]);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.mbean.StorageStatisticsMBean#getPromotionCounts()
+   */
+  public String[] getPromotionCounts()
+  {
+    List<String> result = new ArrayList<String>();
+    for( Class<?> from: Statistics.getStorageClasses())
+    {
+      for( Map.Entry<Class<?>, Long> entry: Statistics.getPromotionCounts( from).entrySet())
+        result.add( String.format( "%s -> %s: %d", from.getSimpleName(), entry.getKey().getSimpleName(), entry.getValue()));
+    }
+    return result.toArray( new String[ 0]);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.mbean.StorageStatisticsMBean#getEstimatedBytes()
+   */
+  public String[] getEstimatedBytes()
+  {
+    List<String> result = new ArrayList<String>();
+    for( Class<?> storageClass: Statistics.getStorageClasses())
+      result.add( String.format( "%s: %d", storageClass.getSimpleName(), Statistics.getEstimatedBytes( storageClass)));
+    return result.toArray( new String[ 0]);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.storage.mbean.StorageStatisticsMBean#getTotalEstimatedBytes()
+   */
+  public long getTotalEstimatedBytes()
+  {
+    long total = 0;
+    for( Class<?> storageClass: Statistics.getStorageClasses())
+      total += Statistics.getEstimatedBytes( storageClass);
+    return total;
+  }
+  
+  private static StorageStatistics instance = new StorageStatistics();
+}
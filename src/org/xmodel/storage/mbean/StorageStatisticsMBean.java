@@ -0,0 +1,24 @@
+package org.xmodel.storage.mbean;
+
+public interface StorageStatisticsMBean
+{
+  /**
+   * @return Returns the number of live instances of each storage class.
+   */
+  public String[] getLiveCounts();
+
+  /**
+   * @return Returns the number of promotions between each pair of storage classes.
+   */
+  public String[] getPromotionCounts();
+
+  /**
+   * @return Returns the estimated number of bytes used by the live instances of each storage class.
+   */
+  public String[] getEstimatedBytes();
+
+  /**
+   * @return Returns the estimated number of bytes used by the live instances of all storage classes.
+   */
+  public long getTotalEstimatedBytes();
+}
@@ -45,7 +45,7 @@ import java.util.*;
   A first-in, first-out container implemented using a LinkedList.
 */
 @SuppressWarnings("serial")
-public class Fifo<T> extends ArrayList<T>
+public class Fifo<T> extends LinkedList<T>
 {
   /**
     Construct an empty fifo.
@@ -81,7 +81,7 @@ public class Fifo<T> extends ArrayList<T>
   public T pop()
   {
     if ( size() == 0) throw new EmptyStackException();
-    return remove( 0);
+    return removeFirst();
   }
 
   /**
@@ -90,7 +90,7 @@ public class Fifo<T> extends ArrayList<T>
   */
   public T peek()
   {
-    return get( 0);
+    return getFirst();
   }
   
   /**
@@ -0,0 +1,230 @@
+package org.xmodel.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A map whose keys are compared by identity and weakly referenced.  Unlike WeakHashMap, a key is never found by
+ * an object that is only equal to it, so a Reference and its referent have separate entries.  The method
+ * <code>get</code> does not lock, and may be called concurrently with <code>put</code> and <code>remove</code>,
+ * which are synchronized.  The buckets are immutable chains that are replaced, rather than modified, by a write.
+ */
+public final class WeakIdentityMap<K, V>
+{
+  public WeakIdentityMap()
+  {
+    table = newTable( 16);
+    queue = new ReferenceQueue<K>();
+  }
+
+  /**
+   * Returns the value of the specified key.
+   * @param key The key.
+   * @return Returns null or the value.
+   */
+  public V get( K key)
+  {
+    Node<K, V>[] table = this.table;
+    int hash = System.identityHashCode( key);
+    for( Node<K, V> node = table[ hash & (table.length - 1)]; node != null; node = node.next)
+      if ( node.get() == key)
+        return node.value;
+    return null;
+  }
+
+  /**
+   * Set the value of the specified key.
+   * @param key The key.
+   * @param value The value.
+   * @return Returns null or the previous value.
+   */
+  public synchronized V put( K key, V value)
+  {
+    expunge();
+    V previous = remove( key, false);
+    if ( size >= table.length * 3 / 4) resize();
+
+    Node<K, V>[] table = this.table;
+    int hash = System.identityHashCode( key);
+    int index = hash & (table.length - 1);
+    table[ index] = new Node<K, V>( key, hash, value, table[ index], queue);
+    size++;
+
+    // publish the new chain
+    this.table = table;
+    return previous;
+  }
+
+  /**
+   * Remove the specified key.
+   * @param key The key.
+   * @return Returns null or the value of the key.
+   */
+  public synchronized V remove( K key)
+  {
+    expunge();
+    return remove( key, true);
+  }
+
+  /**
+   * Returns the keys that have not been collected.  Like <code>get</code>, this method does not lock.
+   * @return Returns a new list containing the keys.
+   */
+  public List<K> keys()
+  {
+    Node<K, V>[] table = this.table;
+    List<K> keys = new ArrayList<K>();
+    for( int i=0; i<table.length; i++)
+    {
+      for( Node<K, V> node = table[ i]; node != null; node = node.next)
+      {
+        K key = node.get();
+        if ( key != null) keys.add( key);
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * @return Returns the number of keys, including keys that have been collected but not yet expunged.
+   */
+  public synchronized int size()
+  {
+    expunge();
+    return size;
+  }
+
+  /**
+   * @return Returns true if the map is empty.
+   */
+  public boolean isEmpty()
+  {
+    return size() == 0;
+  }
+
+  /**
+   * Replace the chain that contains the specified key with a chain that does not contain the key.
+   * @param key The key.
+   * @param publish True if the new chain should be published.
+   * @return Returns null or the value of the key.
+   */
+  private V remove( K key, boolean publish)
+  {
+    Node<K, V>[] table = this.table;
+    int index = System.identityHashCode( key) & (table.length - 1);
+    for( Node<K, V> node = table[ index]; node != null; node = node.next)
+    {
+      if ( node.get() == key)
+      {
+        table[ index] = copyWithout( table[ index], node);
+        if ( publish) this.table = table;
+        return node.value;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Remove the nodes whose keys have been collected.
+   */
+  @SuppressWarnings("unchecked")
+  private void expunge()
+  {
+    Reference<? extends K> reference = queue.poll();
+    if ( reference == null) return;
+
+    Node<K, V>[] table = this.table;
+    for( ; reference != null; reference = queue.poll())
+    {
+      int index = ((Node<K, V>)reference).hash & (table.length - 1);
+      table[ index] = copyWithout( table[ index], null);
+    }
+    this.table = table;
+  }
+
+  /**
+   * Replace the table with a table that has twice as many buckets.
+   */
+  private void resize()
+  {
+    Node<K, V>[] table = this.table;
+    Node<K, V>[] result = newTable( table.length * 2);
+    for( int i=0; i<table.length; i++)
+    {
+      for( Node<K, V> node = table[ i]; node != null; node = node.next)
+      {
+        K key = node.get();
+        if ( key == null) continue;
+        int index = node.hash & (result.length - 1);
+        result[ index] = new Node<K, V>( key, node.hash, node.value, result[ index], queue);
+      }
+    }
+
+    // nodes whose keys were collected are dropped, but may still be enqueued
+    size = 0;
+    for( int i=0; i<result.length; i++)
+      for( Node<K, V> node = result[ i]; node != null; node = node.next)
+        size++;
+
+    this.table = result;
+  }
+
+  /**
+   * Returns a new table with the specified number of buckets.
+   * @param length The number of buckets.
+   * @return Returns the table.
+   */
+  @SuppressWarnings("unchecked")
+  private static <K, V> Node<K, V>[] newTable( int length)
+  {
+    return (Node<K, V>[])new Node<?, ?>[ length];
+  }
+
+  /**
+   * Returns a copy of the specified chain without the specified node, and without the nodes whose keys have been
+   * collected, and decrement the size for each node that is dropped.  The unchanged tail of the chain is shared.
+   * @param head Null or the first node of the chain.
+   * @param removed Null or the node to be removed.
+   * @return Returns the first node of the new chain.
+   */
+  private Node<K, V> copyWithout( Node<K, V> head, Node<K, V> removed)
+  {
+    if ( head == null) return null;
+
+    Node<K, V> next = copyWithout( head.next, removed);
+    K key = head.get();
+    if ( head == removed || key == null)
+    {
+      size--;
+      return next;
+    }
+
+    if ( next == head.next) return head;
+    return new Node<K, V>( key, head.hash, head.value, next, queue);
+  }
+
+  /**
+   * An immutable node of a chain.
+   */
+  private final static class Node<K, V> extends WeakReference<K>
+  {
+    Node( K key, int hash, V value, Node<K, V> next, ReferenceQueue<K> queue)
+    {
+      super( key, queue);
+      this.hash = hash;
+      this.value = value;
+      this.next = next;
+    }
+
+    final int hash;
+    final V value;
+    final Node<K, V> next;
+  }
+
+  private volatile Node<K, V>[] table;
+  private ReferenceQueue<K> queue;
+  private int size;
+}
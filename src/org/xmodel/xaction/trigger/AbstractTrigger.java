@@ -19,11 +19,22 @@
  */
 package org.xmodel.xaction.trigger;
 
+import org.xmodel.GlobalSettings;
+import org.xmodel.IModel;
 import org.xmodel.Xlate;
+import org.xmodel.path.ListenerChain;
+import org.xmodel.xaction.ScriptAction;
 import org.xmodel.xaction.XActionDocument;
+import org.xmodel.xpath.expression.IContext;
 
 /**
  * An base implementation of the ITrigger interface.
+ * <p>
+ * If the <i>lazy</i> attribute of the trigger is true, the trigger expression is bound with lazy listener chains
+ * (see ListenerChain.setLazy) and with the sync lock, so that activating the trigger does not sync external
+ * references.  Nodes beneath a dirty reference are reported to the trigger when the reference is synced.  A
+ * script that runs synchronously during activation or deactivation, such as the initial notification of an
+ * immediate trigger, runs with the lazy flag and sync lock that were in effect before the binding began.
  */
 public abstract class AbstractTrigger implements ITrigger
 {
@@ -33,6 +44,71 @@ public abstract class AbstractTrigger implements ITrigger
   public void configure( XActionDocument document)
   {
     this.document = document;
+    this.lazy = Xlate.get( document.getRoot(), "lazy", false);
+  }
+  
+  /**
+   * Called before the trigger expression is bound or unbound.
+   * @return Returns the state to be passed to <code>endBinding</code>.
+   */
+  protected Binding beginBinding()
+  {
+    if ( !lazy) return null;
+    
+    IModel model = GlobalSettings.getInstance().getModel();
+    Binding binding = new Binding();
+    binding.wasLazy = ListenerChain.setLazy( true);
+    binding.wasLocked = model.getSyncLock();
+    model.setSyncLock( true);
+    binding.outer = bindings.get();
+    bindings.set( binding);
+    return binding;
+  }
+  
+  /**
+   * Called after the trigger expression is bound or unbound.
+   * @param binding The value returned by <code>beginBinding</code>.
+   */
+  protected void endBinding( Binding binding)
+  {
+    if ( binding == null) return;
+    
+    IModel model = GlobalSettings.getInstance().getModel();
+    model.setSyncLock( binding.wasLocked);
+    ListenerChain.setLazy( binding.wasLazy);
+    bindings.set( binding.outer);
+  }
+  
+  /**
+   * Run the specified script.  If a lazy binding is in progress on the current thread, the script runs with the
+   * lazy flag and sync lock that were in effect before the binding began, so that the script syncs the references
+   * that it reads and does not bind its own expressions lazily.
+   * @param script The script.
+   * @param context The context.
+   */
+  protected void runScript( ScriptAction script, IContext context)
+  {
+    Binding binding = bindings.get();
+    if ( binding == null)
+    {
+      script.run( context);
+      return;
+    }
+    
+    IModel model = GlobalSettings.getInstance().getModel();
+    bindings.set( null);
+    ListenerChain.setLazy( binding.wasLazy);
+    model.setSyncLock( binding.wasLocked);
+    try
+    {
+      script.run( context);
+    }
+    finally
+    {
+      model.setSyncLock( true);
+      ListenerChain.setLazy( true);
+      bindings.set( binding);
+    }
   }
   
   /* (non-Javadoc)
@@ -52,5 +128,15 @@ public abstract class AbstractTrigger implements ITrigger
     return Xlate.get( document.getRoot(), "name", (String)null);
   }
   
+  protected final static class Binding
+  {
+    boolean wasLazy;
+    boolean wasLocked;
+    Binding outer;
+  }
+  
+  private static ThreadLocal<Binding> bindings = new ThreadLocal<Binding>();
+  
   protected XActionDocument document;
+  protected boolean lazy;
 }
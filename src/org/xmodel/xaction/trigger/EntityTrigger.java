@@ -62,7 +62,16 @@ public class EntityTrigger extends AbstractTrigger
   public void activate( IContext context)
   {
     this.context = (StatefulContext)context;
-    entityExpr.addNotifyListener( context, entityListener);
+
+    Binding binding = beginBinding();
+    try
+    {
+      entityExpr.addNotifyListener( context, entityListener);
+    }
+    finally
+    {
+      endBinding( binding);
+    }
   }
   
   /* (non-Javadoc)
@@ -70,7 +79,15 @@ public class EntityTrigger extends AbstractTrigger
    */
   public void deactivate( IContext context)
   {
-    entityExpr.removeListener( context, entityListener);
+    Binding binding = beginBinding();
+    try
+    {
+      entityExpr.removeListener( context, entityListener);
+    }
+    finally
+    {
+      endBinding( binding);
+    }
   }
 
   private void dispatch( IContext context)
@@ -123,7 +140,7 @@ public class EntityTrigger extends AbstractTrigger
     {
       SLog.debugf( EntityTrigger.this, "Trigger notifyUpdate(): %s", EntityTrigger.this.toString());
       context.set( "changes", new ArrayList<IModelObject>( touched));
-      script.run( context);
+      runScript( script, context);
       touched.clear();
     }
   };
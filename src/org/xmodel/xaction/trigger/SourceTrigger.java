@@ -69,13 +69,21 @@ public class SourceTrigger extends AbstractTrigger
    */
   public void activate( IContext context)
   {
-    if ( initialize)
+    Binding binding = beginBinding();
+    try
     {
-      triggerExpr.addNotifyListener( context, conditionListener);
+      if ( initialize)
+      {
+        triggerExpr.addNotifyListener( context, conditionListener);
+      }
+      else
+      {
+        triggerExpr.addListener( context, conditionListener);
+      }
     }
-    else
+    finally
     {
-      triggerExpr.addListener( context, conditionListener);
+      endBinding( binding);
     }
   }
 
@@ -84,13 +92,21 @@ public class SourceTrigger extends AbstractTrigger
    */
   public void deactivate( IContext context)
   {
-    if ( finalize)
+    Binding binding = beginBinding();
+    try
     {
-      triggerExpr.removeNotifyListener( context, conditionListener);
+      if ( finalize)
+      {
+        triggerExpr.removeNotifyListener( context, conditionListener);
+      }
+      else
+      {
+        triggerExpr.removeListener( context, conditionListener);
+      }
     }
-    else
+    finally
     {
-      triggerExpr.removeListener( context, conditionListener);
+      endBinding( binding);
     }
   }
   
@@ -232,7 +248,7 @@ public class SourceTrigger extends AbstractTrigger
     {
       log.debugf( "Trigger notifyAdd( %d nodes): %s", nodes.size(), SourceTrigger.this);
       setTriggerVariable( context, "added", nodes); 
-      script.run( context);
+      runScript( script, context);
     }
     
     IContext context;
@@ -245,7 +261,7 @@ public class SourceTrigger extends AbstractTrigger
     {
       log.debugf( "Trigger notifyRemove( %d nodes): %s", nodes.size(), SourceTrigger.this);
       setTriggerVariable( context, "removed", nodes); 
-      script.run( context);
+      runScript( script, context);
     }
     
     IContext context;
@@ -257,7 +273,7 @@ public class SourceTrigger extends AbstractTrigger
     public void run()
     {
       log.debugf( "Trigger notifyChange( %s, %s): %s", newValue, oldValue, SourceTrigger.this);
-      script.run( context);
+      runScript( script, context);
     }
 
     IContext context;
@@ -271,7 +287,7 @@ public class SourceTrigger extends AbstractTrigger
     {
       log.debugf( "Trigger notifyChange( %s, %s): %s", newValue, oldValue, SourceTrigger.this);
       setTriggerVariable( context, "updated", Collections.singletonList( node));
-      script.run( context);
+      runScript( script, context);
     }
 
     IContext context;
@@ -285,7 +301,7 @@ public class SourceTrigger extends AbstractTrigger
     public void run()
     {
       log.debugf( "Trigger notifyChange( %f, %f): %s", newValue, oldValue, SourceTrigger.this);
-      script.run( context);
+      runScript( script, context);
     }
 
     IContext context;
@@ -298,7 +314,7 @@ public class SourceTrigger extends AbstractTrigger
     public void run()
     {
       log.debugf( "Trigger notifyChange( %s): %s", Boolean.toString( newValue), SourceTrigger.this);
-      script.run( context);
+      runScript( script, context);
     }
 
     IContext context;
@@ -65,13 +65,21 @@ public class WhenTrigger extends AbstractTrigger
     correlation++;
     SLog.infof( this, "ACTIVATE %d %s", correlation, this);
     
-    if ( initialize)
+    Binding binding = beginBinding();
+    try
     {
-      triggerExpr.addNotifyListener( context, listener);
+      if ( initialize)
+      {
+        triggerExpr.addNotifyListener( context, listener);
+      }
+      else
+      {
+        triggerExpr.addListener( context, listener);
+      }
     }
-    else
+    finally
     {
-      triggerExpr.addListener( context, listener);
+      endBinding( binding);
     }
   }
   
@@ -80,13 +88,21 @@ public class WhenTrigger extends AbstractTrigger
    */
   public void deactivate( IContext context)
   {
-    if ( finalize)
+    Binding binding = beginBinding();
+    try
     {
-      triggerExpr.removeNotifyListener( context, listener);
+      if ( finalize)
+      {
+        triggerExpr.removeNotifyListener( context, listener);
+      }
+      else
+      {
+        triggerExpr.removeListener( context, listener);
+      }
     }
-    else
+    finally
     {
-      triggerExpr.removeListener( context, listener);
+      endBinding( binding);
     }
   }
 
@@ -139,7 +155,7 @@ public class WhenTrigger extends AbstractTrigger
       if ( WhenTrigger.this.correlation == correlation)
       {
         log.debugf( "Trigger notifyChange( %s): %s", Boolean.toString( newValue), WhenTrigger.this.toString());
-        script.run( context);
+        runScript( script, context);
       }
       else
       {
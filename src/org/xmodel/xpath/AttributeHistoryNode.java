@@ -26,6 +26,8 @@ import org.xmodel.external.ICachingPolicy;
 import org.xmodel.external.ITransaction;
 import org.xmodel.memento.IMemento;
 import org.xmodel.storage.IStorageClass;
+import org.xmodel.storage.Primitives;
+import org.xmodel.storage.SymbolTable;
 
 
 /**
@@ -151,6 +153,30 @@ public class AttributeHistoryNode implements IModelObject
     return null;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttribute(int)
+   */
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsDouble(java.lang.String, double)
+   */
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return Primitives.toDouble( getAttribute( attrName), defaultValue);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsLong(java.lang.String, long)
+   */
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return Primitives.toLong( getAttribute( attrName), defaultValue);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.IModelObject#getAttributeNode(java.lang.String)
    */
@@ -26,6 +26,7 @@ import org.xmodel.external.ICachingPolicy;
 import org.xmodel.external.ITransaction;
 import org.xmodel.memento.IMemento;
 import org.xmodel.storage.IStorageClass;
+import org.xmodel.storage.SymbolTable;
 
 
 /**
@@ -150,6 +151,32 @@ public class AttributeNode implements IModelObject
     return null;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttribute(int)
+   */
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsDouble(java.lang.String, double)
+   */
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    if ( attrName.length() == 0) return source.getAttributeAsDouble( this.attrName, defaultValue);
+    return defaultValue;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsLong(java.lang.String, long)
+   */
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    if ( attrName.length() == 0) return source.getAttributeAsLong( this.attrName, defaultValue);
+    return defaultValue;
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.IModelObject#getAttributeNode(java.lang.String)
    */
@@ -0,0 +1,182 @@
+package org.xmodel.xpath;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of parsed expressions or paths, which is shared by all threads.  The cache holds templates that
+ * are never handed out, so the caller is responsible for cloning a template before using it, and XPath clones
+ * each template once per thread.  The cache is
+ * divided into segments that are locked independently, and each segment evicts its least recently used entry
+ * when it is full, so the cache as a whole approximates least recently used eviction.
+ */
+public final class ExpressionCache<T>
+{
+  /**
+   * Create a cache with the specified capacity.
+   * @param capacity The maximum number of entries.
+   */
+  @SuppressWarnings("unchecked")
+  public ExpressionCache( int capacity)
+  {
+    this.capacity = capacity;
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    this.evictions = new AtomicLong();
+
+    int segmentCapacity = (capacity + segmentCount - 1) / segmentCount;
+    segments = (Segment<T>[])new Segment<?>[ segmentCount];
+    for( int i=0; i<segmentCount; i++) segments[ i] = new Segment<T>( segmentCapacity, evictions);
+  }
+
+  /**
+   * Returns the template for the specified specification.
+   * @param spec The specification.
+   * @return Returns null or the template.
+   */
+  public T get( String spec)
+  {
+    Segment<T> segment = getSegment( spec);
+    T template;
+    synchronized( segment)
+    {
+      template = segment.get( spec);
+    }
+
+    if ( template != null) hits.incrementAndGet(); else misses.incrementAndGet();
+    return template;
+  }
+
+  /**
+   * Add the template for the specified specification.  If two threads parse the same specification at the same
+   * time, then the template of the last thread is retained.
+   * @param spec The specification.
+   * @param template The template.
+   */
+  public void put( String spec, T template)
+  {
+    Segment<T> segment = getSegment( spec);
+    synchronized( segment)
+    {
+      segment.put( spec, template);
+    }
+  }
+
+  /**
+   * Remove all entries.  The statistics are not reset.
+   */
+  public void clear()
+  {
+    for( Segment<T> segment: segments)
+    {
+      synchronized( segment)
+      {
+        segment.clear();
+      }
+    }
+  }
+
+  /**
+   * @return Returns the number of entries.
+   */
+  public int size()
+  {
+    int size = 0;
+    for( Segment<T> segment: segments)
+    {
+      synchronized( segment)
+      {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return Returns the maximum number of entries.
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * @return Returns the number of lookups that found a template.
+   */
+  public long getHits()
+  {
+    return hits.get();
+  }
+
+  /**
+   * @return Returns the number of lookups that did not find a template.
+   */
+  public long getMisses()
+  {
+    return misses.get();
+  }
+
+  /**
+   * @return Returns the number of templates that were evicted.
+   */
+  public long getEvictions()
+  {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the segment for the specified specification.
+   * @param spec The specification.
+   * @return Returns the segment.
+   */
+  private Segment<T> getSegment( String spec)
+  {
+    int hash = spec.hashCode();
+    hash ^= (hash >>> 16);
+    return segments[ hash & (segmentCount - 1)];
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString()
+  {
+    return String.format( "size=%d, capacity=%d, hits=%d, misses=%d, evictions=%d",
+      size(), capacity, getHits(), getMisses(), getEvictions());
+  }
+
+  @SuppressWarnings("serial")
+  private static class Segment<T> extends LinkedHashMap<String, T>
+  {
+    Segment( int capacity, AtomicLong evictions)
+    {
+      super( 16, 0.75f, true);
+      this.capacity = capacity;
+      this.evictions = evictions;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+     */
+    @Override
+    protected boolean removeEldestEntry( Map.Entry<String, T> eldest)
+    {
+      if ( size() <= capacity) return false;
+      evictions.incrementAndGet();
+      return true;
+    }
+
+    private int capacity;
+    private AtomicLong evictions;
+  }
+
+  private final static int segmentCount = 16;
+
+  private int capacity;
+  private Segment<T>[] segments;
+  private AtomicLong hits;
+  private AtomicLong misses;
+  private AtomicLong evictions;
+}
@@ -23,7 +23,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import org.xmodel.BreadthFirstIterator;
+import java.util.NoSuchElementException;
+import org.xmodel.DepthFirstIterator;
+import org.xmodel.DescendantIndex;
 import org.xmodel.FollowingIterator;
 import org.xmodel.IAxis;
 import org.xmodel.IModelObject;
@@ -32,13 +34,22 @@ import org.xmodel.IPathElement;
 import org.xmodel.IPredicate;
 import org.xmodel.PrecedingIterator;
 import org.xmodel.log.Log;
+import org.xmodel.storage.IndexedChildList;
+import org.xmodel.storage.SymbolTable;
 import org.xmodel.util.Fifo;
 import org.xmodel.xpath.expression.Context;
+import org.xmodel.xpath.expression.EqualityExpression;
 import org.xmodel.xpath.expression.ExpressionException;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
 import org.xmodel.xpath.expression.IExpression.ResultType;
+import org.xmodel.xpath.expression.LiteralExpression;
+import org.xmodel.xpath.expression.ParallelEvaluator;
+import org.xmodel.xpath.expression.PathExpression;
+import org.xmodel.xpath.expression.PredicateExpression;
 import org.xmodel.xpath.expression.SubContext;
+import org.xmodel.xpath.expression.VariableExpression;
+import org.xmodel.xpath.function.StringFunction;
 
 
 /**
@@ -153,6 +164,31 @@ public class PathElement implements IPathElement, IAxis
   {
     int start = 0;
     if ( result == null) result = new ArrayList<IModelObject>(); else start = result.size();
+    if ( axis == CHILD && predicate != null && queryIndex( parent, object, result)) 
+    {
+      filterNodeSet( parent, result, start, 1);
+      return result;
+    }
+    if ( (axis & ~SELF) == DESCENDANT && DescendantIndex.isActive() && object.getParent() == null)
+    {
+      int first = queryDescendantIndex( parent, object, result);
+      if ( first >= 0)
+      {
+        filterNodeSet( parent, result, start, first);
+        return result;
+      }
+    }
+    if ( predicate != null && isPositional( parent))
+    {
+      // select the position without creating the whole node-set
+      Iterator<IModelObject> candidates = findCandidates( object);
+      if ( candidates != null)
+      {
+        findPosition( parent, candidates, result);
+        filterNodeSet( parent, result, start, 1);
+        return result;
+      }
+    }
     if ( (axis & ROOT) != 0) 
     {
       int oldSize = result.size();
@@ -174,7 +210,7 @@ public class PathElement implements IPathElement, IAxis
     if ( (axis & ATTRIBUTE) != 0) findMatchingAttributes( object, type, result);
     
     // apply predicate
-    filterNodeSet( parent, result, start);
+    filterNodeSet( parent, result, start, 0);
     
     return result;
   }
@@ -190,6 +226,19 @@ public class PathElement implements IPathElement, IAxis
     return result;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.IPathElement#iterate(org.xmodel.xpath.expression.IContext, org.xmodel.IModelObject)
+   */
+  public Iterator<IModelObject> iterate( IContext parent, IModelObject object)
+  {
+    if ( predicate == null)
+    {
+      Iterator<IModelObject> candidates = findCandidates( object);
+      if ( candidates != null) return candidates;
+    }
+    return query( parent, object, null).iterator();
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.IPathElement#evaluate(org.xmodel.xpath.expression.IContext, 
    * org.xmodel.IPath, org.xmodel.IModelObject)
@@ -295,12 +344,10 @@ public class PathElement implements IPathElement, IAxis
       }
       else if ( type.indexOf( "*") < 0)
       {
-        // make specific getChildren call
-        if ( result == null) result = new ArrayList<IModelObject>();
+        // make specific getChildren call (all children returned have the requested type)
         List<IModelObject> children = object.getChildren( type);
-        for( IModelObject child: children)
-          if ( child.getType().charAt( 0) != '?' && performNodeTest( child, type))
-            result.add( child);
+        if ( result == null) result = new ArrayList<IModelObject>( children.size());
+        if ( type.charAt( 0) != '?') result.addAll( children);
         return result;
       }
       else
@@ -340,7 +387,7 @@ public class PathElement implements IPathElement, IAxis
    */
   private final List<IModelObject> findMatchingDescendants( IModelObject object, String type, List<IModelObject> result)
   {
-    BreadthFirstIterator iter = new BreadthFirstIterator( object);
+    DepthFirstIterator iter = new DepthFirstIterator( object);
     while( iter.hasNext())
     {
       IModelObject descendant = (IModelObject)iter.next();
@@ -499,8 +546,10 @@ public class PathElement implements IPathElement, IAxis
     {
       if ( name.endsWith( ")") && name.equals( "text()"))
         name = "";
-        
-      if ( object.getAttribute( name) != null)
+      
+      // use the symbol of the node-test when the name is the node-test of this element
+      Object value = (name == type)? object.getAttribute( getSymbol()): object.getAttribute( name);
+      if ( value != null)
         result.add( object.getAttributeNode( name));
     }
     else
@@ -516,6 +565,15 @@ public class PathElement implements IPathElement, IAxis
     return result;
   }
   
+  /**
+   * @return Returns the symbol of the node-test in the SymbolTable.
+   */
+  private final int getSymbol()
+  {
+    if ( symbol < 0) symbol = SymbolTable.getSymbol( type);
+    return symbol;
+  }
+  
   /**
    * Find the test node of the specified object add it to the result list. If the result list
    * parameter is not null, then the matching objects are stored in that list, otherwise a new list
@@ -658,20 +716,234 @@ public class PathElement implements IPathElement, IAxis
     }
   }
   
+  /**
+   * Returns an iterator which finds the objects on the axis of this PathElement that pass the node-test as they
+   * are requested, without applying the predicate.  The iterator is only available for the child and descendant
+   * axes with an element node-test.
+   * @param object The target object.
+   * @return Returns null or the iterator.
+   */
+  private final Iterator<IModelObject> findCandidates( IModelObject object)
+  {
+    if ( type != null && (type.indexOf( '(') >= 0 || type.startsWith( "processing-instruction"))) return null;
+    
+    if ( axis == CHILD)
+    {
+      if ( type != null && type.indexOf( '*') < 0)
+      {
+        if ( type.length() > 0 && type.charAt( 0) == '?') return Collections.<IModelObject>emptyList().iterator();
+        return object.getChildren( type).iterator();
+      }
+      return new CandidateIterator( object.getChildren().iterator(), null, true);
+    }
+    
+    if ( axis == DESCENDANT)
+    {
+      if ( isIndexableType() && DescendantIndex.isActive())
+      {
+        List<IModelObject> descendants = DescendantIndex.find( object, type);
+        if ( descendants != null) return descendants.iterator();
+      }
+      return new CandidateIterator( new DepthFirstIterator( object), object, false);
+    }
+    
+    return null;
+  }
+  
+  /**
+   * Find the objects on the descendant, or descendant-or-self, axis of the specified object using the index of
+   * the descendants of a root declared with <code>DescendantIndex.addRoot</code>.  If the first predicate of
+   * this PathElement compares an attribute with a literal or variable string, and the attribute has a secondary
+   * index, then only the descendants that satisfy the first predicate are found.
+   * @param parent The parent context or null.
+   * @param object The target object.
+   * @param result The list where the objects are stored.
+   * @return Returns the index of the first predicate argument to be applied, or -1 if the index cannot be used.
+   */
+  private final int queryDescendantIndex( IContext parent, IModelObject object, List<IModelObject> result)
+  {
+    if ( !isIndexableType()) return -1;
+    
+    if ( predicate != null)
+    {
+      if ( !indexAnalyzed) analyzeIndexTest();
+      if ( indexAttribute != null && (parent != null || indexValue instanceof LiteralExpression))
+      {
+        try
+        {
+          if ( indexValue.getType( parent) == ResultType.STRING)
+          {
+            String value = indexValue.evaluateString( parent);
+            List<IModelObject> matches = DescendantIndex.find( object, type, indexAttribute, value);
+            if ( matches != null)
+            {
+              if ( (axis & SELF) != 0 && performNodeTest( object, type))
+              {
+                Object attrValue = object.getAttribute( indexAttribute);
+                if ( value.equals( StringFunction.stringValueOf( attrValue))) result.add( object);
+              }
+              result.addAll( matches);
+              return 1;
+            }
+          }
+        }
+        catch( ExpressionException e)
+        {
+          return -1;
+        }
+      }
+    }
+    
+    List<IModelObject> descendants = DescendantIndex.find( object, type);
+    if ( descendants == null) return -1;
+    
+    if ( (axis & SELF) != 0) findMatchingSelf( object, type, result);
+    result.addAll( descendants);
+    return 0;
+  }
+  
+  /**
+   * @return Returns true if the node-test of this PathElement is an element type without a wildcard.
+   */
+  private final boolean isIndexableType()
+  {
+    if ( type == null || type.length() == 0 || type.charAt( 0) == '?') return false;
+    return type.indexOf( '*') < 0 && type.indexOf( '(') < 0;
+  }
+  
+  /**
+   * Returns true if the first predicate of this PathElement is a numeric expression that selects a position.
+   * @param parent The parent context or null.
+   * @return Returns true if the first predicate selects a position.
+   */
+  private final boolean isPositional( IContext parent)
+  {
+    List<IExpression> arguments = ((IExpression)predicate).getArguments();
+    if ( arguments.size() == 0) return false;
+    return arguments.get( 0).getType( parent) == ResultType.NUMBER;
+  }
+  
+  /**
+   * Add the candidate at the position selected by the first predicate of this PathElement to the result list.
+   * Candidates after the position are not visited.
+   * @param parent The parent context or null.
+   * @param candidates The candidates.
+   * @param result The list where the selected candidate is stored.
+   */
+  private final void findPosition( IContext parent, Iterator<IModelObject> candidates, List<IModelObject> result)
+  {
+    IExpression argument = ((IExpression)predicate).getArgument( 0);
+    try
+    {
+      int position = (int)argument.evaluateNumber( parent);
+      if ( position < 1) throw new ExpressionException( argument, "position values begin with 1");
+      for( int i=1; candidates.hasNext(); i++)
+      {
+        IModelObject candidate = candidates.next();
+        if ( i == position)
+        {
+          result.add( candidate);
+          return;
+        }
+      }
+    }
+    catch( ExpressionException e)
+    {
+      log.exception( e);
+    }
+  }
+  
+  /**
+   * Find the children of the specified object which satisfy the first predicate of this PathElement using a 
+   * secondary index of the children, if the first predicate compares an attribute with a literal or variable
+   * string, and the index is declared with <code>IndexedChildList.addIndex</code>.
+   * @param parent The parent context or null.
+   * @param object The target object.
+   * @param result The list where the matching children are stored.
+   * @return Returns false if the index cannot be used.
+   */
+  private final boolean queryIndex( IContext parent, IModelObject object, List<IModelObject> result)
+  {
+    if ( !indexAnalyzed) analyzeIndexTest();
+    if ( indexAttribute == null) return false;
+    
+    String attrName = indexAttribute;
+    IExpression valueExpression = indexValue;
+    if ( !IndexedChildList.isIndexed( type, attrName)) return false;
+    if ( parent == null && !(valueExpression instanceof LiteralExpression)) return false;
+
+    List<IModelObject> children = object.getChildren();
+    if ( !(children instanceof IndexedChildList)) return false;
+    
+    try
+    {
+      if ( valueExpression.getType( parent) != ResultType.STRING) return false;
+      String value = valueExpression.evaluateString( parent);
+      List<IModelObject> matches = ((IndexedChildList)children).getChildren( type, attrName, value);
+      if ( matches == null) return false;
+      result.addAll( matches);
+      return true;
+    }
+    catch( ExpressionException e)
+    {
+      return false;
+    }
+  }
+  
+  /**
+   * Determine whether the first predicate of this PathElement has the form <i>[@attribute = value]</i> where
+   * the value is a literal or variable expression, and store the attribute name and value expression.  A predicate
+   * that compares a child element, such as <i>[name = 'foo']</i>, is not recognized, since the parent list is not
+   * notified when the value of a grandchild changes, and is evaluated by scanning the candidates.
+   */
+  private final void analyzeIndexTest()
+  {
+    indexAnalyzed = true;
+    if ( !isIndexableType()) return;
+    if ( !(predicate instanceof PredicateExpression)) return;
+    
+    List<IExpression> arguments = ((IExpression)predicate).getArguments();
+    if ( arguments.size() == 0 || !(arguments.get( 0) instanceof EqualityExpression)) return;
+    
+    EqualityExpression equality = (EqualityExpression)arguments.get( 0);
+    if ( equality.getOperator() != EqualityExpression.Operator.EQ) return;
+    
+    for( int i=0; i<2; i++)
+    {
+      IExpression lhs = equality.getArgument( i);
+      IExpression rhs = equality.getArgument( 1 - i);
+      if ( !(rhs instanceof LiteralExpression) && !(rhs instanceof VariableExpression)) continue;
+      if ( !(lhs instanceof PathExpression)) continue;
+      
+      IPath path = ((PathExpression)lhs).getPath();
+      if ( path.length() != 1) continue;
+      
+      IPathElement element = path.getPathElement( 0);
+      String attrName = element.type();
+      if ( element.axis() != ATTRIBUTE || element.predicate() != null) continue;
+      if ( attrName == null || attrName.indexOf( '*') >= 0) continue;
+      
+      indexAttribute = attrName;
+      indexValue = rhs;
+      return;
+    }
+  }
+  
   /**
    * Filter the specified node-set using this PathElement's predicate.
    * @param parent The parent context or null.
    * @param nodeSet The node-set to be filtered.
    * @param start The first element to be filtered.
+   * @param first The index of the first predicate argument to be applied.
    */
-  private final void filterNodeSet( IContext parent, List<IModelObject> nodeSet, int start)
+  private final void filterNodeSet( IContext parent, List<IModelObject> nodeSet, int start, int first)
   {
     if ( predicate == null) return;
 
     // evaluate predicates
     IExpression expression = (IExpression)predicate;
     List<IExpression> arguments = expression.getArguments();
-    for ( IExpression argument: arguments)
+    for ( IExpression argument: arguments.subList( first, arguments.size()))
     {
       // FIXME: need a method on IPredicate for filtering entire node-sets so that PredicateExpression
       //        can contain this logic.
@@ -684,48 +956,55 @@ public class PathElement implements IPathElement, IAxis
           if ( position < nodeSet.size())
           {
             IModelObject node = nodeSet.get( position);
-            nodeSet.clear(); nodeSet.add( node);
+            nodeSet.subList( start, nodeSet.size()).clear(); nodeSet.add( node);
           }
           else
           {
-            nodeSet.clear();
+            nodeSet.subList( start, nodeSet.size()).clear();
           }
         }
         catch( ExpressionException e) 
         {
           log.exception( e);
-          nodeSet.clear();
+          nodeSet.subList( start, nodeSet.size()).clear();
         }
       }
       else
       {
         int size = nodeSet.size();
-        for ( int i=start; i<size; i++)
+        if ( ParallelEvaluator.isParallel( nodeSet.subList( start, size), argument))
         {
-          try
-          {
-            IContext context = null;
-            if ( parent == null)
-              context = new Context( nodeSet.get( i), i+1, size);
-            else
-              context = new SubContext( parent, nodeSet.get( i), i+1, size);
-            if ( !argument.evaluateBoolean( context)) nodeSet.set( i, null);
-          }
-          catch( ExpressionException e)
+          ParallelEvaluator.filter( parent, nodeSet, start, argument);
+        }
+        else
+        {
+          for ( int i=start; i<size; i++)
           {
-            log.exception( e);
-            nodeSet.set( i, null);
+            try
+            {
+              IContext context = null;
+              if ( parent == null)
+                context = new Context( nodeSet.get( i), i-start+1, size-start);
+              else
+                context = new SubContext( parent, nodeSet.get( i), i-start+1, size-start);
+              if ( !argument.evaluateBoolean( context)) nodeSet.set( i, null);
+            }
+            catch( ExpressionException e)
+            {
+              log.exception( e);
+              nodeSet.set( i, null);
+            }
           }
         }
+        
+        // compact the node-set in one pass
+        int j = start;
         for ( int i=start; i<size; i++)
         {
           IModelObject resultNode = (IModelObject)nodeSet.get( i);
-          if ( resultNode == null)
-          {
-            nodeSet.remove( i--);
-            size--;
-          }
+          if ( resultNode != null) nodeSet.set( j++, resultNode);
         }
+        nodeSet.subList( j, size).clear();
       }
     }
   }
@@ -895,9 +1174,76 @@ public class PathElement implements IPathElement, IAxis
     return buffer.toString();
   }
 
+  /**
+   * An iterator over the objects of another iterator that pass the node-test of this PathElement.
+   */
+  private final class CandidateIterator implements Iterator<IModelObject>
+  {
+    /**
+     * @param iterator The objects on the axis.
+     * @param exclude Null or an object that is not a candidate.
+     * @param elementsOnly True if processing instructions are not candidates.
+     */
+    public CandidateIterator( Iterator<IModelObject> iterator, IModelObject exclude, boolean elementsOnly)
+    {
+      this.iterator = iterator;
+      this.exclude = exclude;
+      this.elementsOnly = elementsOnly;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext()
+    {
+      while( next == null && iterator.hasNext())
+      {
+        IModelObject object = iterator.next();
+        if ( object == exclude) continue;
+        
+        if ( elementsOnly)
+        {
+          String objectType = object.getType();
+          if ( objectType.length() > 0 && objectType.charAt( 0) == '?') continue;
+        }
+        
+        if ( performNodeTest( object, type)) next = object;
+      }
+      return next != null;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Iterator#next()
+     */
+    public IModelObject next()
+    {
+      if ( !hasNext()) throw new NoSuchElementException();
+      IModelObject result = next;
+      next = null;
+      return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Iterator#remove()
+     */
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+    
+    private Iterator<IModelObject> iterator;
+    private IModelObject exclude;
+    private boolean elementsOnly;
+    private IModelObject next;
+  }
+  
   int axis;
   String type;
   IPredicate predicate;
+  private int symbol = -1;
+  private boolean indexAnalyzed;
+  private String indexAttribute;
+  private IExpression indexValue;
   
   private static Log log = Log.getLog( "org.xmodel.xml");
 }
@@ -26,6 +26,7 @@ import org.xmodel.external.ICachingPolicy;
 import org.xmodel.external.ITransaction;
 import org.xmodel.memento.IMemento;
 import org.xmodel.storage.IStorageClass;
+import org.xmodel.storage.SymbolTable;
 
 
 /**
@@ -146,6 +147,30 @@ public class TextNode implements IModelObject
     return attrName.equals( "")? source.getValue(): null;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttribute(int)
+   */
+  public Object getAttribute( int symbol)
+  {
+    return getAttribute( SymbolTable.getName( symbol));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsDouble(java.lang.String, double)
+   */
+  public double getAttributeAsDouble( String attrName, double defaultValue)
+  {
+    return attrName.equals( "")? source.getAttributeAsDouble( "", defaultValue): defaultValue;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.IModelObject#getAttributeAsLong(java.lang.String, long)
+   */
+  public long getAttributeAsLong( String attrName, long defaultValue)
+  {
+    return attrName.equals( "")? source.getAttributeAsLong( "", defaultValue): defaultValue;
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.IModelObject#getAttributeNode(java.lang.String)
    */
@@ -21,7 +21,7 @@ package org.xmodel.xpath;
 
 import java.io.StringReader;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,6 +32,7 @@ import org.xmodel.IPath;
 import org.xmodel.IPathElement;
 import org.xmodel.PathSyntaxException;
 import org.xmodel.log.Log;
+import org.xmodel.xpath.expression.ExpressionOptimizer;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
 import org.xmodel.xpath.expression.PathExpression;
@@ -114,8 +115,9 @@ public class XPath extends AbstractPath implements IAxis
 
   /**
    * Convenience method for creating XPath objects without having to handle the PathSyntaxException.
-   * If the path has a syntax problem, this method merely returns null. This method caches xpath
-   * expression for faster access.
+   * If the path has a syntax problem, this method merely returns null. The path is parsed once into 
+   * a template that is shared by all threads, and each thread caches its own copy of the template, 
+   * which is returned to every caller on the thread.
    * @param spec The xpath expression to compile.
    * @return Returns null or the XPath object.
    */
@@ -123,13 +125,19 @@ public class XPath extends AbstractPath implements IAxis
   {
     try
     {
-      Map<String, IPath> cache = getPathCache();
-      IPath path = cache.get( spec);
-      if ( path == null)
+      Map<String, IPath> instances = threadPaths.get();
+      IPath path = instances.get( spec);
+      if ( path != null) return path;
+      
+      IPath template = pathCache.get( spec);
+      if ( template == null)
       {
-        path = new XPath( spec);
-        cache.put( spec, path);
+        template = new XPath( spec);
+        pathCache.put( spec, template);
       }
+      
+      path = template.clone();
+      instances.put( spec, path);
       return path;
     }
     catch( PathSyntaxException e)
@@ -141,6 +149,9 @@ public class XPath extends AbstractPath implements IAxis
   
   /**
    * Create an arbitrary expression using the XPath 1.0 parser and add the expression to the XPath cache.
+   * The expression is parsed once into a template that is shared by all threads, and each thread caches 
+   * its own copy of the template, which is returned to every caller on the thread, so its compiled form 
+   * is retained between calls.  A caller that needs an instance of its own should clone the result.
    * @param spec The xpath expression to compile.
    * @return Returns the root of the expression tree.
    */
@@ -148,16 +159,19 @@ public class XPath extends AbstractPath implements IAxis
   {
     try
     {
-      Map<String, IExpression> cache = getExprCache();
-      IExpression expression = cache.get( spec);
-      if ( expression == null)
+      Map<String, IExpression> instances = threadExpressions.get();
+      IExpression expression = instances.get( spec);
+      if ( expression != null) return expression;
+      
+      IExpression template = exprCache.get( spec);
+      if ( template == null)
       {
         try
         {
           XPathParser parser = new XPathParser( new StringReader( spec));
           parser.setSpec( spec);
-          expression = parser.ParseExpression();
-          cache.put( spec, expression);
+          template = ExpressionOptimizer.optimize( parser.ParseExpression());
+          exprCache.put( spec, template);
         }
         catch( ParseException e)
         {
@@ -170,6 +184,9 @@ public class XPath extends AbstractPath implements IAxis
             "Syntax Error: %s: %s", spec, e.getMessage()), e);
         }
       }
+      
+      expression = (IExpression)template.clone();
+      instances.put( spec, expression);
       return expression;
     }
     catch( PathSyntaxException e)
@@ -196,7 +213,7 @@ public class XPath extends AbstractPath implements IAxis
       {
         XPathParser parser = new XPathParser( new StringReader( spec));
         parser.setSpec( spec);
-        IExpression result = parser.ParseExpression();
+        IExpression result = ExpressionOptimizer.optimize( parser.ParseExpression());
         return result;
       }
       catch( ParseException e)
@@ -218,7 +235,9 @@ public class XPath extends AbstractPath implements IAxis
     parser.setSpec( spec);
     try
     {
-      return parser.ParseExpressions();
+      List<IExpression> expressions = parser.ParseExpressions();
+      for( IExpression expression: expressions) ExpressionOptimizer.optimize( expression);
+      return expressions;
     }
     catch( ParseException e)
     {
@@ -238,6 +257,7 @@ public class XPath extends AbstractPath implements IAxis
     try
     {
       parser.ParsePath( this);
+      ExpressionOptimizer.optimize( this);
     }
     catch( ParseException e)
     {
@@ -255,7 +275,7 @@ public class XPath extends AbstractPath implements IAxis
     {
       XPathParser parser = new XPathParser( new StringReader( expression));
       parser.setSpec( expression);
-      IExpression result = parser.ParseExpression();
+      IExpression result = ExpressionOptimizer.optimize( parser.ParseExpression());
       return result;
     }
     catch( ParseException e)
@@ -291,33 +311,45 @@ public class XPath extends AbstractPath implements IAxis
   }
 
   /**
-   * Returns the expression cache for this thread.
-   * @return Returns the expression cache for this thread.
+   * Returns the cache used by the <code>createPath</code> method.
+   * @return Returns the cache of parsed paths.
    */
-  private static Map<String, IPath> getPathCache()
+  public static ExpressionCache<IPath> getPathCache()
   {
-    Map<String, IPath> cache = threadPathCaches.get();
-    if ( cache == null)
-    {
-      cache = new HashMap<String, IPath>();
-      threadPathCaches.set( cache);
-    }
-    return cache;
+    return pathCache;
   }
   
   /**
-   * Returns the expression cache for this thread.
-   * @return Returns the expression cache for this thread.
+   * Returns the cache used by the <code>createExpression</code> method.
+   * @return Returns the cache of parsed expressions.
    */
-  private static Map<String, IExpression> getExprCache()
+  public static ExpressionCache<IExpression> getExpressionCache()
   {
-    Map<String, IExpression> cache = threadExprCaches.get();
-    if ( cache == null)
+    return exprCache;
+  }
+  
+  /**
+   * The copies of the templates that belong to a thread, which evicts its least recently used copy when full.
+   */
+  @SuppressWarnings("serial")
+  private static class InstanceMap<T> extends LinkedHashMap<String, T>
+  {
+    InstanceMap( int capacity)
+    {
+      super( 16, 0.75f, true);
+      this.capacity = capacity;
+    }
+    
+    /* (non-Javadoc)
+     * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+     */
+    @Override
+    protected boolean removeEldestEntry( Map.Entry<String, T> eldest)
     {
-      cache = new HashMap<String, IExpression>();
-      threadExprCaches.set( cache);
+      return size() > capacity;
     }
-    return cache;
+    
+    private int capacity;
   }
   
   /* (non-Javadoc)
@@ -353,8 +385,24 @@ public class XPath extends AbstractPath implements IAxis
     return builder.toString();
   }
   
-  private static ThreadLocal<Map<String, IPath>> threadPathCaches = new ThreadLocal<Map<String, IPath>>();
-  private static ThreadLocal<Map<String, IExpression>> threadExprCaches = new ThreadLocal<Map<String, IExpression>>();
+  private final static int cacheCapacity = Integer.getInteger( "org.xmodel.xpath.cache", 4096);
+  
+  private static ExpressionCache<IPath> pathCache = new ExpressionCache<IPath>( cacheCapacity);
+  private static ExpressionCache<IExpression> exprCache = new ExpressionCache<IExpression>( cacheCapacity);
+  
+  private static ThreadLocal<Map<String, IPath>> threadPaths = new ThreadLocal<Map<String, IPath>>() {
+    protected Map<String, IPath> initialValue()
+    {
+      return new InstanceMap<IPath>( cacheCapacity);
+    }
+  };
+  
+  private static ThreadLocal<Map<String, IExpression>> threadExpressions = new ThreadLocal<Map<String, IExpression>>() {
+    protected Map<String, IExpression> initialValue()
+    {
+      return new InstanceMap<IExpression>( cacheCapacity);
+    }
+  };
   
   private static Log log = Log.getLog( "org.xmodel.xml");
   
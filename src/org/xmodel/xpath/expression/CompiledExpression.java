@@ -0,0 +1,40 @@
+package org.xmodel.xpath.expression;
+
+/**
+ * The base class of the classes generated by ExpressionCompiler.  A generated class evaluates an expression tree
+ * without visiting the nodes that were compiled, and evaluates the subtrees that were not compiled by calling the
+ * interpreter.  The class must be public since the generated classes are defined by another class loader.
+ */
+public abstract class CompiledExpression
+{
+  /**
+   * Evaluate the expression as a boolean.
+   * @param context The context.
+   * @return Returns the result.
+   */
+  public abstract boolean evaluateBoolean( IContext context) throws ExpressionException;
+
+  /**
+   * Evaluate the expression as a number.
+   * @param context The context.
+   * @return Returns the result.
+   */
+  public abstract double evaluateNumber( IContext context) throws ExpressionException;
+
+  /**
+   * Evaluate the expression as a string.
+   * @param context The context.
+   * @return Returns the result.
+   */
+  public abstract String evaluateString( IContext context) throws ExpressionException;
+
+  /**
+   * The subtrees that are evaluated by the interpreter.
+   */
+  protected IExpression[] e;
+
+  /**
+   * The string literals.
+   */
+  protected String[] s;
+}
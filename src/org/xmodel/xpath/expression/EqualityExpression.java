@@ -19,7 +19,9 @@
  */
 package org.xmodel.xpath.expression;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.xmodel.IChangeSet;
 import org.xmodel.IModelObject;
 import org.xmodel.IModelObjectFactory;
@@ -80,8 +82,8 @@ public class EqualityExpression extends AbstractBinaryBooleanExpression
    */
   protected boolean evaluate( IContext context, IExpression lhs, IExpression rhs) throws ExpressionException
   {
-    ResultType type0 = lhs.getType( context);
-    ResultType type1 = rhs.getType( context);
+    ResultType type0 = (lhsType != null)? lhsType: lhs.getType( context);
+    ResultType type1 = (rhsType != null)? rhsType: rhs.getType( context);
 
     if ( type0 == ResultType.NODES)
     {
@@ -120,31 +122,46 @@ public class EqualityExpression extends AbstractBinaryBooleanExpression
   }
 
   /**
-   * Compare results of the two expressions and set the result member.
+   * Compare results of the two expressions and set the result member.  The string-value of each node is computed
+   * once.  When both node-sets have at least <code>joinThreshold</code> nodes, the comparison is performed with a
+   * hash set instead of a nested loop.
    * @param result1 One side of the operation.
    * @param result2 One side of the operation.
    * @return Returns the boolean result of the comparison.
    */
   private boolean compareResult( List<IModelObject> result1, List<IModelObject> result2)
   {
-    for ( int i=0; i<result1.size(); i++)
+    if ( result1.size() == 0 || result2.size() == 0) return false;
+    
+    String[] strings1 = StringFunction.stringValues( result1);
+    String[] strings2 = StringFunction.stringValues( result2);
+    
+    if ( operator == Operator.NEQ)
     {
-      IModelObject object1 = (IModelObject)result1.get( i);
-      String string1 = StringFunction.stringValue( object1);
-      for ( int j=0; j<result2.size(); j++)
-      {
-        IModelObject object2 = (IModelObject)result2.get( j);
-        String string2 = StringFunction.stringValue( object2);
-        if ( operator == Operator.EQ)
-        {
-          if ( string1.equals( string2)) return true;
-        }
-        else
-        {
-          if ( !string1.equals( string2)) return true;
-        }
-      }
+      // a pair of unequal strings exists unless every string has the same value
+      String first = strings1[ 0];
+      for( int i=1; i<strings1.length; i++) if ( !first.equals( strings1[ i])) return true;
+      for( int i=0; i<strings2.length; i++) if ( !first.equals( strings2[ i])) return true;
+      return false;
     }
+    
+    if ( strings1.length < joinThreshold || strings2.length < joinThreshold)
+    {
+      for( int i=0; i<strings1.length; i++)
+        for( int j=0; j<strings2.length; j++)
+          if ( strings1[ i].equals( strings2[ j])) return true;
+      return false;
+    }
+    
+    // hash the smaller node-set and probe with the larger
+    if ( strings1.length > strings2.length)
+    {
+      String[] swap = strings1; strings1 = strings2; strings2 = swap;
+    }
+    
+    Set<String> set = new HashSet<String>( strings1.length * 2);
+    for( int i=0; i<strings1.length; i++) set.add( strings1[ i]);
+    for( int i=0; i<strings2.length; i++) if ( set.contains( strings2[ i])) return true;
     return false;
   }
   
@@ -276,6 +293,28 @@ public class EqualityExpression extends AbstractBinaryBooleanExpression
     return null;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#addArgument(org.xmodel.xpath.expression.IExpression)
+   */
+  @Override
+  public void addArgument( IExpression argument)
+  {
+    super.addArgument( argument);
+    lhsType = null;
+    rhsType = null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#removeArgument(org.xmodel.xpath.expression.IExpression)
+   */
+  @Override
+  public void removeArgument( IExpression argument)
+  {
+    super.removeArgument( argument);
+    lhsType = null;
+    rhsType = null;
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.Expression#cloneOne()
    */
@@ -284,6 +323,27 @@ public class EqualityExpression extends AbstractBinaryBooleanExpression
   {
     return new EqualityExpression( operator);
   }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#clone()
+   */
+  @Override
+  public Object clone()
+  {
+    // the static types are reset when the cloned arguments are added
+    EqualityExpression clone = (EqualityExpression)super.clone();
+    clone.lhsType = lhsType;
+    clone.rhsType = rhsType;
+    return clone;
+  }
+  
+  /**
+   * The minimum size of both node-sets for which a node-set comparison uses a hash set.
+   */
+  public final static int joinThreshold = 8;
   
   Operator operator;
+  // the types of the operands if they are static, see ExpressionOptimizer, which are reset if an argument changes
+  ResultType lhsType;
+  ResultType rhsType;
 }
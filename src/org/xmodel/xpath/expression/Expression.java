@@ -21,6 +21,7 @@ package org.xmodel.xpath.expression;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import org.xmodel.GlobalSettings;
 import org.xmodel.IChangeSet;
@@ -348,6 +349,18 @@ public abstract class Expression implements IExpression
     throw new ExpressionException( this, "Expression does not return node-set.");
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.IExpression#iterate(
+   * org.xmodel.xpath.expression.IContext)
+   */
+  @Override
+  public Iterator<IModelObject> iterate( IContext context) throws ExpressionException
+  {
+    List<IModelObject> nodes = evaluateNodes( context);
+    if ( nodes == null) return Collections.<IModelObject>emptyList().iterator();
+    return nodes.iterator();
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#evaluateNumber(
    * org.xmodel.xpath.expression.IContext)
@@ -391,7 +404,7 @@ public abstract class Expression implements IExpression
   {
     switch( getType( context))
     {
-      case NODES:  return BooleanFunction.booleanValue( evaluateNodes( context));
+      case NODES:  return iterate( context).hasNext();
       case NUMBER: return BooleanFunction.booleanValue( evaluateNumber( context));
       case STRING: return BooleanFunction.booleanValue( evaluateString( context));
       default: break;
@@ -521,9 +534,8 @@ public abstract class Expression implements IExpression
   {
     try
     {
-      List<IModelObject> nodes = evaluateNodes( new Context( object));
-      if ( nodes == null || nodes.size() == 0) return null;
-      return nodes.get( 0);
+      Iterator<IModelObject> iter = iterate( new Context( object));
+      return iter.hasNext()? iter.next(): null;
     }
     catch( ExpressionException e)
     {
@@ -559,9 +571,8 @@ public abstract class Expression implements IExpression
   {
     try
     {
-      List<IModelObject> nodes = evaluateNodes( context);
-      if ( nodes == null || nodes.size() == 0) return null;
-      return nodes.get( 0);
+      Iterator<IModelObject> iter = iterate( context);
+      return iter.hasNext()? iter.next(): null;
     }
     catch( ExpressionException e)
     {
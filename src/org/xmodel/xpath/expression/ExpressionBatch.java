@@ -0,0 +1,259 @@
+package org.xmodel.xpath.expression;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.xmodel.IModelObject;
+
+/**
+ * The node-set changes of bound expressions which are collected while a batch update is in progress (see
+ * IModel.beginBatch).  The changes are collected for each ExpressionListenerList and context.  A node which is
+ * added and then removed cancels, but a node which is removed and then added is delivered as a removal followed
+ * by an addition, since the listeners of the expression may have state associated with the node.  The remaining
+ * changes are delivered to the listeners as one notifyRemove and one notifyAdd when the batch is committed.
+ * Nodes are compared by identity, so a Reference and its referent are different nodes.
+ * <p>
+ * Only the node-set notifications are deferred.  Before any other notification is delivered to the listeners of
+ * an expression and context, the changes collected for the expression and context are delivered, so that the
+ * listeners receive the notifications in the order in which they occurred.  Listeners which receive deferred
+ * notifications see the state of the model at the time of delivery.
+ */
+public final class ExpressionBatch
+{
+  public ExpressionBatch()
+  {
+    deltas = new LinkedHashMap<Key, Delta>();
+    active.incrementAndGet();
+  }
+
+  /**
+   * @return Returns true if a batch update is in progress on any thread.
+   */
+  static boolean isActive()
+  {
+    return active.get() > 0;
+  }
+
+  /**
+   * Record nodes added to the node-set of the specified expression.
+   * @param list The listeners of the expression.
+   * @param expression The expression.
+   * @param context The context.
+   * @param nodes The nodes that were added.
+   */
+  void notifyAdd( ExpressionListenerList list, IExpression expression, IContext context, List<IModelObject> nodes)
+  {
+    Delta delta = getDelta( list, expression, context);
+    for( IModelObject node: nodes) delta.added.add( node);
+  }
+
+  /**
+   * Record nodes removed from the node-set of the specified expression.
+   * @param list The listeners of the expression.
+   * @param expression The expression.
+   * @param context The context.
+   * @param nodes The nodes that were removed.
+   */
+  void notifyRemove( ExpressionListenerList list, IExpression expression, IContext context, List<IModelObject> nodes)
+  {
+    Delta delta = getDelta( list, expression, context);
+    for( IModelObject node: nodes)
+      if ( !delta.added.remove( node)) delta.removed.add( node);
+  }
+
+  /**
+   * Deliver the changes collected for the specified expression and context before another notification.
+   * @param list The listeners of the expression.
+   * @param context The context.
+   */
+  void flush( ExpressionListenerList list, IContext context)
+  {
+    if ( deltas.size() == 0) return;
+    Delta delta = deltas.remove( new Key( list, context));
+    if ( delta != null) delta.deliver();
+  }
+
+  /**
+   * Deliver the collected changes.  The changes are delivered in the order in which each expression and context
+   * was first changed, and the removed nodes of an expression are delivered before the added nodes.  A batch can
+   * only be committed once.
+   */
+  public void commit()
+  {
+    if ( committed) throw new IllegalStateException( "Batch has already been committed.");
+    committed = true;
+
+    try
+    {
+      while( deltas.size() > 0)
+      {
+        Key key = deltas.keySet().iterator().next();
+        deltas.remove( key).deliver();
+      }
+    }
+    finally
+    {
+      active.decrementAndGet();
+    }
+  }
+
+  /**
+   * @return Returns the number of expression and context pairs with collected changes.
+   */
+  public int size()
+  {
+    return deltas.size();
+  }
+
+  /**
+   * Returns the changes of the specified expression and context.
+   * @param list The listeners of the expression.
+   * @param expression The expression.
+   * @param context The context.
+   * @return Returns the changes.
+   */
+  private Delta getDelta( ExpressionListenerList list, IExpression expression, IContext context)
+  {
+    Key key = new Key( list, context);
+    Delta delta = deltas.get( key);
+    if ( delta == null)
+    {
+      delta = new Delta( list, expression, context);
+      deltas.put( key, delta);
+    }
+    return delta;
+  }
+
+  private final static class Key
+  {
+    Key( ExpressionListenerList list, IContext context)
+    {
+      this.list = list;
+      this.context = context;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals( Object object)
+    {
+      if ( !(object instanceof Key)) return false;
+      Key key = (Key)object;
+      return key.list == list && key.context.equals( context);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode()
+    {
+      return System.identityHashCode( list) ^ context.hashCode();
+    }
+
+    ExpressionListenerList list;
+    IContext context;
+  }
+
+  private final static class Delta
+  {
+    Delta( ExpressionListenerList list, IExpression expression, IContext context)
+    {
+      this.list = list;
+      this.expression = expression;
+      this.context = context;
+      this.added = new NodeSet();
+      this.removed = new NodeSet();
+    }
+
+    /**
+     * Deliver the removed nodes followed by the added nodes.
+     */
+    void deliver()
+    {
+      if ( removed.size() > 0) list.deliverRemove( expression, context, removed.toList());
+      if ( added.size() > 0) list.deliverAdd( expression, context, added.toList());
+    }
+
+    ExpressionListenerList list;
+    IExpression expression;
+    IContext context;
+    NodeSet added;
+    NodeSet removed;
+  }
+
+  /**
+   * A set of nodes which are compared by identity and kept in the order in which they were added.
+   */
+  private final static class NodeSet
+  {
+    NodeSet()
+    {
+      nodes = new ArrayList<IModelObject>();
+      indexes = new IdentityHashMap<IModelObject, Integer>();
+    }
+
+    /**
+     * Add the specified node if it is not already in the set.
+     * @param node The node.
+     */
+    void add( IModelObject node)
+    {
+      if ( indexes.containsKey( node)) return;
+      indexes.put( node, nodes.size());
+      nodes.add( node);
+    }
+
+    /**
+     * Remove the specified node from the set.  The list of nodes is compacted when most of its slots are empty.
+     * @param node The node.
+     * @return Returns true if the node was in the set.
+     */
+    boolean remove( IModelObject node)
+    {
+      Integer index = indexes.remove( node);
+      if ( index == null) return false;
+      nodes.set( index, null);
+
+      if ( nodes.size() > 16 && nodes.size() > 2 * indexes.size())
+      {
+        List<IModelObject> compacted = toList();
+        for( int i=0; i<compacted.size(); i++) indexes.put( compacted.get( i), i);
+        nodes = compacted;
+      }
+      return true;
+    }
+
+    /**
+     * @return Returns the number of nodes in the set.
+     */
+    int size()
+    {
+      return indexes.size();
+    }
+
+    /**
+     * @return Returns the nodes in the order in which they were added.
+     */
+    List<IModelObject> toList()
+    {
+      List<IModelObject> list = new ArrayList<IModelObject>( indexes.size());
+      for( IModelObject node: nodes)
+        if ( node != null)
+          list.add( node);
+      return list;
+    }
+
+    List<IModelObject> nodes;
+    Map<IModelObject, Integer> indexes;
+  }
+
+  private final static AtomicInteger active = new AtomicInteger();
+
+  private Map<Key, Delta> deltas;
+  private boolean committed;
+}
@@ -0,0 +1,416 @@
+package org.xmodel.xpath.expression;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import org.xmodel.log.Log;
+import org.xmodel.xpath.expression.IExpression.ResultType;
+import org.xmodel.xpath.function.BooleanFunction;
+import org.xmodel.xpath.function.FalseFunction;
+import org.xmodel.xpath.function.NotFunction;
+import org.xmodel.xpath.function.NumberFunction;
+import org.xmodel.xpath.function.StringFunction;
+import org.xmodel.xpath.function.TrueFunction;
+
+/**
+ * A compiler that generates a Java class with javassist for an expression tree whose result is a boolean, number
+ * or string.  Literals, arithmetic, negation, logical and comparison expressions and the boolean, number, string,
+ * not, true and false functions are compiled to type-specialized Java expressions, provided that the types of
+ * their arguments are known when the expression is compiled.  All other subtrees, including all location paths,
+ * are evaluated by the interpreter.
+ * <p>
+ * A RootExpression compiles itself after it has been evaluated <code>threshold</code> times.  The compiled class
+ * is only used for evaluation.  Listeners are always bound to the interpreted tree, which must not be modified
+ * after it has been compiled.  The generated classes are defined by one class loader and are reused by every
+ * expression tree that generates the same code, such as the copies of an expression in different threads, so the
+ * number of classes is bounded by the number of distinct expressions that are compiled.
+ */
+public final class ExpressionCompiler
+{
+  /**
+   * Compile the specified expression tree.
+   * @param tree The expression tree.
+   * @return Returns null or the compiled expression.
+   */
+  public static CompiledExpression compile( IExpression tree)
+  {
+    if ( tree instanceof RootExpression) tree = tree.getArgument( 0);
+
+    ResultType type = getCompiledType( tree);
+    if ( type == null || type == ResultType.NODES) return null;
+
+    try
+    {
+      ExpressionCompiler compiler = new ExpressionCompiler();
+      String name = CompiledExpression.class.getName()+"$"+counter.incrementAndGet();
+      return compiler.generate( name, tree);
+    }
+    catch( Exception e)
+    {
+      log.warnf( "Unable to compile expression, %s: %s", tree, e.getMessage());
+      return null;
+    }
+    catch( LinkageError e)
+    {
+      log.warnf( "Unable to compile expression, %s: %s", tree, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Generate the class for the specified expression tree.
+   * @param name The name of the class.
+   * @param tree The expression tree.
+   * @return Returns an instance of the class.
+   */
+  private CompiledExpression generate( String name, IExpression tree) throws Exception
+  {
+    String booleanCode = generate( tree, ResultType.BOOLEAN);
+    String numberCode = generate( tree, ResultType.NUMBER);
+    String stringCode = generate( tree, ResultType.STRING);
+
+    String key = booleanCode+"\n"+numberCode+"\n"+stringCode;
+    Class<?> clss;
+    synchronized( loader)
+    {
+      clss = classes.get( key);
+      if ( clss == null)
+      {
+        clss = define( name, booleanCode, numberCode, stringCode);
+        classes.put( key, clss);
+      }
+    }
+
+    CompiledExpression compiled = (CompiledExpression)clss.getDeclaredConstructor().newInstance();
+    compiled.e = delegates.toArray( new IExpression[ delegates.size()]);
+    compiled.s = strings.toArray( new String[ strings.size()]);
+    return compiled;
+  }
+
+  /**
+   * Define a class with the specified evaluate methods.  The caller must hold the lock of the class loader.
+   * @param name The name of the class.
+   * @param booleanCode The expression returned by the evaluateBoolean method.
+   * @param numberCode The expression returned by the evaluateNumber method.
+   * @param stringCode The expression returned by the evaluateString method.
+   * @return Returns the class.
+   */
+  private static Class<?> define( String name, String booleanCode, String numberCode, String stringCode) throws Exception
+  {
+    CtClass cc = pool.makeClass( name, pool.get( CompiledExpression.class.getName()));
+    cc.addMethod( CtNewMethod.make( createMethod( "boolean", "evaluateBoolean", booleanCode), cc));
+    cc.addMethod( CtNewMethod.make( createMethod( "double", "evaluateNumber", numberCode), cc));
+    cc.addMethod( CtNewMethod.make( createMethod( "String", "evaluateString", stringCode), cc));
+    byte[] bytes = cc.toBytecode();
+    cc.detach();
+    return loader.define( name, bytes);
+  }
+
+  /**
+   * Create the source of an evaluate method.
+   * @param returnType The return type.
+   * @param methodName The method name.
+   * @param code The expression that is returned.
+   * @return Returns the source of the method.
+   */
+  private static String createMethod( String returnType, String methodName, String code)
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append( "public "); sb.append( returnType); sb.append( ' '); sb.append( methodName);
+    sb.append( "( org.xmodel.xpath.expression.IContext c) throws org.xmodel.xpath.expression.ExpressionException");
+    sb.append( " { return "); sb.append( code); sb.append( "; }");
+    return sb.toString();
+  }
+
+  /**
+   * Generate the Java expression that evaluates the specified expression as the specified type.
+   * @param expression The expression.
+   * @param type The type of the Java expression.
+   * @return Returns the Java expression.
+   */
+  private String generate( IExpression expression, ResultType type)
+  {
+    ResultType compiledType = getCompiledType( expression);
+    if ( compiledType == null) return generateDelegate( expression, type);
+    return convert( generateCompiled( expression, compiledType), compiledType, type);
+  }
+
+  /**
+   * Generate the Java expression that calls the interpreter to evaluate the specified expression.
+   * @param expression The expression.
+   * @param type The type of the Java expression.
+   * @return Returns the Java expression.
+   */
+  private String generateDelegate( IExpression expression, ResultType type)
+  {
+    int index = 0;
+    while( index < delegates.size() && delegates.get( index) != expression) index++;
+    if ( index == delegates.size()) delegates.add( expression);
+
+    switch( type)
+    {
+      case BOOLEAN: return "e["+index+"].evaluateBoolean( c)";
+      case NUMBER:  return "e["+index+"].evaluateNumber( c)";
+      default:      return "e["+index+"].evaluateString( c)";
+    }
+  }
+
+  /**
+   * Generate the Java expression for a compiled expression.
+   * @param expression The expression.
+   * @param type The compiled type of the expression.
+   * @return Returns the Java expression.
+   */
+  private String generateCompiled( IExpression expression, ResultType type)
+  {
+    if ( expression instanceof LiteralExpression)
+    {
+      LiteralExpression literal = (LiteralExpression)expression;
+      try
+      {
+        switch( type)
+        {
+          case BOOLEAN: return Boolean.toString( literal.evaluateBoolean( null));
+          case NUMBER:  return generateNumber( literal.evaluateNumber( null));
+          default:
+            strings.add( literal.evaluateString( null));
+            return "s["+(strings.size() - 1)+"]";
+        }
+      }
+      catch( ExpressionException e)
+      {
+        throw new IllegalStateException( e);
+      }
+    }
+
+    if ( expression instanceof ArithmeticExpression)
+    {
+      String lhs = generate( expression.getArgument( 0), ResultType.NUMBER);
+      String rhs = generate( expression.getArgument( 1), ResultType.NUMBER);
+      switch( ((ArithmeticExpression)expression).operator)
+      {
+        case ADD: return "("+lhs+" + "+rhs+")";
+        case SUB: return "("+lhs+" - "+rhs+")";
+        case MUL: return "("+lhs+" * "+rhs+")";
+        case DIV: return "("+lhs+" / "+rhs+")";
+        case MOD: return "("+lhs+" % "+rhs+")";
+      }
+    }
+
+    if ( expression instanceof NegateExpression)
+    {
+      return "(-"+generate( expression.getArgument( 0), ResultType.NUMBER)+")";
+    }
+
+    if ( expression instanceof LogicalExpression)
+    {
+      String lhs = generate( expression.getArgument( 0), ResultType.BOOLEAN);
+      String rhs = generate( expression.getArgument( 1), ResultType.BOOLEAN);
+      return (((LogicalExpression)expression).operator == LogicalExpression.Operator.OR)?
+        "("+lhs+" || "+rhs+")":
+        "("+lhs+" && "+rhs+")";
+    }
+
+    if ( expression instanceof EqualityExpression)
+    {
+      IExpression lhs = expression.getArgument( 0);
+      IExpression rhs = expression.getArgument( 1);
+      ResultType operandType = getComparisonType( getKnownType( lhs), getKnownType( rhs));
+      String lhc = generate( lhs, operandType);
+      String rhc = generate( rhs, operandType);
+      String equal = (operandType == ResultType.STRING)? lhc+".equals( "+rhc+")": "("+lhc+" == "+rhc+")";
+      return (((EqualityExpression)expression).operator == EqualityExpression.Operator.NEQ)? "(!"+equal+")": equal;
+    }
+
+    if ( expression instanceof RelationalExpression)
+    {
+      // string and boolean operands are compared as numbers
+      IExpression lhs = expression.getArgument( 0);
+      IExpression rhs = expression.getArgument( 1);
+      ResultType operandType = getComparisonType( getKnownType( lhs), getKnownType( rhs));
+      if ( operandType == ResultType.STRING) operandType = ResultType.NUMBER;
+      String lhc = convert( generate( lhs, operandType), operandType, ResultType.NUMBER);
+      String rhc = convert( generate( rhs, operandType), operandType, ResultType.NUMBER);
+      switch( ((RelationalExpression)expression).operator)
+      {
+        case GT: return "("+lhc+" > "+rhc+")";
+        case GE: return "("+lhc+" >= "+rhc+")";
+        case LT: return "("+lhc+" < "+rhc+")";
+        case LE: return "("+lhc+" <= "+rhc+")";
+      }
+    }
+
+    if ( expression instanceof BooleanFunction || expression instanceof NumberFunction || expression instanceof StringFunction)
+    {
+      return generate( expression.getArgument( 0), type);
+    }
+
+    if ( expression instanceof NotFunction)
+    {
+      return "("+generate( expression.getArgument( 0), ResultType.BOOLEAN)+" == false)";
+    }
+
+    if ( expression instanceof TrueFunction) return "true";
+    if ( expression instanceof FalseFunction) return "false";
+
+    throw new IllegalStateException( "Expression cannot be compiled: "+expression);
+  }
+
+  /**
+   * Generate the Java literal for the specified number.
+   * @param value The number.
+   * @return Returns the Java literal.
+   */
+  private static String generateNumber( double value)
+  {
+    if ( Double.isNaN( value)) return "(0.0 / 0.0)";
+    if ( Double.isInfinite( value)) return (value > 0)? "(1.0 / 0.0)": "(-1.0 / 0.0)";
+    return "("+Double.toString( value)+"d)";
+  }
+
+  /**
+   * Convert a Java expression from one type to another according to the X-Path 1.0 specification.
+   * @param code The Java expression.
+   * @param from The type of the Java expression.
+   * @param to The required type.
+   * @return Returns the converted Java expression.
+   */
+  private static String convert( String code, ResultType from, ResultType to)
+  {
+    if ( from == to) return code;
+    switch( to)
+    {
+      case BOOLEAN: return "org.xmodel.xpath.function.BooleanFunction.booleanValue( "+code+")";
+      case NUMBER:  return "org.xmodel.xpath.function.NumberFunction.numericValue( "+code+")";
+      default:      return "org.xmodel.xpath.function.StringFunction.stringValue( "+code+")";
+    }
+  }
+
+  /**
+   * Returns the type to which both operands of a comparison are converted.
+   * @param type0 The type of the left-hand-side.
+   * @param type1 The type of the right-hand-side.
+   * @return Returns the type to which both operands are converted.
+   */
+  private static ResultType getComparisonType( ResultType type0, ResultType type1)
+  {
+    if ( type0 == ResultType.BOOLEAN || type1 == ResultType.BOOLEAN) return ResultType.BOOLEAN;
+    if ( type0 == ResultType.NUMBER || type1 == ResultType.NUMBER) return ResultType.NUMBER;
+    return ResultType.STRING;
+  }
+
+  /**
+   * Returns the type of the specified expression if the expression can be compiled.
+   * @param expression The expression.
+   * @return Returns null or the type of the compiled expression.
+   */
+  private static ResultType getCompiledType( IExpression expression)
+  {
+    if ( expression instanceof LiteralExpression)
+    {
+      ResultType type = expression.getType();
+      return (type == ResultType.NODES)? null: type;
+    }
+
+    if ( expression instanceof ArithmeticExpression || expression instanceof NegateExpression)
+    {
+      return ResultType.NUMBER;
+    }
+
+    if ( expression instanceof LogicalExpression)
+    {
+      return ResultType.BOOLEAN;
+    }
+
+    if ( expression instanceof EqualityExpression || expression instanceof RelationalExpression)
+    {
+      ResultType type0 = getKnownType( expression.getArgument( 0));
+      ResultType type1 = getKnownType( expression.getArgument( 1));
+      if ( type0 == null || type1 == null) return null;
+      return ResultType.BOOLEAN;
+    }
+
+    if ( expression instanceof BooleanFunction || expression instanceof NumberFunction || expression instanceof StringFunction)
+    {
+      List<IExpression> arguments = expression.getArguments();
+      if ( arguments.size() != 1 || getCompiledType( arguments.get( 0)) == null) return null;
+      return expression.getType();
+    }
+
+    if ( expression instanceof NotFunction)
+    {
+      List<IExpression> arguments = expression.getArguments();
+      if ( arguments.size() != 1 || getCompiledType( arguments.get( 0)) != ResultType.BOOLEAN) return null;
+      return ResultType.BOOLEAN;
+    }
+
+    if ( expression instanceof TrueFunction || expression instanceof FalseFunction)
+    {
+      return ResultType.BOOLEAN;
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the type of the specified expression if the type is a boolean, number or string in every context.
+   * @param expression The expression.
+   * @return Returns null or the type of the expression.
+   */
+  private static ResultType getKnownType( IExpression expression)
+  {
+    ResultType type = getCompiledType( expression);
+    if ( type != null) return type;
+
+    type = ExpressionOptimizer.getStaticType( expression);
+    return (type == ResultType.NODES)? null: type;
+  }
+
+  /**
+   * The class loader that defines the generated classes.
+   */
+  private final static class Loader extends ClassLoader
+  {
+    public Loader( ClassLoader parent)
+    {
+      super( parent);
+    }
+
+    /**
+     * Define the specified class.
+     * @param name The name of the class.
+     * @param bytes The bytecode of the class.
+     * @return Returns the class.
+     */
+    public Class<?> define( String name, byte[] bytes)
+    {
+      return defineClass( name, bytes, 0, bytes.length);
+    }
+  }
+
+  /**
+   * The number of times a RootExpression is evaluated before it is compiled, or zero if expressions are not
+   * compiled.
+   */
+  public static int threshold = 0;
+
+  private static Log log = Log.getLog( ExpressionCompiler.class);
+  private static AtomicInteger counter = new AtomicInteger();
+  private static Loader loader = new Loader( CompiledExpression.class.getClassLoader());
+  private static ClassPool pool = new ClassPool( false);
+  private static Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+  
+  static
+  {
+    pool.appendClassPath( new LoaderClassPath( CompiledExpression.class.getClassLoader()));
+  }
+
+  private List<IExpression> delegates = new ArrayList<IExpression>();
+  private List<String> strings = new ArrayList<String>();
+}
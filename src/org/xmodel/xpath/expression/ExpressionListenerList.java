@@ -20,6 +20,7 @@
 package org.xmodel.xpath.expression;
 
 import java.util.*;
+import org.xmodel.GlobalSettings;
 import org.xmodel.IModelObject;
 
 
@@ -27,7 +28,9 @@ import org.xmodel.IModelObject;
  * An implementation of IExpressionListener which contains IExpressionListener children and forwards
  * listener notifications to its children. Children can be added and removed during notification. Because
  * IExpression instances can be bound to multiple contexts, listeners must be associated with a particular
- * context when registered.
+ * context when registered.  While a batch update is in progress, node-set notifications are collected by the
+ * ExpressionBatch of the model and delivered when the batch is committed, or before the next notification of
+ * another kind for the same context.
  */
 public class ExpressionListenerList implements IExpressionListener
 {
@@ -99,10 +102,40 @@ public class ExpressionListenerList implements IExpressionListener
    * java.util.List)
    */
   public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
+  {
+    if ( !map.containsKey( context)) return;
+    
+    ExpressionBatch batch = getBatch();
+    if ( batch != null) batch.notifyAdd( this, expression, context, nodes);
+    else deliverAdd( expression, context, nodes);
+  }
+
+  /**
+   * Notify the listeners of the specified context that nodes were added, without regard to batch updates.
+   * @param expression The expression.
+   * @param context The context.
+   * @param nodes The nodes.
+   */
+  void deliverAdd( IExpression expression, IContext context, List<IModelObject> nodes)
   {
     List<IExpressionListener> listeners = map.get( context);
     if ( listeners == null) return;
     
+    // a single listener does not need to be copied
+    if ( listeners.size() == 1)
+    {
+      IExpressionListener listener = listeners.get( 0);
+      try
+      {
+        listener.notifyAdd( expression, context, nodes);
+      }
+      catch( Exception e)
+      {
+        listener.handleException( expression, context, e);
+      }
+      return;
+    }
+    
     Object[] array = listeners.toArray();
     for ( int i=0; i<array.length; i++)
     {
@@ -123,10 +156,40 @@ public class ExpressionListenerList implements IExpressionListener
    * java.util.List)
    */
   public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
+  {
+    if ( !map.containsKey( context)) return;
+    
+    ExpressionBatch batch = getBatch();
+    if ( batch != null) batch.notifyRemove( this, expression, context, nodes);
+    else deliverRemove( expression, context, nodes);
+  }
+
+  /**
+   * Notify the listeners of the specified context that nodes were removed, without regard to batch updates.
+   * @param expression The expression.
+   * @param context The context.
+   * @param nodes The nodes.
+   */
+  void deliverRemove( IExpression expression, IContext context, List<IModelObject> nodes)
   {
     List<IExpressionListener> listeners = map.get( context);
     if ( listeners == null) return;
     
+    // a single listener does not need to be copied
+    if ( listeners.size() == 1)
+    {
+      IExpressionListener listener = listeners.get( 0);
+      try
+      {
+        listener.notifyRemove( expression, context, nodes);
+      }
+      catch( Exception e)
+      {
+        listener.handleException( expression, context, e);
+      }
+      return;
+    }
+    
     Object[] array = listeners.toArray();
     for ( int i=0; i<array.length; i++)
     {
@@ -151,6 +214,7 @@ public class ExpressionListenerList implements IExpressionListener
     List<IExpressionListener> listeners = map.get( context);
     if ( listeners == null) return;
     
+    flush( context);
     Object[] array = listeners.toArray();
     for ( int i=0; i<array.length; i++)
     {
@@ -175,6 +239,7 @@ public class ExpressionListenerList implements IExpressionListener
     List<IExpressionListener> listeners = map.get( context);
     if ( listeners == null) return;
     
+    flush( context);
     Object[] array = listeners.toArray();
     for ( int i=0; i<array.length; i++)
     {
@@ -199,6 +264,7 @@ public class ExpressionListenerList implements IExpressionListener
     List<IExpressionListener> listeners = map.get( context);
     if ( listeners == null) return;
     
+    flush( context);
     Object[] array = listeners.toArray();
     for ( int i=0; i<array.length; i++)
     {
@@ -222,6 +288,7 @@ public class ExpressionListenerList implements IExpressionListener
     List<IExpressionListener> listeners = map.get( context);
     if ( listeners == null) return;
     
+    flush( context);
     Object[] array = listeners.toArray();
     for ( int i=0; i<array.length; i++)
     {
@@ -255,6 +322,7 @@ public class ExpressionListenerList implements IExpressionListener
     {
       List<IExpressionListener> listeners = map.get( context);
       if ( listeners == null) continue;
+      flush( context);
 
       IContext[] selection = new IContext[ 1];
       Object[] array = listeners.toArray();
@@ -273,6 +341,26 @@ public class ExpressionListenerList implements IExpressionListener
     }
   }
 
+  /**
+   * @return Returns null or the ExpressionBatch of the current batch update.
+   */
+  private static ExpressionBatch getBatch()
+  {
+    if ( !ExpressionBatch.isActive()) return null;
+    return GlobalSettings.getInstance().getModel().getBatch();
+  }
+  
+  /**
+   * Deliver the node-set changes of the specified context which were collected by the current batch update, so
+   * that they are not delivered after a later notification.
+   * @param context The context.
+   */
+  private void flush( IContext context)
+  {
+    ExpressionBatch batch = getBatch();
+    if ( batch != null) batch.flush( this, context);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpressionListener#handleException(
    * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
@@ -0,0 +1,249 @@
+package org.xmodel.xpath.expression;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.xmodel.IPath;
+import org.xmodel.IPathElement;
+import org.xmodel.xpath.expression.IExpression.ResultType;
+import org.xmodel.xpath.function.AbsFunction;
+import org.xmodel.xpath.function.BooleanFunction;
+import org.xmodel.xpath.function.CeilingFunction;
+import org.xmodel.xpath.function.ConcatFunction;
+import org.xmodel.xpath.function.ContainsFunction;
+import org.xmodel.xpath.function.FalseFunction;
+import org.xmodel.xpath.function.FloorFunction;
+import org.xmodel.xpath.function.LowercaseFunction;
+import org.xmodel.xpath.function.NotFunction;
+import org.xmodel.xpath.function.NumberFunction;
+import org.xmodel.xpath.function.RoundFunction;
+import org.xmodel.xpath.function.SqrtFunction;
+import org.xmodel.xpath.function.StartsWithFunction;
+import org.xmodel.xpath.function.StringFunction;
+import org.xmodel.xpath.function.StringLengthFunction;
+import org.xmodel.xpath.function.SubstringAfterFunction;
+import org.xmodel.xpath.function.SubstringBeforeFunction;
+import org.xmodel.xpath.function.SubstringFunction;
+import org.xmodel.xpath.function.TranslateFunction;
+import org.xmodel.xpath.function.TrueFunction;
+import org.xmodel.xpath.function.UppercaseFunction;
+
+/**
+ * A pass over a parsed expression tree that folds constant subtrees into literals and records the statically
+ * known operand types of comparison expressions, so that the comparison does not dispatch on the types of its
+ * operands in each evaluation.  The pass descends into the predicates of location paths.
+ * <p>
+ * A subtree is constant if it is an operator or a context-free function whose arguments are all literals or
+ * boolean constants.  A subtree whose evaluation fails, for example because of an illegal argument type, is not
+ * folded so that the error is still reported when the expression is evaluated.  A folded subtree is replaced by
+ * a literal that prints the text of the subtree, so the string form of the tree does not change.
+ */
+public final class ExpressionOptimizer
+{
+  /**
+   * Optimize the specified expression tree.
+   * @param expression The root of the expression tree.
+   * @return Returns the optimized tree, which is a constant if the whole tree was folded.
+   */
+  public static IExpression optimize( IExpression expression)
+  {
+    if ( expression instanceof Expression)
+    {
+      Expression parent = (Expression)expression;
+      if ( parent.arguments != null)
+      {
+        for( int i=0; i<parent.arguments.size(); i++)
+        {
+          IExpression argument = parent.arguments.get( i);
+          IExpression optimized = optimize( argument);
+          if ( optimized != argument)
+          {
+            parent.arguments.set( i, optimized);
+            argument.internal_setParent( null);
+            optimized.internal_setParent( parent);
+          }
+        }
+      }
+    }
+
+    if ( expression instanceof PathExpression)
+    {
+      optimize( ((PathExpression)expression).getPath());
+    }
+    else if ( expression instanceof EqualityExpression)
+    {
+      EqualityExpression equality = (EqualityExpression)expression;
+      equality.lhsType = getStaticType( equality.getArgument( 0));
+      equality.rhsType = getStaticType( equality.getArgument( 1));
+    }
+    else if ( expression instanceof RelationalExpression)
+    {
+      RelationalExpression relational = (RelationalExpression)expression;
+      relational.lhsType = getStaticType( relational.getArgument( 0));
+      relational.rhsType = getStaticType( relational.getArgument( 1));
+    }
+
+    return fold( expression);
+  }
+
+  /**
+   * Optimize the predicates of the specified path.
+   * @param path The path.
+   */
+  public static void optimize( IPath path)
+  {
+    if ( path == null) return;
+    for( int i=0; i<path.length(); i++)
+    {
+      IPathElement element = path.getPathElement( i);
+      if ( element.predicate() instanceof PredicateExpression) optimize( (PredicateExpression)element.predicate());
+    }
+  }
+
+  /**
+   * Returns the type of the specified expression if the type is the same in every context.  The type of an
+   * expression is static if the expression does not override the method that returns the type in a context.
+   * @param expression The expression.
+   * @return Returns null or the static type of the expression.
+   */
+  public static ResultType getStaticType( IExpression expression)
+  {
+    ResultType type = expression.getType();
+    if ( type == null || type == ResultType.UNDEFINED) return null;
+
+    Class<?> clss = expression.getClass();
+    Boolean isStatic = staticTypes.get( clss);
+    if ( isStatic == null)
+    {
+      try
+      {
+        isStatic = clss.getMethod( "getType", IContext.class).getDeclaringClass() == Expression.class;
+      }
+      catch( NoSuchMethodException e)
+      {
+        isStatic = false;
+      }
+      staticTypes.put( clss, isStatic);
+    }
+    
+    return isStatic? type: null;
+  }
+
+  /**
+   * Fold the specified expression into a constant if its arguments are constant.
+   * @param expression The expression.
+   * @return Returns the constant or the original expression.
+   */
+  private static IExpression fold( IExpression expression)
+  {
+    if ( !isFoldable( expression) || isConstant( expression)) return expression;
+
+    for( IExpression argument: expression.getArguments())
+    {
+      if ( !isConstant( argument)) return expression;
+    }
+
+    try
+    {
+      switch( expression.getType())
+      {
+        case BOOLEAN: return new FoldedExpression( expression.evaluateBoolean( null), expression.toString());
+        case NUMBER:  return new FoldedExpression( expression.evaluateNumber( null), expression.toString());
+        case STRING:  return new FoldedExpression( expression.evaluateString( null), expression.toString());
+        default:      return expression;
+      }
+    }
+    catch( ExpressionException e)
+    {
+      return expression;
+    }
+    catch( RuntimeException e)
+    {
+      return expression;
+    }
+  }
+
+  /**
+   * Returns true if the specified expression is a literal or a boolean constant.
+   * @param expression The expression.
+   * @return Returns true if the expression is constant.
+   */
+  private static boolean isConstant( IExpression expression)
+  {
+    if ( expression instanceof LiteralExpression) return expression.getType() != ResultType.NODES;
+    return expression instanceof TrueFunction || expression instanceof FalseFunction;
+  }
+
+  /**
+   * Returns true if the specified expression has a constant result when its arguments are constant.  Functions
+   * which use the context node when they have no arguments are only foldable when they have arguments.
+   * @param expression The expression.
+   * @return Returns true if the expression is foldable.
+   */
+  private static boolean isFoldable( IExpression expression)
+  {
+    if ( expression instanceof ArithmeticExpression ||
+         expression instanceof NegateExpression ||
+         expression instanceof LogicalExpression ||
+         expression instanceof EqualityExpression ||
+         expression instanceof RelationalExpression)
+      return true;
+
+    List<IExpression> arguments = expression.getArguments();
+    if ( arguments.size() == 0) return false;
+
+    return expression instanceof BooleanFunction ||
+           expression instanceof NumberFunction ||
+           expression instanceof StringFunction ||
+           expression instanceof NotFunction ||
+           expression instanceof ConcatFunction ||
+           expression instanceof ContainsFunction ||
+           expression instanceof StartsWithFunction ||
+           expression instanceof StringLengthFunction ||
+           expression instanceof SubstringFunction ||
+           expression instanceof SubstringAfterFunction ||
+           expression instanceof SubstringBeforeFunction ||
+           expression instanceof TranslateFunction ||
+           expression instanceof UppercaseFunction ||
+           expression instanceof LowercaseFunction ||
+           expression instanceof AbsFunction ||
+           expression instanceof CeilingFunction ||
+           expression instanceof FloorFunction ||
+           expression instanceof RoundFunction ||
+           expression instanceof SqrtFunction;
+  }
+
+  /**
+   * A literal that replaces a folded subtree and prints the text of the subtree.
+   */
+  final static class FoldedExpression extends LiteralExpression
+  {
+    FoldedExpression( Object value, String text)
+    {
+      super( value);
+      this.text = text;
+    }
+
+    /* (non-Javadoc)
+     * @see org.xmodel.xpath.expression.LiteralExpression#cloneOne()
+     */
+    @Override
+    protected IExpression cloneOne()
+    {
+      return new FoldedExpression( value, text);
+    }
+
+    /* (non-Javadoc)
+     * @see org.xmodel.xpath.expression.LiteralExpression#toString()
+     */
+    @Override
+    public String toString()
+    {
+      return text;
+    }
+
+    private final String text;
+  }
+
+  private static Map<Class<?>, Boolean> staticTypes = new ConcurrentHashMap<Class<?>, Boolean>();
+}
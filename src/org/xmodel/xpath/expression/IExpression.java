@@ -19,6 +19,7 @@
  */
 package org.xmodel.xpath.expression;
 
+import java.util.Iterator;
 import java.util.List;
 import org.xmodel.IChangeSet;
 import org.xmodel.IModelObject;
@@ -202,6 +203,16 @@ public interface IExpression
    */
   public List<IModelObject> evaluateNodes( IContext context) throws ExpressionException;
 
+  /**
+   * Returns an iterator over the node-set result of this expression for the specified context.  Expressions
+   * that support lazy evaluation produce the nodes as they are requested, so a caller that only needs the first
+   * node, or only needs to know whether the node-set is empty, does not cause the whole node-set to be computed.
+   * The model must not be modified while the iterator is in use.
+   * @param context The context in which to evaluate the expression.
+   * @return Returns an iterator over the node-set result of the expression.
+   */
+  public Iterator<IModelObject> iterate( IContext context) throws ExpressionException;
+
   /**
    * Returns the string result of this expression for the specified context.
    * @param context The context in which to evaluate the expression.
@@ -24,6 +24,7 @@ import java.util.List;
 import org.xmodel.IChangeSet;
 import org.xmodel.IModelObject;
 import org.xmodel.IModelObjectFactory;
+import org.xmodel.xpath.variable.IVariableSource;
 
 
 /**
@@ -289,6 +290,34 @@ public class LetExpression extends Expression
     }
   }
   
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#cloneOne()
+   */
+  @Override
+  protected IExpression cloneOne()
+  {
+    LetExpression clone = new LetExpression();
+    for( Clause clause: clauses)
+      clone.addExpression( (RootExpression)clause.expression.clone(), clause.variable);
+    return clone;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#internal_setParent(org.xmodel.xpath.expression.IExpression)
+   */
+  @Override
+  public void internal_setParent( IExpression parent)
+  {
+    super.internal_setParent( parent);
+    
+    // the clauses share the variable source of the root, which is not known when the expression is cloned
+    if ( parent instanceof RootExpression)
+    {
+      IVariableSource source = parent.getVariableSource();
+      for( Clause clause: clauses) ((RootExpression)clause.expression).setVariableSource( source);
+    }
+  }
+  
   /* (non-Javadoc)
    * @see java.lang.Object#toString()
    */
@@ -0,0 +1,494 @@
+package org.xmodel.xpath.expression;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.xmodel.FrozenObject;
+import org.xmodel.IAxis;
+import org.xmodel.IModelObject;
+import org.xmodel.IPath;
+import org.xmodel.IPathElement;
+import org.xmodel.log.Log;
+import org.xmodel.xpath.AttributeNode;
+import org.xmodel.xpath.TextNode;
+import org.xmodel.xpath.function.AbsFunction;
+import org.xmodel.xpath.function.AvgFunction;
+import org.xmodel.xpath.function.BooleanFunction;
+import org.xmodel.xpath.function.CeilingFunction;
+import org.xmodel.xpath.function.ConcatFunction;
+import org.xmodel.xpath.function.ContainsFunction;
+import org.xmodel.xpath.function.CountFunction;
+import org.xmodel.xpath.function.DistinctValuesFunction;
+import org.xmodel.xpath.function.EmptyFunction;
+import org.xmodel.xpath.function.FalseFunction;
+import org.xmodel.xpath.function.FloorFunction;
+import org.xmodel.xpath.function.IndexOfFunction;
+import org.xmodel.xpath.function.LastFunction;
+import org.xmodel.xpath.function.LastIndexOfFunction;
+import org.xmodel.xpath.function.LowercaseFunction;
+import org.xmodel.xpath.function.MaxFunction;
+import org.xmodel.xpath.function.MinFunction;
+import org.xmodel.xpath.function.NameFunction;
+import org.xmodel.xpath.function.NotFunction;
+import org.xmodel.xpath.function.NumberFunction;
+import org.xmodel.xpath.function.PositionFunction;
+import org.xmodel.xpath.function.ReverseFunction;
+import org.xmodel.xpath.function.RoundFunction;
+import org.xmodel.xpath.function.SqrtFunction;
+import org.xmodel.xpath.function.StartsWithFunction;
+import org.xmodel.xpath.function.StringFunction;
+import org.xmodel.xpath.function.StringJoinFunction;
+import org.xmodel.xpath.function.StringLengthFunction;
+import org.xmodel.xpath.function.SubstringAfterFunction;
+import org.xmodel.xpath.function.SubstringBeforeFunction;
+import org.xmodel.xpath.function.SubstringFunction;
+import org.xmodel.xpath.function.SumFunction;
+import org.xmodel.xpath.function.TranslateFunction;
+import org.xmodel.xpath.function.TrueFunction;
+import org.xmodel.xpath.function.UppercaseFunction;
+import org.xmodel.xpath.function.custom.MulOverFunction;
+import org.xmodel.xpath.function.custom.SumOverFunction;
+
+/**
+ * An opt-in mode in which aggregate functions and predicates are evaluated over large node-sets by the tasks of a
+ * fork-join pool.  A node-set is split across the pool if it has at least <code>threshold</code> nodes, all of
+ * which belong to subtrees sealed with <code>ModelAlgorithms.seal</code>, either as elements or as attribute or
+ * text nodes of sealed elements, and the expression evaluated for each
+ * node is side-effect free.  Sealed subtrees do not change and do not create indexes lazily, so they may be read
+ * by any number of threads.  Each task evaluates its nodes in its own SubContext or StatefulContext.
+ * <p>
+ * An expression is side-effect free if it consists of operators, location paths that do not leave the subtree of
+ * the context node, and the standard functions other than those that access documents, the id index, variables or
+ * mutable state.  A location path leaves the subtree if it is absolute, or uses the parent, ancestor, following or
+ * preceding axes.  A union in the expression computes the document order of sealed nodes without locking.  Since
+ * partial sums are added in a different order, the result of a parallel sum may differ from the sequential sum
+ * in the least significant bits.
+ */
+public final class ParallelEvaluator
+{
+  /**
+   * Returns true if the specified node-set should be evaluated in parallel.
+   * @param nodes The node-set.
+   * @return Returns true if the node-set should be evaluated in parallel.
+   */
+  public static boolean isParallel( List<IModelObject> nodes)
+  {
+    int size = nodes.size();
+    if ( threshold <= 0 || size < threshold) return false;
+
+    for( int i=0; i<size; i++)
+      if ( !isSealed( nodes.get( i)))
+        return false;
+
+    return true;
+  }
+  
+  /**
+   * Returns true if the specified node is a sealed element, or an attribute or text node of a sealed element.
+   * @param node The node.
+   * @return Returns true if the node is sealed.
+   */
+  private static boolean isSealed( IModelObject node)
+  {
+    if ( node instanceof FrozenObject) return true;
+    if ( node instanceof AttributeNode || node instanceof TextNode) return node.getParent() instanceof FrozenObject;
+    return false;
+  }
+
+  /**
+   * Returns true if the specified expression should be evaluated in parallel for each node of the specified
+   * node-set.
+   * @param nodes The node-set.
+   * @param expression The expression.
+   * @return Returns true if the expression should be evaluated in parallel.
+   */
+  public static boolean isParallel( List<IModelObject> nodes, IExpression expression)
+  {
+    return isParallel( nodes) && isSideEffectFree( expression);
+  }
+
+  /**
+   * Returns the sum of the numeric values of the specified nodes.
+   * @param nodes The nodes.
+   * @return Returns the sum.
+   */
+  public static double sum( List<IModelObject> nodes)
+  {
+    return invoke( new ValueReduction( nodes, 0, nodes.size(), ValueReduction.SUM, 0));
+  }
+
+  /**
+   * Returns the least of the numeric values of the specified nodes and the specified initial value.
+   * @param nodes The nodes.
+   * @param initial The initial value.
+   * @return Returns the least value.
+   */
+  public static double min( List<IModelObject> nodes, double initial)
+  {
+    return invoke( new ValueReduction( nodes, 0, nodes.size(), ValueReduction.MIN, initial));
+  }
+
+  /**
+   * Returns the greatest of the numeric values of the specified nodes and the specified initial value.
+   * @param nodes The nodes.
+   * @param initial The initial value.
+   * @return Returns the greatest value.
+   */
+  public static double max( List<IModelObject> nodes, double initial)
+  {
+    return invoke( new ValueReduction( nodes, 0, nodes.size(), ValueReduction.MAX, initial));
+  }
+
+  /**
+   * Returns the sum of the specified expression evaluated in the context of each of the specified nodes.
+   * @param context The parent context.
+   * @param nodes The nodes.
+   * @param expression The expression.
+   * @return Returns the sum.
+   */
+  public static double sumOver( IContext context, List<IModelObject> nodes, IExpression expression) throws ExpressionException
+  {
+    try
+    {
+      return invoke( new ExpressionReduction( context, nodes, 0, nodes.size(), expression, false));
+    }
+    catch( RuntimeException e)
+    {
+      throw unwrap( e);
+    }
+  }
+
+  /**
+   * Returns the product of the specified expression evaluated in the context of each of the specified nodes.
+   * @param context The parent context.
+   * @param nodes The nodes.
+   * @param expression The expression.
+   * @return Returns the product.
+   */
+  public static double mulOver( IContext context, List<IModelObject> nodes, IExpression expression) throws ExpressionException
+  {
+    try
+    {
+      return invoke( new ExpressionReduction( context, nodes, 0, nodes.size(), expression, true));
+    }
+    catch( RuntimeException e)
+    {
+      throw unwrap( e);
+    }
+  }
+
+  /**
+   * Evaluate the specified predicate for each node of the specified node-set, beginning with the node at the
+   * specified index, and replace the nodes for which the predicate is false with null.  The position and size
+   * of the context of each node are relative to the starting index.
+   * @param parent Null or the parent context.
+   * @param nodes The node-set.
+   * @param start The index of the first node.
+   * @param predicate The predicate.
+   */
+  public static void filter( IContext parent, List<IModelObject> nodes, int start, IExpression predicate)
+  {
+    invoke( new Filter( parent, nodes, start, start, nodes.size(), predicate));
+  }
+
+  /**
+   * Returns true if the specified expression is side-effect free.
+   * @param expression The expression.
+   * @return Returns true if the expression is side-effect free.
+   */
+  public static boolean isSideEffectFree( IExpression expression)
+  {
+    if ( !safeClasses.contains( expression.getClass())) return false;
+
+    if ( expression instanceof PathExpression)
+    {
+      IPath path = ((PathExpression)expression).getPath();
+      for( int i=0; i<path.length(); i++)
+      {
+        IPathElement element = path.getPathElement( i);
+        if ( (element.axis() & outsideAxes) != 0) return false;
+        if ( element.predicate() != null)
+        {
+          if ( !(element.predicate() instanceof PredicateExpression)) return false;
+          if ( !isSideEffectFree( (PredicateExpression)element.predicate())) return false;
+        }
+      }
+    }
+
+    for( IExpression argument: expression.getArguments())
+      if ( !isSideEffectFree( argument))
+        return false;
+
+    return true;
+  }
+
+  /**
+   * Invoke the specified task in the fork-join pool.
+   * @param task The task.
+   * @return Returns the result of the task.
+   */
+  private static <T> T invoke( ForkJoinTask<T> task)
+  {
+    invocations.incrementAndGet();
+    return getPool().invoke( task);
+  }
+
+  /**
+   * @return Returns the fork-join pool, which is created when it is first used.
+   */
+  private static synchronized ForkJoinPool getPool()
+  {
+    if ( pool == null) pool = new ForkJoinPool();
+    return pool;
+  }
+
+  /**
+   * Returns the number of nodes evaluated by a task without splitting.
+   * @param size The size of the node-set.
+   * @return Returns the number of nodes.
+   */
+  private static int getGrain( int size)
+  {
+    return Math.max( 1024, size / (getPool().getParallelism() * 4));
+  }
+
+  /**
+   * Find the ExpressionException thrown by a task.  The fork-join pool may wrap the exception thrown by a task
+   * when it is rethrown in another thread.
+   * @param e The exception thrown by the pool.
+   * @return Returns the ExpressionException.
+   */
+  private static ExpressionException unwrap( RuntimeException e)
+  {
+    for( Throwable cause = e; cause != null; cause = cause.getCause())
+    {
+      if ( cause instanceof TaskException) return (ExpressionException)cause.getCause();
+    }
+    throw e;
+  }
+
+  /**
+   * A RuntimeException that carries an ExpressionException out of a task.
+   */
+  @SuppressWarnings("serial")
+  private final static class TaskException extends RuntimeException
+  {
+    public TaskException( ExpressionException cause)
+    {
+      super( cause);
+    }
+  }
+
+  /**
+   * A reduction of the numeric values of the nodes in a range of a node-set.
+   */
+  @SuppressWarnings("serial")
+  private final static class ValueReduction extends RecursiveTask<Double>
+  {
+    public ValueReduction( List<IModelObject> nodes, int from, int to, int operator, double initial)
+    {
+      this.nodes = nodes;
+      this.from = from;
+      this.to = to;
+      this.operator = operator;
+      this.initial = initial;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.RecursiveTask#compute()
+     */
+    @Override
+    protected Double compute()
+    {
+      if ( to - from > getGrain( nodes.size()))
+      {
+        int middle = (from + to) >>> 1;
+        ValueReduction left = new ValueReduction( nodes, from, middle, operator, initial);
+        ValueReduction right = new ValueReduction( nodes, middle, to, operator, initial);
+        left.fork();
+        double rightResult = right.compute();
+        return combine( left.join(), rightResult);
+      }
+
+      double result = initial;
+      for( int i=from; i<to; i++) result = combine( result, NumberFunction.numericValue( nodes.get( i)));
+      return result;
+    }
+
+    /**
+     * Combine two values with the operator.
+     * @param value0 The first value.
+     * @param value1 The second value.
+     * @return Returns the combined value.
+     */
+    private double combine( double value0, double value1)
+    {
+      switch( operator)
+      {
+        case SUM: return value0 + value1;
+        case MIN: return (value1 < value0)? value1: value0;
+        default:  return (value1 > value0)? value1: value0;
+      }
+    }
+
+    public final static int SUM = 0;
+    public final static int MIN = 1;
+    public final static int MAX = 2;
+
+    private List<IModelObject> nodes;
+    private int from;
+    private int to;
+    private int operator;
+    private double initial;
+  }
+
+  /**
+   * A sum or product of an expression evaluated in the context of each node in a range of a node-set.
+   */
+  @SuppressWarnings("serial")
+  private final static class ExpressionReduction extends RecursiveTask<Double>
+  {
+    public ExpressionReduction( IContext context, List<IModelObject> nodes, int from, int to, IExpression expression, boolean product)
+    {
+      this.context = context;
+      this.nodes = nodes;
+      this.from = from;
+      this.to = to;
+      this.expression = expression;
+      this.product = product;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.RecursiveTask#compute()
+     */
+    @Override
+    protected Double compute()
+    {
+      if ( to - from > getGrain( nodes.size()))
+      {
+        int middle = (from + to) >>> 1;
+        ExpressionReduction left = new ExpressionReduction( context, nodes, from, middle, expression, product);
+        ExpressionReduction right = new ExpressionReduction( context, nodes, middle, to, expression, product);
+        left.fork();
+        double rightResult = right.compute();
+        return product? (left.join() * rightResult): (left.join() + rightResult);
+      }
+
+      try
+      {
+        double result = product? 1: 0;
+        for( int i=from; i<to; i++)
+        {
+          double value = expression.evaluateNumber( new StatefulContext( context, nodes.get( i)));
+          result = product? (result * value): (result + value);
+        }
+        return result;
+      }
+      catch( ExpressionException e)
+      {
+        throw new TaskException( e);
+      }
+    }
+
+    private IContext context;
+    private List<IModelObject> nodes;
+    private int from;
+    private int to;
+    private IExpression expression;
+    private boolean product;
+  }
+
+  /**
+   * Evaluates a predicate for each node in a range of a node-set.
+   */
+  @SuppressWarnings("serial")
+  private final static class Filter extends RecursiveAction
+  {
+    public Filter( IContext parent, List<IModelObject> nodes, int start, int from, int to, IExpression predicate)
+    {
+      this.parent = parent;
+      this.nodes = nodes;
+      this.start = start;
+      this.from = from;
+      this.to = to;
+      this.predicate = predicate;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    @Override
+    protected void compute()
+    {
+      if ( to - from > getGrain( nodes.size() - start))
+      {
+        int middle = (from + to) >>> 1;
+        invokeAll( new Filter( parent, nodes, start, from, middle, predicate), new Filter( parent, nodes, start, middle, to, predicate));
+        return;
+      }
+
+      int size = nodes.size();
+      for( int i=from; i<to; i++)
+      {
+        try
+        {
+          IContext context = null;
+          if ( parent == null)
+            context = new Context( nodes.get( i), i-start+1, size-start);
+          else
+            context = new SubContext( parent, nodes.get( i), i-start+1, size-start);
+          if ( !predicate.evaluateBoolean( context)) nodes.set( i, null);
+        }
+        catch( ExpressionException e)
+        {
+          log.exception( e);
+          nodes.set( i, null);
+        }
+      }
+    }
+
+    private IContext parent;
+    private List<IModelObject> nodes;
+    private int start;
+    private int from;
+    private int to;
+    private IExpression predicate;
+  }
+
+  /**
+   * The minimum size of a node-set that is evaluated in parallel, or zero if parallel evaluation is disabled.
+   * A value of about 10,000 is appropriate for most expressions.
+   */
+  public static int threshold = 0;
+
+  private final static int outsideAxes = IAxis.ROOT | IAxis.PARENT | IAxis.ANCESTOR | IAxis.FOLLOWING | IAxis.PRECEDING;
+
+  private static Set<Class<?>> safeClasses = new HashSet<Class<?>>( Arrays.<Class<?>>asList(
+    LiteralExpression.class, ExpressionOptimizer.FoldedExpression.class, ArithmeticExpression.class,
+    NegateExpression.class, LogicalExpression.class,
+    EqualityExpression.class, RelationalExpression.class, PathExpression.class, FilteredExpression.class,
+    UnionExpression.class, IfExpression.class, PredicateExpression.class,
+    AbsFunction.class, AvgFunction.class, BooleanFunction.class, CeilingFunction.class, ConcatFunction.class,
+    ContainsFunction.class, CountFunction.class, DistinctValuesFunction.class, EmptyFunction.class,
+    FalseFunction.class, FloorFunction.class, IndexOfFunction.class, LastFunction.class, LastIndexOfFunction.class,
+    LowercaseFunction.class, MaxFunction.class, MinFunction.class, NameFunction.class, NotFunction.class,
+    NumberFunction.class, PositionFunction.class, ReverseFunction.class, RoundFunction.class, SqrtFunction.class,
+    StartsWithFunction.class, StringFunction.class, StringJoinFunction.class, StringLengthFunction.class,
+    SubstringAfterFunction.class, SubstringBeforeFunction.class, SubstringFunction.class, SumFunction.class,
+    TranslateFunction.class, TrueFunction.class, UppercaseFunction.class,
+    SumOverFunction.class, MulOverFunction.class));
+
+  private static Log log = Log.getLog( ParallelEvaluator.class);
+  private static ForkJoinPool pool;
+  
+  /**
+   * The number of node-sets that have been evaluated in parallel.
+   */
+  final static AtomicInteger invocations = new AtomicInteger();
+}
@@ -19,6 +19,7 @@
  */
 package org.xmodel.xpath.expression;
 
+import java.util.Iterator;
 import java.util.List;
 import org.xmodel.*;
 
@@ -65,6 +66,16 @@ public class PathExpression extends Expression implements IPathListener
     return path.query( context, null);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#iterate(
+   * org.xmodel.xpath.expression.IContext)
+   */
+  @Override
+  public Iterator<IModelObject> iterate( IContext context) throws ExpressionException
+  {
+    return path.iterate( context);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#isAbsolute()
    */
@@ -70,8 +70,8 @@ public class RelationalExpression extends AbstractBinaryBooleanExpression
    */
   public boolean evaluate( IContext context, IExpression lhs, IExpression rhs) throws ExpressionException
   {
-    ResultType type0 = lhs.getType( context);
-    ResultType type1 = rhs.getType( context);
+    ResultType type0 = (lhsType != null)? lhsType: lhs.getType( context);
+    ResultType type1 = (rhsType != null)? rhsType: rhs.getType( context);
 
     if ( type0 == ResultType.NODES)
     {
@@ -110,44 +110,78 @@ public class RelationalExpression extends AbstractBinaryBooleanExpression
   }
 
   /**
-   * Compare results of the two expressions and set the result member.
+   * Compare results of the two expressions and set the result member.  The string-value of each node is computed
+   * once.  When both node-sets have at least <code>EqualityExpression.joinThreshold</code> nodes, the comparison
+   * is performed on the least and greatest string-values of each node-set instead of with a nested loop, since a
+   * pair satisfies the operator if and only if the extreme values do.
    * @param result1 One side of the operation.
    * @param result2 One side of the operation.
    * @return Returns the result of the comparison.
    */
   private boolean compareResult( List<IModelObject> result1, List<IModelObject> result2)
   {
-    for ( int i=0; i<result1.size(); i++)
+    if ( result1.size() == 0 || result2.size() == 0) return false;
+    
+    String[] strings1 = StringFunction.stringValues( result1);
+    String[] strings2 = StringFunction.stringValues( result2);
+    
+    if ( strings1.length < EqualityExpression.joinThreshold || strings2.length < EqualityExpression.joinThreshold)
     {
-      IModelObject object1 = (IModelObject)result1.get( i);
-      String string1 = StringFunction.stringValue( object1);
-      for ( int j=0; j<result2.size(); j++)
-      {
-        IModelObject object2 = (IModelObject)result2.get( i);
-        String string2 = StringFunction.stringValue( object2);
-        switch( operator)
-        {
-          case GT:
-            if ( string1.compareTo( string2) > 0) return true;
-            break;
-            
-          case GE:
-            if ( string1.compareTo( string2) >= 0) return true;
-            break;
-            
-          case LT:
-            if ( string1.compareTo( string2) < 0) return true;
-            break;
-            
-          case LE:
-            if ( string1.compareTo( string2) <= 0) return true;
-            break;
-        }
-      }
+      for( int i=0; i<strings1.length; i++)
+        for( int j=0; j<strings2.length; j++)
+          if ( compareResult( strings1[ i].compareTo( strings2[ j]))) return true;
+      return false;
+    }
+    
+    switch( operator)
+    {
+      case GT: case GE: return compareResult( max( strings1).compareTo( min( strings2)));
+      case LT: case LE: return compareResult( min( strings1).compareTo( max( strings2)));
+    }
+    return false;
+  }
+  
+  /**
+   * Returns true if the specified result of String.compareTo satisfies the operator.
+   * @param comparison The result of String.compareTo.
+   * @return Returns true if the comparison satisfies the operator.
+   */
+  private boolean compareResult( int comparison)
+  {
+    switch( operator)
+    {
+      case GT: return comparison > 0;
+      case GE: return comparison >= 0;
+      case LT: return comparison < 0;
+      case LE: return comparison <= 0;
     }
     return false;
   }
   
+  /**
+   * Returns the least of the specified strings.
+   * @param strings A non-empty array of strings.
+   * @return Returns the least string.
+   */
+  private static String min( String[] strings)
+  {
+    String result = strings[ 0];
+    for( int i=1; i<strings.length; i++) if ( strings[ i].compareTo( result) < 0) result = strings[ i];
+    return result;
+  }
+  
+  /**
+   * Returns the greatest of the specified strings.
+   * @param strings A non-empty array of strings.
+   * @return Returns the greatest string.
+   */
+  private static String max( String[] strings)
+  {
+    String result = strings[ 0];
+    for( int i=1; i<strings.length; i++) if ( strings[ i].compareTo( result) > 0) result = strings[ i];
+    return result;
+  }
+  
   /**
    * Compare results of the two expressions and set the result member.
    * @param result1 One side of the operation.
@@ -159,8 +193,7 @@ public class RelationalExpression extends AbstractBinaryBooleanExpression
     for ( int i=0; i<result1.size(); i++)
     {
       IModelObject object1 = (IModelObject)result1.get( i);
-      String string1 = StringFunction.stringValue( object1);
-      double number1 = NumberFunction.numericValue( string1);
+      double number1 = NumberFunction.numericValue( object1);
       switch( operator)
       {
         case GT:
@@ -247,8 +280,7 @@ public class RelationalExpression extends AbstractBinaryBooleanExpression
     for ( int i=0; i<result2.size(); i++)
     {
       IModelObject object2 = (IModelObject)result2.get( i);
-      String string2 = StringFunction.stringValue( object2);
-      double number2 = NumberFunction.numericValue( string2);
+      double number2 = NumberFunction.numericValue( object2);
       switch( operator)
       {
         case GT:
@@ -361,6 +393,28 @@ public class RelationalExpression extends AbstractBinaryBooleanExpression
     return false;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#addArgument(org.xmodel.xpath.expression.IExpression)
+   */
+  @Override
+  public void addArgument( IExpression argument)
+  {
+    super.addArgument( argument);
+    lhsType = null;
+    rhsType = null;
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#removeArgument(org.xmodel.xpath.expression.IExpression)
+   */
+  @Override
+  public void removeArgument( IExpression argument)
+  {
+    super.removeArgument( argument);
+    lhsType = null;
+    rhsType = null;
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.Expression#cloneOne()
    */
@@ -370,6 +424,19 @@ public class RelationalExpression extends AbstractBinaryBooleanExpression
     return new RelationalExpression( operator);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#clone()
+   */
+  @Override
+  public Object clone()
+  {
+    // the static types are reset when the cloned arguments are added
+    RelationalExpression clone = (RelationalExpression)super.clone();
+    clone.lhsType = lhsType;
+    clone.rhsType = rhsType;
+    return clone;
+  }
+
   /* (non-Javadoc)
    * @see java.lang.Object#toString()
    */
@@ -388,4 +455,7 @@ public class RelationalExpression extends AbstractBinaryBooleanExpression
   }
 
   Operator operator;
+  // the types of the operands if they are static, see ExpressionOptimizer, which are reset if an argument changes
+  ResultType lhsType;
+  ResultType rhsType;
 }
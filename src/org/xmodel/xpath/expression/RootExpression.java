@@ -19,7 +19,9 @@
  */
 package org.xmodel.xpath.expression;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.xmodel.IChangeSet;
 import org.xmodel.IModelObject;
 import org.xmodel.IModelObjectFactory;
@@ -106,6 +108,9 @@ public class RootExpression extends Expression
    */
   public boolean evaluateBoolean( IContext context) throws ExpressionException
   {
+    CompiledExpression compiled = getCompiled();
+    if ( compiled != null) return compiled.evaluateBoolean( context);
+
     IExpression arg0 = getArgument( 0);
     if ( arg0 == null) throw new ExpressionException( this, "RootExpression has no arguments.");
     return arg0.evaluateBoolean( context);
@@ -122,12 +127,26 @@ public class RootExpression extends Expression
     return arg0.evaluateNodes( context);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#iterate(org.xmodel.xpath.expression.IContext)
+   */
+  @Override
+  public Iterator<IModelObject> iterate( IContext context) throws ExpressionException
+  {
+    IExpression arg0 = getArgument( 0);
+    if ( arg0 == null) throw new ExpressionException( this, "RootExpression has no arguments.");
+    return arg0.iterate( context);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#evaluateNumber(
    * org.xmodel.xpath.expression.IContext)
    */
   public double evaluateNumber( IContext context) throws ExpressionException
   {
+    CompiledExpression compiled = getCompiled();
+    if ( compiled != null) return compiled.evaluateNumber( context);
+
     IExpression arg0 = getArgument( 0);
     if ( arg0 == null) throw new ExpressionException( this, "RootExpression has no arguments.");
     return arg0.evaluateNumber( context);
@@ -139,6 +158,9 @@ public class RootExpression extends Expression
    */
   public String evaluateString( IContext context) throws ExpressionException
   {
+    CompiledExpression compiled = getCompiled();
+    if ( compiled != null) return compiled.evaluateString( context);
+
     IExpression arg0 = getArgument( 0);
     if ( arg0 == null) throw new ExpressionException( this, "RootExpression has no arguments.");
     return arg0.evaluateString( context);
@@ -330,12 +352,16 @@ public class RootExpression extends Expression
   {
     RootExpression clone = new RootExpression();
 
+    // the variable source is created on demand, so there is nothing to clone if it does not exist
+    IVariableSource varSource = varSources.get();
+    if ( varSource == null) return clone;
+    
     // clone local scope
-    IVariableScope scope = getVariableSource().getScope( "local");
+    IVariableScope scope = varSource.getScope( "local");
     if ( scope != null) clone.getVariableSource().addScope( scope.cloneOne());
     
     // clone let scope
-    scope = getVariableSource().getScope( "let");
+    scope = varSource.getScope( "let");
     if ( scope != null) clone.getVariableSource().addScope( scope.cloneOne());
     
     return clone;
@@ -537,9 +563,44 @@ public class RootExpression extends Expression
     IExpression tree = getArgument( 0);
     return (tree != null)? tree.toString(): "(?)";
   }
-  
+
+  /**
+   * Returns the compiled form of the expression tree, compiling the tree when it has been evaluated the number
+   * of times specified by <code>ExpressionCompiler.threshold</code>.  Evaluations are no longer counted once the
+   * threshold is reached, whether or not the tree could be compiled.
+   * @return Returns null or the compiled form of the expression tree.
+   */
+  private CompiledExpression getCompiled()
+  {
+    CompiledExpression result = compiled;
+    if ( result != null) return result;
+
+    int threshold = ExpressionCompiler.threshold;
+    if ( threshold <= 0 || evaluations >= threshold) return null;
+
+    if ( evaluationsUpdater.incrementAndGet( this) == threshold)
+    {
+      IExpression tree = getArgument( 0);
+      if ( tree != null) compiled = ExpressionCompiler.compile( tree);
+    }
+    return compiled;
+  }
+
+  /**
+   * @return Returns the number of evaluations that have been counted for compilation.
+   */
+  int getEvaluations()
+  {
+    return evaluations;
+  }
+
   private ThreadLocal<IVariableSource> varSources = new ThreadLocal<IVariableSource>();
   private ExpressionListenerList listeners;
+  private volatile CompiledExpression compiled;
+  private volatile int evaluations;
+  
+  private final static AtomicIntegerFieldUpdater<RootExpression> evaluationsUpdater = 
+    AtomicIntegerFieldUpdater.newUpdater( RootExpression.class, "evaluations");
   
   public static void main( String[] args) throws Exception
   {
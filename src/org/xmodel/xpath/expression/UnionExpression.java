@@ -22,13 +22,17 @@ package org.xmodel.xpath.expression;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
+import org.xmodel.DocumentOrder;
 import org.xmodel.IChangeSet;
 import org.xmodel.IModelObject;
 import org.xmodel.IModelObjectFactory;
 
 
 /**
- * An implementation of IExpression which represents an X-Path 1.0 union expression. 
+ * An implementation of IExpression which represents an X-Path 1.0 union expression. If both 
+ * operands are in document order, then the node-sets are merged and the result is in document 
+ * order. Otherwise, the result contains the nodes of the left-hand operand followed by the nodes 
+ * of the right-hand operand which were not already present.
  */
 public class UnionExpression extends Expression
 {
@@ -72,9 +76,16 @@ public class UnionExpression extends Expression
     IExpression arg0 = getArgument( 0);
     IExpression arg1 = getArgument( 1);
     
+    List<IModelObject> lhs = arg0.evaluateNodes( context);
+    List<IModelObject> rhs = arg1.evaluateNodes( context);
+    
+    // merge node-sets that are in document order
+    List<IModelObject> merged = DocumentOrder.union( lhs, rhs);
+    if ( merged != null) return merged;
+    
     LinkedHashSet<IModelObject> nodes = new LinkedHashSet<IModelObject>();
-    nodes.addAll( arg0.evaluateNodes( context));
-    nodes.addAll( arg1.evaluateNodes( context));
+    nodes.addAll( lhs);
+    nodes.addAll( rhs);
     
     return new ArrayList<IModelObject>( nodes);
   }
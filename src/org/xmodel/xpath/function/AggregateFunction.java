@@ -0,0 +1,552 @@
+package org.xmodel.xpath.function;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.xmodel.IAxis;
+import org.xmodel.IModelObject;
+import org.xmodel.IPath;
+import org.xmodel.IPathElement;
+import org.xmodel.storage.Primitives;
+import org.xmodel.xpath.AttributeNode;
+import org.xmodel.xpath.TextNode;
+import org.xmodel.xpath.expression.Expression;
+import org.xmodel.xpath.expression.ExpressionException;
+import org.xmodel.xpath.expression.IContext;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.LiteralExpression;
+import org.xmodel.xpath.expression.PathExpression;
+
+/**
+ * Base class of aggregate functions, such as count() and sum(), which maintain the aggregate of the node-set of
+ * their first argument in each context in which they are bound.  When nodes are added to or removed from the
+ * node-set, or the value of a node changes, the aggregate is updated from the changed values alone and the parent
+ * is notified of the new and old value of the function, so neither the function nor its parent re-evaluates the
+ * node-set.  Parents which do not handle numeric change notifications, or which have other arguments that are
+ * not literals, receive a generic change notification.
+ * <p>
+ * The aggregate does not retain the nodes of the node-set, so it is only correct if each node is reported once
+ * when it enters the node-set and once when it leaves.  It is therefore only maintained when the first argument
+ * is a path without predicates whose steps use the child and attribute axes and at most one descendant step,
+ * since each node of such a path is reached by one route.  Otherwise, and for notifications from other
+ * arguments, the function behaves as if it were not incremental.  Sums are maintained by adding and subtracting
+ * the values of the changed nodes, so a sum of non-integer values may differ from the result of
+ * <code>evaluateNumber</code> by rounding error.
+ * <p>
+ * Subclasses whose node values are computed by an expression, rather than taken from the node, override the
+ * methods <code>addNode</code>, <code>removeNode</code> and <code>updateNode</code> to retain the value of each
+ * node, since the value may no longer be computable after the node leaves the node-set.
+ */
+public abstract class AggregateFunction extends Function
+{
+  /**
+   * Returns true if the arguments of this function allow the aggregate to be maintained incrementally.  The
+   * default implementation requires a single node-set argument whose notifications are exact.
+   * @return Returns true if the aggregate can be maintained incrementally.
+   */
+  protected boolean isIncremental()
+  {
+    return getArguments().size() == 1 && getArgument( 0).getType() == ResultType.NODES && isExact( getArgument( 0));
+  }
+
+  /**
+   * Create an empty aggregate for a context in which this function is bound.
+   * @return Returns the new aggregate.
+   */
+  protected abstract Aggregate createAggregate();
+
+  /**
+   * Returns the value which the specified node contributes to the aggregate.  The default implementation returns
+   * the numeric value of the node.
+   * @param context The context in which this function is bound.
+   * @param node A node in the node-set of the first argument.
+   * @return Returns the value of the node.
+   */
+  protected double getValue( IContext context, IModelObject node) throws ExpressionException
+  {
+    return NumberFunction.numericValue( node);
+  }
+
+  /**
+   * Add the specified node, which entered the node-set of the first argument, to the specified aggregate.
+   * @param context The context in which this function is bound.
+   * @param aggregate The aggregate of the context.
+   * @param node The node.
+   */
+  protected void addNode( IContext context, Aggregate aggregate, IModelObject node) throws ExpressionException
+  {
+    aggregate.add( getValue( context, node));
+  }
+
+  /**
+   * Remove the specified node, which left the node-set of the first argument, from the specified aggregate.
+   * @param context The context in which this function is bound.
+   * @param aggregate The aggregate of the context.
+   * @param node The node.
+   */
+  protected void removeNode( IContext context, Aggregate aggregate, IModelObject node) throws ExpressionException
+  {
+    aggregate.remove( getValue( context, node));
+  }
+
+  /**
+   * Update the specified aggregate after the value of the specified node in the node-set of the first argument
+   * changed.  The default implementation uses the numeric values of the new and old value.
+   * @param context The context in which this function is bound.
+   * @param aggregate The aggregate of the context.
+   * @param node The node.
+   * @param newValue The new value of the node.
+   * @param oldValue The old value of the node.
+   */
+  protected void updateNode( IContext context, Aggregate aggregate, IModelObject node, Object newValue, Object oldValue) throws ExpressionException
+  {
+    aggregate.update( Primitives.toDouble( oldValue, 0), Primitives.toDouble( newValue, 0));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#bind(org.xmodel.xpath.expression.IContext)
+   */
+  @Override
+  public void bind( IContext context)
+  {
+    super.bind( context);
+    if ( !isIncremental()) return;
+
+    if ( aggregates == null) aggregates = new HashMap<IContext, Aggregate>( 1);
+    Aggregate aggregate = aggregates.get( context);
+    if ( aggregate != null)
+    {
+      aggregate.references++;
+      return;
+    }
+
+    try
+    {
+      build( context, 1);
+    }
+    catch( ExpressionException e)
+    {
+      // the function is not incremental in this context
+      aggregates.remove( context);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#unbind(org.xmodel.xpath.expression.IContext)
+   */
+  @Override
+  public void unbind( IContext context)
+  {
+    if ( aggregates != null)
+    {
+      Aggregate aggregate = aggregates.get( context);
+      if ( aggregate != null && --aggregate.references == 0) aggregates.remove( context);
+    }
+    super.unbind( context);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#notifyAdd(
+   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext,
+   * java.util.List)
+   */
+  @Override
+  public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
+  {
+    if ( getParent() == null) return;
+
+    Aggregate aggregate = getAggregate( expression, context);
+    if ( aggregate == null) return;
+
+    try
+    {
+      double oldValue = aggregate.getResult();
+      for( IModelObject node: nodes) addNode( context, aggregate, node);
+      notifyResult( context, aggregate.getResult(), oldValue);
+    }
+    catch( ExpressionException e)
+    {
+      aggregates.remove( context);
+      getParent().handleException( this, context, e);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#notifyRemove(
+   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext,
+   * java.util.List)
+   */
+  @Override
+  public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
+  {
+    if ( getParent() == null) return;
+
+    Aggregate aggregate = getAggregate( expression, context);
+    if ( aggregate == null) return;
+
+    try
+    {
+      double oldValue = aggregate.getResult();
+      for( IModelObject node: nodes) removeNode( context, aggregate, node);
+      notifyResult( context, aggregate.getResult(), oldValue);
+    }
+    catch( ExpressionException e)
+    {
+      aggregates.remove( context);
+      getParent().handleException( this, context, e);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#notifyValue(org.xmodel.xpath.expression.IExpression,
+   * org.xmodel.xpath.expression.IContext[], org.xmodel.IModelObject, java.lang.Object, java.lang.Object)
+   */
+  @Override
+  public void notifyValue( IExpression expression, IContext[] contexts, IModelObject object, Object newValue, Object oldValue)
+  {
+    if ( getParent() == null) return;
+
+    // the value of an attribute or text node is also notified after the node enters or leaves the node-set
+    if ( (object instanceof AttributeNode || object instanceof TextNode) && (oldValue == null || object.getValue() == null))
+      return;
+
+    for( IContext context: contexts)
+    {
+      Aggregate aggregate = getAggregate( expression, context);
+      if ( aggregate == null) continue;
+
+      try
+      {
+        double result = aggregate.getResult();
+        updateNode( context, aggregate, object, newValue, oldValue);
+        notifyResult( context, aggregate.getResult(), result);
+      }
+      catch( ExpressionException e)
+      {
+        aggregates.remove( context);
+        getParent().handleException( this, context, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the aggregate which is updated by a notification from the specified argument in the specified
+   * context.  If there is no aggregate for the context, then the parent is notified that the function changed.
+   * If the notification is from an argument other than the first argument, then the aggregate is rebuilt and
+   * the parent is notified of the new value.
+   * @param expression The argument.
+   * @param context The context.
+   * @return Returns null or the aggregate to be updated.
+   */
+  private Aggregate getAggregate( IExpression expression, IContext context)
+  {
+    Aggregate aggregate = (aggregates != null)? aggregates.get( context): null;
+    if ( aggregate == null)
+    {
+      notifyChange( this, context);
+      return null;
+    }
+
+    if ( expression == getArgument( 0)) return aggregate;
+
+    try
+    {
+      double oldValue = aggregate.getResult();
+      notifyResult( context, build( context, aggregate.references).getResult(), oldValue);
+    }
+    catch( ExpressionException e)
+    {
+      aggregates.remove( context);
+      getParent().handleException( this, context, e);
+    }
+    return null;
+  }
+
+  /**
+   * Create and populate the aggregate for the specified context.
+   * @param context The context.
+   * @param references The number of bindings of the context.
+   * @return Returns the new aggregate.
+   */
+  private Aggregate build( IContext context, int references) throws ExpressionException
+  {
+    Aggregate aggregate = createAggregate();
+    aggregate.references = references;
+    aggregates.put( context, aggregate);
+    for( IModelObject node: getArgument( 0).evaluateNodes( context))
+      addNode( context, aggregate, node);
+    return aggregate;
+  }
+
+  /**
+   * Notify the parent that the value of this function changed.
+   * @param context The context.
+   * @param newValue The new value.
+   * @param oldValue The old value.
+   */
+  private void notifyResult( IContext context, double newValue, double oldValue)
+  {
+    if ( Double.compare( newValue, oldValue) == 0) return;
+
+    IExpression parent = getParent();
+    if ( isNumberListener( parent) && hasLiteralSiblings( parent))
+      parent.notifyChange( this, context, newValue, oldValue);
+    else
+      notifyChange( this, context);
+  }
+
+  /**
+   * Returns true if the arguments of the specified parent, other than this function, are literals.  A parent
+   * which handles a numeric change notification evaluates its other arguments before and after the change, so
+   * the notification is only cheaper than a generic change notification if the other arguments are constant.
+   * @param parent The parent.
+   * @return Returns true if the other arguments of the parent are literals.
+   */
+  private boolean hasLiteralSiblings( IExpression parent)
+  {
+    for( IExpression argument: parent.getArguments())
+      if ( argument != this && !(argument instanceof LiteralExpression))
+        return false;
+    return true;
+  }
+
+  /**
+   * Returns true if the notifications of the specified expression report each node once when it enters the
+   * node-set and once when it leaves.  A path whose steps use the parent, ancestor or sibling axes, more than one
+   * descendant step, or predicates, may reach a node by more than one route, or may not report a node which
+   * leaves the node-set.
+   * @param expression The expression.
+   * @return Returns true if the expression is a path whose notifications are exact.
+   */
+  protected static boolean isExact( IExpression expression)
+  {
+    if ( !(expression instanceof PathExpression)) return false;
+
+    IPath path = ((PathExpression)expression).getPath();
+    int descendants = 0;
+    for( int i=0; i<path.length(); i++)
+    {
+      IPathElement element = path.getPathElement( i);
+      if ( element.predicate() != null) return false;
+
+      int axis = element.axis();
+      if ( (axis & ~exactAxes) != 0) return false;
+      if ( (axis & IAxis.DESCENDANT) != 0 && ++descendants > 1) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the specified expression handles numeric change notifications from its arguments.
+   * @param expression The expression.
+   * @return Returns true if the expression overrides the numeric notifyChange method of Expression.
+   */
+  private static boolean isNumberListener( IExpression expression)
+  {
+    Class<?> clss = expression.getClass();
+    synchronized( numberListeners)
+    {
+      Boolean result = numberListeners.get( clss);
+      if ( result == null)
+      {
+        try
+        {
+          Class<?> declarer = clss.getMethod( "notifyChange", IExpression.class, IContext.class, double.class, double.class).getDeclaringClass();
+          result = declarer != Expression.class;
+        }
+        catch( NoSuchMethodException e)
+        {
+          result = false;
+        }
+        numberListeners.put( clss, result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The aggregate of the values of a node-set in one context.  The aggregate does not retain the nodes.
+   */
+  protected static abstract class Aggregate
+  {
+    /**
+     * Add the value of a node.
+     * @param value The value of the node.
+     */
+    public abstract void add( double value);
+
+    /**
+     * Remove the value of a node.
+     * @param value The value of the node.
+     */
+    public abstract void remove( double value);
+
+    /**
+     * Update the value of a node.
+     * @param oldValue The old value of the node.
+     * @param newValue The new value of the node.
+     */
+    public void update( double oldValue, double newValue)
+    {
+      remove( oldValue);
+      add( newValue);
+    }
+
+    /**
+     * @return Returns the value of the function.
+     */
+    public abstract double getResult();
+
+    int references = 1;
+  }
+
+  /**
+   * An aggregate which counts the nodes.
+   */
+  protected static class CountAggregate extends Aggregate
+  {
+    public CountAggregate()
+    {
+    }
+
+    public void add( double value)
+    {
+      count++;
+    }
+
+    public void remove( double value)
+    {
+      count--;
+    }
+
+    public void update( double oldValue, double newValue)
+    {
+    }
+
+    public double getResult()
+    {
+      return count;
+    }
+
+    private int count;
+  }
+
+  /**
+   * An aggregate which sums the values of the nodes.  Infinite and NaN values are counted separately, so that
+   * the sum of the finite values is not lost when they are removed.
+   */
+  protected static class SumAggregate extends Aggregate
+  {
+    public SumAggregate()
+    {
+    }
+
+    public void add( double value)
+    {
+      size++;
+      if ( Double.isNaN( value)) nan++;
+      else if ( value == Double.POSITIVE_INFINITY) positive++;
+      else if ( value == Double.NEGATIVE_INFINITY) negative++;
+      else sum += value;
+    }
+
+    public void remove( double value)
+    {
+      if ( --size == 0) { sum = 0; nan = 0; positive = 0; negative = 0; return;}
+      if ( Double.isNaN( value)) nan--;
+      else if ( value == Double.POSITIVE_INFINITY) positive--;
+      else if ( value == Double.NEGATIVE_INFINITY) negative--;
+      else sum -= value;
+    }
+
+    public double getResult()
+    {
+      if ( nan > 0 || (positive > 0 && negative > 0)) return Double.NaN;
+      if ( positive > 0) return Double.POSITIVE_INFINITY;
+      if ( negative > 0) return Double.NEGATIVE_INFINITY;
+      return sum;
+    }
+
+    /**
+     * @return Returns the number of nodes.
+     */
+    public int size()
+    {
+      return size;
+    }
+
+    private int size;
+    private double sum;
+    private int nan;
+    private int positive;
+    private int negative;
+  }
+
+  /**
+   * An aggregate which averages the values of the nodes.
+   */
+  protected static class AverageAggregate extends SumAggregate
+  {
+    public AverageAggregate()
+    {
+    }
+
+    public double getResult()
+    {
+      int count = size();
+      return (count > 0)? (super.getResult() / count): 0;
+    }
+  }
+
+  /**
+   * An aggregate which finds the minimum or maximum value of the nodes, where values are kept in a sorted
+   * multiset so that each change costs O(log n).  NaN values are ignored, and the result is bounded by the
+   * initial value of the corresponding evaluation, for compatibility with <code>evaluateNumber</code>.
+   */
+  protected static class ExtremeAggregate extends Aggregate
+  {
+    /**
+     * @param max True if the maximum should be found.
+     */
+    public ExtremeAggregate( boolean max)
+    {
+      this.max = max;
+      this.counts = new TreeMap<Double, Integer>();
+    }
+
+    public void add( double value)
+    {
+      if ( Double.isNaN( value)) return;
+
+      Integer count = counts.get( value);
+      counts.put( value, (count != null)? (count + 1): 1);
+    }
+
+    public void remove( double value)
+    {
+      if ( Double.isNaN( value)) return;
+
+      Integer count = counts.get( value);
+      if ( count == null) return;
+      if ( count == 1) counts.remove( value); else counts.put( value, count - 1);
+    }
+
+    public double getResult()
+    {
+      if ( max)
+        return (counts.size() > 0)? Math.max( counts.lastKey(), Integer.MIN_VALUE): Integer.MIN_VALUE;
+      else
+        return (counts.size() > 0)? Math.min( counts.firstKey(), Integer.MAX_VALUE): Integer.MAX_VALUE;
+    }
+
+    private boolean max;
+    private TreeMap<Double, Integer> counts;
+  }
+
+  private final static int exactAxes = IAxis.ROOT | IAxis.SELF | IAxis.CHILD | IAxis.ATTRIBUTE | IAxis.DESCENDANT;
+
+  private final static Map<Class<?>, Boolean> numberListeners = new HashMap<Class<?>, Boolean>();
+
+  private Map<IContext, Aggregate> aggregates;
+}
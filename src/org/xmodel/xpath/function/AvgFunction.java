@@ -24,12 +24,14 @@ import org.xmodel.IModelObject;
 import org.xmodel.xpath.expression.ExpressionException;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.ParallelEvaluator;
 
 
 /**
- * An implementation of the X-Path avg() function.
+ * An implementation of the X-Path avg() function.  The average of a single node-set is maintained incrementally
+ * when the function is bound (see AggregateFunction).
  */
-public class AvgFunction extends Function
+public class AvgFunction extends AggregateFunction
 {
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#getName()
@@ -47,6 +49,15 @@ public class AvgFunction extends Function
     return ResultType.NUMBER;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#createAggregate()
+   */
+  @Override
+  protected Aggregate createAggregate()
+  {
+    return new AverageAggregate();
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.Expression#evaluateNumber(
    * org.xmodel.xpath.expression.IContext)
@@ -62,7 +73,10 @@ public class AvgFunction extends Function
       {
         case NODES:
           List<IModelObject> nodes = argument.evaluateNodes( context);
-          for( IModelObject node: nodes) sum += NumberFunction.numericValue( node);
+          if ( ParallelEvaluator.isParallel( nodes))
+            sum += ParallelEvaluator.sum( nodes);
+          else
+            for( IModelObject node: nodes) sum += NumberFunction.numericValue( node);
           count += nodes.size();
           break;
           
@@ -82,28 +96,6 @@ public class AvgFunction extends Function
   }
 
   /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyAdd(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
-   */
-  @Override
-  public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
-  {
-    if ( getParent() != null) notifyChange( this, context);
-  }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyRemove(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
-   */
-  @Override
-  public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
-  {
-    if ( getParent() != null) notifyChange( this, context);
-  }
-
-  /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.Expression#notifyChange(org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, double, double)
    */
   @Override
@@ -111,14 +103,4 @@ public class AvgFunction extends Function
   {
     if ( getParent() != null) notifyChange( this, context);
   }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyValue(org.xmodel.xpath.expression.IExpression, 
-   * org.xmodel.xpath.expression.IContext[], org.xmodel.IModelObject, java.lang.Object, java.lang.Object)
-   */
-  @Override
-  public void notifyValue( IExpression expression, IContext[] contexts, IModelObject object, Object newValue, Object oldValue)
-  {
-    if ( getParent() != null) notifyChange( this, contexts[ 0]);
-  }
 }
\ No newline at end of file
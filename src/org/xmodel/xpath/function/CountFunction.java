@@ -27,9 +27,10 @@ import org.xmodel.xpath.expression.IExpression;
 
 
 /**
- * An implementation of the X-Path count() function.
+ * An implementation of the X-Path count() function.  The count is maintained incrementally when the function
+ * is bound (see AggregateFunction).
  */
-public class CountFunction extends Function
+public class CountFunction extends AggregateFunction
 {
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#getName()
@@ -47,6 +48,15 @@ public class CountFunction extends Function
     return ResultType.NUMBER;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#createAggregate()
+   */
+  @Override
+  protected Aggregate createAggregate()
+  {
+    return new CountAggregate();
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.Expression#evaluateNumber(
    * org.xmodel.xpath.expression.IContext)
@@ -61,24 +71,23 @@ public class CountFunction extends Function
   }
 
   /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyAdd(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
+   * @see org.xmodel.xpath.function.AggregateFunction#getValue(org.xmodel.xpath.expression.IContext, org.xmodel.IModelObject)
    */
   @Override
-  public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
+  protected double getValue( IContext context, IModelObject node)
   {
-    if ( getParent() != null) notifyChange( this, context);
+    return 0;
   }
 
   /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyRemove(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
+   * @see org.xmodel.xpath.function.AggregateFunction#notifyValue(org.xmodel.xpath.expression.IExpression, 
+   * org.xmodel.xpath.expression.IContext[], org.xmodel.IModelObject, java.lang.Object, java.lang.Object)
    */
   @Override
-  public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
+  public void notifyValue( IExpression expression, IContext[] contexts, IModelObject object, Object newValue, Object oldValue)
   {
-    if ( getParent() != null) notifyChange( this, context);
+    // the count does not depend on the values of the nodes
+    IExpression parent = getParent();
+    if ( parent != null) parent.notifyValue( this, contexts, object, newValue, oldValue);
   }
 }
\ No newline at end of file
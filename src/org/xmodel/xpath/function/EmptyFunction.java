@@ -24,9 +24,12 @@ import java.util.List;
 import org.xmodel.IModelObject;
 import org.xmodel.xpath.expression.ExpressionException;
 import org.xmodel.xpath.expression.IContext;
+import org.xmodel.xpath.expression.IExpression;
 
 /**
- * An implementation of the XPath 2.0 fn:empty() function.
+ * An implementation of the XPath 2.0 fn:empty() function.  With no arguments, the function returns an empty 
+ * node-set.  With one argument, the function returns true if the node-set argument is empty.  The argument is 
+ * evaluated with <code>IExpression.iterate</code>, so evaluation stops at the first node.
  */
 public class EmptyFunction extends Function
 {
@@ -45,7 +48,7 @@ public class EmptyFunction extends Function
    */
   public ResultType getType()
   {
-    return ResultType.NODES;
+    return (getArguments().size() == 0)? ResultType.NODES: ResultType.BOOLEAN;
   }
 
   /* (non-Javadoc)
@@ -57,4 +60,49 @@ public class EmptyFunction extends Function
     assertArgs( 0, 0);
     return Collections.<IModelObject>emptyList();
   }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#evaluateBoolean(org.xmodel.xpath.expression.IContext)
+   */
+  @Override
+  public boolean evaluateBoolean( IContext context) throws ExpressionException
+  {
+    // the boolean value of the empty node-set
+    if ( getArguments().size() == 0) return super.evaluateBoolean( context);
+    
+    assertArgs( 1, 1);
+    assertType( context, ResultType.NODES);
+    return !getArgument( 0).iterate( context).hasNext();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#notifyAdd(org.xmodel.xpath.expression.IExpression, 
+   * org.xmodel.xpath.expression.IContext, java.util.List)
+   */
+  @Override
+  public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
+  {
+    IExpression parent = getParent();
+    if ( parent != null) parent.notifyChange( this, context);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#notifyRemove(org.xmodel.xpath.expression.IExpression, 
+   * org.xmodel.xpath.expression.IContext, java.util.List)
+   */
+  @Override
+  public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
+  {
+    IExpression parent = getParent();
+    if ( parent != null) parent.notifyChange( this, context);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#requiresValueNotification(org.xmodel.xpath.expression.IExpression)
+   */
+  @Override
+  public boolean requiresValueNotification( IExpression argument)
+  {
+    return false;
+  }
 }
@@ -19,15 +19,27 @@
  */
 package org.xmodel.xpath.function;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import org.xmodel.DocumentOrder;
 import org.xmodel.IModelObject;
+import org.xmodel.IdIndex;
+import org.xmodel.util.HashMultiMap;
+import org.xmodel.util.MultiMap;
 import org.xmodel.xpath.expression.ExpressionException;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
 
 
 /**
- * An implementation of the xpath 2.0 id function.
+ * An implementation of the xpath 2.0 id function.  The first argument is a string, or a node-set whose string
+ * values are used, containing one or more whitespace-separated ids.  The optional second argument is a node-set
+ * whose roots define the trees that are searched, for example <code>collection('name')</code>.  By default, the
+ * tree of the context node is searched.  The elements are found with the IdIndex, so the function does not
+ * traverse the tree after the index of the root has been built.  If more than one element has the same id, all of
+ * them are returned.
  */
 public class IDFunction extends Function
 {
@@ -56,13 +68,140 @@ public class IDFunction extends Function
   public List<IModelObject> evaluateNodes( IContext context) throws ExpressionException
   {
     assertArgs( 1, 2);
-    assertType( context, 0, ResultType.STRING);
-    assertType( context, 1, ResultType.NODES);
+    if ( getArguments().size() > 1) assertType( context, 1, ResultType.NODES);
     
-    // TODO: need to implement global cache by ID
-    throw new UnsupportedOperationException();
+    List<String> ids = getIds( context);
+    List<IModelObject> roots = getRoots( context);
+    if ( ids.size() == 0 || roots.size() == 0) return Collections.emptyList();
+    
+    // the elements of each id are in document order
+    List<IModelObject> result = Collections.emptyList();
+    for( IModelObject root: roots)
+      for( String id: ids)
+        result = merge( result, IdIndex.find( root, id));
+    
+    return result;
+  }
+
+  /**
+   * Returns the union of the specified node-sets, which are in document order, in document order.
+   * @param lhs The left-hand node-set.
+   * @param rhs The right-hand node-set.
+   * @return Returns the union of the node-sets.
+   */
+  private static List<IModelObject> merge( List<IModelObject> lhs, List<IModelObject> rhs)
+  {
+    if ( lhs.size() == 0) return rhs;
+    if ( rhs.size() == 0) return lhs;
+    
+    List<IModelObject> result = DocumentOrder.union( lhs, rhs);
+    if ( result != null) return result;
+    
+    result = new ArrayList<IModelObject>( lhs);
+    result.addAll( rhs);
+    Collections.sort( result, new Comparator<IModelObject>() {
+      public int compare( IModelObject o1, IModelObject o2)
+      {
+        return DocumentOrder.compare( o1, o2);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Returns the ids in the first argument.
+   * @param context The context.
+   * @return Returns the ids.
+   */
+  private List<String> getIds( IContext context) throws ExpressionException
+  {
+    IExpression arg0 = getArgument( 0);
+    List<String> ids = new ArrayList<String>( 1);
+    if ( arg0.getType( context) == ResultType.NODES)
+    {
+      for( IModelObject node: arg0.evaluateNodes( context))
+        tokenize( StringFunction.stringValue( node), ids);
+    }
+    else
+    {
+      tokenize( arg0.evaluateString( context), ids);
+    }
+    return ids;
+  }
+  
+  /**
+   * Add the whitespace-separated tokens in the specified string to the specified list.
+   * @param string The string.
+   * @param ids The list of ids.
+   */
+  private static void tokenize( String string, List<String> ids)
+  {
+    for( String id: string.trim().split( "\\s+"))
+      if ( id.length() > 0 && !ids.contains( id))
+        ids.add( id);
+  }
+  
+  /**
+   * Returns the distinct roots of the trees that are searched.
+   * @param context The context.
+   * @return Returns the roots.
+   */
+  private List<IModelObject> getRoots( IContext context) throws ExpressionException
+  {
+    if ( getArguments().size() < 2) return Collections.singletonList( context.getObject().getRoot());
+
+    List<IModelObject> roots = new ArrayList<IModelObject>( 1);
+    for( IModelObject node: getArgument( 1).evaluateNodes( context))
+    {
+      IModelObject root = node.getRoot();
+      boolean found = false;
+      for( IModelObject other: roots) if ( other == root) { found = true; break;}
+      if ( !found) roots.add( root);
+    }
+    return roots;
+  }
+  
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#bind(org.xmodel.xpath.expression.IContext)
+   */
+  @Override
+  public void bind( IContext context)
+  {
+    super.bind( context);
+    
+    IndexListener listener = new IndexListener( context);
+    listener.install();
+    
+    if ( listeners == null) listeners = new HashMultiMap<IContext, IndexListener>();
+    listeners.put( context, listener);
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.expression.Expression#unbind(org.xmodel.xpath.expression.IContext)
+   */
+  @Override
+  public void unbind( IContext context)
+  {
+    super.unbind( context);
+    
+    IndexListener listener = (listeners != null)? listeners.removeFirst( context): null;
+    if ( listener != null) listener.uninstall();
+  }
+
+  /**
+   * Reinstall the index listener of the specified context after an argument has changed.
+   * @param context The context.
+   */
+  private void reinstall( IContext context)
+  {
+    IndexListener listener = (listeners != null)? listeners.getFirst( context): null;
+    if ( listener != null)
+    {
+      listener.uninstall();
+      listener.install();
+    }
+  }
+  
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.Expression#notifyAdd(org.xmodel.xpath.expression.IExpression, 
    * org.xmodel.xpath.expression.IContext, java.util.List)
@@ -70,6 +209,7 @@ public class IDFunction extends Function
   @Override
   public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
   {
+    reinstall( context);
     getParent().notifyChange( this, context);
   }
 
@@ -80,6 +220,7 @@ public class IDFunction extends Function
   @Override
   public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
   {
+    reinstall( context);
     getParent().notifyChange( this, context);
   }
 
@@ -90,6 +231,76 @@ public class IDFunction extends Function
   @Override
   public void notifyChange( IExpression expression, IContext context, String newValue, String oldValue)
   {
+    reinstall( context);
     getParent().notifyChange( this, context);
   }
+  
+  /**
+   * An IdIndex listener for the ids and roots of a bound context, which notifies the parent expression when an
+   * element with one of the ids is added to or removed from one of the trees.
+   */
+  private class IndexListener implements IdIndex.Listener
+  {
+    public IndexListener( IContext context)
+    {
+      this.context = context;
+    }
+    
+    /**
+     * Evaluate the ids and roots and register with the IdIndex.
+     */
+    public void install()
+    {
+      try
+      {
+        ids = getIds( context);
+        roots = getRoots( context);
+        for( IModelObject root: roots)
+          for( String id: ids)
+            IdIndex.addListener( root, id, this);
+      }
+      catch( ExpressionException e)
+      {
+        ids = Collections.emptyList();
+        roots = Collections.emptyList();
+        handleException( IDFunction.this, context, e);
+      }
+    }
+    
+    /**
+     * Unregister from the IdIndex.
+     */
+    public void uninstall()
+    {
+      for( IModelObject root: roots)
+        for( String id: ids)
+          IdIndex.removeListener( root, id, this);
+    }
+    
+    /* (non-Javadoc)
+     * @see org.xmodel.IdIndex.Listener#notifyAdd(org.xmodel.IModelObject, java.lang.String, org.xmodel.IModelObject)
+     */
+    @Override
+    public void notifyAdd( IModelObject root, String id, IModelObject element)
+    {
+      IExpression parent = getParent();
+      if ( parent != null) parent.notifyAdd( IDFunction.this, context, Collections.singletonList( element));
+    }
+
+    /* (non-Javadoc)
+     * @see org.xmodel.IdIndex.Listener#notifyRemove(org.xmodel.IModelObject, java.lang.String, org.xmodel.IModelObject)
+     */
+    @Override
+    public void notifyRemove( IModelObject root, String id, IModelObject element)
+    {
+      IExpression parent = getParent();
+      if ( parent != null) parent.notifyRemove( IDFunction.this, context, Collections.singletonList( element));
+    }
+    
+    private IContext context;
+    private List<String> ids;
+    private List<IModelObject> roots;
+  }
+  
+  private MultiMap<IContext, IndexListener> listeners;
 }
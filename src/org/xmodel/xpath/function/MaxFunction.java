@@ -24,12 +24,14 @@ import org.xmodel.IModelObject;
 import org.xmodel.xpath.expression.ExpressionException;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.ParallelEvaluator;
 
 
 /**
- * An implementation of the X-Path min() function.
+ * An implementation of the X-Path max() function.  The maximum of a single node-set is maintained incrementally
+ * when the function is bound (see AggregateFunction).
  */
-public class MaxFunction extends Function
+public class MaxFunction extends AggregateFunction
 {
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#getName()
@@ -47,6 +49,15 @@ public class MaxFunction extends Function
     return ResultType.NUMBER;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#createAggregate()
+   */
+  @Override
+  protected Aggregate createAggregate()
+  {
+    return new ExtremeAggregate( true);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.Expression#evaluateNumber(
    * org.xmodel.xpath.expression.IContext)
@@ -60,10 +71,18 @@ public class MaxFunction extends Function
       switch( argument.getType( context))
       {
         case NODES:
-          for( IModelObject node: argument.evaluateNodes( context))
+          List<IModelObject> nodes = argument.evaluateNodes( context);
+          if ( ParallelEvaluator.isParallel( nodes))
           {
-            double value = NumberFunction.numericValue( node);
-            if ( value > max) max = value;
+            max = ParallelEvaluator.max( nodes, max);
+          }
+          else
+          {
+            for( IModelObject node: nodes)
+            {
+              double value = NumberFunction.numericValue( node);
+              if ( value > max) max = value;
+            }
           }
           break;
           
@@ -83,28 +102,6 @@ public class MaxFunction extends Function
   }
 
   /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyAdd(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
-   */
-  @Override
-  public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
-  {
-    if ( getParent() != null) notifyChange( this, context);
-  }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyRemove(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
-   */
-  @Override
-  public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
-  {
-    if ( getParent() != null) notifyChange( this, context);
-  }
-
-  /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.Expression#notifyChange(org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, double, double)
    */
   @Override
@@ -112,14 +109,4 @@ public class MaxFunction extends Function
   {
     if ( getParent() != null) notifyChange( this, context);
   }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyValue(org.xmodel.xpath.expression.IExpression, 
-   * org.xmodel.xpath.expression.IContext[], org.xmodel.IModelObject, java.lang.Object, java.lang.Object)
-   */
-  @Override
-  public void notifyValue( IExpression expression, IContext[] contexts, IModelObject object, Object newValue, Object oldValue)
-  {
-    if ( getParent() != null) notifyChange( this, contexts[ 0]);
-  }
 }
\ No newline at end of file
@@ -192,15 +192,8 @@ public class NumberFunction extends Function
    */
   public static double numericValue( IModelObject node)
   {
-    try
-    {
-      String string = StringFunction.stringValue( node);
-      return Double.parseDouble( string);
-    }
-    catch( NumberFormatException e)
-    {
-      return 0;
-    }
+    // numeric values are converted without creating the string-value of the node
+    return node.getAttributeAsDouble( "", 0);
   }
   
   /**
@@ -210,16 +203,8 @@ public class NumberFunction extends Function
    */
   public static double numericValue( List<IModelObject> nodes)
   {
-    try
-    {
-      if ( nodes.size() == 0) return 0;
-      String string = StringFunction.stringValue( nodes.get( 0));
-      return Double.parseDouble( string);
-    }
-    catch( NumberFormatException e)
-    {
-      return 0;
-    }
+    if ( nodes.size() == 0) return 0;
+    return numericValue( nodes.get( 0));
   }
   
   /**
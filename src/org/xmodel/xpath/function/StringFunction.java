@@ -99,11 +99,8 @@ public class StringFunction extends Function
    */
   public static String stringValue( IModelObject object)
   {
-    Object value = object.getValue();
-    if ( value instanceof Number) return stringValue( (Number)value);
-    if ( value instanceof Boolean) return stringValue( (Boolean)value);
-    if ( value != null) return value.toString();
-    return "";
+    String value = stringValueOf( object.getValue());
+    return (value != null)? value: "";
 //    This is too slow.    
 //    StringBuffer result = new StringBuffer();
 //    BreadthFirstIterator treeIter = new BreadthFirstIterator( object);
@@ -116,6 +113,19 @@ public class StringFunction extends Function
 //    return result.toString();
   }
   
+  /**
+   * Returns the string-value of the specified attribute value.
+   * @param value Null or the value of an attribute.
+   * @return Returns null if the value is null, otherwise the string-value.
+   */
+  public static String stringValueOf( Object value)
+  {
+    if ( value == null) return null;
+    if ( value instanceof Number) return stringValue( (Number)value);
+    if ( value instanceof Boolean) return stringValue( (Boolean)value);
+    return value.toString();
+  }
+  
   /**
    * Returns the string-value of the first node in the node-set.
    * @param nodes The node-set.
@@ -127,6 +137,18 @@ public class StringFunction extends Function
     return stringValue( nodes.get( 0));
   }
 
+  /**
+   * Returns the string-value of each node in the node-set.
+   * @param nodes The node-set.
+   * @return Returns the string-values in the order of the node-set.
+   */
+  public static String[] stringValues( List<IModelObject> nodes)
+  {
+    String[] result = new String[ nodes.size()];
+    for( int i=0; i<result.length; i++) result[ i] = stringValue( nodes.get( i));
+    return result;
+  }
+  
   /**
    * Returns the string-value of the specified number.
    * @param value The number to be converted.
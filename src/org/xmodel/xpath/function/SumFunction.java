@@ -25,11 +25,13 @@ import org.xmodel.IModelObject;
 import org.xmodel.xpath.expression.ExpressionException;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.ParallelEvaluator;
 
 /**
- * An implementation of the X-Path sum() function.
+ * An implementation of the X-Path sum() function.  The sum of a single node-set is maintained incrementally
+ * when the function is bound (see AggregateFunction).
  */
-public class SumFunction extends Function
+public class SumFunction extends AggregateFunction
 {
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#getName()
@@ -47,6 +49,15 @@ public class SumFunction extends Function
     return ResultType.NUMBER;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#createAggregate()
+   */
+  @Override
+  protected Aggregate createAggregate()
+  {
+    return new SumAggregate();
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#evaluateNumber(
    * org.xmodel.xpath.expression.IContext)
@@ -61,7 +72,10 @@ public class SumFunction extends Function
       {
         case NODES:
           List<IModelObject> nodes = argument.evaluateNodes( context);
-          for( IModelObject node: nodes) sum += NumberFunction.numericValue( node);
+          if ( ParallelEvaluator.isParallel( nodes))
+            sum += ParallelEvaluator.sum( nodes);
+          else
+            for( IModelObject node: nodes) sum += NumberFunction.numericValue( node);
           break;
           
         case NUMBER:
@@ -77,36 +91,4 @@ public class SumFunction extends Function
     
     return sum;
   }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyAdd(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
-   */
-  @Override
-  public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
-  {
-    if ( getParent() != null) notifyChange( this, context);
-  }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyRemove(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
-   */
-  @Override
-  public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
-  {
-    if ( getParent() != null) notifyChange( this, context);
-  }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyValue(org.xmodel.xpath.expression.IExpression, 
-   * org.xmodel.xpath.expression.IContext[], org.xmodel.IModelObject, java.lang.Object, java.lang.Object)
-   */
-  @Override
-  public void notifyValue( IExpression expression, IContext[] contexts, IModelObject object, Object newValue, Object oldValue)
-  {
-    if ( getParent() != null) notifyChange( this, contexts[ 0]);
-  }
 }
@@ -29,6 +29,7 @@ import org.xmodel.IModelObjectFactory;
 import org.xmodel.ModelAlgorithms;
 import org.xmodel.xpath.expression.Context;
 import org.xmodel.xpath.expression.ExpressionException;
+import org.xmodel.xpath.expression.ExpressionOptimizer;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
 import org.xmodel.xpath.expression.SubContext;
@@ -158,7 +159,7 @@ public class EvaluateFunction extends Function
     {
       XPathParser parser = new XPathParser( new StringReader( spec));
       parser.setSpec( spec);
-      return parser.ParseExpression();
+      return ExpressionOptimizer.optimize( parser.ParseExpression());
     }
     catch( Throwable t)
     {
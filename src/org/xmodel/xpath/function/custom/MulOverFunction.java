@@ -25,6 +25,7 @@ import org.xmodel.IModelObject;
 import org.xmodel.xpath.expression.ExpressionException;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.ParallelEvaluator;
 import org.xmodel.xpath.expression.StatefulContext;
 import org.xmodel.xpath.function.Function;
 
@@ -62,7 +63,10 @@ public class MulOverFunction extends Function
     IExpression arg0 = getArgument( 0);
     IExpression arg1 = getArgument( 1);
     
-    for( IModelObject node: arg0.evaluateNodes( context))
+    List<IModelObject> nodes = arg0.evaluateNodes( context);
+    if ( ParallelEvaluator.isParallel( nodes, arg1)) return ParallelEvaluator.mulOver( context, nodes, arg1);
+    
+    for( IModelObject node: nodes)
     {
       StatefulContext context2 = new StatefulContext( context, node);
       sum *= arg1.evaluateNumber( context2);
@@ -32,6 +32,7 @@ import org.xmodel.xpath.function.Function;
  * node-set expression relative to each node in the node-set being sorted. Each key is 
  * converted to a string argument and the sort is performed lexically. The sort direction may
  * be reversed by enclosing the entire sort function with the <i>reverse</i> function.
+ * The keys are evaluated once for each node before the sort is performed.
  */
 public class SortFunction extends Function
 {
@@ -63,16 +64,53 @@ public class SortFunction extends Function
     IExpression arg0 = getArgument( 0);
     
     List<IModelObject> nodes = arg0.evaluateNodes( context);
-    List<IContext> contexts = new ArrayList<IContext>( nodes.size());
+    List<Row> rows = new ArrayList<Row>( nodes.size());
     int size = nodes.size();
-    for ( int i=0; i<size; i++) contexts.add( new Context( nodes.get( i), i+1, size));
+    for ( int i=0; i<size; i++) rows.add( new Row( nodes.get( i), getKeys( new Context( nodes.get( i), i+1, size))));
     
-    Collections.sort( contexts, new NodeComparator());
-    for ( int i=0; i<size; i++) nodes.set( i, contexts.get( i).getObject());
+    Collections.sort( rows, new NodeComparator());
+    for ( int i=0; i<size; i++) nodes.set( i, rows.get( i).node);
     
     return nodes;
   }
   
+  /**
+   * Evaluate the sort keys in the specified context. The key of a node-set is the string-value
+   * of its first node. A key whose evaluation fails is null.
+   * @param context The context.
+   * @return Returns the keys.
+   */
+  private Object[] getKeys( IContext context)
+  {
+    List<IExpression> arguments = getArguments();
+    Object[] keys = new Object[ arguments.size() - 1];
+    for( int i=1; i<arguments.size(); i++)
+    {
+      IExpression argument = arguments.get( i);
+      try
+      {
+        switch( argument.getType( context))
+        {
+          case NODES:
+          {
+            List<IModelObject> nodes = argument.evaluateNodes( context);
+            keys[ i-1] = (nodes.size() == 0)? empty: Xlate.get( nodes.get( 0), "");
+            break;
+          }
+          
+          case STRING:  keys[ i-1] = argument.evaluateString( context); break;
+          case NUMBER:  keys[ i-1] = argument.evaluateNumber( context); break;
+          case BOOLEAN: keys[ i-1] = argument.evaluateBoolean( context); break;
+          default: break;
+        }
+      }
+      catch( ExpressionException e)
+      {
+      }
+    }
+    return keys;
+  }
+  
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#bind(org.xmodel.xpath.expression.IContext)
    */
@@ -213,69 +251,57 @@ public class SortFunction extends Function
     getParent().notifyChange( this, contexts[ 0].getParent());
   }
   
-  private class NodeComparator implements Comparator<IContext>
+  private final static class Row
   {
-    public int compare( IContext lhs, IContext rhs)
+    Row( IModelObject node, Object[] keys)
     {
-      try
+      this.node = node;
+      this.keys = keys;
+    }
+    
+    IModelObject node;
+    Object[] keys;
+  }
+  
+  private class NodeComparator implements Comparator<Row>
+  {
+    public int compare( Row lhs, Row rhs)
+    {
+      for( int i=0; i<lhs.keys.length; i++)
       {
-        int result = 0;
-        List<IExpression> arguments = getArguments();
-        for( int i=1; i<arguments.size(); i++)
+        Object lkey = lhs.keys[ i];
+        Object rkey = rhs.keys[ i];
+        if ( lkey == null || rkey == null) return 0;
+        
+        if ( lkey == empty || rkey == empty)
         {
-          IExpression argument = arguments.get( i);
-          // assume type is the same for lhs and rhs evalutions
-          switch( argument.getType( lhs))
-          {
-            case NODES:
-            {
-              List<IModelObject> lnodes = argument.evaluateNodes( lhs);
-              List<IModelObject> rnodes = argument.evaluateNodes( rhs);
-              if ( lnodes.size() == 0) return 1;
-              if ( rnodes.size() == 0) return -1;
-              String lstring = Xlate.get( lnodes.get( 0), "");
-              String rstring = Xlate.get( rnodes.get( 0), "");
-              result = compare( lstring, rstring);
-              if ( result != 0) return result;
-              break;
-            }
-            
-            case STRING:
-            {
-              String lstring = argument.evaluateString( lhs);
-              String rstring = argument.evaluateString( rhs);
-              result = compare( lstring, rstring);
-              if ( result != 0) return result;
-              break;
-            }
-              
-            case NUMBER:
-            {
-              double lnumber = argument.evaluateNumber( lhs);
-              double rnumber = argument.evaluateNumber( rhs);
-              if ( lnumber < rnumber) return -1;
-              if ( lnumber > rnumber) return 1;
-              result = 0;
-              break;
-            }
-              
-            case BOOLEAN:
-            {
-              boolean lbool = argument.evaluateBoolean( lhs);
-              boolean rbool = argument.evaluateBoolean( rhs);
-              if ( lbool && !rbool) return -1;
-              if ( lbool && rbool) return 1;
-              result = 0;
-              break;
-            }
-            
-            default: break;
-          }
+          if ( lkey == rkey) continue;
+          return (lkey == empty)? 1: -1;
+        }
+        
+        if ( lkey instanceof String && rkey instanceof String)
+        {
+          int result = compare( (String)lkey, (String)rkey);
+          if ( result != 0) return result;
+        }
+        else if ( lkey instanceof Double && rkey instanceof Double)
+        {
+          double lnumber = (Double)lkey;
+          double rnumber = (Double)rkey;
+          if ( lnumber < rnumber) return -1;
+          if ( lnumber > rnumber) return 1;
+        }
+        else if ( lkey instanceof Boolean && rkey instanceof Boolean)
+        {
+          boolean lbool = (Boolean)lkey;
+          boolean rbool = (Boolean)rkey;
+          if ( lbool && !rbool) return -1;
+          if ( !lbool && rbool) return 1;
+        }
+        else
+        {
+          return 0;
         }
-        return result;
-      }
-      catch( ExpressionException e)
-      {
       }
       return 0;
     }
@@ -324,5 +350,7 @@ public class SortFunction extends Function
     }
   }
   
+  private final static Object empty = new Object();
+  
   final static char[] digits = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
 }
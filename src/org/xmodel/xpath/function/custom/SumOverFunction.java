@@ -19,20 +19,30 @@
  */
 package org.xmodel.xpath.function.custom;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.xmodel.IAxis;
 import org.xmodel.IModelObject;
+import org.xmodel.IPath;
+import org.xmodel.IPathElement;
 import org.xmodel.xpath.expression.ExpressionException;
 import org.xmodel.xpath.expression.IContext;
 import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.ParallelEvaluator;
+import org.xmodel.xpath.expression.PathExpression;
 import org.xmodel.xpath.expression.StatefulContext;
-import org.xmodel.xpath.function.Function;
+import org.xmodel.xpath.function.AggregateFunction;
 
 /**
  * A custom XPath function, similar to the sum() function, which sums the result of a function
- * processed over a node-set.
+ * processed over a node-set.  The sum is maintained incrementally when the function is bound and
+ * the node-set is a path of elements whose notifications are exact (see AggregateFunction).  The value of each
+ * node is retained while the node is in the node-set, so that the value which was added is the 
+ * value which is subtracted when the node leaves the node-set.
  */
-public class SumOverFunction extends Function
+public class SumOverFunction extends AggregateFunction
 {
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#getName()
@@ -50,6 +60,85 @@ public class SumOverFunction extends Function
     return ResultType.NUMBER;
   }
 
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#isIncremental()
+   */
+  @Override
+  protected boolean isIncremental()
+  {
+    if ( getArguments().size() != 2) return false;
+    
+    IExpression arg0 = getArgument( 0);
+    if ( arg0.getType() != ResultType.NODES || !isExact( arg0)) return false;
+    
+    // the attribute and text nodes which leave the node-set are reported as copies without a parent
+    IPath path = ((PathExpression)arg0).getPath();
+    IPathElement last = path.getPathElement( path.length() - 1);
+    return (last.axis() & IAxis.ATTRIBUTE) == 0 && last.type() != null && !last.type().endsWith( ")");
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#createAggregate()
+   */
+  @Override
+  protected Aggregate createAggregate()
+  {
+    return new RetainedSumAggregate();
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#getValue(org.xmodel.xpath.expression.IContext, 
+   * org.xmodel.IModelObject)
+   */
+  @Override
+  protected double getValue( IContext context, IModelObject node) throws ExpressionException
+  {
+    return getArgument( 1).evaluateNumber( new StatefulContext( context, node));
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#addNode(org.xmodel.xpath.expression.IContext, 
+   * org.xmodel.xpath.function.AggregateFunction.Aggregate, org.xmodel.IModelObject)
+   */
+  @Override
+  protected void addNode( IContext context, Aggregate aggregate, IModelObject node) throws ExpressionException
+  {
+    RetainedSumAggregate sum = (RetainedSumAggregate)aggregate;
+    if ( sum.values.containsKey( node)) return;
+    
+    double value = getValue( context, node);
+    sum.values.put( node, value);
+    sum.add( value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#removeNode(org.xmodel.xpath.expression.IContext, 
+   * org.xmodel.xpath.function.AggregateFunction.Aggregate, org.xmodel.IModelObject)
+   */
+  @Override
+  protected void removeNode( IContext context, Aggregate aggregate, IModelObject node)
+  {
+    RetainedSumAggregate sum = (RetainedSumAggregate)aggregate;
+    Double value = sum.values.remove( node);
+    if ( value != null) sum.remove( value);
+  }
+
+  /* (non-Javadoc)
+   * @see org.xmodel.xpath.function.AggregateFunction#updateNode(org.xmodel.xpath.expression.IContext, 
+   * org.xmodel.xpath.function.AggregateFunction.Aggregate, org.xmodel.IModelObject, java.lang.Object, java.lang.Object)
+   */
+  @Override
+  protected void updateNode( IContext context, Aggregate aggregate, IModelObject node, Object newValue, Object oldValue) throws ExpressionException
+  {
+    RetainedSumAggregate sum = (RetainedSumAggregate)aggregate;
+    Double previous = sum.values.get( node);
+    if ( previous == null) return;
+    
+    double value = getValue( context, node);
+    sum.values.put( node, value);
+    sum.update( previous, value);
+  }
+
   /* (non-Javadoc)
    * @see org.xmodel.xpath.expression.IExpression#evaluateNumber(
    * org.xmodel.xpath.expression.IContext)
@@ -63,7 +152,10 @@ public class SumOverFunction extends Function
     IExpression arg0 = getArgument( 0);
     IExpression arg1 = getArgument( 1);
     
-    for( IModelObject node: arg0.evaluateNodes( context))
+    List<IModelObject> nodes = arg0.evaluateNodes( context);
+    if ( ParallelEvaluator.isParallel( nodes, arg1)) return ParallelEvaluator.sumOver( context, nodes, arg1);
+    
+    for( IModelObject node: nodes)
     {
       StatefulContext context2 = new StatefulContext( context, node);
       sum += arg1.evaluateNumber( context2);
@@ -71,36 +163,12 @@ public class SumOverFunction extends Function
             
     return sum;
   }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyAdd(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
-   */
-  @Override
-  public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
-  {
-    if ( getParent() != null) notifyChange( this, context);
-  }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyRemove(
-   * org.xmodel.xpath.expression.IExpression, org.xmodel.xpath.expression.IContext, 
-   * java.util.List)
+  
+  /**
+   * A sum which retains the value of each element in the node-set by identity.
    */
-  @Override
-  public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
+  private static class RetainedSumAggregate extends SumAggregate
   {
-    if ( getParent() != null) notifyChange( this, context);
-  }
-
-  /* (non-Javadoc)
-   * @see org.xmodel.xpath.expression.Expression#notifyValue(org.xmodel.xpath.expression.IExpression, 
-   * org.xmodel.xpath.expression.IContext[], org.xmodel.IModelObject, java.lang.Object, java.lang.Object)
-   */
-  @Override
-  public void notifyValue( IExpression expression, IContext[] contexts, IModelObject object, Object newValue, Object oldValue)
-  {
-    if ( getParent() != null) notifyChange( this, contexts[ 0]);
+    Map<IModelObject, Double> values = new IdentityHashMap<IModelObject, Double>();
   }
 }
@@ -1,12 +1,18 @@
 package org.xmodel;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import org.junit.Test;
+import org.xmodel.concurrent.SubtreeExecutor;
 
 /**
  * Test concurrent read/write access to elements.
@@ -33,6 +39,128 @@ public class ConcurrentElementTest
     runTest( 100, 100);
   }
   
+  @Test public void subtreeWritesAreOrdered() throws Exception
+  {
+    for( int stripes = 1; stripes <= 8; stripes *= 2)
+      runSubtreeTest( stripes, 64, 50, 20);
+  }
+  
+  @Test public void stripeThread() throws Exception
+  {
+    final SubtreeExecutor executor = new SubtreeExecutor( "stripe", 2);
+    final IModelObject root = new ModelObject( "subtree");
+    assertFalse( executor.isStripeThread( root));
+    
+    // the first task observes its own stripe
+    Future<Boolean> future = executor.submit( root, new Callable<Boolean>() {
+      public Boolean call() throws Exception
+      {
+        return executor.isStripeThread( root);
+      }
+    });
+    assertTrue( future.get());
+    
+    // the thread that replaces a failed thread is also observed
+    executor.execute( root, new Runnable() {
+      public void run()
+      {
+        throw new IllegalStateException();
+      }
+    });
+    future = executor.submit( root, new Callable<Boolean>() {
+      public Boolean call() throws Exception
+      {
+        return executor.isStripeThread( root);
+      }
+    });
+    assertTrue( future.get());
+    assertTrue( executor.shutdownAndWait( 60000));
+  }
+  
+  /**
+   * Write disjoint subtrees with a SubtreeExecutor and verify that each subtree observed its writes in order.
+   * @param stripes The number of stripes.
+   * @param subtrees The number of subtrees.
+   * @param tasks The number of tasks per subtree.
+   * @param writes The number of writes per task.
+   */
+  private void runSubtreeTest( int stripes, int subtrees, int tasks, int writes) throws Exception
+  {
+    SubtreeExecutor executor = new SubtreeExecutor( "subtree", stripes);
+    
+    List<IModelObject> roots = new ArrayList<IModelObject>();
+    List<OrderListener> listeners = new ArrayList<OrderListener>();
+    for( int i=0; i<subtrees; i++)
+    {
+      IModelObject root = new ModelObject( "subtree");
+      root.setAttribute( "count", 0);
+      OrderListener listener = new OrderListener();
+      root.addModelListener( listener);
+      roots.add( root);
+      listeners.add( listener);
+    }
+    
+    for( int i=0; i<tasks; i++)
+    {
+      for( IModelObject root: roots)
+      {
+        executor.execute( root, new SubtreeWriter( root, writes));
+      }
+    }
+    assertTrue( "Stripes did not finish.", executor.shutdownAndWait( 60000));
+
+    for( int i=0; i<subtrees; i++)
+    {
+      IModelObject root = roots.get( i);
+      OrderListener listener = listeners.get( i);
+      assertTrue( "Writes observed out of order.", listener.ordered);
+      assertEquals( tasks * writes, listener.last);
+      assertEquals( tasks * writes, Xlate.get( root, "count", 0));
+      assertEquals( 0, root.getChildren().size());
+    }
+  }
+  
+  private static class SubtreeWriter implements Runnable
+  {
+    public SubtreeWriter( IModelObject root, int writes)
+    {
+      this.root = root;
+      this.writes = writes;
+    }
+    
+    public void run()
+    {
+      for( int i=0; i<writes; i++)
+      {
+        IModelObject child = new ModelObject( "child");
+        child.setValue( i);
+        root.addChild( child);
+        root.setAttribute( "count", Xlate.get( root, "count", 0) + 1);
+        root.removeChild( child);
+      }
+    }
+    
+    private IModelObject root;
+    private int writes;
+  }
+  
+  private static class OrderListener extends ModelListener
+  {
+    /* (non-Javadoc)
+     * @see org.xmodel.ModelListener#notifyChange(org.xmodel.IModelObject, java.lang.String, java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public void notifyChange( IModelObject object, String attrName, Object newValue, Object oldValue)
+    {
+      int value = (Integer)newValue;
+      if ( value != last + 1) ordered = false;
+      last = value;
+    }
+    
+    public int last;
+    public boolean ordered = true;
+  }
+  
   private void runTest( int readers, int writers) throws Exception
   {
     ExecutorService readerPool = Executors.newFixedThreadPool( readers);
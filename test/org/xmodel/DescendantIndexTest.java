@@ -0,0 +1,215 @@
+package org.xmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmodel.storage.IndexedChildList;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test the DescendantIndex.
+ */
+public class DescendantIndexTest
+{
+  @Before public void setUp()
+  {
+    root = new ModelObject( "root");
+    for( int i=0; i<5; i++)
+    {
+      IModelObject group = new ModelObject( "group");
+      group.addChild( new ModelObject( "item"));
+      IModelObject nested = new ModelObject( "group");
+      nested.addChild( new ModelObject( "item"));
+      group.addChild( nested);
+      group.addChild( new ModelObject( "item"));
+      root.addChild( group);
+    }
+    DescendantIndex.addRoot( root);
+  }
+
+  @After public void tearDown()
+  {
+    DescendantIndex.removeRoot( root);
+  }
+
+  @Test public void documentOrder()
+  {
+    assertNotNull( DescendantIndex.find( root, "item"));
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+    assertEquals( traverse( "item"), XPath.createExpression( "descendant::item").evaluateNodes( new StatefulContext( root)));
+    assertEquals( traverse( "group"), DescendantIndex.find( root, "group"));
+  }
+
+  @Test public void incrementalOrder()
+  {
+    DescendantIndex.find( root, "item");
+
+    // insert before, append, insert a subtree in the middle and remove
+    root.getChild( 2).addChild( new ModelObject( "item"), 0);
+    root.getChild( 4).getChild( 1).addChild( new ModelObject( "item"));
+    IModelObject subtree = new ModelObject( "group");
+    subtree.addChild( new ModelObject( "item"));
+    subtree.addChild( new ModelObject( "item"));
+    root.getChild( 1).addChild( subtree, 1);
+    root.getChild( 3).removeChild( 0);
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+
+    // move within the tree
+    IModelObject item = root.getChild( 0).getChild( 0);
+    root.getChild( 4).addChild( item);
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+    assertEquals( traverse( "group"), DescendantIndex.find( root, "group"));
+  }
+
+  @Test public void removeAndMove()
+  {
+    DescendantIndex.find( root, "item");
+
+    // remove from the front, move forward and backward within a parent, and move between parents
+    root.removeChild( 0);
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+    root.addChild( root.getChild( 0), 3);
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+    root.addChild( root.getChild( 3), 0);
+    root.getChild( 1).addChild( root.getChild( 1).getChild( 2), 0);
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+    root.getChild( 3).getChild( 1).addChild( root.getChild( 0).getChild( 1));
+    root.getChild( 2).addChild( root.getChild( 3), 1);
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+    assertEquals( traverse( "group"), DescendantIndex.find( root, "group"));
+  }
+
+  @Test public void randomChanges()
+  {
+    Random random = new Random( 1);
+    for( int i=0; i<500; i++)
+    {
+      List<IModelObject> groups = traverse( "group");
+      IModelObject group = groups.get( random.nextInt( groups.size()));
+      int action = random.nextInt( 4);
+      if ( action == 0)
+      {
+        group.addChild( new ModelObject( "item"), random.nextInt( group.getNumberOfChildren() + 1));
+      }
+      else if ( action == 1 && group.getNumberOfChildren() > 0)
+      {
+        group.removeChild( random.nextInt( group.getNumberOfChildren()));
+      }
+      else if ( action == 2)
+      {
+        IModelObject parent = groups.get( random.nextInt( groups.size()));
+        if ( !isAncestor( group, parent)) parent.addChild( group, random.nextInt( parent.getNumberOfChildren() + 1));
+      }
+      else
+      {
+        group.addChild( new ModelObject( "group"));
+      }
+
+      if ( random.nextInt( 3) == 0)
+      {
+        assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+        assertEquals( traverse( "group"), DescendantIndex.find( root, "group"));
+      }
+    }
+  }
+
+  @Test public void referencesAreTraversed()
+  {
+    IModelObject external = new ModelObject( "group");
+    external.addChild( new ModelObject( "item"));
+    IModelObject nested = new ModelObject( "group");
+    nested.addChild( new ModelObject( "item"));
+    external.addChild( nested);
+
+    DescendantIndex.find( root, "item");
+    root.getChild( 1).addChild( new Reference( external), 1);
+    root.getChild( 3).addChild( new Reference( nested));
+    root.addChild( new Reference( root.getChild( 0)));
+    assertNotNull( DescendantIndex.find( root, "item"));
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+    assertEquals( traverse( "group"), DescendantIndex.find( root, "group"));
+
+    // changes beneath a referent do not notify the tree
+    nested.addChild( new ModelObject( "item"), 0);
+    external.removeChild( 0);
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+
+    root.getChild( 1).removeChild( 1);
+    assertEquals( traverse( "item"), DescendantIndex.find( root, "item"));
+    assertEquals( traverse( "group"), DescendantIndex.find( root, "group"));
+  }
+
+  @Test public void referencesWithSecondaryIndex()
+  {
+    IndexedChildList.addIndex( "item", "s");
+    try
+    {
+      IModelObject external = new ModelObject( "group");
+      external.addChild( new ModelObject( "item"));
+      external.getChild( 0).setAttribute( "s", "x");
+      root.getChild( 0).getChild( 0).setAttribute( "s", "x");
+      root.getChild( 4).getChild( 2).setAttribute( "s", "x");
+      root.getChild( 2).addChild( new Reference( external));
+
+      List<IModelObject> expected = new ArrayList<IModelObject>();
+      for( IModelObject item: traverse( "item"))
+        if ( "x".equals( item.getAttribute( "s")))
+          expected.add( item);
+
+      assertEquals( 3, expected.size());
+      assertEquals( expected, DescendantIndex.find( root, "item", "s", "x"));
+    }
+    finally
+    {
+      IndexedChildList.removeIndex( "item", "s");
+    }
+  }
+
+  @Test public void referenceIsNotIndexed()
+  {
+    IModelObject reference = new Reference( root);
+    assertEquals( root, reference);
+    assertNull( DescendantIndex.find( reference, "item"));
+    assertNotNull( DescendantIndex.find( root, "item"));
+  }
+
+  /**
+   * Returns the descendants of the root with the specified type in document order.
+   * @param type The type.
+   * @return Returns the descendants.
+   */
+  private List<IModelObject> traverse( String type)
+  {
+    List<IModelObject> result = new ArrayList<IModelObject>();
+    DepthFirstIterator iter = new DepthFirstIterator( root);
+    while( iter.hasNext())
+    {
+      IModelObject object = iter.next();
+      if ( object != root && object.isType( type)) result.add( object);
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the specified ancestor is the specified object or one of its ancestors.
+   * @param ancestor The ancestor.
+   * @param object The object.
+   * @return Returns true if the object is in the subtree of the ancestor.
+   */
+  private static boolean isAncestor( IModelObject ancestor, IModelObject object)
+  {
+    for( ; object != null; object = object.getParent())
+      if ( object == ancestor)
+        return true;
+    return false;
+  }
+
+  private IModelObject root;
+}
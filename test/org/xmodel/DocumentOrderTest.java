@@ -0,0 +1,134 @@
+package org.xmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test document order keys and the union of node-sets.
+ */
+public class DocumentOrderTest
+{
+  @Test public void unionOfAttributes()
+  {
+    IModelObject root = new ModelObject( "root");
+    root.setAttribute( "a", 1);
+    root.setAttribute( "b", 2);
+    root.setValue( "text");
+
+    assertEquals( 2, XPath.createExpression( "@a | @b").evaluateNodes( new StatefulContext( root)).size());
+    assertEquals( 2, XPath.createExpression( "text() | @a").evaluateNodes( new StatefulContext( root)).size());
+    assertEquals( 1, XPath.createExpression( "@a | @a").evaluateNodes( new StatefulContext( root)).size());
+  }
+
+  @Test public void unionAcrossTrees()
+  {
+    IModelObject tree1 = createTree( 3);
+    IModelObject tree2 = createTree( 3);
+
+    StatefulContext context = new StatefulContext( tree1);
+    context.set( "x", tree1.getChildren());
+    context.set( "y", tree2.getChildren());
+
+    List<IModelObject> xy = XPath.createExpression( "$x | $y").evaluateNodes( context);
+    List<IModelObject> yx = XPath.createExpression( "$y | $x").evaluateNodes( context);
+    assertEquals( 6, xy.size());
+    assertEquals( xy, yx);
+
+    int order = DocumentOrder.compare( tree1, tree2);
+    assertTrue( order != 0);
+    assertEquals( -order, DocumentOrder.compare( tree2, tree1));
+    assertEquals( order, DocumentOrder.compare( tree1.getChild( 2), tree2.getChild( 0)));
+  }
+
+  @Test public void sortAfterReorder()
+  {
+    IModelObject root = createTree( 3);
+    IModelObject c0 = root.getChild( 0);
+    IModelObject c1 = root.getChild( 1);
+    IModelObject c2 = root.getChild( 2);
+    IModelObject leaf = new ModelObject( "leaf");
+    c2.addChild( leaf);
+
+    IExpression union = XPath.createExpression( "child[ 3]/leaf | child[ 1] | child[ 2]");
+    assertEquals( Arrays.asList( c0, c1, leaf), union.evaluateNodes( new StatefulContext( root)));
+    assertEquals( -1, DocumentOrder.compare( c0, leaf));
+
+    // insert before
+    c2.removeFromParent();
+    root.addChild( c2, 0);
+    union = XPath.createExpression( "child[ 3] | child[ 2] | child[ 1]/leaf");
+    assertEquals( Arrays.asList( leaf, c0, c1), union.evaluateNodes( new StatefulContext( root)));
+    assertEquals( 1, DocumentOrder.compare( c0, leaf));
+    assertEquals( -1, DocumentOrder.compare( c2, leaf));
+
+    // removal
+    c0.removeFromParent();
+    assertEquals( -1, DocumentOrder.compare( leaf, c1));
+    assertTrue( DocumentOrder.compare( c0, c1) != 0);
+    assertEquals( -DocumentOrder.compare( c0, c1), DocumentOrder.compare( c1, c0));
+
+    // reattach a keyed subtree
+    c1.addChild( c0);
+    assertEquals( -1, DocumentOrder.compare( c1, c0));
+    assertEquals( -1, DocumentOrder.compare( leaf, c0));
+  }
+
+  @Test public void renumberAfterChanges()
+  {
+    IModelObject root = createTree( 100);
+    IModelObject leaf1 = new ModelObject( "leaf");
+    IModelObject leaf2 = new ModelObject( "leaf");
+    root.getChild( 40).addChild( leaf1);
+    root.getChild( 60).addChild( leaf2);
+    assertEquals( -1, DocumentOrder.compare( leaf1, leaf2));
+
+    // remove from the front, and move the parent of the second leaf before the parent of the first leaf
+    for( int i=0; i<20; i++) root.removeChild( 0);
+    root.addChild( leaf2.getParent(), 10);
+    assertEquals( 1, DocumentOrder.compare( leaf1, leaf2));
+    assertEquals( 1, DocumentOrder.compare( leaf1, root.getChild( 20)));
+    assertEquals( -1, DocumentOrder.compare( leaf1, root.getChild( 22)));
+
+    // insert at the front, and compare the cached keys of the leaves before any other key
+    root.addChild( new ModelObject( "child"), 0);
+    root.getChild( 5).addChild( leaf1);
+    assertEquals( -1, DocumentOrder.compare( leaf1, leaf2));
+    assertEquals( -1, DocumentOrder.compare( root.getChild( 5), leaf2));
+    assertEquals( 1, DocumentOrder.compare( root.getChild( 12), leaf2));
+
+    IExpression union = XPath.createExpression( "child/leaf | child[ 6]");
+    assertEquals( Arrays.asList( root.getChild( 5), leaf1, leaf2), union.evaluateNodes( new StatefulContext( root)));
+  }
+
+  @Test public void attributeOrder()
+  {
+    IModelObject root = createTree( 1);
+    root.setAttribute( "a", 1);
+    root.setAttribute( "b", 2);
+
+    IModelObject a = XPath.createExpression( "@a").queryFirst( root);
+    IModelObject b = XPath.createExpression( "@b").queryFirst( root);
+    assertEquals( -1, DocumentOrder.compare( a, b));
+    assertEquals( 1, DocumentOrder.compare( b, a));
+    assertEquals( -1, DocumentOrder.compare( root, a));
+    assertEquals( -1, DocumentOrder.compare( a, root.getChild( 0)));
+  }
+
+  /**
+   * Create a root with the specified number of children.
+   * @param count The number of children.
+   * @return Returns the root.
+   */
+  private static IModelObject createTree( int count)
+  {
+    IModelObject root = new ModelObject( "root");
+    for( int i=0; i<count; i++) root.addChild( new ModelObject( "child"));
+    return root;
+  }
+}
@@ -0,0 +1,193 @@
+package org.xmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.ExpressionListener;
+import org.xmodel.xpath.expression.IContext;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test the IdIndex and its listeners.
+ */
+public class IdIndexTest
+{
+  @Test public void documentOrder()
+  {
+    IModelObject root = new ModelObject( "root");
+    IModelObject deep = new ModelObject( "b");
+    deep.setAttribute( "id", "x");
+    root.getCreateChild( "a").addChild( deep);
+    IModelObject shallow = new ModelObject( "c");
+    shallow.setAttribute( "id", "x");
+    root.addChild( shallow);
+
+    assertEquals( Arrays.asList( deep, shallow), IdIndex.find( root, "x"));
+
+    IModelObject first = new ModelObject( "d");
+    first.setAttribute( "id", "x");
+    root.addChild( first, 0);
+    assertEquals( Arrays.asList( first, deep, shallow), IdIndex.find( root, "x"));
+  }
+
+  @Test public void referenceHasSeparateEntry()
+  {
+    IModelObject referent = new ModelObject( "root");
+    IModelObject reference = new Reference( referent);
+    assertEquals( referent, reference);
+
+    Counter counter1 = new Counter();
+    Counter counter2 = new Counter();
+    IdIndex.addListener( referent, "x", counter1);
+    IdIndex.addListener( reference, "x", counter2);
+    IdIndex.removeListener( reference, "x", counter2);
+
+    IModelObject child = new ModelObject( "child");
+    child.setAttribute( "id", "x");
+    referent.addChild( child);
+    assertEquals( 1, counter1.added.size());
+    assertEquals( 0, counter2.added.size());
+    IdIndex.removeListener( referent, "x", counter1);
+  }
+
+  @Test public void listenerMovesWithTree()
+  {
+    IModelObject root = new ModelObject( "root");
+    Counter counter = new Counter();
+    IdIndex.addListener( root, "x", counter);
+
+    IModelObject other = new ModelObject( "other");
+    IModelObject existing = new ModelObject( "a");
+    existing.setAttribute( "id", "x");
+    other.addChild( existing);
+    IdIndex.find( other, "x");
+
+    // the listener is notified of the element in the other tree
+    other.addChild( root);
+    assertEquals( Arrays.asList( existing), counter.added);
+
+    IModelObject child = new ModelObject( "child");
+    child.setAttribute( "id", "x");
+    root.addChild( child);
+    assertEquals( Arrays.asList( existing, child), counter.added);
+    assertEquals( Arrays.asList( existing, child), IdIndex.find( other, "x"));
+
+    // the listener leaves the other tree with its element
+    other.removeChild( root);
+    assertEquals( Arrays.asList( existing), counter.removed);
+    existing.removeAttribute( "id");
+    assertEquals( Arrays.asList( existing), counter.removed);
+
+    IdIndex.removeListener( root, "x", counter);
+    root.removeChild( child);
+    assertEquals( 1, counter.removed.size());
+  }
+
+  @Test public void boundExpressionAfterReparenting()
+  {
+    IModelObject root = new ModelObject( "root");
+    IExpression expression = XPath.createExpression( "id( 'x')");
+    final List<IModelObject> added = new ArrayList<IModelObject>();
+    IContext context = new StatefulContext( root);
+    expression.addListener( context, new ExpressionListener() {
+      public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
+      {
+        added.addAll( nodes);
+      }
+    });
+
+    IModelObject parent = new ModelObject( "parent");
+    parent.addChild( root);
+
+    IModelObject child = new ModelObject( "child");
+    child.setAttribute( "id", "x");
+    root.addChild( child);
+    assertEquals( Arrays.asList( child), added);
+    assertSame( child, expression.evaluateNodes( context).get( 0));
+  }
+
+  @Test public void referentIdChange()
+  {
+    IModelObject referent = new ModelObject( "a");
+    referent.setAttribute( "id", "x");
+    referent.addChild( new ModelObject( "b", "y"));
+    
+    IModelObject root = new ModelObject( "root");
+    IModelObject reference = new Reference( referent);
+    root.addChild( reference);
+    assertEquals( Arrays.asList( reference), IdIndex.find( root, "x"));
+    assertEquals( 0, IdIndex.find( root, "y").size());
+    
+    Counter counter = new Counter();
+    IdIndex.addListener( root, "z", counter);
+    referent.setAttribute( "id", "z");
+    assertEquals( 0, IdIndex.find( root, "x").size());
+    assertEquals( Arrays.asList( reference), IdIndex.find( root, "z"));
+    assertEquals( Arrays.asList( reference), counter.added);
+    
+    root.removeChild( reference);
+    referent.setAttribute( "id", "x");
+    assertEquals( 0, IdIndex.find( root, "x").size());
+    IdIndex.removeListener( root, "z", counter);
+  }
+
+  @Test public void multipleIdsInDocumentOrder()
+  {
+    IModelObject root = new ModelObject( "root");
+    IModelObject first = new ModelObject( "a", "y");
+    IModelObject second = new ModelObject( "b", "x");
+    root.addChild( first);
+    root.addChild( second);
+    
+    IExpression expression = XPath.createExpression( "id( 'x y')");
+    assertEquals( Arrays.asList( first, second), expression.evaluateNodes( new StatefulContext( root)));
+  }
+
+  @Test public void sealedTreeIsNotIndexed()
+  {
+    IModelObject root = new ModelObject( "root");
+    IModelObject deep = new ModelObject( "b");
+    deep.setAttribute( "id", "x");
+    root.getCreateChild( "a").addChild( deep);
+    IModelObject shallow = new ModelObject( "c");
+    shallow.setAttribute( "id", "x");
+    root.addChild( shallow);
+
+    IModelObject sealed = ModelAlgorithms.seal( root);
+    List<IModelObject> found = IdIndex.find( sealed, "x");
+    assertEquals( 2, found.size());
+    assertSame( sealed.getChild( 0).getChild( 0), found.get( 0));
+    assertSame( sealed.getChild( 1), found.get( 1));
+
+    DescendantIndex.addRoot( sealed);
+    assertEquals( null, DescendantIndex.find( sealed, "b"));
+    assertEquals( -1, DocumentOrder.compare( found.get( 0), found.get( 1)));
+  }
+
+  private static class Counter implements IdIndex.Listener
+  {
+    /* (non-Javadoc)
+     * @see org.xmodel.IdIndex.Listener#notifyAdd(org.xmodel.IModelObject, java.lang.String, org.xmodel.IModelObject)
+     */
+    public void notifyAdd( IModelObject root, String id, IModelObject element)
+    {
+      added.add( element);
+    }
+
+    /* (non-Javadoc)
+     * @see org.xmodel.IdIndex.Listener#notifyRemove(org.xmodel.IModelObject, java.lang.String, org.xmodel.IModelObject)
+     */
+    public void notifyRemove( IModelObject root, String id, IModelObject element)
+    {
+      removed.add( element);
+    }
+
+    List<IModelObject> added = new ArrayList<IModelObject>();
+    List<IModelObject> removed = new ArrayList<IModelObject>();
+  }
+}
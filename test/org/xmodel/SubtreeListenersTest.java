@@ -0,0 +1,188 @@
+package org.xmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.ExpressionListener;
+import org.xmodel.xpath.expression.IContext;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test subtree listeners and the descendant axis of listener chains which uses them.
+ */
+public class SubtreeListenersTest
+{
+  @After public void tearDown()
+  {
+    SubtreeListeners.enabled = false;
+  }
+
+  @Test public void scope()
+  {
+    IModelObject root1 = new ModelObject( "root");
+    IModelObject root2 = new ModelObject( "root");
+    IModelObject subtree = root1.getCreateChild( "a");
+
+    Counter counter = new Counter();
+    SubtreeListeners.addListener( subtree, counter);
+    assertTrue( SubtreeListeners.isActive( subtree));
+    assertFalse( SubtreeListeners.isActive( root1));
+    assertFalse( SubtreeListeners.isActive( root2));
+
+    subtree.getCreateChild( "b").getCreateChild( "c");
+    assertEquals( 2, counter.added);
+
+    // detach
+    subtree.removeFromParent();
+    assertTrue( SubtreeListeners.isActive( subtree.getFirstChild( "b")));
+    root1.getCreateChild( "g");
+    assertEquals( 2, counter.added);
+    subtree.getFirstChild( "b").getCreateChild( "d");
+    assertEquals( 3, counter.added);
+
+    // attach to another tree
+    root2.addChild( subtree);
+    assertFalse( SubtreeListeners.isActive( root2));
+    subtree.getFirstChild( "b").removeFromParent();
+    assertEquals( 1, counter.removed);
+    root2.getCreateChild( "e");
+    assertEquals( 3, counter.added);
+
+    SubtreeListeners.removeListener( subtree, counter);
+    assertFalse( SubtreeListeners.isActive( subtree));
+    assertFalse( SubtreeListeners.isActive());
+    subtree.getCreateChild( "f");
+    assertEquals( 3, counter.added);
+  }
+
+  @Test public void references()
+  {
+    assertEquals( bindThroughReference( false), bindThroughReference( true));
+    assertFalse( SubtreeListeners.isActive());
+  }
+
+  @Test public void descendantAxis()
+  {
+    assertEquals( bindDescendants( false), bindDescendants( true));
+    assertFalse( SubtreeListeners.isActive());
+  }
+
+  /**
+   * Bind a descendant path through a reference and return the notifications.
+   * @param subtree The value of the SubtreeListeners flag.
+   * @return Returns the notifications.
+   */
+  private static List<String> bindThroughReference( boolean subtree)
+  {
+    SubtreeListeners.enabled = subtree;
+
+    IModelObject root = new ModelObject( "root");
+    IModelObject other = new ModelObject( "other");
+    IModelObject referent = other.getCreateChild( "referent");
+
+    Recorder recorder = new Recorder();
+    IExpression expression = XPath.createExpression( ".//x");
+    StatefulContext context = new StatefulContext( root);
+    expression.addListener( context, recorder);
+
+    // reference added after binding
+    IModelObject reference = new Reference( referent);
+    root.getCreateChild( "a").addChild( reference);
+    add( referent.getCreateChild( "b"), "x", "1");
+
+    // reference present when binding
+    expression.removeListener( context, recorder);
+    expression.addListener( context, recorder);
+    add( referent.getFirstChild( "b"), "x", "2");
+    referent.getFirstChild( "b").removeFromParent();
+    add( referent, "x", "3");
+
+    // removal of reference
+    reference.removeFromParent();
+    add( referent, "x", "4");
+
+    expression.removeListener( context, recorder);
+    return recorder.events;
+  }
+
+  /**
+   * Bind a path with a nested descendant axis, perform a fixed sequence of changes and return the notifications.
+   * @param subtree The value of the SubtreeListeners flag.
+   * @return Returns the notifications.
+   */
+  private static List<String> bindDescendants( boolean subtree)
+  {
+    SubtreeListeners.enabled = subtree;
+
+    IModelObject root = new ModelObject( "root");
+    IModelObject a = root.getCreateChild( "a");
+    add( a.getCreateChild( "c"), "b", "1");
+
+    Recorder recorder = new Recorder();
+    IExpression expression = XPath.createExpression( ".//a//b");
+    StatefulContext context = new StatefulContext( root);
+    expression.addListener( context, recorder);
+
+    IModelObject nested = new ModelObject( "a");
+    add( nested, "b", "2");
+    a.getFirstChild( "c").addChild( nested);
+    add( root, "b", "3");
+    add( nested.getCreateChild( "d"), "b", "4");
+    root.addChild( nested);
+    a.removeFromParent();
+    nested.getFirstChild( "d").removeFromParent();
+
+    expression.removeListener( context, recorder);
+    return recorder.events;
+  }
+
+  /**
+   * Add a child with the specified type and id.
+   * @param parent The parent.
+   * @param type The type of the child.
+   * @param id The id of the child.
+   */
+  private static void add( IModelObject parent, String type, String id)
+  {
+    IModelObject child = new ModelObject( type);
+    child.setAttribute( "id", id);
+    parent.addChild( child);
+  }
+
+  private static class Counter extends ModelListener
+  {
+    public void notifyAddChild( IModelObject parent, IModelObject child, int index)
+    {
+      added++;
+    }
+
+    public void notifyRemoveChild( IModelObject parent, IModelObject child, int index)
+    {
+      removed++;
+    }
+
+    int added;
+    int removed;
+  }
+
+  private static class Recorder extends ExpressionListener
+  {
+    public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
+    {
+      for( IModelObject node: nodes) events.add( "+"+node.getAttribute( "id"));
+    }
+
+    public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
+    {
+      for( IModelObject node: nodes) events.add( "-"+node.getAttribute( "id"));
+    }
+
+    List<String> events = new ArrayList<String>();
+  }
+}
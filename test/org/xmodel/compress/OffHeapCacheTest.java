@@ -0,0 +1,131 @@
+package org.xmodel.compress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListener;
+import org.xmodel.ModelObject;
+import org.xmodel.SubtreeListeners;
+import org.xmodel.Xlate;
+import org.xmodel.external.AbstractCachingPolicy;
+import org.xmodel.external.CachingException;
+import org.xmodel.external.ExternalReference;
+import org.xmodel.external.ICache;
+import org.xmodel.external.IExternalReference;
+import org.xmodel.storage.OffHeapStorageClass;
+
+/**
+ * Test paging references out of the heap with an OffHeapCache.
+ */
+public class OffHeapCacheTest
+{
+  @Test public void leastRecentlyUsedIsPagedOut() throws Exception
+  {
+    OffHeapCache cache = new OffHeapCache( 2);
+    TestPolicy policy = new TestPolicy( cache);
+    IExternalReference r1 = createReference( policy, 1);
+    IExternalReference r2 = createReference( policy, 2);
+    IExternalReference r3 = createReference( policy, 3);
+
+    r1.getChildren();
+    r2.getChildren();
+    assertEquals( 2, cache.size());
+
+    r3.getChildren();
+    assertEquals( 2, cache.size());
+    assertTrue( r1.isDirty());
+    assertTrue( r1.getStorageClass() instanceof OffHeapStorageClass);
+    assertFalse( r2.isDirty());
+    assertEquals( 3, policy.syncs);
+
+    // rehydrate from the off-heap buffer instead of the original caching policy
+    assertEquals( 4, r1.getChildren().size());
+    assertEquals( "c1.2", Xlate.get( r1.getChildren().get( 2), "name", ""));
+    assertEquals( 3, policy.syncs);
+    assertFalse( r1.getStorageClass() instanceof OffHeapStorageClass);
+    assertTrue( r2.isDirty());
+  }
+
+  @Test public void referenceWithListenersIsNotPagedOut() throws Exception
+  {
+    OffHeapCache cache = new OffHeapCache( 1);
+    TestPolicy policy = new TestPolicy( cache);
+    IExternalReference r1 = createReference( policy, 1);
+    IExternalReference r2 = createReference( policy, 2);
+
+    r1.getChildren();
+    r1.addModelListener( new ModelListener());
+    r2.getChildren();
+
+    assertFalse( r1.isDirty());
+    assertTrue( r2.isDirty());
+    assertEquals( 1, cache.size());
+  }
+
+  @Test public void referenceWithSubtreeListenerIsNotPagedOut() throws Exception
+  {
+    OffHeapCache cache = new OffHeapCache( 1);
+    TestPolicy policy = new TestPolicy( cache);
+    IExternalReference r1 = createReference( policy, 1);
+    IExternalReference r2 = createReference( policy, 2);
+
+    // the subtree listener is registered on an ancestor of the reference
+    IModelObject root = new ModelObject( "root");
+    root.addChild( r1);
+    ModelListener listener = new ModelListener();
+    SubtreeListeners.addListener( root, listener);
+    try
+    {
+      r1.getChildren();
+      r2.getChildren();
+      assertFalse( r1.isDirty());
+      assertTrue( r2.isDirty());
+    }
+    finally
+    {
+      SubtreeListeners.removeListener( root, listener);
+    }
+  }
+
+  /**
+   * Create a dirty reference with the specified caching policy.
+   * @param policy The caching policy.
+   * @param id The identifier of the reference.
+   * @return Returns the reference.
+   */
+  private static IExternalReference createReference( TestPolicy policy, int id)
+  {
+    ExternalReference reference = new ExternalReference( "reference");
+    reference.setAttribute( "id", id);
+    reference.setCachingPolicy( policy);
+    reference.setDirty( true);
+    return reference;
+  }
+
+  private static class TestPolicy extends AbstractCachingPolicy
+  {
+    public TestPolicy( ICache cache)
+    {
+      super( cache);
+    }
+
+    /* (non-Javadoc)
+     * @see org.xmodel.external.ICachingPolicy#sync(org.xmodel.external.IExternalReference)
+     */
+    public void sync( IExternalReference reference) throws CachingException
+    {
+      syncs++;
+      int id = Xlate.get( reference, "id", 0);
+      for( int i=0; i<4; i++)
+      {
+        IModelObject child = new ModelObject( "child");
+        child.setAttribute( "name", "c"+id+"."+i);
+        reference.addChild( child);
+      }
+    }
+
+    int syncs;
+  }
+}
@@ -0,0 +1,80 @@
+package org.xmodel.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListener;
+import org.xmodel.ModelObject;
+import org.xmodel.Xlate;
+
+/**
+ * Measures the write throughput of a SubtreeExecutor as the number of stripes grows from 1 to the number of
+ * processors, when 64 disjoint subtrees, each with a listener, receive the same stream of writes.  Each write adds a
+ * child, increments an attribute and removes the child, so the stripes only share the global indexes of the model,
+ * which are not active.  On a machine with N processors, the throughput with N stripes should approach N times the
+ * throughput with 1 stripe.
+ */
+public class SubtreeExecutorBenchmark
+{
+  public static void main( String[] args) throws Exception
+  {
+    int processors = Runtime.getRuntime().availableProcessors();
+    int maxStripes = (args.length > 0)? Integer.parseInt( args[ 0]): processors;
+    int subtrees = (args.length > 1)? Integer.parseInt( args[ 1]): 64;
+    int tasks = (args.length > 2)? Integer.parseInt( args[ 2]): 200;
+    int writes = (args.length > 3)? Integer.parseInt( args[ 3]): 100;
+
+    for( int i=0; i<2; i++)
+    {
+      long base = 0;
+      for( int stripes = 1; stripes <= maxStripes; stripes *= 2)
+      {
+        long time = run( stripes, subtrees, tasks, writes);
+        if ( stripes == 1) base = time;
+
+        if ( i == 1)
+        {
+          double rate = (double)subtrees * tasks * writes / time * 1e9;
+          System.out.printf( "stripes %3d: %6d ms, %10.0f writes/s, %.2fx\n", stripes, time / 1000000, rate, (double)base / time);
+        }
+      }
+    }
+    System.out.printf( "processors: %d\n", processors);
+  }
+
+  private static long run( int stripes, int subtrees, int tasks, final int writes) throws InterruptedException
+  {
+    SubtreeExecutor executor = new SubtreeExecutor( "benchmark", stripes);
+
+    List<IModelObject> roots = new ArrayList<IModelObject>( subtrees);
+    for( int i=0; i<subtrees; i++)
+    {
+      IModelObject root = new ModelObject( "subtree");
+      root.addModelListener( new ModelListener());
+      roots.add( root);
+    }
+
+    long time = System.nanoTime();
+    for( int i=0; i<tasks; i++)
+    {
+      for( final IModelObject root: roots)
+      {
+        executor.execute( root, new Runnable() {
+          public void run()
+          {
+            for( int j=0; j<writes; j++)
+            {
+              IModelObject child = new ModelObject( "child");
+              root.addChild( child);
+              root.setAttribute( "count", Xlate.get( root, "count", 0) + 1);
+              root.removeChild( child);
+            }
+          }
+        });
+      }
+    }
+
+    if ( !executor.shutdownAndWait( 600000)) throw new IllegalStateException( "Stripes did not finish.");
+    return System.nanoTime() - time;
+  }
+}
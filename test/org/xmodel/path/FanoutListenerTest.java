@@ -0,0 +1,184 @@
+package org.xmodel.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+import org.xmodel.GlobalSettings;
+import org.xmodel.IModel;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.external.AbstractCachingPolicy;
+import org.xmodel.external.ExternalReference;
+import org.xmodel.external.IExternalReference;
+import org.xmodel.external.UnboundedCache;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.ExpressionListener;
+import org.xmodel.xpath.expression.IContext;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test the deferred fanout of lazy listener chains from dirty objects.
+ */
+public class FanoutListenerTest
+{
+  @Test public void eager()
+  {
+    CountingPolicy policy = new CountingPolicy();
+    IModelObject root = createModel( policy);
+
+    IExpression expression = XPath.createExpression( "a/b");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    expression.addListener( context, recorder);
+    assertEquals( 1, policy.syncs);
+
+    root.getChild( 1).addChild( new ModelObject( "b"));
+    assertEquals( 1, recorder.added);
+
+    expression.removeListener( context, recorder);
+  }
+
+  @Test public void deferral()
+  {
+    CountingPolicy policy = new CountingPolicy();
+    IModelObject root = createModel( policy);
+
+    IExpression expression = XPath.createExpression( "a/b");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    bind( expression, context, recorder, true);
+    assertEquals( 0, policy.syncs);
+    assertTrue( root.getChild( 1).isDirty());
+
+    // changes beneath objects which are not pending are still reported
+    root.getChild( 0).addChild( new ModelObject( "b"));
+    assertEquals( 1, recorder.added);
+    assertEquals( 0, policy.syncs);
+
+    bind( expression, context, recorder, false);
+    assertEquals( 0, policy.syncs);
+  }
+
+  @Test public void completion()
+  {
+    CountingPolicy policy = new CountingPolicy();
+    IModelObject root = createModel( policy);
+
+    IExpression expression = XPath.createExpression( "a/b");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    bind( expression, context, recorder, true);
+
+    // the chain remains lazy after the thread flag is cleared
+    root.getChild( 1).getChildren();
+    assertEquals( 1, policy.syncs);
+    assertEquals( 1, recorder.added);
+
+    // the remainder of the chain is installed beneath the synced object
+    root.getChild( 1).addChild( new ModelObject( "b"));
+    assertEquals( 2, recorder.added);
+
+    bind( expression, context, recorder, false);
+    root.getChild( 1).addChild( new ModelObject( "b"));
+    assertEquals( 2, recorder.added);
+    assertEquals( 1, policy.syncs);
+  }
+
+  @Test public void uninstallWhilePending()
+  {
+    CountingPolicy policy = new CountingPolicy();
+    IModelObject root = createModel( policy);
+
+    IExpression expression = XPath.createExpression( "a/b");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    bind( expression, context, recorder, true);
+    bind( expression, context, recorder, false);
+    assertEquals( 0, policy.syncs);
+
+    // the pending object is forgotten, so the sync does not complete the installation
+    root.getChild( 1).getChildren();
+    assertEquals( 1, policy.syncs);
+    assertEquals( 0, recorder.added);
+    root.getChild( 1).addChild( new ModelObject( "b"));
+    assertEquals( 0, recorder.added);
+
+    // binding again after the sync installs beneath the synced object
+    bind( expression, context, recorder, true);
+    root.getChild( 1).addChild( new ModelObject( "b"));
+    assertEquals( 1, recorder.added);
+    bind( expression, context, recorder, false);
+  }
+
+  /**
+   * Create a root with a synced child and a dirty external reference.
+   * @param policy The caching policy of the external reference.
+   * @return Returns the root.
+   */
+  private static IModelObject createModel( CountingPolicy policy)
+  {
+    IModelObject root = new ModelObject( "root");
+    root.getCreateChild( "a");
+
+    ExternalReference reference = new ExternalReference( "a");
+    reference.setCachingPolicy( policy);
+    reference.setDirty( true);
+    root.addChild( reference);
+    return root;
+  }
+
+  /**
+   * Add or remove the specified listener with lazy listener chains and the sync lock, as a lazy trigger does.
+   * @param expression The expression.
+   * @param context The context.
+   * @param listener The listener.
+   * @param add True if the listener should be added.
+   */
+  private static void bind( IExpression expression, IContext context, Recorder listener, boolean add)
+  {
+    IModel model = GlobalSettings.getInstance().getModel();
+    boolean wasLazy = ListenerChain.setLazy( true);
+    boolean wasLocked = model.getSyncLock();
+    model.setSyncLock( true);
+    try
+    {
+      if ( add) expression.addListener( context, listener); else expression.removeListener( context, listener);
+    }
+    finally
+    {
+      model.setSyncLock( wasLocked);
+      ListenerChain.setLazy( wasLazy);
+    }
+  }
+
+  private static class CountingPolicy extends AbstractCachingPolicy
+  {
+    public CountingPolicy()
+    {
+      super( new UnboundedCache());
+    }
+
+    /* (non-Javadoc)
+     * @see org.xmodel.external.ICachingPolicy#sync(org.xmodel.external.IExternalReference)
+     */
+    public void sync( IExternalReference reference)
+    {
+      syncs++;
+      reference.addChild( new ModelObject( "b"));
+    }
+
+    int syncs;
+  }
+
+  private static class Recorder extends ExpressionListener
+  {
+    public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
+    {
+      added += nodes.size();
+    }
+
+    int added;
+  }
+}
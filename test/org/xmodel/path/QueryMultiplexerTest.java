@@ -0,0 +1,136 @@
+package org.xmodel.path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.ExpressionListener;
+import org.xmodel.xpath.expression.IContext;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test sharing of listener chains between bindings of the same path.
+ */
+public class QueryMultiplexerTest
+{
+  @Before public void setUp()
+  {
+    QueryMultiplexer.enabled = true;
+  }
+  
+  @After public void tearDown()
+  {
+    QueryMultiplexer.enabled = false;
+  }
+  
+  @Test public void sharedChain()
+  {
+    IModelObject root = createTree();
+    IExpression expression = XPath.createExpression( "child[ @x = 1]");
+    StatefulContext context1 = new StatefulContext( root);
+    StatefulContext context2 = new StatefulContext( root);
+    Recorder recorder1 = new Recorder();
+    Recorder recorder2 = new Recorder();
+    expression.addListener( context1, recorder1);
+    expression.addListener( context2, recorder2);
+    
+    QueryMultiplexer multiplexer = findMultiplexer( root);
+    assertTrue( "Chain not shared", multiplexer != null);
+    assertEquals( 2, multiplexer.getSubscriberCount());
+    
+    IModelObject child = new ModelObject( "child");
+    child.setAttribute( "x", 1);
+    root.addChild( child);
+    assertEquals( 1, recorder1.added.size());
+    assertEquals( 1, recorder2.added.size());
+    
+    child.setAttribute( "x", 2);
+    assertEquals( 1, recorder1.removed.size());
+    assertEquals( 1, recorder2.removed.size());
+    
+    // bindings made while multiplexing was enabled must still be removed from the shared chain
+    QueryMultiplexer.enabled = false;
+    expression.removeListener( context1, recorder1);
+    assertEquals( 1, multiplexer.getSubscriberCount());
+    expression.removeListener( context2, recorder2);
+    assertTrue( "Chain not uninstalled", findMultiplexer( root) == null);
+    assertEquals( 0, root.getPathListeners().getListenerChains().size());
+    
+    root.getChild( 0).setAttribute( "x", 3);
+    assertEquals( 1, recorder1.removed.size());
+    assertEquals( 1, recorder2.removed.size());
+  }
+  
+  @Test public void contextDependentPredicate()
+  {
+    IModelObject root = createTree();
+    IExpression expression = XPath.createExpression( "child[ @x = $x]");
+    StatefulContext context = new StatefulContext( root);
+    context.set( "x", 1);
+    Recorder recorder = new Recorder();
+    expression.addListener( context, recorder);
+    assertTrue( "Chain shared", findMultiplexer( root) == null);
+    root.getChild( 1).setAttribute( "x", 1);
+    assertEquals( 1, recorder.added.size());
+    expression.removeListener( context, recorder);
+    assertEquals( 0, root.getPathListeners().getListenerChains().size());
+  }
+  
+  @Test public void contextFree()
+  {
+    assertTrue( QueryMultiplexer.isContextFree( XPath.createExpression( "count( ../child[ @x = 1]) > 0 and name() = 'child'")));
+    assertTrue( QueryMultiplexer.isContextFree( XPath.createExpression( "/root/child[ position() = last()]")));
+    assertFalse( QueryMultiplexer.isContextFree( XPath.createExpression( "child[ @x = $x]")));
+    assertFalse( QueryMultiplexer.isContextFree( XPath.createExpression( "let $y := 1; @x = $y")));
+    assertFalse( QueryMultiplexer.isContextFree( XPath.createExpression( "hash-code( .)")));
+  }
+  
+  /**
+   * Returns the multiplexer installed on the specified object.
+   * @param object The object.
+   * @return Returns null or the multiplexer.
+   */
+  private static QueryMultiplexer findMultiplexer( IModelObject object)
+  {
+    for( IListenerChain chain: object.getPathListeners().getListenerChains())
+      if ( chain.getPathListener() instanceof QueryMultiplexer)
+        return (QueryMultiplexer)chain.getPathListener();
+    return null;
+  }
+  
+  /**
+   * Create a root with two children, one of which matches the predicate.
+   * @return Returns the root.
+   */
+  private static IModelObject createTree()
+  {
+    IModelObject root = new ModelObject( "root");
+    root.getCreateChild( "child").setAttribute( "x", 1);
+    root.addChild( new ModelObject( "child"));
+    return root;
+  }
+  
+  private static class Recorder extends ExpressionListener
+  {
+    public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
+    {
+      added.addAll( nodes);
+    }
+    
+    public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
+    {
+      removed.addAll( nodes);
+    }
+    
+    List<IModelObject> added = new ArrayList<IModelObject>();
+    List<IModelObject> removed = new ArrayList<IModelObject>();
+  }
+}
@@ -0,0 +1,128 @@
+package org.xmodel.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.Xlate;
+
+/**
+ * Test reclamation of the rows of a ColumnTable.
+ */
+public class ColumnTableTest
+{
+  @Test public void promotedRowIsReused()
+  {
+    ColumnTable table = new ColumnTable();
+    IModelObject first = createRow( table, 1);
+    IModelObject second = createRow( table, 2);
+
+    // adding a child promotes the row to a DataStorageClass
+    first.addChild( new ModelObject( "child"));
+    assertTrue( first.getStorageClass() instanceof DataStorageClass);
+    assertEquals( 1, Xlate.get( first, "id", 0));
+    assertEquals( "x1", Xlate.get( first, "name", ""));
+    assertEquals( 1, table.getRowCount());
+
+    IModelObject third = new ModelObject( "row");
+    assertTrue( table.adopt( third));
+    assertEquals( 2, table.getCapacity());
+    assertNull( third.getAttribute( "id"));
+    assertNull( third.getAttribute( "name"));
+    assertEquals( 2, Xlate.get( second, "id", 0));
+  }
+
+  @Test public void newAttributeOnReusedRow()
+  {
+    ColumnTable table = new ColumnTable();
+    IModelObject first = createRow( table, 1);
+    createRow( table, 2);
+    first.addChild( new ModelObject( "child"));
+
+    // the reused slot is the row being populated, so it may add a column
+    IModelObject third = createRow( table, 3);
+    third.setAttribute( "extra", "y");
+    assertTrue( third.getStorageClass() instanceof ColumnarStorageClass);
+    assertEquals( "y", Xlate.get( third, "extra", ""));
+  }
+
+  @Test public void removedRowsAreReclaimed() throws Exception
+  {
+    ColumnTable table = new ColumnTable();
+    for( int round = 0; round < 10; round++)
+    {
+      IModelObject parent = new ModelObject( "table");
+      for( int i=0; i<1000; i++) parent.addChild( createRow( table, i));
+      assertEquals( 1000, table.getRowCount());
+
+      parent.removeChildren();
+      parent = null;
+
+      for( int i=0; i<100 && table.getRowCount() > 0; i++)
+      {
+        System.gc();
+        Thread.sleep( 10);
+      }
+      assertEquals( 0, table.getRowCount());
+    }
+
+    assertEquals( 1000, table.getCapacity());
+  }
+
+  @Test public void transferredRowIsKept() throws Exception
+  {
+    ColumnTable table = new ColumnTable();
+    IModelObject local = createRow( table, 1);
+    IModelObject external = new ModelObject( "row");
+    external.setStorageClass( ((ColumnarStorageClass)local.getStorageClass()).transfer( external));
+    local = null;
+
+    for( int i=0; i<10; i++)
+    {
+      System.gc();
+      Thread.sleep( 10);
+    }
+    assertEquals( 1, table.getRowCount());
+    assertEquals( "x1", Xlate.get( external, "name", ""));
+  }
+
+  @Test public void dictionaryShrinks()
+  {
+    ColumnTable table = new ColumnTable();
+    IModelObject first = createRow( table, 1);
+    IModelObject second = createRow( table, 2);
+    assertEquals( 2, table.getDictionarySize( "name"));
+
+    // values that are no longer used by any row are discarded, and their codes are reused
+    for( int i=3; i<10000; i++) first.setAttribute( "name", "x"+i);
+    assertEquals( 2, table.getDictionarySize( "name"));
+    assertEquals( "x9999", Xlate.get( first, "name", ""));
+
+    second.setAttribute( "name", "x9999");
+    assertEquals( 1, table.getDictionarySize( "name"));
+    first.removeAttribute( "name");
+    second.removeAttribute( "name");
+    assertEquals( 0, table.getDictionarySize( "name"));
+
+    second.setAttribute( "name", "y");
+    assertEquals( "y", Xlate.get( second, "name", ""));
+    assertNull( first.getAttribute( "name"));
+  }
+
+  /**
+   * Create a row in the specified table.
+   * @param table The table.
+   * @param id The value of the id attribute.
+   * @return Returns the row element.
+   */
+  private IModelObject createRow( ColumnTable table, int id)
+  {
+    IModelObject row = new ModelObject( "row");
+    assertTrue( table.adopt( row));
+    row.setAttribute( "id", id);
+    row.setAttribute( "name", "x"+id);
+    return row;
+  }
+}
@@ -0,0 +1,111 @@
+package org.xmodel.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelAlgorithms;
+import org.xmodel.ModelObject;
+import org.xmodel.Xlate;
+import org.xmodel.memento.AddChildMemento;
+import org.xmodel.memento.SetAttributeMemento;
+
+/**
+ * Test copy-on-write clones created with SharedStorageClass.
+ */
+public class CopyOnWriteTest
+{
+  @Test public void writesAreIsolated()
+  {
+    IModelObject source = createTree( 3);
+    IModelObject clone = ModelAlgorithms.cloneTree( source, true);
+
+    // write a descendant of the source
+    source.getChild( 1).getChild( 0).setAttribute( "name", "changed");
+    assertEquals( "changed", Xlate.get( source.getChild( 1).getChild( 0), "name", ""));
+    assertEquals( "g1", Xlate.get( clone.getChild( 1).getChild( 0), "name", ""));
+
+    // write the clone
+    clone.getChild( 2).setAttribute( "name", "cloned");
+    assertEquals( "c2", Xlate.get( source.getChild( 2), "name", ""));
+    assertEquals( "cloned", Xlate.get( clone.getChild( 2), "name", ""));
+  }
+
+  @Test public void mementoIsIsolated()
+  {
+    IModelObject source = createTree( 3);
+    source.setAttribute( "name", "old");
+    IModelObject clone = ModelAlgorithms.cloneTree( source, true);
+
+    SetAttributeMemento memento = new SetAttributeMemento();
+    memento.object = source;
+    memento.attrName = "name";
+    memento.oldValue = "reverted";
+    memento.newValue = "old";
+    memento.revert();
+    assertEquals( "reverted", Xlate.get( source, "name", ""));
+    assertEquals( "old", Xlate.get( clone, "name", ""));
+
+    IModelObject child = new ModelObject( "child");
+    clone = ModelAlgorithms.cloneTree( source, true);
+    AddChildMemento addChild = new AddChildMemento();
+    addChild.parent = source;
+    addChild.child = child;
+    addChild.index = 0;
+    addChild.restore();
+    assertEquals( 4, source.getNumberOfChildren());
+    assertEquals( 3, clone.getNumberOfChildren());
+  }
+
+  @Test public void largeCloneIsIndexed()
+  {
+    IModelObject source = createTree( IndexedDataStorageClass.threshold + 1);
+    IModelObject clone = ModelAlgorithms.cloneTree( source, true);
+    assertEquals( IndexedDataStorageClass.threshold + 1, clone.getNumberOfChildren());
+    assertTrue( clone.getStorageClass() instanceof IndexedDataStorageClass);
+    assertEquals( "c5", Xlate.get( clone.getChild( 5), "name", ""));
+  }
+
+  @Test public void sharingIsScopedToThread() throws Exception
+  {
+    IModelObject source = createTree( 3);
+    IModelObject clone = ModelAlgorithms.cloneTree( source, true);
+    assertTrue( SharedStorageClass.isActive());
+
+    final boolean[] active = { true};
+    Thread thread = new Thread( new Runnable() {
+      public void run()
+      {
+        active[ 0] = SharedStorageClass.isActive();
+      }
+    });
+    thread.start();
+    thread.join();
+    assertFalse( active[ 0]);
+
+    source.setAttribute( "name", "changed");
+    assertEquals( "", Xlate.get( clone, "name", ""));
+  }
+
+  /**
+   * Create a tree with the specified number of children, each of which has one child.
+   * @param count The number of children.
+   * @return Returns the root of the tree.
+   */
+  private static IModelObject createTree( int count)
+  {
+    IModelObject root = new ModelObject( "root");
+    for( int i=0; i<count; i++)
+    {
+      IModelObject child = new ModelObject( "child");
+      child.setAttribute( "id", i);
+      child.setAttribute( "name", "c"+i);
+      IModelObject grandchild = new ModelObject( "grandchild");
+      grandchild.setAttribute( "name", "g"+i);
+      child.addChild( grandchild);
+      root.addChild( child);
+    }
+    return root;
+  }
+}
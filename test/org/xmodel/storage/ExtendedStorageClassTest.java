@@ -0,0 +1,123 @@
+package org.xmodel.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelListener;
+import org.xmodel.ModelObject;
+import org.xmodel.external.AbstractCachingPolicy;
+import org.xmodel.external.ExternalReference;
+import org.xmodel.external.IExternalReference;
+import org.xmodel.external.UnboundedCache;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.ExpressionListener;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test the extensions of an ExtendedStorageClass.
+ */
+public class ExtendedStorageClassTest
+{
+  @Test public void modelListenerSlot()
+  {
+    IModelObject element = new ModelObject( "element");
+    element.setAttribute( "a", 1);
+    element.addModelListener( new ModelListener());
+
+    ExtendedStorageClass storageClass = getExtended( element);
+    assertEquals( 1, storageClass.getSlotCount());
+    assertNotNull( element.getModelListeners());
+    assertNull( storageClass.getPathListeners());
+    assertNull( storageClass.getCachingPolicy());
+    assertEquals( 1, element.getAttribute( "a"));
+  }
+
+  @Test public void pathListenerSlot()
+  {
+    IModelObject element = new ModelObject( "element");
+    element.getCreateChild( "child");
+
+    IExpression expression = XPath.createExpression( "child");
+    expression.addListener( new StatefulContext( element), new ExpressionListener());
+
+    ExtendedStorageClass storageClass = getExtended( element);
+    assertEquals( 2, storageClass.getSlotCount());
+    assertNotNull( storageClass.getPathListeners());
+    assertNotNull( storageClass.getModelListeners());
+    assertEquals( 1, element.getChildren().size());
+  }
+
+  @Test public void cachingPolicyAndDirtyFlag()
+  {
+    ExternalReference reference = new ExternalReference( "reference");
+    TestCachingPolicy cachingPolicy = new TestCachingPolicy();
+    reference.setCachingPolicy( cachingPolicy);
+    reference.setDirty( true);
+
+    ExtendedStorageClass storageClass = getExtended( reference);
+    assertEquals( 1, storageClass.getSlotCount());
+    assertSame( cachingPolicy, reference.getCachingPolicy());
+    assertTrue( reference.isDirty());
+
+    // the dirty flag does not use a slot
+    reference.addModelListener( new ModelListener());
+    assertSame( storageClass, reference.getStorageClass());
+    assertEquals( 2, storageClass.getSlotCount());
+    assertTrue( storageClass.getDirty());
+
+    reference.getChildren();
+    assertFalse( reference.isDirty());
+    assertEquals( 1, reference.getChildren().size());
+    assertSame( cachingPolicy, reference.getCachingPolicy());
+    assertNotNull( reference.getModelListeners());
+  }
+
+  @Test public void promotionIsAbsorbed()
+  {
+    IModelObject element = new ModelObject( "element");
+    element.addModelListener( new ModelListener());
+    ExtendedStorageClass storageClass = getExtended( element);
+
+    for( int i=0; i<20; i++) element.setAttribute( "a"+i, i);
+    for( int i=0; i<20; i++) element.addChild( new ModelObject( "child"));
+
+    assertSame( storageClass, element.getStorageClass());
+    assertEquals( 19, element.getAttribute( "a19"));
+    assertEquals( 20, element.getChildren().size());
+    assertNotNull( element.getModelListeners());
+  }
+
+  /**
+   * Returns the ExtendedStorageClass of the specified element.
+   * @param element The element.
+   * @return Returns the storage class.
+   */
+  private static ExtendedStorageClass getExtended( IModelObject element)
+  {
+    IStorageClass storageClass = element.getStorageClass();
+    assertTrue( storageClass.getClass().getSimpleName(), storageClass instanceof ExtendedStorageClass);
+    return (ExtendedStorageClass)storageClass;
+  }
+
+  private static class TestCachingPolicy extends AbstractCachingPolicy
+  {
+    public TestCachingPolicy()
+    {
+      super( new UnboundedCache());
+    }
+
+    /* (non-Javadoc)
+     * @see org.xmodel.external.ICachingPolicy#sync(org.xmodel.external.IExternalReference)
+     */
+    public void sync( IExternalReference reference)
+    {
+      reference.addChild( new ModelObject( "child"));
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package org.xmodel.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.Reference;
+
+/**
+ * Test the type and id indexes of IndexedDataStorageClass.
+ */
+public class IndexedDataStorageClassTest
+{
+  @Test public void promotion()
+  {
+    IModelObject parent = createParent( IndexedDataStorageClass.threshold + 1);
+    assertTrue( parent.getChildren() instanceof IndexedChildList);
+    assertEquals( 0, parent.getAttributeNames().size());
+    assertEquals( IndexedDataStorageClass.threshold + 1, parent.getNumberOfChildren( "x"));
+    assertSame( parent.getChild( 3), parent.getChild( "x", "3"));
+    assertSame( parent.getChild( 0), parent.getFirstChild( "x"));
+  }
+
+  @Test public void duplicateIds()
+  {
+    IModelObject parent = createParent( IndexedDataStorageClass.threshold + 1);
+    Random random = new Random( 1);
+    for( int i=0; i<1000; i++)
+    {
+      List<IModelObject> children = parent.getChildren();
+      switch( random.nextInt( 4))
+      {
+        case 0:
+        {
+          IModelObject child = new ModelObject( "x");
+          child.setAttribute( "id", ""+random.nextInt( 10));
+          parent.addChild( child, random.nextInt( children.size() + 1));
+          break;
+        }
+        case 1: if ( children.size() > 1) children.get( random.nextInt( children.size())).removeFromParent(); break;
+        case 2: children.get( random.nextInt( children.size())).setAttribute( "id", ""+random.nextInt( 10)); break;
+        case 3: children.get( random.nextInt( children.size())).removeAttribute( "id"); break;
+      }
+
+      for( int j=0; j<10; j++)
+        assertSame( findFirst( parent, ""+j), parent.getChild( "x", ""+j));
+    }
+  }
+
+  @Test public void referenceId()
+  {
+    IModelObject parent = createParent( IndexedDataStorageClass.threshold + 1);
+    IModelObject referent = new ModelObject( "x");
+    referent.setAttribute( "id", "a");
+    new ModelObject( "other").addChild( referent);
+
+    IModelObject reference = new Reference( referent);
+    parent.addChild( reference);
+    assertSame( reference, parent.getChild( "x", "a"));
+
+    // the referent is renamed without notifying the parent of the reference
+    referent.setAttribute( "id", "b");
+    assertEquals( null, parent.getChild( "x", "a"));
+    assertSame( reference, parent.getChild( "x", "b"));
+
+    reference.removeFromParent();
+    assertEquals( null, parent.getChild( "x", "b"));
+    assertSame( parent.getChild( 1), parent.getChild( "x", "1"));
+  }
+
+  /**
+   * Create a parent with the specified number of children with type <i>x</i> and distinct ids.
+   * @param count The number of children.
+   * @return Returns the parent.
+   */
+  private static IModelObject createParent( int count)
+  {
+    IModelObject parent = new ModelObject( "parent");
+    for( int i=0; i<count; i++)
+    {
+      IModelObject child = new ModelObject( "x");
+      child.setAttribute( "id", ""+i);
+      parent.addChild( child);
+    }
+    return parent;
+  }
+
+  /**
+   * Find the first child of the specified parent with type <i>x</i> and the specified id by scanning.
+   * @param parent The parent.
+   * @param id The id.
+   * @return Returns null or the first child.
+   */
+  private static IModelObject findFirst( IModelObject parent, String id)
+  {
+    for( IModelObject child: parent.getChildren())
+      if ( id.equals( child.getAttribute( "id")))
+        return child;
+    return null;
+  }
+}
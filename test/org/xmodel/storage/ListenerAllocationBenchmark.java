@@ -0,0 +1,86 @@
+package org.xmodel.storage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.ExpressionListener;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Measures the number of bytes allocated by IExpression.addListener on a tree of 100,000 elements.  Binding a
+ * path installs model listeners and path listeners on each element of the path, so most of the allocation per
+ * element is in the storage classes and the listener lists.  Run with <i>-Xmx</i> large enough to
+ * hold the tree.  The allocation is measured with the HotSpot extension of ThreadMXBean.
+ */
+public class ListenerAllocationBenchmark
+{
+  public static void main( String[] args) throws Exception
+  {
+    int passes = (args.length > 0)? Integer.parseInt( args[ 0]): 5;
+    for( int i=0; i<passes; i++) run();
+  }
+
+  private static void run()
+  {
+    IModelObject root = createTree( 1000, 99);
+
+    IExpression expression = XPath.createExpression( "a/b/@id");
+    StatefulContext context = new StatefulContext( root);
+    ExpressionListener listener = new ExpressionListener() {};
+
+    long bytes = getAllocatedBytes();
+    long time = System.nanoTime();
+    expression.addListener( context, listener);
+    time = System.nanoTime() - time;
+    bytes = getAllocatedBytes() - bytes;
+
+    expression.removeListener( context, listener);
+
+    System.out.printf( "addListener: %d elements, %,d bytes, %.1f bytes/element, %.1f ms, %,d storage bytes after\n",
+      elements, bytes, (double)bytes / elements, time / 1e6, Statistics.estimateSize( root));
+  }
+
+  /**
+   * Create a tree with the specified number of children, each with the specified number of children.
+   * @param width The number of children of the root.
+   * @param depth The number of children of each child of the root.
+   * @return Returns the root.
+   */
+  private static IModelObject createTree( int width, int depth)
+  {
+    IModelObject root = new ModelObject( "root");
+    elements = 1;
+    for( int i=0; i<width; i++)
+    {
+      IModelObject a = new ModelObject( "a");
+      a.setAttribute( "id", i);
+      root.addChild( a);
+      elements++;
+
+      for( int j=0; j<depth; j++)
+      {
+        IModelObject b = new ModelObject( "b");
+        b.setAttribute( "id", j);
+        a.addChild( b);
+        elements++;
+      }
+    }
+    return root;
+  }
+
+  /**
+   * @return Returns the number of bytes allocated by the current thread.
+   */
+  private static long getAllocatedBytes()
+  {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if ( bean instanceof com.sun.management.ThreadMXBean)
+      return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes( Thread.currentThread().getId());
+    return 0;
+  }
+
+  private static int elements;
+}
@@ -0,0 +1,107 @@
+package org.xmodel.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.Reference;
+import org.xmodel.Xlate;
+
+/**
+ * Test the primitive attribute accessors and the conversions of Primitives.
+ */
+public class PrimitivesTest
+{
+  @Test public void conversions()
+  {
+    assertEquals( 3, Primitives.toDouble( 3, -1), 0);
+    assertEquals( 2.5, Primitives.toDouble( 2.5f, -1), 0);
+    assertEquals( 7, Primitives.toDouble( 7L, -1), 0);
+    assertEquals( 1.25, Primitives.toDouble( "1.25", -1), 0);
+    assertEquals( -1, Primitives.toDouble( "abc", -1), 0);
+    assertEquals( -1, Primitives.toDouble( "", -1), 0);
+    assertEquals( -1, Primitives.toDouble( Boolean.TRUE, -1), 0);
+    assertEquals( -1, Primitives.toDouble( null, -1), 0);
+
+    assertEquals( 3, Primitives.toLong( 3, -1));
+    assertEquals( 2, Primitives.toLong( 2.9, -1));
+    assertEquals( Long.MAX_VALUE, Primitives.toLong( Long.MAX_VALUE, -1));
+    assertEquals( 12, Primitives.toLong( "12", -1));
+    assertEquals( -1, Primitives.toLong( "1.5", -1));
+    assertEquals( -1, Primitives.toLong( "abc", -1));
+    assertEquals( -1, Primitives.toLong( Boolean.FALSE, -1));
+    assertEquals( -1, Primitives.toLong( null, -1));
+  }
+
+  @Test public void modelObject()
+  {
+    IModelObject object = new ModelObject( "object");
+    object.setValue( 5);
+    object.setAttribute( "int", 3);
+    object.setAttribute( "double", 2.5);
+    object.setAttribute( "string", "12");
+    object.setAttribute( "text", "abc");
+    object.setAttribute( "flag", true);
+    assertAccessors( object);
+
+    // the accessors of a reference delegate to the referent
+    assertAccessors( new Reference( object));
+
+    assertEquals( 5, object.getAttributeAsLong( "", -1));
+    assertEquals( 5, Xlate.get( object, 0));
+    assertEquals( 2.5, Xlate.get( object, "double", 0.0), 0);
+  }
+
+  @Test public void valueOnly()
+  {
+    IModelObject object = new ModelObject( "object");
+    object.setValue( 2.5);
+    assertEquals( 2.5, object.getAttributeAsDouble( "", -1), 0);
+    assertEquals( 2, object.getAttributeAsLong( "", -1));
+    assertEquals( -1, object.getAttributeAsLong( "missing", -1));
+
+    object.setValue( "abc");
+    assertEquals( -1, object.getAttributeAsDouble( "", -1), 0);
+  }
+
+  @Test public void columnarRow()
+  {
+    ColumnTable table = new ColumnTable();
+    IModelObject first = new ModelObject( "row");
+    assertTrue( table.adopt( first));
+    first.setAttribute( "int", 3);
+    first.setAttribute( "double", 2.5);
+    first.setAttribute( "string", "12");
+    first.setAttribute( "text", "abc");
+    first.setAttribute( "flag", true);
+    assertTrue( first.getStorageClass() instanceof ColumnarStorageClass);
+    assertAccessors( first);
+
+    // a row without values in the columns
+    IModelObject second = new ModelObject( "row");
+    assertTrue( table.adopt( second));
+    assertEquals( -1, second.getAttributeAsDouble( "int", -1), 0);
+    assertEquals( -1, second.getAttributeAsLong( "double", -1));
+  }
+
+  /**
+   * Assert the results of the accessors of an object with the attributes created by the tests.
+   * @param object The object.
+   */
+  private static void assertAccessors( IModelObject object)
+  {
+    assertEquals( 3, object.getAttributeAsDouble( "int", -1), 0);
+    assertEquals( 3, object.getAttributeAsLong( "int", -1));
+    assertEquals( 2.5, object.getAttributeAsDouble( "double", -1), 0);
+    assertEquals( 2, object.getAttributeAsLong( "double", -1));
+    assertEquals( 12, object.getAttributeAsDouble( "string", -1), 0);
+    assertEquals( 12, object.getAttributeAsLong( "string", -1));
+    assertEquals( -1, object.getAttributeAsDouble( "text", -1), 0);
+    assertEquals( -1, object.getAttributeAsLong( "text", -1));
+    assertEquals( -1, object.getAttributeAsDouble( "flag", -1), 0);
+    assertEquals( -1, object.getAttributeAsLong( "flag", -1));
+    assertEquals( -1, object.getAttributeAsDouble( "missing", -1), 0);
+    assertEquals( -1, object.getAttributeAsLong( "missing", -1));
+  }
+}
@@ -0,0 +1,40 @@
+package org.xmodel.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+
+/**
+ * Test the resolution of attribute names to symbols.
+ */
+public class SymbolTableTest
+{
+  @Test public void literalAndRuntimeNames()
+  {
+    int symbol = SymbolTable.getSymbol( "symbolTableTest");
+    String runtime = new StringBuilder( "symbolTable").append( "Test").toString();
+    assertEquals( symbol, SymbolTable.findSymbol( "symbolTableTest"));
+    assertEquals( symbol, SymbolTable.findSymbol( runtime));
+    assertEquals( symbol, SymbolTable.getSymbol( runtime));
+    assertSame( "symbolTableTest", SymbolTable.getName( symbol));
+  }
+
+  @Test public void unknownName()
+  {
+    String name = "unknown"+System.nanoTime();
+    assertEquals( -1, SymbolTable.findSymbol( name));
+    assertEquals( -1, SymbolTable.findSymbol( name));
+  }
+
+  @Test public void attributeAccess()
+  {
+    IModelObject element = new ModelObject( "element");
+    element.setAttribute( "a", 1);
+    element.setAttribute( "b", "x");
+    assertEquals( 1, element.getAttribute( "a"));
+    assertEquals( "x", element.getAttribute( new String( "b")));
+    assertEquals( "x", element.getAttribute( SymbolTable.getSymbol( "b")));
+  }
+}
@@ -0,0 +1,69 @@
+package org.xmodel.xaction.trigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+import org.xmodel.GlobalSettings;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.external.AbstractCachingPolicy;
+import org.xmodel.external.ExternalReference;
+import org.xmodel.external.IExternalReference;
+import org.xmodel.external.UnboundedCache;
+import org.xmodel.path.ListenerChain;
+import org.xmodel.xaction.XActionDocument;
+import org.xmodel.xml.XmlIO;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test lazy source triggers whose scripts run during activation.
+ */
+public class SourceTriggerTest
+{
+  @Test public void immediateScriptSyncs() throws Exception
+  {
+    CountingPolicy policy = new CountingPolicy();
+    ExternalReference reference = new ExternalReference( "a");
+    reference.setCachingPolicy( policy);
+    reference.setDirty( true);
+    IModelObject root = new ModelObject( "root");
+    root.addChild( reference);
+
+    String xml = 
+      "<trigger source='a' immediate='true' initialize='true' lazy='true'>" +
+      "  <assign var='n'>count( $added/b)</assign>" +
+      "</trigger>";
+    SourceTrigger trigger = new SourceTrigger();
+    trigger.configure( new XActionDocument( new XmlIO().read( xml)));
+
+    StatefulContext context = new StatefulContext( root);
+    trigger.activate( context);
+    assertEquals( 1, policy.syncs);
+    assertEquals( 1, ((Number)context.getScope().get( "n")).intValue());
+
+    // the binding state is restored after activation
+    assertFalse( ListenerChain.getLazy());
+    assertFalse( GlobalSettings.getInstance().getModel().getSyncLock());
+
+    trigger.deactivate( context);
+  }
+
+  private static class CountingPolicy extends AbstractCachingPolicy
+  {
+    public CountingPolicy()
+    {
+      super( new UnboundedCache());
+    }
+
+    /* (non-Javadoc)
+     * @see org.xmodel.external.ICachingPolicy#sync(org.xmodel.external.IExternalReference)
+     */
+    public void sync( IExternalReference reference)
+    {
+      syncs++;
+      reference.addChild( new ModelObject( "b"));
+    }
+
+    int syncs;
+  }
+}
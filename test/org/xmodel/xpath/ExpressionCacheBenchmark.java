@@ -0,0 +1,94 @@
+package org.xmodel.xpath;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.xmodel.xpath.expression.IExpression;
+
+/**
+ * Compares a cache of parsed expressions per thread with the cache shared by all threads, when 64 threads each
+ * create the same set of expressions.  With a cache per thread, every thread parses every expression, while the
+ * shared cache parses each expression once and copies the parsed template once per thread.
+ */
+public class ExpressionCacheBenchmark
+{
+  public static void main( String[] args) throws Exception
+  {
+    int threads = (args.length > 0)? Integer.parseInt( args[ 0]): 64;
+    int count = (args.length > 1)? Integer.parseInt( args[ 1]): 500;
+    int rounds = (args.length > 2)? Integer.parseInt( args[ 2]): 20;
+
+    String[] specs = new String[ count];
+    for( int i=0; i<count; i++)
+      specs[ i] = String.format( "count( a/b[ @id = '%d' and c > %d]) + sum( d[ e != 'x%d']/@n) div 2", i, i, i);
+
+    for( int i=0; i<2; i++)
+    {
+      XPath.getExpressionCache().clear();
+      AtomicLong parses = new AtomicLong();
+      long time0 = run( threads, specs, rounds, false, parses);
+      long parses0 = parses.get();
+
+      XPath.getExpressionCache().clear();
+      long misses = XPath.getExpressionCache().getMisses();
+      long time1 = run( threads, specs, rounds, true, parses);
+      long parses1 = XPath.getExpressionCache().getMisses() - misses;
+
+      if ( i == 1)
+      {
+        System.out.printf( "per-thread cache: %8d parses, %6d ms\n", parses0, time0 / 1000000);
+        System.out.printf( "shared cache:     %8d parses, %6d ms\n", parses1, time1 / 1000000);
+        System.out.printf( "parses avoided:   %8d, %.1fx\n", parses0 - parses1, (double)time0 / time1);
+        System.out.println( XPath.getExpressionCache());
+      }
+    }
+  }
+
+  private static long run( int threads, final String[] specs, final int rounds, final boolean shared, final AtomicLong parses) throws InterruptedException
+  {
+    final CountDownLatch start = new CountDownLatch( 1);
+    final CountDownLatch done = new CountDownLatch( threads);
+    for( int i=0; i<threads; i++)
+    {
+      Thread thread = new Thread( new Runnable() {
+        public void run()
+        {
+          try
+          {
+            start.await();
+            Map<String, IExpression> cache = new HashMap<String, IExpression>();
+            for( int j=0; j<rounds; j++)
+            {
+              for( String spec: specs)
+              {
+                if ( shared)
+                {
+                  XPath.createExpression( spec);
+                }
+                else if ( !cache.containsKey( spec))
+                {
+                  cache.put( spec, XPath.createExpression( spec, false));
+                  parses.incrementAndGet();
+                }
+              }
+            }
+          }
+          catch( InterruptedException e)
+          {
+          }
+          finally
+          {
+            done.countDown();
+          }
+        }
+      });
+      thread.start();
+    }
+
+    long time = System.nanoTime();
+    start.countDown();
+    done.await();
+    return System.nanoTime() - time;
+  }
+}
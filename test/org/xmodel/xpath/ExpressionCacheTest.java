@@ -0,0 +1,45 @@
+package org.xmodel.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import org.xmodel.IPath;
+import org.xmodel.xpath.expression.IExpression;
+
+/**
+ * Test the templates shared by all threads and the instances of each thread.
+ */
+public class ExpressionCacheTest
+{
+  @Test public void instancePerThread() throws Exception
+  {
+    final String spec = "count( a/b[ @c = 'expressionCacheTest'])";
+    IExpression expression = XPath.createExpression( spec);
+    assertSame( expression, XPath.createExpression( spec));
+
+    long misses = XPath.getExpressionCache().getMisses();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    IExpression other = executor.submit( new Callable<IExpression>() {
+      public IExpression call()
+      {
+        return XPath.createExpression( spec);
+      }
+    }).get();
+    executor.shutdown();
+
+    // the other thread copies the template instead of parsing
+    assertNotSame( expression, other);
+    assertEquals( expression.toString(), other.toString());
+    assertEquals( misses, XPath.getExpressionCache().getMisses());
+  }
+
+  @Test public void pathPerThread()
+  {
+    IPath path = XPath.createPath( "a/b[ @c = 'pathCacheTest']");
+    assertSame( path, XPath.createPath( "a/b[ @c = 'pathCacheTest']"));
+  }
+}
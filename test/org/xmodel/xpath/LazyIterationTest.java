@@ -0,0 +1,103 @@
+package org.xmodel.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.external.AbstractCachingPolicy;
+import org.xmodel.external.ExternalReference;
+import org.xmodel.external.IExternalReference;
+import org.xmodel.external.UnboundedCache;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test the lazy evaluation of node-sets with <code>IExpression.iterate</code>.
+ */
+public class LazyIterationTest
+{
+  @Test public void positionPerContextNode()
+  {
+    IModelObject root = new ModelObject( "root");
+    for( int i=0; i<3; i++)
+    {
+      IModelObject a = new ModelObject( "a");
+      root.addChild( a);
+      for( int j=0; j<3; j++) a.addChild( new ModelObject( "b"));
+    }
+
+    List<IModelObject> nodes = XPath.createExpression( "a/b[1]").evaluateNodes( new StatefulContext( root));
+    assertEquals( 3, nodes.size());
+    for( int i=0; i<3; i++) assertSame( root.getChild( i).getChild( 0), nodes.get( i));
+
+    Iterator<IModelObject> iter = XPath.createExpression( "a/b[2]").iterate( new StatefulContext( root));
+    for( int i=0; i<3; i++) assertSame( root.getChild( i).getChild( 1), iter.next());
+    assertFalse( iter.hasNext());
+  }
+
+  @Test public void emptyFunction()
+  {
+    IModelObject root = new ModelObject( "root");
+    StatefulContext context = new StatefulContext( root);
+    assertEquals( 0, XPath.createExpression( "empty()").evaluateNodes( context).size());
+    assertTrue( XPath.createExpression( "empty( a)").evaluateBoolean( context));
+    assertFalse( XPath.createExpression( "boolean( empty())").evaluateBoolean( context));
+
+    root.getCreateChild( "a");
+    assertFalse( XPath.createExpression( "empty( a)").evaluateBoolean( context));
+    assertTrue( XPath.createExpression( "not( empty( a))").evaluateBoolean( context));
+  }
+
+  @Test public void earlyTermination()
+  {
+    IModelObject root = new ModelObject( "root");
+    IModelObject first = new ModelObject( "a");
+    root.addChild( first);
+    first.addChild( new ModelObject( "b"));
+
+    CountingPolicy policy = new CountingPolicy();
+    for( int i=0; i<10; i++)
+    {
+      ExternalReference reference = new ExternalReference( "a");
+      reference.setCachingPolicy( policy);
+      reference.setDirty( true);
+      root.addChild( reference);
+    }
+
+    StatefulContext context = new StatefulContext( root);
+    assertFalse( XPath.createExpression( "empty( a/b)").evaluateBoolean( context));
+    assertTrue( XPath.createExpression( "boolean( a/b)").evaluateBoolean( context));
+    assertSame( first.getChild( 0), XPath.createPath( "a/b").queryFirst( root));
+    assertSame( first.getChild( 0), XPath.createExpression( "a/b").queryFirst( root));
+    assertSame( first.getChild( 0), XPath.createExpression( "a/b").iterate( context).next());
+    assertEquals( 0, policy.syncs);
+
+    IExpression expression = XPath.createExpression( "a/b");
+    assertEquals( 11, expression.evaluateNodes( context).size());
+    assertEquals( 10, policy.syncs);
+  }
+
+  private static class CountingPolicy extends AbstractCachingPolicy
+  {
+    public CountingPolicy()
+    {
+      super( new UnboundedCache());
+    }
+
+    /* (non-Javadoc)
+     * @see org.xmodel.external.ICachingPolicy#sync(org.xmodel.external.IExternalReference)
+     */
+    public void sync( IExternalReference reference)
+    {
+      syncs++;
+      reference.addChild( new ModelObject( "b"));
+    }
+
+    int syncs;
+  }
+}
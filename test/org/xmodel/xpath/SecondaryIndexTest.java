@@ -0,0 +1,111 @@
+package org.xmodel.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.storage.IndexedChildList;
+import org.xmodel.storage.IndexedDataStorageClass;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test predicates that are evaluated with a secondary index declared with IndexedChildList.addIndex.
+ */
+public class SecondaryIndexTest
+{
+  @Before public void setUp()
+  {
+    IndexedChildList.addIndex( "item", "s");
+    parent = new ModelObject( "parent");
+    for( int i=0; i<IndexedDataStorageClass.threshold * 2; i++)
+    {
+      IModelObject item = new ModelObject( "item");
+      item.setAttribute( "s", "v"+(i % 10));
+      item.getCreateChild( "name").setValue( "n"+(i % 10));
+      parent.addChild( item);
+    }
+    assertTrue( parent.getChildren() instanceof IndexedChildList);
+  }
+
+  @After public void tearDown()
+  {
+    IndexedChildList.removeIndex( "item", "s");
+  }
+
+  @Test public void attributePredicate()
+  {
+    List<IModelObject> nodes = query( "item[@s = 'v3']");
+    assertEquals( scan( "s", "v3"), nodes);
+    assertEquals( nodes, query( "item['v3' = @s]"));
+    assertEquals( 1, query( "item[@s = 'v3'][2]").size());
+    assertSame( nodes.get( 1), query( "item[@s = 'v3'][2]").get( 0));
+  }
+
+  @Test public void variablePredicate()
+  {
+    IExpression expression = XPath.createExpression( "item[@s = $s]");
+    StatefulContext context = new StatefulContext( parent);
+    context.set( "s", "v4");
+    assertEquals( scan( "s", "v4"), expression.evaluateNodes( context));
+  }
+
+  @Test public void indexFollowsUpdates()
+  {
+    assertEquals( scan( "s", "v5"), query( "item[@s = 'v5']"));
+
+    // an attribute change, an insertion before the matches and a removal
+    parent.getChild( 10).setAttribute( "s", "v6");
+    IModelObject item = new ModelObject( "item");
+    item.setAttribute( "s", "v5");
+    parent.addChild( item, 0);
+    parent.removeChild( 15);
+
+    assertEquals( scan( "s", "v5"), query( "item[@s = 'v5']"));
+    assertEquals( scan( "s", "v6"), query( "item[@s = 'v6']"));
+    assertSame( item, query( "item[@s = 'v5']").get( 0));
+  }
+
+  @Test public void childElementPredicateScans()
+  {
+    // child-element predicates do not use the index, but give the same result
+    List<IModelObject> nodes = query( "item[name = 'n7']");
+    assertEquals( scan( "s", "v7"), nodes);
+
+    parent.getChild( 7).getFirstChild( "name").setValue( "changed");
+    assertEquals( nodes.subList( 1, nodes.size()), query( "item[name = 'n7']"));
+  }
+
+  /**
+   * Evaluate the specified expression in the context of the parent.
+   * @param xpath The expression.
+   * @return Returns the nodes.
+   */
+  private List<IModelObject> query( String xpath)
+  {
+    return XPath.createExpression( xpath).evaluateNodes( new StatefulContext( parent));
+  }
+
+  /**
+   * Returns the children of the parent whose attribute has the specified value without using the index.
+   * @param attrName The name of the attribute.
+   * @param value The value.
+   * @return Returns the matching children.
+   */
+  private List<IModelObject> scan( String attrName, String value)
+  {
+    List<IModelObject> result = new ArrayList<IModelObject>();
+    for( IModelObject child: parent.getChildren())
+      if ( value.equals( child.getAttribute( attrName)))
+        result.add( child);
+    return result;
+  }
+
+  private IModelObject parent;
+}
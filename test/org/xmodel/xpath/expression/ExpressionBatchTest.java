@@ -0,0 +1,231 @@
+package org.xmodel.xpath.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.xmodel.GlobalSettings;
+import org.xmodel.IModel;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.xpath.XPath;
+
+/**
+ * Test the coalescing of node-set notifications by batch updates.
+ */
+public class ExpressionBatchTest
+{
+  @Test public void coalesce()
+  {
+    IModelObject root = new ModelObject( "root");
+    IModelObject a = root.getCreateChild( "a");
+    for( int i=0; i<10; i++) add( a, "b", i).setAttribute( "k", i % 2);
+
+    IExpression expression = XPath.createExpression( "a/b[ @k = 1]");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    expression.addListener( context, recorder);
+    List<IModelObject> nodes = new ArrayList<IModelObject>( expression.evaluateNodes( context));
+
+    Random random = new Random( 1);
+    IModel model = GlobalSettings.getInstance().getModel();
+    model.beginBatch();
+    for( int i=0; i<1000; i++)
+    {
+      List<IModelObject> children = a.getChildren();
+      switch( random.nextInt( 3))
+      {
+        case 0: add( a, "b", 10 + i).setAttribute( "k", random.nextInt( 2)); break;
+        case 1: if ( children.size() > 0) children.get( random.nextInt( children.size())).removeFromParent(); break;
+        case 2: if ( children.size() > 0) children.get( random.nextInt( children.size())).setAttribute( "k", random.nextInt( 2)); break;
+      }
+    }
+    assertEquals( 0, recorder.events.size());
+    model.commitBatch();
+
+    assertTrue( recorder.calls <= 2);
+    nodes.removeAll( recorder.removed);
+    nodes.addAll( recorder.added);
+    List<IModelObject> expected = expression.evaluateNodes( context);
+    assertEquals( expected.size(), nodes.size());
+    assertTrue( nodes.containsAll( expected));
+
+    expression.removeListener( context, recorder);
+  }
+
+  @Test public void addThenRemove()
+  {
+    IModelObject root = new ModelObject( "root");
+    IExpression expression = XPath.createExpression( "b");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    expression.addListener( context, recorder);
+
+    IModel model = GlobalSettings.getInstance().getModel();
+    model.beginBatch();
+    add( root, "b", 1).removeFromParent();
+    model.commitBatch();
+    assertEquals( 0, recorder.events.size());
+
+    expression.removeListener( context, recorder);
+  }
+
+  @Test public void removeThenAdd()
+  {
+    IModelObject root = new ModelObject( "root");
+    IModelObject b1 = add( root, "b", 1);
+    IModelObject b2 = add( root, "b", 2);
+
+    IExpression expression = XPath.createExpression( "b");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    expression.addListener( context, recorder);
+
+    IModel model = GlobalSettings.getInstance().getModel();
+    model.beginBatch();
+    b1.removeFromParent();
+    root.addChild( b1);
+    b2.removeFromParent();
+    model.commitBatch();
+    assertEquals( Arrays.asList( "-1", "-2", "+1"), recorder.events);
+
+    expression.removeListener( context, recorder);
+  }
+
+  @Test public void order()
+  {
+    IModelObject root = new ModelObject( "root");
+    IExpression expression = XPath.createExpression( "b");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    recorder.values = true;
+    expression.addListener( context, recorder);
+
+    IModel model = GlobalSettings.getInstance().getModel();
+    model.beginBatch();
+    IModelObject b = add( root, "b", 1);
+    b.setValue( "x");
+    add( root, "b", 2);
+    model.commitBatch();
+    assertEquals( Arrays.asList( "+1", "=1", "+2"), recorder.events);
+
+    expression.removeListener( context, recorder);
+  }
+
+  @Test public void abortAfterException()
+  {
+    IModelObject root = new ModelObject( "root");
+    IExpression expression = XPath.createExpression( "b");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    expression.addListener( context, recorder);
+
+    IModel model = GlobalSettings.getInstance().getModel();
+    try
+    {
+      model.beginBatch();
+      try
+      {
+        model.beginBatch();
+        add( root, "b", 1);
+        if ( recorder.events.size() == 0) throw new IllegalStateException();
+        model.commitBatch();
+        model.commitBatch();
+      }
+      finally
+      {
+        model.abortBatch();
+      }
+    }
+    catch( IllegalStateException e)
+    {
+    }
+
+    assertEquals( Arrays.asList( "+1"), recorder.events);
+    assertNull( model.getBatch());
+    assertFalse( ExpressionBatch.isActive());
+
+    // a batch update is no longer in progress
+    add( root, "b", 2);
+    assertEquals( Arrays.asList( "+1", "+2"), recorder.events);
+
+    expression.removeListener( context, recorder);
+  }
+
+  @Test public void repeatedAddAndRemove()
+  {
+    IModelObject root = new ModelObject( "root");
+    IExpression expression = XPath.createExpression( "b");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder();
+    expression.addListener( context, recorder);
+
+    IModel model = GlobalSettings.getInstance().getModel();
+    model.beginBatch();
+    IModelObject b1 = add( root, "b", 1);
+    IModelObject b2 = add( root, "b", 2);
+    for( int i=0; i<1000; i++)
+    {
+      b1.removeFromParent();
+      root.addChild( b1);
+    }
+    b2.removeFromParent();
+    model.commitBatch();
+    assertEquals( Arrays.asList( "+1"), recorder.events);
+
+    expression.removeListener( context, recorder);
+  }
+
+  /**
+   * Add a child with the specified type and id.
+   * @param parent The parent.
+   * @param type The type of the child.
+   * @param id The id of the child.
+   * @return Returns the child.
+   */
+  private static IModelObject add( IModelObject parent, String type, int id)
+  {
+    IModelObject child = new ModelObject( type);
+    child.setAttribute( "id", id);
+    parent.addChild( child);
+    return child;
+  }
+
+  private static class Recorder extends ExpressionListener
+  {
+    public void notifyAdd( IExpression expression, IContext context, List<IModelObject> nodes)
+    {
+      for( IModelObject node: nodes) events.add( "+"+node.getAttribute( "id"));
+      added.addAll( nodes);
+      calls++;
+    }
+
+    public void notifyRemove( IExpression expression, IContext context, List<IModelObject> nodes)
+    {
+      for( IModelObject node: nodes) events.add( "-"+node.getAttribute( "id"));
+      removed.addAll( nodes);
+      calls++;
+    }
+
+    public boolean requiresValueNotification()
+    {
+      return values;
+    }
+
+    public void notifyValue( IExpression expression, IContext[] contexts, IModelObject object, Object newValue, Object oldValue)
+    {
+      events.add( "="+object.getAttribute( "id"));
+    }
+
+    List<String> events = new ArrayList<String>();
+    List<IModelObject> added = new ArrayList<IModelObject>();
+    List<IModelObject> removed = new ArrayList<IModelObject>();
+    boolean values;
+    int calls;
+  }
+}
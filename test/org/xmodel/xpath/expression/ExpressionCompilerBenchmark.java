@@ -0,0 +1,76 @@
+package org.xmodel.xpath.expression;
+
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.xpath.XPath;
+
+/**
+ * Compares the time to evaluate expressions with the interpreter and with the classes generated by
+ * ExpressionCompiler.  Each expression is evaluated in a warm-up pass and then in a timed pass, and the results
+ * of the interpreted and compiled forms are checked for equality.
+ */
+public class ExpressionCompilerBenchmark
+{
+  public static void main( String[] args) throws Exception
+  {
+    int count = (args.length > 0)? Integer.parseInt( args[ 0]): 10000000;
+
+    IModelObject root = new ModelObject( "root");
+    root.setAttribute( "x", 3);
+    root.setAttribute( "y", 4);
+    StatefulContext context = new StatefulContext( root);
+    context.set( "n", 7);
+
+    String[] specs = {
+      "(1 + 2) * 3 - 4 div 5 > 2 and not( 7 mod 3 = 2)",
+      "@x * @x + @y * @y = 25",
+      "$n * 2 + 1 > 10 or 'a' = 'b'",
+      "string( 3 * 1.5)",
+    };
+
+    for( String spec: specs)
+    {
+      IExpression interpreted = XPath.createExpression( spec);
+      CompiledExpression compiled = ExpressionCompiler.compile( interpreted);
+      if ( compiled == null)
+      {
+        System.out.printf( "%-50s not compiled\n", spec);
+        continue;
+      }
+
+      if ( !interpreted.evaluateString( context).equals( compiled.evaluateString( context)))
+        throw new IllegalStateException( "Compiled result differs: "+spec);
+
+      for( int i=0; i<2; i++)
+      {
+        long time0 = runInterpreted( interpreted, context, count);
+        long time1 = runCompiled( compiled, context, count);
+        if ( i == 1)
+        {
+          System.out.printf( "%-50s interpreted %6.1f ns, compiled %6.1f ns, %.1fx\n",
+            spec, (double)time0 / count, (double)time1 / count, (double)time0 / time1);
+        }
+      }
+    }
+  }
+
+  private static long runInterpreted( IExpression expression, IContext context, int count) throws ExpressionException
+  {
+    long time = System.nanoTime();
+    double sum = 0;
+    for( int i=0; i<count; i++) sum += expression.evaluateNumber( context);
+    time = System.nanoTime() - time;
+    if ( sum == -1) System.out.println();
+    return time;
+  }
+
+  private static long runCompiled( CompiledExpression expression, IContext context, int count) throws ExpressionException
+  {
+    long time = System.nanoTime();
+    double sum = 0;
+    for( int i=0; i<count; i++) sum += expression.evaluateNumber( context);
+    time = System.nanoTime() - time;
+    if ( sum == -1) System.out.println();
+    return time;
+  }
+}
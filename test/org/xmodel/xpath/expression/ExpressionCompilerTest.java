@@ -0,0 +1,89 @@
+package org.xmodel.xpath.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.xpath.XPath;
+
+/**
+ * Test that compiled expressions produce the same results as the interpreter.
+ */
+public class ExpressionCompilerTest
+{
+  @After public void tearDown()
+  {
+    ExpressionCompiler.threshold = 0;
+  }
+  
+  @Test public void compiledMatchesInterpreted() throws Exception
+  {
+    IModelObject root = new ModelObject( "root");
+    root.setAttribute( "x", 3);
+    root.setAttribute( "y", 4);
+    StatefulContext context = new StatefulContext( root);
+    context.set( "n", 7);
+
+    String[] specs = {
+      "(1 + 2) * 3 - 4 div 5 > 2 and not( 7 mod 3 = 2)",
+      "@x * @x + @y * @y = 25",
+      "$n * 2 + 1 > 10 or 'a' = 'b'",
+      "string( 3 * 1.5)",
+      "-@x div 0",
+      "string( @x) = '3'",
+    };
+
+    for( String spec: specs)
+    {
+      IExpression interpreted = XPath.createExpression( spec, false);
+      CompiledExpression compiled = ExpressionCompiler.compile( interpreted);
+      assertTrue( spec, compiled != null);
+      assertEquals( spec, interpreted.evaluateBoolean( context), compiled.evaluateBoolean( context));
+      assertEquals( spec, interpreted.evaluateNumber( context), compiled.evaluateNumber( context), 0);
+      assertEquals( spec, interpreted.evaluateString( context), compiled.evaluateString( context));
+    }
+  }
+  
+  @Test public void copiesShareClass()
+  {
+    IExpression expression = XPath.createExpression( "@x * 2 + 1", false);
+    IExpression clone = (IExpression)expression.clone();
+    assertSame( ExpressionCompiler.compile( expression).getClass(), ExpressionCompiler.compile( clone).getClass());
+  }
+  
+  @Test public void threshold() throws Exception
+  {
+    ExpressionCompiler.threshold = 3;
+    IModelObject root = new ModelObject( "root");
+    root.setAttribute( "x", 3);
+    IExpression expression = XPath.createExpression( "@x * 2 + 1", false);
+    for( int i=0; i<10; i++)
+    {
+      assertEquals( 7, expression.evaluateNumber( new Context( root)), 0);
+      root.setAttribute( "x", 3 + i % 2);
+      assertEquals( (i % 2 == 0)? 7: 9, expression.evaluateNumber( new Context( root)), 0);
+      root.setAttribute( "x", 3);
+    }
+  }
+
+  @Test public void countingStops() throws Exception
+  {
+    ExpressionCompiler.threshold = 3;
+    IModelObject root = new ModelObject( "root");
+    root.setAttribute( "x", 3);
+
+    // compiled, and not compilable
+    RootExpression compilable = (RootExpression)XPath.createExpression( "@x * 2 + 1", false);
+    RootExpression nodes = (RootExpression)XPath.createExpression( "@x", false);
+    for( int i=0; i<10; i++)
+    {
+      assertEquals( 7, compilable.evaluateNumber( new Context( root)), 0);
+      assertEquals( 3, nodes.evaluateNumber( new Context( root)), 0);
+    }
+    assertEquals( 3, compilable.getEvaluations());
+    assertEquals( 3, nodes.getEvaluations());
+  }
+}
@@ -0,0 +1,83 @@
+package org.xmodel.xpath.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.IExpression.ResultType;
+
+/**
+ * Test constant folding and static operand types.
+ */
+public class ExpressionOptimizerTest
+{
+  @Test public void foldedTreePrintsOriginalText()
+  {
+    IExpression expression = XPath.createExpression( "@x + (1 + 2) * 2", false);
+    IExpression folded = expression.getArgument( 0).getArgument( 1);
+    assertTrue( folded instanceof LiteralExpression);
+    assertEquals( 6, folded.evaluateNumber( null), 0);
+    assertTrue( expression.toString(), expression.toString().contains( "1"));
+    assertFalse( expression.toString(), expression.toString().contains( "6"));
+    assertEquals( expression.toString(), ((IExpression)expression.clone()).toString());
+
+    IExpression constant = XPath.createExpression( "1 + 2 = 3", false);
+    assertTrue( constant.evaluateBoolean( null));
+    assertFalse( constant.toString(), constant.toString().contains( "true"));
+  }
+
+  @Test public void foldedResults()
+  {
+    IModelObject root = new ModelObject( "root");
+    root.setAttribute( "x", 1);
+    Context context = new Context( root);
+
+    assertEquals( 13, XPath.createExpression( "@x + (1 + 2) * 4", false).evaluateNumber( context), 0);
+    assertEquals( "abc", XPath.createExpression( "concat( 'a', 'b', 'c')", false).evaluateString( context));
+    assertTrue( XPath.createExpression( "not( 1 > 2) and @x = 1", false).evaluateBoolean( context));
+  }
+
+  @Test public void failureIsNotFolded()
+  {
+    IExpression expression = XPath.createExpression( "string-length( 1 + 2)", false);
+    assertFalse( expression.getArgument( 0) instanceof LiteralExpression);
+  }
+
+  @Test public void staticTypes()
+  {
+    assertSame( ResultType.NUMBER, ExpressionOptimizer.getStaticType( new LiteralExpression( 1.0)));
+    assertSame( ResultType.NUMBER, ExpressionOptimizer.getStaticType( new LiteralExpression( 2.0)));
+    assertSame( null, ExpressionOptimizer.getStaticType( XPath.createExpression( "$x", false).getArgument( 0)));
+  }
+
+  @Test public void staticTypesAreReset()
+  {
+    IModelObject root = new ModelObject( "root");
+    root.setAttribute( "x", 3);
+    root.getCreateChild( "b", 1).setValue( "5");
+    root.getCreateChild( "b", 2).setValue( "3");
+    Context context = new Context( root);
+
+    String[] specs = { "@x = '3'", "@x >= '3'"};
+    for( String spec: specs)
+    {
+      IExpression expression = XPath.createExpression( spec, false);
+      IExpression operator = expression.getArgument( 0);
+      IExpression clone = (IExpression)operator.clone();
+      ResultType cloneType = (clone instanceof EqualityExpression)? ((EqualityExpression)clone).rhsType: ((RelationalExpression)clone).rhsType;
+      assertSame( spec, ResultType.STRING, cloneType);
+      assertTrue( spec, expression.evaluateBoolean( context));
+      assertTrue( spec, clone.evaluateBoolean( context));
+
+      // replace the string literal with a node-set whose first node does not satisfy the operator
+      IExpression rhs = XPath.createExpression( "b", false).getArgument( 0);
+      operator.removeArgument( operator.getArgument( 1));
+      operator.addArgument( rhs);
+      assertTrue( spec, expression.evaluateBoolean( context));
+    }
+  }
+}
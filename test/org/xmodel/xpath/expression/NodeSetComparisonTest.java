@@ -0,0 +1,119 @@
+package org.xmodel.xpath.expression;
+
+import static org.junit.Assert.assertEquals;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.function.StringFunction;
+
+/**
+ * Test that node-set comparisons agree with a nested loop over the string-values of the node-sets.
+ */
+public class NodeSetComparisonTest
+{
+  @Test public void equality()
+  {
+    compare( "=");
+    compare( "!=");
+  }
+
+  @Test public void relational()
+  {
+    compare( "<");
+    compare( ">=");
+  }
+
+  @Test public void joinThreshold()
+  {
+    IModelObject root = new ModelObject( "root");
+    IModelObject a = root.getCreateChild( "a");
+    for( int i=0; i<EqualityExpression.joinThreshold; i++) add( a, "x", "a"+i);
+    add( root, "b", "a3");
+    for( int i=1; i<EqualityExpression.joinThreshold; i++) add( root, "b", "c"+i);
+
+    Context context = new Context( root);
+    assertEquals( true, XPath.createExpression( "a/x = b").evaluateBoolean( context));
+    assertEquals( false, XPath.createExpression( "a/x = b[ . != 'a3']").evaluateBoolean( context));
+    assertEquals( true, XPath.createExpression( "a/x < b").evaluateBoolean( context));
+    assertEquals( false, XPath.createExpression( "a/x >= b[ . != 'a3']").evaluateBoolean( context));
+  }
+
+  /**
+   * Compare random node-sets with the specified operator, which are smaller and larger than the join threshold
+   * and which mix elements, attributes, numbers and strings.
+   * @param operator The operator.
+   */
+  private static void compare( String operator)
+  {
+    String[] values = { "1", "01", "1.0", "2", "10", "x", "X", "", "a b"};
+    String[] specs = {
+      "a "+operator+" b",
+      "a/@v "+operator+" b",
+      "(a | a/@v) "+operator+" (b/@v | b)",
+      "b[ @v] "+operator+" a[ not( @v)]",
+    };
+
+    Random random = new Random( 1);
+    for( int trial=0; trial<200; trial++)
+    {
+      IModelObject root = new ModelObject( "root");
+      int count = random.nextInt( 3 * EqualityExpression.joinThreshold);
+      for( int i=0; i<count; i++)
+      {
+        IModelObject child = add( root, random.nextBoolean()? "a": "b", values[ random.nextInt( values.length)]);
+        if ( random.nextInt( 3) == 0) child.setAttribute( "v", values[ random.nextInt( values.length)]);
+      }
+
+      Context context = new Context( root);
+      for( String spec: specs)
+      {
+        IExpression expression = XPath.createExpression( spec);
+        IExpression lhs = expression.getArgument( 0).getArgument( 0);
+        IExpression rhs = expression.getArgument( 0).getArgument( 1);
+        boolean expected = nestedLoop( operator, lhs.evaluateNodes( context), rhs.evaluateNodes( context));
+        assertEquals( spec+" in trial "+trial, expected, expression.evaluateBoolean( context));
+      }
+    }
+  }
+
+  /**
+   * Add a child with the specified type and value.
+   * @param parent The parent.
+   * @param type The type of the child.
+   * @param value The value of the child.
+   * @return Returns the child.
+   */
+  private static IModelObject add( IModelObject parent, String type, String value)
+  {
+    IModelObject child = new ModelObject( type);
+    child.setValue( value);
+    parent.addChild( child);
+    return child;
+  }
+
+  /**
+   * Returns the result of comparing the specified node-sets with a nested loop.
+   * @param operator The operator.
+   * @param lhs The left-hand node-set.
+   * @param rhs The right-hand node-set.
+   * @return Returns true if any pair of string-values satisfies the operator.
+   */
+  private static boolean nestedLoop( String operator, List<IModelObject> lhs, List<IModelObject> rhs)
+  {
+    for( IModelObject node1: lhs)
+    {
+      for( IModelObject node2: rhs)
+      {
+        int comparison = StringFunction.stringValue( node1).compareTo( StringFunction.stringValue( node2));
+        if ( operator.equals( "=") && comparison == 0) return true;
+        if ( operator.equals( "!=") && comparison != 0) return true;
+        if ( operator.equals( "<") && comparison < 0) return true;
+        if ( operator.equals( ">=") && comparison >= 0) return true;
+      }
+    }
+    return false;
+  }
+}
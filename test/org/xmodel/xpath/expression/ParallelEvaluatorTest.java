@@ -0,0 +1,102 @@
+package org.xmodel.xpath.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelAlgorithms;
+import org.xmodel.ModelObject;
+import org.xmodel.xpath.XPath;
+
+/**
+ * Test the parallel evaluation of aggregates and predicates over sealed node-sets.
+ */
+public class ParallelEvaluatorTest
+{
+  @Before public void setUp()
+  {
+    ParallelEvaluator.threshold = 100;
+  }
+  
+  @After public void tearDown()
+  {
+    ParallelEvaluator.threshold = 0;
+  }
+  
+  @Test public void axesOutsideSubtree()
+  {
+    assertTrue( isSideEffectFree( "a/b[ @x = 1]"));
+    assertTrue( isSideEffectFree( "following-sibling::a | descendant::b"));
+    assertFalse( isSideEffectFree( "/a"));
+    assertFalse( isSideEffectFree( "../a"));
+    assertFalse( isSideEffectFree( "ancestor::a"));
+    assertFalse( isSideEffectFree( "ancestor-or-self::a"));
+    assertFalse( isSideEffectFree( "following::a"));
+    assertFalse( isSideEffectFree( "a[ preceding::b]"));
+  }
+  
+  @Test public void parallelMatchesSequential()
+  {
+    IModelObject mutable = createTree( 1000);
+    IModelObject sealed = ModelAlgorithms.seal( mutable);
+    
+    String[] expressions = {
+      "sum( item/@v)",
+      "max( item/@v)",
+      "count( item[ @v mod 3 = 0])",
+      "count( item[ count( @v | @w) = 2])",
+      "sum-over( item, @v * 2)"};
+    
+    for( String spec: expressions)
+    {
+      IExpression expression = XPath.createExpression( spec);
+      double sequential = expression.evaluateNumber( new Context( mutable));
+      int invocations = ParallelEvaluator.invocations.get();
+      assertEquals( spec, sequential, expression.evaluateNumber( new Context( sealed)), 0);
+      assertTrue( spec, ParallelEvaluator.invocations.get() > invocations);
+    }
+  }
+  
+  @Test public void unionInPredicate()
+  {
+    IModelObject sealed = ModelAlgorithms.seal( createTree( 1000));
+    IExpression expression = XPath.createExpression( "item[ count( self::item | child::*) = 3]");
+    List<IModelObject> nodes = expression.evaluateNodes( new Context( sealed));
+    assertEquals( 500, nodes.size());
+    for( int i=1; i<nodes.size(); i++)
+      assertTrue( nodes.get( i-1) != nodes.get( i));
+  }
+  
+  /**
+   * Returns true if the specified expression, without its root, is side-effect free.
+   * @param spec The expression.
+   * @return Returns true if the expression is side-effect free.
+   */
+  private static boolean isSideEffectFree( String spec)
+  {
+    return ParallelEvaluator.isSideEffectFree( XPath.createExpression( spec).getArgument( 0));
+  }
+  
+  /**
+   * Create a tree with the specified number of items, of which every other item has two children.
+   * @param count The number of items.
+   * @return Returns the root.
+   */
+  private static IModelObject createTree( int count)
+  {
+    IModelObject root = new ModelObject( "root");
+    for( int i=0; i<count; i++)
+    {
+      IModelObject item = new ModelObject( "item");
+      item.setAttribute( "v", i);
+      if ( i % 2 == 0) item.setAttribute( "w", i);
+      if ( i % 2 == 0) { item.addChild( new ModelObject( "a")); item.addChild( new ModelObject( "b"));}
+      root.addChild( item);
+    }
+    return root;
+  }
+}
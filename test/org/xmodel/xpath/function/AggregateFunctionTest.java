@@ -0,0 +1,186 @@
+package org.xmodel.xpath.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.xmodel.IModelObject;
+import org.xmodel.ModelObject;
+import org.xmodel.xpath.XPath;
+import org.xmodel.xpath.expression.ExpressionListener;
+import org.xmodel.xpath.expression.IContext;
+import org.xmodel.xpath.expression.IExpression;
+import org.xmodel.xpath.expression.StatefulContext;
+
+/**
+ * Test that the incrementally maintained aggregate functions agree with their evaluation.
+ */
+public class AggregateFunctionTest
+{
+  @Test public void drift()
+  {
+    // paths which may reach a node more than once, or which may not report a node that leaves, are re-evaluated
+    assertFalse( isIncremental( "count( a/b/..)"));
+    assertFalse( isIncremental( "count( a/b | a/c)"));
+    assertFalse( isIncremental( "count( a/b[ @k = 1])"));
+    assertFalse( isIncremental( "count( .//a//b)"));
+    assertTrue( isIncremental( "count( a/b)"));
+    assertTrue( isIncremental( "sum( .//b/@k)"));
+    assertTrue( isIncremental( "sum-over( a/b, @k * 2)"));
+    assertFalse( isIncremental( "sum-over( a/b/.., @k * 2)"));
+    assertFalse( isIncremental( "sum-over( a/b/@k, . * 2)"));
+
+    IModelObject root = new ModelObject( "root");
+    IExpression expression = XPath.createExpression( "count( a/b) + 0");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder( expression, context);
+    expression.addListener( context, recorder);
+
+    Random random = new Random( 1);
+    for( int i=0; i<500; i++)
+    {
+      IModelObject a = root.getCreateChild( "a");
+      List<IModelObject> children = a.getChildren();
+      switch( random.nextInt( 3))
+      {
+        case 0: a.addChild( new ModelObject( "b")); break;
+        case 1: if ( children.size() > 0) children.get( random.nextInt( children.size())).removeFromParent(); break;
+        case 2: if ( random.nextInt( 10) == 0) a.removeFromParent(); break;
+      }
+      assertEquals( expression.evaluateNumber( context), recorder.value, 0);
+    }
+
+    expression.removeListener( context, recorder);
+  }
+
+  @Test public void removal()
+  {
+    String[] specs = { "sum( items/item/@price) + 0", "avg( items/item/@price) + 0", "max( items/item/@price) + 0", "min( items/item/@price) + 0"};
+    for( String spec: specs)
+    {
+      IModelObject root = new ModelObject( "root");
+      IModelObject items = root.getCreateChild( "items");
+
+      IExpression expression = XPath.createExpression( spec);
+      StatefulContext context = new StatefulContext( root);
+      Recorder recorder = new Recorder( expression, context);
+      expression.addListener( context, recorder);
+
+      Random random = new Random( 1);
+      for( int i=0; i<500; i++)
+      {
+        List<IModelObject> children = items.getChildren();
+        IModelObject child = (children.size() > 0)? children.get( random.nextInt( children.size())): null;
+        switch( random.nextInt( 4))
+        {
+          case 0:
+          {
+            IModelObject item = new ModelObject( "item");
+            item.setAttribute( "price", random.nextInt( 100));
+            items.addChild( item);
+            break;
+          }
+          case 1: if ( child != null) child.removeFromParent(); break;
+          case 2: if ( child != null) child.removeAttribute( "price"); break;
+          case 3: if ( child != null) child.setAttribute( "price", random.nextInt( 100)); break;
+        }
+        assertEquals( spec, expression.evaluateNumber( context), recorder.value, 0);
+      }
+
+      expression.removeListener( context, recorder);
+    }
+  }
+
+  @Test public void sumOver()
+  {
+    IModelObject root = new ModelObject( "root");
+    IModelObject items = root.getCreateChild( "items");
+
+    IExpression expression = XPath.createExpression( "sum-over( items/item, @price * @quantity) + 0");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder( expression, context);
+    expression.addListener( context, recorder);
+
+    Random random = new Random( 1);
+    for( int i=0; i<500; i++)
+    {
+      List<IModelObject> children = items.getChildren();
+      if ( children.size() > 0 && random.nextInt( 2) == 0)
+      {
+        children.get( random.nextInt( children.size())).removeFromParent();
+      }
+      else
+      {
+        IModelObject item = new ModelObject( "item");
+        item.setAttribute( "price", random.nextInt( 100));
+        item.setAttribute( "quantity", random.nextInt( 10));
+        items.addChild( item);
+      }
+      assertEquals( expression.evaluateNumber( context), recorder.value, 0);
+    }
+
+    // the value which was added is subtracted, even if the element changed while it was in the node-set
+    IModelObject item = new ModelObject( "item");
+    item.setAttribute( "price", 3);
+    item.setAttribute( "quantity", 1);
+    items.addChild( item);
+    item.setAttribute( "quantity", 5);
+    double value = recorder.value;
+    items.removeChild( item);
+    assertEquals( value - 3, recorder.value, 0);
+
+    expression.removeListener( context, recorder);
+  }
+
+  @Test public void maxInitialValue()
+  {
+    IModelObject root = new ModelObject( "root");
+    IModelObject items = root.getCreateChild( "items");
+
+    IExpression expression = XPath.createExpression( "max( items/item/@price) + 0");
+    StatefulContext context = new StatefulContext( root);
+    Recorder recorder = new Recorder( expression, context);
+    expression.addListener( context, recorder);
+
+    IModelObject item = new ModelObject( "item");
+    item.setAttribute( "price", -1e12);
+    items.addChild( item);
+    assertEquals( expression.evaluateNumber( context), recorder.value, 0);
+
+    item.setAttribute( "price", -5);
+    assertEquals( -5, recorder.value, 0);
+
+    item.removeFromParent();
+    assertEquals( expression.evaluateNumber( context), recorder.value, 0);
+
+    expression.removeListener( context, recorder);
+  }
+
+  /**
+   * Returns true if the aggregate function of the specified expression is maintained incrementally.
+   * @param spec The expression.
+   * @return Returns true if the function is incremental.
+   */
+  private static boolean isIncremental( String spec)
+  {
+    IExpression expression = XPath.createExpression( spec);
+    return ((AggregateFunction)expression.getArgument( 0)).isIncremental();
+  }
+
+  private static class Recorder extends ExpressionListener
+  {
+    Recorder( IExpression expression, IContext context)
+    {
+      value = expression.evaluateNumber( context);
+    }
+
+    public void notifyChange( IExpression expression, IContext context, double newValue, double oldValue)
+    {
+      value = newValue;
+    }
+
+    double value;
+  }
+}